@@ -4,8 +4,16 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 
+import at.fhooe.pro3.resistordetector.camera.FramePipeline;
+import at.fhooe.pro3.resistordetector.detection.FrameQualityGate;
+import at.fhooe.pro3.resistordetector.detection.LiveDetector;
+import at.fhooe.pro3.resistordetector.detection.ResistorDetector;
+import at.fhooe.pro3.resistordetector.detection.TemporalResultFusion;
 import at.fhooe.pro3.resistordetector.ui.CameraViewListener;
+import at.fhooe.pro3.resistordetector.ui.CaptureMode;
 import at.fhooe.pro3.resistordetector.ui.DetectionMode;
+import at.fhooe.pro3.resistordetector.ui.PortraitCameraView;
+import at.fhooe.pro3.resistordetector.ui.PreprocessingMode;
 
 /**
  * This class manages the persistence of app settings.
@@ -30,6 +38,42 @@ public class AppSettings {
 
     private static final String DETECTION_MODE = "detection_mode";
 
+    private static final String PREPROCESSING_MODE = "preprocessing_mode";
+
+    private static final String DETAIL_LEVEL = "detail_level";
+
+    private static final String PARALLEL_DETECTION_ENABLED = "parallel_detection_enabled";
+
+    private static final String STAGE_TIMING_ENABLED = "stage_timing_enabled";
+
+    private static final String TARGET_COLUMNS_PER_BAND = "target_columns_per_band";
+
+    private static final String CAPTURE_MODE = "capture_mode";
+
+    private static final String FRAME_BUFFER_COUNT = "frame_buffer_count";
+
+    private static final String FRAME_DROP_POLICY = "frame_drop_policy";
+
+    private static final String OVERLAY_MODE = "overlay_mode";
+
+    private static final String ADJUST_INDICATOR_ONLY = "adjust_indicator_only";
+
+    private static final String LIVE_DETECTION_ENABLED = "live_detection_enabled";
+
+    private static final String LIVE_DETECTION_RATE = "live_detection_rate";
+
+    private static final String FUSION_WINDOW_SIZE = "fusion_window_size";
+
+    private static final String FUSION_AGREEMENT_THRESHOLD = "fusion_agreement_threshold";
+
+    private static final String FUSION_TIMEOUT_SECONDS = "fusion_timeout_seconds";
+
+    private static final String QUALITY_GATE_ENABLED = "quality_gate_enabled";
+
+    private static final String QUALITY_GATE_SHARPNESS_THRESHOLD = "quality_gate_sharpness_threshold";
+
+    private static final String QUALITY_GATE_HIGHLIGHT_THRESHOLD = "quality_gate_highlight_threshold";
+
     public static final boolean DEFAULT_FLASH_ENABLED = false;
     public static final int DEFAULT_ZOOM_LEVEL = -1;
     public static final int DEFAULT_BRIGHTNESS_MODIFIER = CameraViewListener.BRIGHTNESS_MODIFIER_DEFAULT;
@@ -41,6 +85,42 @@ public class AppSettings {
 
     public static final String DEFAULT_DETECTION_MODE = DetectionMode.ColumnResistorDetection.name();
 
+    public static final String DEFAULT_PREPROCESSING_MODE = PreprocessingMode.BilateralFilter.name();
+
+    public static final String DEFAULT_DETAIL_LEVEL = ResistorDetector.DetailLevel.Summary.name();
+
+    public static final boolean DEFAULT_PARALLEL_DETECTION_ENABLED = false;
+
+    public static final boolean DEFAULT_STAGE_TIMING_ENABLED = false;
+
+    public static final int DEFAULT_TARGET_COLUMNS_PER_BAND = ResistorDetector.TARGET_COLUMNS_PER_BAND_DEFAULT;
+
+    public static final String DEFAULT_CAPTURE_MODE = PortraitCameraView.CAPTURE_MODE_DEFAULT.name();
+
+    public static final int DEFAULT_FRAME_BUFFER_COUNT = FramePipeline.FRAME_BUFFER_COUNT_DEFAULT;
+
+    public static final String DEFAULT_FRAME_DROP_POLICY = FramePipeline.FRAME_DROP_POLICY_DEFAULT.name();
+
+    public static final String DEFAULT_OVERLAY_MODE = CameraViewListener.OVERLAY_MODE_DEFAULT.name();
+
+    public static final boolean DEFAULT_ADJUST_INDICATOR_ONLY = CameraViewListener.ADJUST_INDICATOR_ONLY_DEFAULT;
+
+    public static final boolean DEFAULT_LIVE_DETECTION_ENABLED = false;
+
+    public static final int DEFAULT_LIVE_DETECTION_RATE = LiveDetector.DETECTIONS_PER_SECOND_DEFAULT;
+
+    public static final int DEFAULT_FUSION_WINDOW_SIZE = TemporalResultFusion.WINDOW_SIZE_DEFAULT;
+
+    public static final float DEFAULT_FUSION_AGREEMENT_THRESHOLD = TemporalResultFusion.AGREEMENT_THRESHOLD_DEFAULT;
+
+    public static final int DEFAULT_FUSION_TIMEOUT_SECONDS = TemporalResultFusion.TIMEOUT_SECONDS_DEFAULT;
+
+    public static final boolean DEFAULT_QUALITY_GATE_ENABLED = true;
+
+    public static final int DEFAULT_QUALITY_GATE_SHARPNESS_THRESHOLD = FrameQualityGate.SHARPNESS_THRESHOLD_DEFAULT;
+
+    public static final float DEFAULT_QUALITY_GATE_HIGHLIGHT_THRESHOLD = FrameQualityGate.HIGHLIGHT_RATIO_THRESHOLD_DEFAULT;
+
     /**
      * The shared preferences object used by this AppSettings object.
      */
@@ -197,6 +277,380 @@ public class AppSettings {
         return DetectionMode.valueOf(indicatorSizeString);
     }
 
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param preprocessingMode the new value of the setting (see method name)
+     */
+    public void savePreprocessingMode(PreprocessingMode preprocessingMode) {
+        setPreferencesString(PREPROCESSING_MODE, preprocessingMode.name());
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public PreprocessingMode getPreprocessingMode() {
+        String preprocessingModeString = myPreferences.getString(PREPROCESSING_MODE, DEFAULT_PREPROCESSING_MODE);
+
+        return PreprocessingMode.valueOf(preprocessingModeString);
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param detailLevel the new value of the setting (see method name)
+     */
+    public void saveDetailLevel(ResistorDetector.DetailLevel detailLevel) {
+        setPreferencesString(DETAIL_LEVEL, detailLevel.name());
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public ResistorDetector.DetailLevel getDetailLevel() {
+        String detailLevelString = myPreferences.getString(DETAIL_LEVEL, DEFAULT_DETAIL_LEVEL);
+
+        return ResistorDetector.DetailLevel.valueOf(detailLevelString);
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param parallelDetectionEnabled the new value of the setting (see method name)
+     */
+    public void saveParallelDetectionEnabled(boolean parallelDetectionEnabled) {
+        setPreferencesBool(PARALLEL_DETECTION_ENABLED, parallelDetectionEnabled);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public boolean getParallelDetectionEnabled() {
+        return myPreferences.getBoolean(PARALLEL_DETECTION_ENABLED, DEFAULT_PARALLEL_DETECTION_ENABLED);
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param stageTimingEnabled the new value of the setting (see method name)
+     */
+    public void saveStageTimingEnabled(boolean stageTimingEnabled) {
+        setPreferencesBool(STAGE_TIMING_ENABLED, stageTimingEnabled);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public boolean getStageTimingEnabled() {
+        return myPreferences.getBoolean(STAGE_TIMING_ENABLED, DEFAULT_STAGE_TIMING_ENABLED);
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param targetColumnsPerBand the new value of the setting (see method name), 0 to disable the reduced resolution
+     */
+    public void saveTargetColumnsPerBand(int targetColumnsPerBand) {
+        setPreferencesInt(TARGET_COLUMNS_PER_BAND, targetColumnsPerBand);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public int getTargetColumnsPerBand() {
+        int targetColumnsPerBand = myPreferences.getInt(TARGET_COLUMNS_PER_BAND, DEFAULT_TARGET_COLUMNS_PER_BAND);
+
+        if (targetColumnsPerBand < ResistorDetector.TARGET_COLUMNS_PER_BAND_MIN_VALUE || targetColumnsPerBand > ResistorDetector.TARGET_COLUMNS_PER_BAND_MAX_VALUE)
+            return DEFAULT_TARGET_COLUMNS_PER_BAND;
+
+        return targetColumnsPerBand;
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param captureMode the new value of the setting (see method name)
+     */
+    public void saveCaptureMode(CaptureMode captureMode) {
+        setPreferencesString(CAPTURE_MODE, captureMode.name());
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public CaptureMode getCaptureMode() {
+        String captureModeString = myPreferences.getString(CAPTURE_MODE, DEFAULT_CAPTURE_MODE);
+
+        return CaptureMode.valueOf(captureModeString);
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param frameBufferCount the new value of the setting (see method name)
+     */
+    public void saveFrameBufferCount(int frameBufferCount) {
+        setPreferencesInt(FRAME_BUFFER_COUNT, frameBufferCount);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public int getFrameBufferCount() {
+        int frameBufferCount = myPreferences.getInt(FRAME_BUFFER_COUNT, DEFAULT_FRAME_BUFFER_COUNT);
+
+        if (frameBufferCount < FramePipeline.FRAME_BUFFER_COUNT_MIN_VALUE || frameBufferCount > FramePipeline.FRAME_BUFFER_COUNT_MAX_VALUE)
+            return DEFAULT_FRAME_BUFFER_COUNT;
+
+        return frameBufferCount;
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param frameDropPolicy the new value of the setting (see method name)
+     */
+    public void saveFrameDropPolicy(FramePipeline.FrameDropPolicy frameDropPolicy) {
+        setPreferencesString(FRAME_DROP_POLICY, frameDropPolicy.name());
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public FramePipeline.FrameDropPolicy getFrameDropPolicy() {
+        String frameDropPolicyString = myPreferences.getString(FRAME_DROP_POLICY, DEFAULT_FRAME_DROP_POLICY);
+
+        return FramePipeline.FrameDropPolicy.valueOf(frameDropPolicyString);
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param overlayMode the new value of the setting (see method name)
+     */
+    public void saveOverlayMode(CameraViewListener.OverlayMode overlayMode) {
+        setPreferencesString(OVERLAY_MODE, overlayMode.name());
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public CameraViewListener.OverlayMode getOverlayMode() {
+        String overlayModeString = myPreferences.getString(OVERLAY_MODE, DEFAULT_OVERLAY_MODE);
+
+        return CameraViewListener.OverlayMode.valueOf(overlayModeString);
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param adjustIndicatorOnly the new value of the setting (see method name)
+     */
+    public void saveAdjustIndicatorOnly(boolean adjustIndicatorOnly) {
+        setPreferencesBool(ADJUST_INDICATOR_ONLY, adjustIndicatorOnly);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public boolean getAdjustIndicatorOnly() {
+        return myPreferences.getBoolean(ADJUST_INDICATOR_ONLY, DEFAULT_ADJUST_INDICATOR_ONLY);
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param liveDetectionEnabled the new value of the setting (see method name)
+     */
+    public void saveLiveDetectionEnabled(boolean liveDetectionEnabled) {
+        setPreferencesBool(LIVE_DETECTION_ENABLED, liveDetectionEnabled);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public boolean getLiveDetectionEnabled() {
+        return myPreferences.getBoolean(LIVE_DETECTION_ENABLED, DEFAULT_LIVE_DETECTION_ENABLED);
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param liveDetectionRate the new value of the setting (see method name), in detections per second
+     */
+    public void saveLiveDetectionRate(int liveDetectionRate) {
+        setPreferencesInt(LIVE_DETECTION_RATE, liveDetectionRate);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name) in detections per second, or the default value
+     */
+    public int getLiveDetectionRate() {
+        int liveDetectionRate = myPreferences.getInt(LIVE_DETECTION_RATE, DEFAULT_LIVE_DETECTION_RATE);
+
+        if (liveDetectionRate < LiveDetector.DETECTIONS_PER_SECOND_MIN_VALUE || liveDetectionRate > LiveDetector.DETECTIONS_PER_SECOND_MAX_VALUE)
+            return DEFAULT_LIVE_DETECTION_RATE;
+
+        return liveDetectionRate;
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param fusionWindowSize the new value of the setting (see method name)
+     */
+    public void saveFusionWindowSize(int fusionWindowSize) {
+        setPreferencesInt(FUSION_WINDOW_SIZE, fusionWindowSize);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public int getFusionWindowSize() {
+        int fusionWindowSize = myPreferences.getInt(FUSION_WINDOW_SIZE, DEFAULT_FUSION_WINDOW_SIZE);
+
+        if (fusionWindowSize < TemporalResultFusion.WINDOW_SIZE_MIN_VALUE || fusionWindowSize > TemporalResultFusion.WINDOW_SIZE_MAX_VALUE)
+            return DEFAULT_FUSION_WINDOW_SIZE;
+
+        return fusionWindowSize;
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param fusionAgreementThreshold the new value of the setting (see method name)
+     */
+    public void saveFusionAgreementThreshold(float fusionAgreementThreshold) {
+        setPreferencesFloat(FUSION_AGREEMENT_THRESHOLD, fusionAgreementThreshold);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public float getFusionAgreementThreshold() {
+        float fusionAgreementThreshold = myPreferences.getFloat(FUSION_AGREEMENT_THRESHOLD, DEFAULT_FUSION_AGREEMENT_THRESHOLD);
+
+        if (fusionAgreementThreshold < TemporalResultFusion.AGREEMENT_THRESHOLD_MIN_VALUE || fusionAgreementThreshold > TemporalResultFusion.AGREEMENT_THRESHOLD_MAX_VALUE)
+            return DEFAULT_FUSION_AGREEMENT_THRESHOLD;
+
+        return fusionAgreementThreshold;
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param fusionTimeoutSeconds the new value of the setting (see method name)
+     */
+    public void saveFusionTimeoutSeconds(int fusionTimeoutSeconds) {
+        setPreferencesInt(FUSION_TIMEOUT_SECONDS, fusionTimeoutSeconds);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public int getFusionTimeoutSeconds() {
+        int fusionTimeoutSeconds = myPreferences.getInt(FUSION_TIMEOUT_SECONDS, DEFAULT_FUSION_TIMEOUT_SECONDS);
+
+        if (fusionTimeoutSeconds < TemporalResultFusion.TIMEOUT_SECONDS_MIN_VALUE || fusionTimeoutSeconds > TemporalResultFusion.TIMEOUT_SECONDS_MAX_VALUE)
+            return DEFAULT_FUSION_TIMEOUT_SECONDS;
+
+        return fusionTimeoutSeconds;
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param qualityGateEnabled the new value of the setting (see method name)
+     */
+    public void saveQualityGateEnabled(boolean qualityGateEnabled) {
+        setPreferencesBool(QUALITY_GATE_ENABLED, qualityGateEnabled);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public boolean getQualityGateEnabled() {
+        return myPreferences.getBoolean(QUALITY_GATE_ENABLED, DEFAULT_QUALITY_GATE_ENABLED);
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param qualityGateSharpnessThreshold the new value of the setting (see method name)
+     */
+    public void saveQualityGateSharpnessThreshold(int qualityGateSharpnessThreshold) {
+        setPreferencesInt(QUALITY_GATE_SHARPNESS_THRESHOLD, qualityGateSharpnessThreshold);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public int getQualityGateSharpnessThreshold() {
+        int sharpnessThreshold = myPreferences.getInt(QUALITY_GATE_SHARPNESS_THRESHOLD, DEFAULT_QUALITY_GATE_SHARPNESS_THRESHOLD);
+
+        if (sharpnessThreshold < FrameQualityGate.SHARPNESS_THRESHOLD_MIN_VALUE || sharpnessThreshold > FrameQualityGate.SHARPNESS_THRESHOLD_MAX_VALUE)
+            return DEFAULT_QUALITY_GATE_SHARPNESS_THRESHOLD;
+
+        return sharpnessThreshold;
+    }
+
+    /**
+     * Sets the value of the setting (see method name).
+     *
+     * @param qualityGateHighlightThreshold the new value of the setting (see method name)
+     */
+    public void saveQualityGateHighlightThreshold(float qualityGateHighlightThreshold) {
+        setPreferencesFloat(QUALITY_GATE_HIGHLIGHT_THRESHOLD, qualityGateHighlightThreshold);
+    }
+
+    /**
+     * Gets the value of the setting (see method name).
+     *
+     * @return the value of the setting (see method name), or the default value
+     */
+    public float getQualityGateHighlightThreshold() {
+        float highlightThreshold = myPreferences.getFloat(QUALITY_GATE_HIGHLIGHT_THRESHOLD, DEFAULT_QUALITY_GATE_HIGHLIGHT_THRESHOLD);
+
+        if (highlightThreshold < FrameQualityGate.HIGHLIGHT_RATIO_THRESHOLD_MIN_VALUE || highlightThreshold > FrameQualityGate.HIGHLIGHT_RATIO_THRESHOLD_MAX_VALUE)
+            return DEFAULT_QUALITY_GATE_HIGHLIGHT_THRESHOLD;
+
+        return highlightThreshold;
+    }
+
     /**
      * Removes all saved preferences and settings.
      */
@@ -212,6 +666,24 @@ public class AppSettings {
         editor.remove(COLOR_MODIFIER_3);
         editor.remove(INDICATOR_SIZE);
         editor.remove(DETECTION_MODE);
+        editor.remove(PREPROCESSING_MODE);
+        editor.remove(DETAIL_LEVEL);
+        editor.remove(PARALLEL_DETECTION_ENABLED);
+        editor.remove(STAGE_TIMING_ENABLED);
+        editor.remove(TARGET_COLUMNS_PER_BAND);
+        editor.remove(CAPTURE_MODE);
+        editor.remove(FRAME_BUFFER_COUNT);
+        editor.remove(FRAME_DROP_POLICY);
+        editor.remove(OVERLAY_MODE);
+        editor.remove(ADJUST_INDICATOR_ONLY);
+        editor.remove(LIVE_DETECTION_ENABLED);
+        editor.remove(LIVE_DETECTION_RATE);
+        editor.remove(FUSION_WINDOW_SIZE);
+        editor.remove(FUSION_AGREEMENT_THRESHOLD);
+        editor.remove(FUSION_TIMEOUT_SECONDS);
+        editor.remove(QUALITY_GATE_ENABLED);
+        editor.remove(QUALITY_GATE_SHARPNESS_THRESHOLD);
+        editor.remove(QUALITY_GATE_HIGHLIGHT_THRESHOLD);
 
         editor.apply();
     }
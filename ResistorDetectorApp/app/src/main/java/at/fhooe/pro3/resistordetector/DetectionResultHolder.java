@@ -26,6 +26,8 @@ public class DetectionResultHolder {
 
     /**
      * Gets DetectionResult of this static DetectionResultHolder.
+     * The result can be released when the holder is set to another result,
+     * use acquireDetectionResult() to keep it.
      *
      * @return the DetectionResult of this static DetectionResultHolder
      */
@@ -33,12 +35,34 @@ public class DetectionResultHolder {
         return detectionResult;
     }
 
+    /**
+     * Gets DetectionResult of this static DetectionResultHolder and adds a reference to it
+     * (see DetectionResult.retain()), so its DetectionStepDetails are kept when the holder
+     * is set to another result. The caller must call DetectionResult.release() when
+     * it does not use the result anymore.
+     *
+     * @return the retained DetectionResult of this static DetectionResultHolder, or null if there is none
+     */
+    public static DetectionResult acquireDetectionResult() {
+        if (detectionResult == null)
+            return null;
+
+        return detectionResult.retain();
+    }
+
     /**
      * Sets the DetectionResult of this static DetectionResultHolder.
+     * The holder takes over the reference of the caller to the given DetectionResult
+     * and releases its reference to the replaced DetectionResult (see DetectionResult.release()).
      *
      * @param detectionResult the DetectionResult of this static DetectionResultHolder
      */
     public static void setDetectionResult(DetectionResult detectionResult) {
+        DetectionResult replacedDetectionResult = DetectionResultHolder.detectionResult;
+
         DetectionResultHolder.detectionResult = detectionResult;
+
+        if (replacedDetectionResult != null)
+            replacedDetectionResult.release();
     }
 }
@@ -0,0 +1,528 @@
+package at.fhooe.pro3.resistordetector.camera;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import at.fhooe.pro3.resistordetector.detection.LatencyHistogram;
+import at.fhooe.pro3.resistordetector.detection.MetricsRegistry;
+import at.fhooe.pro3.resistordetector.detection.StripedCounter;
+
+/**
+ * Receives the NV21 frames of a FrameSource and delivers them to a FrameHandler on a worker thread.
+ * <p>
+ * The frames are copied into a ring of preallocated frame buffers and delivered in the order they were received.
+ * If all buffers are in use because the delivery is slower than the source, a frame is dropped according
+ * to the FrameDropPolicy. The received, processed and dropped frames are counted in the default MetricsRegistry.
+ * <p>
+ * The frames are handed from the thread of the source to the worker without locks (see FrameExchanger),
+ * the worker parks while no frame is queued. The frame buffers are guarded by a lifecycle lock against the release,
+ * which the thread of the source only holds while copying a frame.
+ * <p>
+ * The pipeline does not depend on Android, it can be run on the JVM with a SyntheticFrameSource.
+ * <p>
+ * Usage:
+ * FramePipeline framePipeline = new FramePipeline(width, height, bufferCount, frameHandler);
+ * framePipeline.start();
+ * frameSource.start(frameSize, bufferCount, framePipeline);
+ * ...
+ * frameSource.close();
+ * framePipeline.stop();
+ * framePipeline.release();
+ */
+public class FramePipeline implements FrameSource.FrameCallback {
+
+    /**
+     * Defines which frame is dropped if a frame is received while all frame buffers are in use.
+     */
+    public enum FrameDropPolicy {
+        /**
+         * The oldest frame which was not delivered yet is dropped, the delivered frames are as recent as possible.
+         */
+        DropOldest,
+        /**
+         * The received frame is dropped, the queued frames are delivered without gaps.
+         */
+        DropNewest,
+    }
+
+    /**
+     * Handles the frames delivered by the pipeline.
+     */
+    public interface FrameHandler {
+
+        /**
+         * Called on the worker thread of the pipeline for every delivered frame.
+         * The frame is not overwritten before this method returned.
+         *
+         * @param nv21Frame the frame in the NV21 format (landscape), must not be modified
+         */
+        void handleFrame(Mat nv21Frame);
+    }
+
+    /**
+     * Defines the minimum value for (see constant name).
+     */
+    public static final int FRAME_BUFFER_COUNT_MIN_VALUE = 2;
+
+    /**
+     * Defines the maximum value for (see constant name).
+     */
+    public static final int FRAME_BUFFER_COUNT_MAX_VALUE = 8;
+
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final int FRAME_BUFFER_COUNT_DEFAULT = 3;
+
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final FrameDropPolicy FRAME_DROP_POLICY_DEFAULT = FrameDropPolicy.DropOldest;
+
+    /**
+     * The width of the frames (landscape).
+     */
+    private final int frameWidth;
+
+    /**
+     * The height of the frames (landscape).
+     */
+    private final int frameHeight;
+
+    /**
+     * The handler the frames are delivered to.
+     */
+    private final FrameHandler frameHandler;
+
+    /**
+     * The frame buffers, null after the pipeline was released. Guarded by lifecycleLock.
+     */
+    private Mat[] frames;
+
+    /**
+     * Hands the indexes in frames of the received frames from the thread of the source to the worker.
+     */
+    private final FrameExchanger frameExchanger;
+
+    /**
+     * Guards the frame buffers against the release while a frame is copied.
+     */
+    private final Object lifecycleLock = new Object();
+
+    /**
+     * The index in frames of the last received frame, -1 if there is none. Guarded by lifecycleLock.
+     */
+    private int latestFrameIdx = -1;
+
+    /**
+     * The policy used if a frame is received while all frame buffers are in use.
+     */
+    private volatile FrameDropPolicy frameDropPolicy = FRAME_DROP_POLICY_DEFAULT;
+
+    /**
+     * The worker thread delivering the frames, null if the pipeline is not started.
+     */
+    private volatile Thread workerThread;
+
+    /**
+     * True if the worker thread should stop.
+     */
+    private volatile boolean stopWorker;
+
+    /**
+     * The number of frames received from the source.
+     */
+    private final StripedCounter receivedFramesCounter = MetricsRegistry.getDefault().counter("camera.frames.received");
+
+    /**
+     * The number of frames delivered to the frame handler.
+     */
+    private final StripedCounter processedFramesCounter = MetricsRegistry.getDefault().counter("camera.frames.processed");
+
+    /**
+     * The number of frames dropped because all frame buffers were in use.
+     */
+    private final StripedCounter droppedFramesCounter = MetricsRegistry.getDefault().counter("camera.frames.dropped");
+
+    /**
+     * The time in microseconds to extract and convert a region of a frame (see getFrameRegionBgr).
+     */
+    private final LatencyHistogram regionConversionHistogram = MetricsRegistry.getDefault().histogram("camera.region_conversion_us");
+
+    /**
+     * Creates a new pipeline and allocates the frame buffers.
+     *
+     * @param frameWidth   the width of the frames (landscape), even
+     * @param frameHeight  the height of the frames (landscape), even
+     * @param bufferCount  the number of frame buffers
+     * @param frameHandler the handler the frames are delivered to
+     */
+    public FramePipeline(int frameWidth, int frameHeight, int bufferCount, FrameHandler frameHandler) {
+        if (frameWidth <= 0 || frameHeight <= 0 || frameWidth % 2 != 0 || frameHeight % 2 != 0)
+            throw new IllegalArgumentException("frameWidth and frameHeight must be positive and even!");
+
+        if (bufferCount < FRAME_BUFFER_COUNT_MIN_VALUE || bufferCount > FRAME_BUFFER_COUNT_MAX_VALUE) {
+            throw new IllegalArgumentException("bufferCount must be between "
+                    + FRAME_BUFFER_COUNT_MIN_VALUE + " and " + FRAME_BUFFER_COUNT_MAX_VALUE);
+        }
+
+        if (frameHandler == null)
+            throw new IllegalArgumentException("frameHandler must not be null!");
+
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.frameHandler = frameHandler;
+
+        frames = new Mat[bufferCount];
+
+        for (int i = 0; i < bufferCount; i++) {
+            frames[i] = new Mat(frameHeight + (frameHeight / 2), frameWidth, CvType.CV_8UC1);
+        }
+
+        frameExchanger = new FrameExchanger(bufferCount);
+    }
+
+    /**
+     * Starts the worker thread delivering the frames. Does nothing if the pipeline is already started.
+     */
+    public synchronized void start() {
+        if (workerThread != null)
+            return;
+
+        stopWorker = false;
+        workerThread = new Thread(new Worker(), "CameraWorker");
+        workerThread.start();
+    }
+
+    /**
+     * Stops the worker thread and waits until the current frame was delivered.
+     * Does nothing if the pipeline is not started.
+     */
+    public synchronized void stop() {
+        Thread thread = workerThread;
+
+        if (thread == null)
+            return;
+
+        stopWorker = true;
+        LockSupport.unpark(thread);
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        workerThread = null;
+    }
+
+    /**
+     * Releases the frame buffers, received frames are ignored afterwards.
+     * Must be called after the pipeline was stopped.
+     */
+    public void release() {
+        synchronized (lifecycleLock) {
+            if (frames != null) {
+                for (Mat frame : frames) {
+                    frame.release();
+                }
+                frames = null;
+            }
+
+            latestFrameIdx = -1;
+        }
+    }
+
+    /**
+     * Sets which frame is dropped if a frame is received while all frame buffers are in use.
+     *
+     * @param frameDropPolicy the new frame drop policy
+     */
+    public void setFrameDropPolicy(FrameDropPolicy frameDropPolicy) {
+        if (frameDropPolicy == null)
+            throw new IllegalArgumentException("frameDropPolicy must not be null!");
+
+        this.frameDropPolicy = frameDropPolicy;
+    }
+
+    /**
+     * Returns which frame is dropped if a frame is received while all frame buffers are in use.
+     *
+     * @return the current frame drop policy
+     */
+    public FrameDropPolicy getFrameDropPolicy() {
+        return frameDropPolicy;
+    }
+
+    /**
+     * Copies a frame of the source into a free frame buffer and queues it for the delivery.
+     *
+     * @param frame the captured frame
+     */
+    @Override
+    public void onFrame(FrameSource.Frame frame) {
+        receivedFramesCounter.increment();
+
+        //the lifecycle lock is only contended while the pipeline is released or a region is copied,
+        //the worker never takes it
+        synchronized (lifecycleLock) {
+            if (frames == null)
+                return;
+
+            int frameIdx = frameExchanger.pollFree();
+
+            if (frameIdx < 0 && frameDropPolicy == FrameDropPolicy.DropOldest) {
+                //drop the oldest queued frame and reuse its buffer
+                frameIdx = frameExchanger.poll();
+
+                if (frameIdx >= 0)
+                    droppedFramesCounter.increment();
+            }
+
+            if (frameIdx < 0) {
+                //drop the received frame
+                droppedFramesCounter.increment();
+                return;
+            }
+
+            frame.copyTo(frames[frameIdx]);
+            latestFrameIdx = frameIdx;
+            frameExchanger.publish(frameIdx);
+        }
+
+        Thread thread = workerThread;
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    /**
+     * Returns the given region of the last received frame as new BGR matrix in portrait orientation,
+     * without converting and rotating the whole frame.
+     * <p>
+     * The portrait frame is the landscape frame transposed and flipped around the y-axis (like the frames
+     * of the PortraitCameraView). The region is mapped back to the landscape NV21 frame, only the Y and VU rows
+     * and columns of the region are copied (aligned to the 2x2 chroma blocks) and only this small image is
+     * converted to color, rotated to portrait and cropped to the region.
+     * The colors are the same as the colors of the frames converted with COLOR_YUV2BGR_NV12 to RGBA
+     * and then from RGBA to BGR.
+     * <p>
+     * Release the returned matrix if not needed anymore.
+     *
+     * @param region the region in portrait coordinates (width = frame height, height = frame width)
+     * @return a new BGR matrix with the size of the region, or null if no frame was received yet
+     */
+    public Mat getFrameRegionBgr(Rect region) {
+        if (region == null)
+            throw new IllegalArgumentException("region must not be null!");
+
+        if (region.x < 0 || region.y < 0 || region.width <= 0 || region.height <= 0
+                || region.x + region.width > frameHeight || region.y + region.height > frameWidth)
+            throw new IllegalArgumentException("region must be inside the frame!");
+
+        long startTime = System.nanoTime();
+
+        //portrait (x, y) = landscape (y, frameHeight - 1 - x)
+        //the region in the landscape frame, aligned to even coordinates because of the subsampled VU plane
+        int landscapeX0 = region.y & ~1;
+        int landscapeY0 = (frameHeight - region.x - region.width) & ~1;
+        int landscapeX1 = (region.y + region.height + 1) & ~1;
+        int landscapeY1 = (frameHeight - region.x + 1) & ~1;
+
+        int landscapeWidth = landscapeX1 - landscapeX0;
+        int landscapeHeight = landscapeY1 - landscapeY0;
+
+        Mat regionYuv = new Mat(landscapeHeight + landscapeHeight / 2, landscapeWidth, CvType.CV_8UC1);
+
+        //the lifecycle lock prevents that the frame is overwritten or released while the region is copied
+        synchronized (lifecycleLock) {
+            if (latestFrameIdx < 0) {
+                regionYuv.release();
+                return null;
+            }
+
+            Mat frame = frames[latestFrameIdx];
+
+            frame.submat(landscapeY0, landscapeY1, landscapeX0, landscapeX1)
+                    .copyTo(regionYuv.rowRange(0, landscapeHeight));
+            frame.submat(frameHeight + landscapeY0 / 2, frameHeight + landscapeY1 / 2, landscapeX0, landscapeX1)
+                    .copyTo(regionYuv.rowRange(landscapeHeight, landscapeHeight + landscapeHeight / 2));
+        }
+
+        //the preview frames are converted with COLOR_YUV2BGR_NV12 and used as RGBA,
+        //COLOR_YUV2RGB_NV12 results in exactly these colors in BGR order
+        Mat regionBgr = new Mat();
+        Imgproc.cvtColor(regionYuv, regionBgr, Imgproc.COLOR_YUV2RGB_NV12, 3);
+        regionYuv.release();
+
+        Mat regionRotated = new Mat();
+        Core.transpose(regionBgr, regionRotated);
+        Core.flip(regionRotated, regionRotated, 1);
+        regionBgr.release();
+
+        //the aligned region starts at portrait (frameHeight - landscapeY1, landscapeX0)
+        int offsetX = region.x - (frameHeight - landscapeY1);
+        int offsetY = region.y - landscapeX0;
+
+        Mat result = new Mat(region.height, region.width, CvType.CV_8UC3);
+        regionRotated.submat(offsetY, offsetY + region.height, offsetX, offsetX + region.width).copyTo(result);
+        regionRotated.release();
+
+        regionConversionHistogram.record((System.nanoTime() - startTime) / 1000);
+
+        return result;
+    }
+
+    /**
+     * Delivers the queued frames to the frame handler until the pipeline is stopped.
+     */
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            while (!stopWorker) {
+                //the frame buffer is neither queued nor free while it is delivered, so it is not overwritten
+                int frameIdx = frameExchanger.poll();
+
+                if (frameIdx < 0) {
+                    //unpark() before park() is not lost, the loop re-checks the queue after every wake-up
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                frameHandler.handleFrame(frames[frameIdx]);
+                processedFramesCounter.increment();
+
+                frameExchanger.releaseFree(frameIdx);
+            }
+        }
+    }
+
+    /**
+     * Lock-free exchange of frame buffer indexes between the thread of the source (producer)
+     * and the worker (consumer).
+     * <p>
+     * The queued frames and the free frames are two rings of indexes with ever increasing head and tail
+     * positions. The producer takes free frames and publishes received frames, the consumer polls
+     * the queued frames and returns them as free after the delivery. A frame which is delivered is neither
+     * queued nor free, so the producer never overwrites it. Only the head of the queue is shared by both
+     * threads (the producer polls the oldest frame with FrameDropPolicy.DropOldest), it is advanced with
+     * compareAndSet, all other positions have a single writer.
+     */
+    private static class FrameExchanger {
+
+        /**
+         * The indexes of the queued frames at the positions queueHead to queueTail - 1 (modulo the capacity).
+         */
+        private final int[] queuedFrames;
+
+        /**
+         * The indexes of the free frames at the positions freeHead to freeTail - 1 (modulo the capacity).
+         */
+        private final int[] freeFrames;
+
+        /**
+         * The position of the oldest queued frame, advanced by the consumer and the producer.
+         */
+        private final AtomicLong queueHead = new AtomicLong();
+
+        /**
+         * The position after the newest queued frame, advanced by the producer.
+         */
+        private final AtomicLong queueTail = new AtomicLong();
+
+        /**
+         * The position of the next free frame, advanced by the producer.
+         */
+        private final AtomicLong freeHead = new AtomicLong();
+
+        /**
+         * The position after the last free frame, advanced by the consumer.
+         */
+        private final AtomicLong freeTail = new AtomicLong();
+
+        /**
+         * Creates a new exchanger, all frames are free.
+         *
+         * @param capacity the number of frame buffers
+         */
+        FrameExchanger(int capacity) {
+            queuedFrames = new int[capacity];
+            freeFrames = new int[capacity];
+
+            for (int i = 0; i < capacity; i++) {
+                freeFrames[i] = i;
+            }
+
+            freeTail.set(capacity);
+        }
+
+        /**
+         * Takes a free frame (producer only).
+         *
+         * @return the index of the frame, -1 if no frame is free
+         */
+        int pollFree() {
+            long head = freeHead.get();
+
+            if (head == freeTail.get())
+                return -1;
+
+            int frameIdx = freeFrames[(int) (head % freeFrames.length)];
+            freeHead.lazySet(head + 1);
+
+            return frameIdx;
+        }
+
+        /**
+         * Returns a delivered frame as free (consumer only).
+         *
+         * @param frameIdx the index of the frame
+         */
+        void releaseFree(int frameIdx) {
+            long tail = freeTail.get();
+
+            freeFrames[(int) (tail % freeFrames.length)] = frameIdx;
+            //lazySet publishes the index written before
+            freeTail.lazySet(tail + 1);
+        }
+
+        /**
+         * Queues a received frame (producer only).
+         *
+         * @param frameIdx the index of the frame
+         */
+        void publish(int frameIdx) {
+            long tail = queueTail.get();
+
+            queuedFrames[(int) (tail % queuedFrames.length)] = frameIdx;
+            //lazySet publishes the index written before
+            queueTail.lazySet(tail + 1);
+        }
+
+        /**
+         * Removes the oldest queued frame (consumer, or producer to drop the oldest frame).
+         *
+         * @return the index of the frame, -1 if no frame is queued
+         */
+        int poll() {
+            while (true) {
+                long head = queueHead.get();
+
+                if (head == queueTail.get())
+                    return -1;
+
+                int frameIdx = queuedFrames[(int) (head % queuedFrames.length)];
+
+                //fails if the other thread polled the frame in the meantime, the read index is discarded then
+                if (queueHead.compareAndSet(head, head + 1))
+                    return frameIdx;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package at.fhooe.pro3.resistordetector.camera;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Lookup table which applies the contrast, brightness and color adjustments of the preview in one pass.
+ * <p>
+ * The adjustments g(x) = contrast * x + brightness followed by the multiplication with the color multiplier
+ * of each channel are compiled into one 256 entry table per channel, which is rebuilt only if an adjustment
+ * changes. The results are the same as Mat.convertTo(image, -1, contrast, brightness) followed by
+ * Core.multiply(image, multipliers, image), except that the alpha channel of RGBA images is not changed.
+ * <p>
+ * This class is not thread safe.
+ */
+public class ImageAdjustmentLut {
+
+    /**
+     * The number of entries of the table (one for each 8 bit value).
+     */
+    private static final int LUT_SIZE = 256;
+
+    /**
+     * The table for RGBA images.
+     */
+    private final Mat lutRgba = new Mat(1, LUT_SIZE, CvType.CV_8UC4);
+
+    /**
+     * The table for BGR images.
+     */
+    private final Mat lutBgr = new Mat(1, LUT_SIZE, CvType.CV_8UC3);
+
+    /**
+     * The current contrast adjustment.
+     */
+    private float contrast = 1;
+
+    /**
+     * The current brightness adjustment.
+     */
+    private int brightness = 0;
+
+    /**
+     * The current multiplier of the color red.
+     */
+    private float multiplierRed = 1;
+
+    /**
+     * The current multiplier of the color green.
+     */
+    private float multiplierGreen = 1;
+
+    /**
+     * The current multiplier of the color blue.
+     */
+    private float multiplierBlue = 1;
+
+    /**
+     * True if the current adjustments do not change an image.
+     */
+    private boolean identity = true;
+
+    /**
+     * Creates a new table without adjustments.
+     */
+    public ImageAdjustmentLut() {
+        rebuild();
+    }
+
+    /**
+     * Sets the adjustments and rebuilds the table if one of them changed.
+     *
+     * @param contrast        the contrast adjustment (1 = unchanged)
+     * @param brightness      the brightness adjustment (0 = unchanged)
+     * @param multiplierRed   the multiplier of the color red (1 = unchanged)
+     * @param multiplierGreen the multiplier of the color green (1 = unchanged)
+     * @param multiplierBlue  the multiplier of the color blue (1 = unchanged)
+     * @return true if the table was rebuilt, false if the adjustments did not change
+     */
+    public boolean setAdjustments(float contrast, int brightness, float multiplierRed, float multiplierGreen, float multiplierBlue) {
+        if (contrast == this.contrast && brightness == this.brightness && multiplierRed == this.multiplierRed
+                && multiplierGreen == this.multiplierGreen && multiplierBlue == this.multiplierBlue)
+            return false;
+
+        this.contrast = contrast;
+        this.brightness = brightness;
+        this.multiplierRed = multiplierRed;
+        this.multiplierGreen = multiplierGreen;
+        this.multiplierBlue = multiplierBlue;
+
+        rebuild();
+
+        return true;
+    }
+
+    /**
+     * Returns whether the current adjustments do not change an image.
+     *
+     * @return true if apply() does not change an image, false otherwise
+     */
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    /**
+     * Applies the adjustments to the given image with one Core.LUT pass.
+     * Does nothing if the adjustments do not change an image (see isIdentity()).
+     *
+     * @param image    the image which is modified, RGBA or BGR
+     * @param bgrOrder true if the image is in BGR color, false if it is in RGBA color
+     */
+    public void apply(Mat image, boolean bgrOrder) {
+        if (image == null)
+            throw new IllegalArgumentException("image must not be null!");
+
+        if (identity)
+            return;
+
+        Core.LUT(image, bgrOrder ? lutBgr : lutRgba, image);
+    }
+
+    /**
+     * Releases the tables.
+     */
+    public void release() {
+        lutRgba.release();
+        lutBgr.release();
+    }
+
+    /**
+     * Computes the tables of the current adjustments.
+     */
+    private void rebuild() {
+        byte[] rgba = new byte[LUT_SIZE * 4];
+        byte[] bgr = new byte[LUT_SIZE * 3];
+
+        for (int value = 0; value < LUT_SIZE; value++) {
+            //the same rounding and saturation as convertTo() and multiply()
+            int adjusted = saturate(Math.rint(contrast * value + brightness));
+
+            byte red = (byte) saturate(Math.rint(adjusted * multiplierRed));
+            byte green = (byte) saturate(Math.rint(adjusted * multiplierGreen));
+            byte blue = (byte) saturate(Math.rint(adjusted * multiplierBlue));
+
+            rgba[value * 4] = red;
+            rgba[value * 4 + 1] = green;
+            rgba[value * 4 + 2] = blue;
+            rgba[value * 4 + 3] = (byte) value;
+
+            bgr[value * 3] = blue;
+            bgr[value * 3 + 1] = green;
+            bgr[value * 3 + 2] = red;
+        }
+
+        lutRgba.put(0, 0, rgba);
+        lutBgr.put(0, 0, bgr);
+
+        identity = contrast == 1 && brightness == 0 && multiplierRed == 1 && multiplierGreen == 1 && multiplierBlue == 1;
+    }
+
+    /**
+     * Limits the given value to the range of 8 bit values.
+     *
+     * @param value the value
+     * @return the value between 0 and 255
+     */
+    private static int saturate(double value) {
+        return (int) Math.max(0, Math.min(LUT_SIZE - 1, value));
+    }
+}
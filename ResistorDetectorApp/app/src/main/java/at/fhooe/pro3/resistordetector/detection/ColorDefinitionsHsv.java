@@ -117,109 +117,130 @@ public class ColorDefinitionsHsv {
     }
 
     /**
-     * Converts a HSV color to a color name.
-     * The name of a color is determined by checking if the provided color
-     * is between the bounds of the color name.
-     * <p>
-     * ColorName.Unknown is returned if no matching color name can be found.
-     * The method prints error messages if color definitions overlap.
+     * Returns the names of the color definitions, in the order they are checked.
+     * Where definitions overlap, the later definition is used.
+     * Gold and silver are not defined yet.
      *
-     * @param colorHsv The color in HSV space to convert to a name.
-     * @return The name associated with the given color, or ColorName.Unknown.
+     * @return the names of the color definitions
      */
-    public static ColorName getColorName(Scalar colorHsv) {
-        if (colorHsv == null)
-            throw new IllegalArgumentException("colorHsv must not be null!");
-
-        ColorName name = ColorName.Unknown;
-
-        if (isScalarBetweenBounds(colorHsv, RED1_MIN, RED1_MAX) ||
-                isScalarBetweenBounds(colorHsv, RED2_MIN, RED2_MAX)) {
-            if (name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Red + ")!");
-
-            name = ColorName.Red;
-        }
-
-        if (isScalarBetweenBounds(colorHsv, ORANGE_MIN, ORANGE_MAX)) {
-            if (name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Orange + ")!");
-
-            name = ColorName.Orange;
-        }
-
-        if (isScalarBetweenBounds(colorHsv, YELLOW_MIN, YELLOW_MAX)) {
-            if (name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Yellow + ")!");
-
-            name = ColorName.Yellow;
-        }
-
-        if (isScalarBetweenBounds(colorHsv, GREEN_MIN, GREEN_MAX)) {
-            if (name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Green + ")!");
-
-            name = ColorName.Green;
-        }
-
-        if (isScalarBetweenBounds(colorHsv, BLUE_MIN, BLUE_MAX)) {
-            if (name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Blue + ")!");
+    private static ColorName[] getDefinitionNames() {
+        return new ColorName[]{
+                ColorName.Red, ColorName.Red, ColorName.Orange, ColorName.Yellow, ColorName.Green,
+                ColorName.Blue, ColorName.Violet, ColorName.Brown, ColorName.Black, ColorName.Grey,
+                ColorName.White};
+    }
 
-            name = ColorName.Blue;
-        }
+    /**
+     * Returns the lower bounds of the color definitions, see getDefinitionNames().
+     *
+     * @return the lower bounds of the color definitions
+     */
+    private static Scalar[] getDefinitionLowerBounds() {
+        return new Scalar[]{
+                RED1_MIN, RED2_MIN, ORANGE_MIN, YELLOW_MIN, GREEN_MIN,
+                BLUE_MIN, VIOLET_MIN, BROWN_MIN, BLACK_MIN, GREY_MIN,
+                WHITE_MIN};
+    }
 
-        if (isScalarBetweenBounds(colorHsv, VIOLET_MIN, VIOLET_MAX)) {
-            if (name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Violet + ")!");
+    /**
+     * Returns the upper bounds of the color definitions, see getDefinitionNames().
+     *
+     * @return the upper bounds of the color definitions
+     */
+    private static Scalar[] getDefinitionUpperBounds() {
+        return new Scalar[]{
+                RED1_MAX, RED2_MAX, ORANGE_MAX, YELLOW_MAX, GREEN_MAX,
+                BLUE_MAX, VIOLET_MAX, BROWN_MAX, BLACK_MAX, GREY_MAX,
+                WHITE_MAX};
+    }
 
-            name = ColorName.Violet;
-        }
+    /**
+     * The compiled lookup table of the color definitions, used by classify().
+     */
+    private static volatile HsvColorTable colorTable = buildColorTable();
 
-        if (isScalarBetweenBounds(colorHsv, BROWN_MIN, BROWN_MAX)) {
-            if (name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Brown + ")!");
+    /**
+     * Builds the lookup table from the current color definitions.
+     * Overlapping color definitions are reported once.
+     *
+     * @return the lookup table
+     */
+    private static HsvColorTable buildColorTable() {
+        HsvColorTable table = new HsvColorTable(getDefinitionNames(), getDefinitionLowerBounds(), getDefinitionUpperBounds());
 
-            name = ColorName.Brown;
+        for (String overlap : table.getOverlaps()) {
+            System.err.println("overlapping colorHsv name definitions (" + overlap + ")!");
         }
 
-        if (isScalarBetweenBounds(colorHsv, BLACK_MIN, BLACK_MAX)) {
-            if (name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Black + ")!");
+        return table;
+    }
 
-            name = ColorName.Black;
-        }
+    /**
+     * Rebuilds the lookup table used by classify() and getColorName().
+     * Has to be called after the values of the color definitions have been changed.
+     */
+    public static void rebuildColorTable() {
+        colorTable = buildColorTable();
+    }
 
-        if (isScalarBetweenBounds(colorHsv, GREY_MIN, GREY_MAX)) {
-            if (name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Grey + ")!");
+    /**
+     * Returns the lookup table of the current color definitions.
+     *
+     * @return the lookup table
+     */
+    public static HsvColorTable getColorTable() {
+        return colorTable;
+    }
 
-            name = ColorName.Grey;
-        }
+    /**
+     * Converts a HSV color (8 bit values) to a color name using the precomputed lookup table.
+     * This method does not allocate any objects and does not log.
+     * <p>
+     * ColorName.Unknown is returned if no matching color name can be found.
+     *
+     * @param h The H value of the color (0-179)
+     * @param s The S value of the color (0-255)
+     * @param v The V value of the color (0-255)
+     * @return The name associated with the given color, or ColorName.Unknown.
+     */
+    public static ColorName classify(int h, int s, int v) {
+        return colorTable.classify(h, s, v);
+    }
 
-        if (isScalarBetweenBounds(colorHsv, WHITE_MIN, WHITE_MAX)) {
-            if (name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.White + ")!");
+    /**
+     * Converts a HSV color to a color name.
+     * The name of a color is determined by checking if the provided color
+     * is between the bounds of the color name.
+     * <p>
+     * Colors with integer values are looked up in the precomputed table (see classify()),
+     * other colors are checked against all color definitions.
+     * <p>
+     * ColorName.Unknown is returned if no matching color name can be found.
+     *
+     * @param colorHsv The color in HSV space to convert to a name.
+     * @return The name associated with the given color, or ColorName.Unknown.
+     */
+    public static ColorName getColorName(Scalar colorHsv) {
+        if (colorHsv == null)
+            throw new IllegalArgumentException("colorHsv must not be null!");
 
-            name = ColorName.White;
-        }
+        double h = colorHsv.val[0];
+        double s = colorHsv.val[1];
+        double v = colorHsv.val[2];
 
-        /*
-        if(isScalarBetweenBounds(colorHsv, GOLD_MIN, GOLD_MAX)){
-            if(name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Gold + ")!");
+        if (h == (int) h && s == (int) s && v == (int) v)
+            return classify((int) h, (int) s, (int) v);
 
-            name = ColorName.Gold;
-        }
+        ColorName[] names = getDefinitionNames();
+        Scalar[] lowerBounds = getDefinitionLowerBounds();
+        Scalar[] upperBounds = getDefinitionUpperBounds();
 
-        if(isScalarBetweenBounds(colorHsv, SILVER_MIN, SILVER_MAX)){
-            if(name != ColorName.Unknown)
-                System.err.println("overlapping colorHsv name definitions (" + name + " and " + ColorName.Silver + ")!");
+        ColorName name = ColorName.Unknown;
 
-            name = ColorName.Silver;
+        for (int i = 0; i < names.length; i++) {
+            if (isScalarBetweenBounds(colorHsv, lowerBounds[i], upperBounds[i]))
+                name = names[i];
         }
-        */
-
 
         return name;
     }
@@ -0,0 +1,316 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * This class calculates the median color of groups of columns (column strips) of an image
+ * in one single pass over the image.
+ * <p>
+ * The HSV image and the mask are read with one bulk read each and walked row by row.
+ * Every pixel is added to the histogram of the strip it belongs to, so the histograms
+ * of all strips are filled at the same time. The median row is written with one bulk write.
+ * <p>
+ * The strips are the same as the ones of the column wise detection:
+ * the strip i covers the columns [i * columnsPerStrip, (i + 1) * columnsPerStrip)
+ * and only strips starting before (columns - columnsPerStrip) are used.
+ * Columns not covered by a strip are set to 0 in the median row.
+ * <p>
+ * In addition the kernel can calculate the median color with a sliding window (stride 1).
+ * One running histogram is used, for each column the incoming column is added to and the
+ * outgoing column is removed from the histogram.
+ * <p>
+ * The strips can be processed in parallel with an ExecutorService, each thread processes
+ * a contiguous range of strips (see ParallelStrips).
+ * <p>
+ * The buffers and histograms are reused between calls, the number of allocations
+ * per call is constant (the returned matrix). An instance must not be used
+ * by more than one detection at the same time.
+ */
+public class ColumnStatisticsKernel {
+
+    /**
+     * One histogram for each strip.
+     */
+    private HsvHistogramMedian[] stripHistograms = new HsvHistogramMedian[0];
+
+    /**
+     * The running histogram of the sliding window.
+     */
+    private final HsvHistogramMedian windowHistogram = new HsvHistogramMedian();
+
+    /**
+     * Reusable buffer for the pixel data of the image.
+     */
+    private byte[] pixelBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the pixel data of the mask.
+     */
+    private byte[] maskBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the pixel data of the median row.
+     */
+    private byte[] medianBuffer = new byte[0];
+
+    /**
+     * Returns the number of strips an image with the given number of columns is divided into.
+     *
+     * @param columns         the number of columns of the image
+     * @param columnsPerStrip the number of columns that are combined into one strip
+     * @return the number of strips
+     */
+    public static int getNumberOfStrips(int columns, int columnsPerStrip) {
+        if (columns <= columnsPerStrip)
+            return 0;
+
+        return (columns - 1) / columnsPerStrip;
+    }
+
+    /**
+     * Returns a new Matrix with the median color of each column strip of the given image.
+     * The mask defines the regions of the image that should be used for the calculation.
+     * <p>
+     * The returned Matrix has only one row and the same number of columns as the input image,
+     * every column of a strip contains the median color of the strip.
+     *
+     * @param hsvImage        The image (CV_8UC3, HSV colors) for which the median colors should be calculated.
+     * @param mask            The mask (CV_8UC1) defining the areas to consider in the calculation.
+     * @param columnsPerStrip The number of columns that are combined into one strip.
+     * @return A new Matrix (CV_8UC3) with one row and as many columns as the input image.
+     */
+    public Mat medianOfColumnStrips(Mat hsvImage, Mat mask, int columnsPerStrip) {
+        return medianOfColumnStrips(hsvImage, mask, columnsPerStrip, null);
+    }
+
+    /**
+     * Returns a new Matrix with the median color of each column strip of the given image.
+     * The strips are processed in parallel with the given executor, see ParallelStrips.
+     * <p>
+     * See medianOfColumnStrips(Mat, Mat, int).
+     *
+     * @param hsvImage        The image (CV_8UC3, HSV colors) for which the median colors should be calculated.
+     * @param mask            The mask (CV_8UC1) defining the areas to consider in the calculation.
+     * @param columnsPerStrip The number of columns that are combined into one strip.
+     * @param executor        The executor used to process the strips, null to process them on the calling thread.
+     * @return A new Matrix (CV_8UC3) with one row and as many columns as the input image.
+     */
+    public Mat medianOfColumnStrips(Mat hsvImage, Mat mask, final int columnsPerStrip, ExecutorService executor) {
+        checkArguments(hsvImage, mask);
+
+        if (columnsPerStrip < 1)
+            throw new IllegalArgumentException("columnsPerStrip must be at least 1!");
+
+        final int rows = hsvImage.rows();
+        final int cols = hsvImage.cols();
+        int strips = getNumberOfStrips(cols, columnsPerStrip);
+
+        ensureCapacity(rows * cols, cols, strips);
+
+        Arrays.fill(medianBuffer, (byte) 0);
+
+        if (strips > 0) {
+            hsvImage.get(0, 0, pixelBuffer);
+            mask.get(0, 0, maskBuffer);
+
+            ParallelStrips.processStrips(executor, strips, new ParallelStrips.StripRangeProcessor() {
+                @Override
+                public void processStrips(int firstStrip, int endStrip) {
+                    medianOfStripRange(firstStrip, endStrip, columnsPerStrip, rows, cols);
+                }
+            });
+        }
+
+        Mat medianValues = MatFactory.newMat(1, cols, CvType.CV_8UC3);
+        medianValues.put(0, 0, medianBuffer);
+
+        return medianValues;
+    }
+
+    /**
+     * Calculates the median colors of the strips [firstStrip, endStrip) from the pixelBuffer
+     * and writes them to the medianBuffer. Ranges of strips are independent of each other.
+     *
+     * @param firstStrip      the first strip of the range
+     * @param endStrip        the strip after the last strip of the range
+     * @param columnsPerStrip the number of columns that are combined into one strip
+     * @param rows            the number of rows of the image
+     * @param cols            the number of columns of the image
+     */
+    private void medianOfStripRange(int firstStrip, int endStrip, int columnsPerStrip, int rows, int cols) {
+        int firstCol = firstStrip * columnsPerStrip;
+        int endCol = endStrip * columnsPerStrip;
+
+        for (int i = firstStrip; i < endStrip; i++) {
+            stripHistograms[i].clear();
+        }
+
+        for (int row = 0; row < rows; row++) {
+            int rowOffset = row * cols;
+
+            for (int col = firstCol; col < endCol; col++) {
+                int index = rowOffset + col;
+
+                if (maskBuffer[index] != 0) {
+                    stripHistograms[col / columnsPerStrip].add(
+                            pixelBuffer[index * 3] & 0xFF,
+                            pixelBuffer[index * 3 + 1] & 0xFF,
+                            pixelBuffer[index * 3 + 2] & 0xFF);
+                }
+            }
+        }
+
+        for (int i = firstStrip; i < endStrip; i++) {
+            HsvHistogramMedian histogram = stripHistograms[i];
+
+            byte h = (byte) histogram.getMedianH();
+            byte s = (byte) histogram.getMedianS();
+            byte v = (byte) histogram.getMedianV();
+
+            for (int col = i * columnsPerStrip; col < (i + 1) * columnsPerStrip; col++) {
+                medianBuffer[col * 3] = h;
+                medianBuffer[col * 3 + 1] = s;
+                medianBuffer[col * 3 + 2] = v;
+            }
+        }
+    }
+
+    /**
+     * Returns a new Matrix with the median color of a window around each column of the given image.
+     * The window of the column c covers the columns [c - windowWidth / 2, c - windowWidth / 2 + windowWidth),
+     * at the left and right border of the image the window is cut off.
+     * The mask defines the regions of the image that should be used for the calculation.
+     * <p>
+     * The returned Matrix has only one row and the same number of columns as the input image.
+     *
+     * @param hsvImage    The image (CV_8UC3, HSV colors) for which the median colors should be calculated.
+     * @param mask        The mask (CV_8UC1) defining the areas to consider in the calculation.
+     * @param windowWidth The width of the sliding window in columns.
+     * @return A new Matrix (CV_8UC3) with one row and as many columns as the input image.
+     */
+    public Mat medianOfSlidingWindow(Mat hsvImage, Mat mask, int windowWidth) {
+        checkArguments(hsvImage, mask);
+
+        if (windowWidth < 1)
+            throw new IllegalArgumentException("windowWidth must be at least 1!");
+
+        int rows = hsvImage.rows();
+        int cols = hsvImage.cols();
+        int halfWidth = windowWidth / 2;
+
+        ensureCapacity(rows * cols, cols, 0);
+
+        if (cols > 0 && rows > 0) {
+            hsvImage.get(0, 0, pixelBuffer);
+            mask.get(0, 0, maskBuffer);
+        }
+
+        windowHistogram.clear();
+
+        //window of the first column
+        for (int col = 0; col < Math.min(cols, windowWidth - halfWidth); col++) {
+            addColumnToWindow(col, rows, cols);
+        }
+
+        for (int col = 0; col < cols; col++) {
+            if (col > 0) {
+                int incomingCol = col - halfWidth + windowWidth - 1;
+                int outgoingCol = col - halfWidth - 1;
+
+                if (incomingCol < cols)
+                    addColumnToWindow(incomingCol, rows, cols);
+
+                if (outgoingCol >= 0)
+                    removeColumnFromWindow(outgoingCol, rows, cols);
+            }
+
+            medianBuffer[col * 3] = (byte) windowHistogram.getMedianH();
+            medianBuffer[col * 3 + 1] = (byte) windowHistogram.getMedianS();
+            medianBuffer[col * 3 + 2] = (byte) windowHistogram.getMedianV();
+        }
+
+        Mat medianValues = MatFactory.newMat(1, cols, CvType.CV_8UC3);
+        medianValues.put(0, 0, medianBuffer);
+
+        return medianValues;
+    }
+
+    /**
+     * Adds all masked pixels of one column of the image in the pixelBuffer to the window histogram.
+     *
+     * @param col  the column to add
+     * @param rows the number of rows of the image
+     * @param cols the number of columns of the image
+     */
+    private void addColumnToWindow(int col, int rows, int cols) {
+        for (int index = col; index < rows * cols; index += cols) {
+            if (maskBuffer[index] != 0) {
+                windowHistogram.add(pixelBuffer[index * 3] & 0xFF, pixelBuffer[index * 3 + 1] & 0xFF, pixelBuffer[index * 3 + 2] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Removes all masked pixels of one column of the image in the pixelBuffer from the window histogram.
+     *
+     * @param col  the column to remove
+     * @param rows the number of rows of the image
+     * @param cols the number of columns of the image
+     */
+    private void removeColumnFromWindow(int col, int rows, int cols) {
+        for (int index = col; index < rows * cols; index += cols) {
+            if (maskBuffer[index] != 0) {
+                windowHistogram.remove(pixelBuffer[index * 3] & 0xFF, pixelBuffer[index * 3 + 1] & 0xFF, pixelBuffer[index * 3 + 2] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Checks the image and the mask passed to the kernel.
+     *
+     * @param hsvImage the image, must have the type CV_8UC3
+     * @param mask     the mask, must have the type CV_8UC1 and the size of the image
+     */
+    private static void checkArguments(Mat hsvImage, Mat mask) {
+        if (hsvImage == null || mask == null)
+            throw new IllegalArgumentException("hsvImage and mask must not be null!");
+        if (hsvImage.type() != CvType.CV_8UC3)
+            throw new IllegalArgumentException("hsvImage must have the type CV_8UC3!");
+        if (mask.type() != CvType.CV_8UC1)
+            throw new IllegalArgumentException("mask must have the type CV_8UC1!");
+        if (hsvImage.rows() != mask.rows() || hsvImage.cols() != mask.cols())
+            throw new IllegalArgumentException("hsvImage and mask must have the same size!");
+    }
+
+    /**
+     * Makes sure the buffers and histograms are large enough for the given image size.
+     *
+     * @param pixelCount the number of pixels of the image
+     * @param cols       the number of columns of the image
+     * @param strips     the number of strips
+     */
+    private void ensureCapacity(int pixelCount, int cols, int strips) {
+        if (pixelBuffer.length < pixelCount * 3)
+            pixelBuffer = new byte[pixelCount * 3];
+
+        if (maskBuffer.length < pixelCount)
+            maskBuffer = new byte[pixelCount];
+
+        if (medianBuffer.length != cols * 3)
+            medianBuffer = new byte[cols * 3];
+
+        if (stripHistograms.length < strips) {
+            HsvHistogramMedian[] newHistograms = Arrays.copyOf(stripHistograms, strips);
+
+            for (int i = stripHistograms.length; i < strips; i++) {
+                newHistograms[i] = new HsvHistogramMedian();
+            }
+
+            stripHistograms = newHistograms;
+        }
+    }
+}
@@ -2,15 +2,9 @@ package at.fhooe.pro3.resistordetector.detection;
 
 import android.util.SparseIntArray;
 
-import org.opencv.core.Core;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.imgproc.Moments;
-
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Example implementation from GitHub: https://github.com/thegouger/ResistorScanner.
@@ -45,14 +39,34 @@ public class ContoursOrigResistorDetector extends ResistorDetector {
 
     private SparseIntArray _locationValues = new SparseIntArray(4);
 
+    /**
+     * Finds the areas of all color codes in one pass (index i of COLOR_BOUNDS is color code i, red uses both red ranges).
+     */
+    private final ColorBandLabeling colorBandLabeling = new ColorBandLabeling(new Scalar[][]{
+            {COLOR_BOUNDS[0][0], COLOR_BOUNDS[0][1]},
+            {COLOR_BOUNDS[1][0], COLOR_BOUNDS[1][1]},
+            {LOWER_RED1, UPPER_RED1, LOWER_RED2, UPPER_RED2},
+            {COLOR_BOUNDS[3][0], COLOR_BOUNDS[3][1]},
+            {COLOR_BOUNDS[4][0], COLOR_BOUNDS[4][1]},
+            {COLOR_BOUNDS[5][0], COLOR_BOUNDS[5][1]},
+            {COLOR_BOUNDS[6][0], COLOR_BOUNDS[6][1]},
+            {COLOR_BOUNDS[7][0], COLOR_BOUNDS[7][1]},
+            {COLOR_BOUNDS[8][0], COLOR_BOUNDS[8][1]},
+            {COLOR_BOUNDS[9][0], COLOR_BOUNDS[9][1]}
+    });
+
     public ContoursOrigResistorDetector(ResultListener resultListener) {
         super(resultListener);
     }
 
+    public ContoursOrigResistorDetector(ResultListener resultListener, Preprocessor preprocessor) {
+        super(resultListener, preprocessor);
+    }
+
     private DetectionResult detectionResult;
 
     @Override
-    public void detectResistorValue(Mat resistorImage) {
+    protected void performDetection(Mat resistorImage) {
         detectionResult = new DetectionResult();
 
         //Mat imageMat = frame.rgba();
@@ -62,12 +76,20 @@ public class ContoursOrigResistorDetector extends ResistorDetector {
         //Mat subMat = imageMat.submat(rows/2, rows/2+30, cols/2 - 50, cols/2 + 50);
         Mat subMat = resistorImage;
         Mat filteredMat = new Mat();
+        long stageStart = startStage();
         Imgproc.cvtColor(subMat, subMat, Imgproc.COLOR_RGBA2BGR);
-        Imgproc.bilateralFilter(subMat, filteredMat, 5, 80, 80);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColorConversion, stageStart);
+        stageStart = startStage();
+        preprocessor.apply(subMat, filteredMat);
+        recordStageTime(detectionResult, DetectionResult.Stage.Filter, stageStart);
+        stageStart = startStage();
         Imgproc.cvtColor(filteredMat, filteredMat, Imgproc.COLOR_BGR2HSV);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColorConversion, stageStart);
 
         findLocations(filteredMat);
 
+        stageStart = startStage();
+
         if (_locationValues.size() >= 3) {
             // recover the resistor value by iterating through the centroid locations
             // in an ascending manner and using their associated colour values
@@ -90,57 +112,25 @@ public class ContoursOrigResistorDetector extends ResistorDetector {
                 detectionResult.setResistorValue(value);
         }
 
+        recordStageTime(detectionResult, DetectionResult.Stage.Decode, stageStart);
+
         notifyListenerAboutNewResult(detectionResult);
     }
 
     // find contours of colour bands and the x-coords of their centroids
     private void findLocations(Mat searchMat) {
-        _locationValues.clear();
-        SparseIntArray areas = new SparseIntArray(4);
-
-        for (int i = 0; i < NUM_CODES; i++) {
-            Mat mask = new Mat();
-            List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
-            Mat hierarchy = new Mat();
-
-            if (i == 2) {
-                // combine the two ranges for red
-                Core.inRange(searchMat, LOWER_RED1, UPPER_RED1, mask);
-                Mat rmask2 = new Mat();
-                Core.inRange(searchMat, LOWER_RED2, UPPER_RED2, rmask2);
-                Core.bitwise_or(mask, rmask2, mask);
-            } else
-                Core.inRange(searchMat, COLOR_BOUNDS[i][0], COLOR_BOUNDS[i][1], mask);
-
-            Imgproc.findContours(mask, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
-            for (int contIdx = 0; contIdx < contours.size(); contIdx++) {
-                int area;
-                if ((area = (int) Imgproc.contourArea(contours.get(contIdx))) > 20) {
-                    Moments M = Imgproc.moments(contours.get(contIdx));
-                    int cx = (int) (M.get_m10() / M.get_m00());
-
-                    // if a colour band is split into multiple contours
-                    // we take the largest and consider only its centroid
-                    boolean shouldStoreLocation = true;
-                    for (int locIdx = 0; locIdx < _locationValues.size(); locIdx++) {
-                        if (Math.abs(_locationValues.keyAt(locIdx) - cx) < 10) {
-                            if (areas.get(_locationValues.keyAt(locIdx)) > area) {
-                                shouldStoreLocation = false;
-                                break;
-                            } else {
-                                _locationValues.delete(_locationValues.keyAt(locIdx));
-                                areas.delete(_locationValues.keyAt(locIdx));
-                            }
-                        }
-                    }
-
-                    if (shouldStoreLocation) {
-                        areas.put(cx, area);
-                        _locationValues.put(cx, i);
-                    }
-                }
-            }
-        }
+
+        long stageStart = startStage();
+        colorBandLabeling.findBands(searchMat, 20);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColumnStatistics, stageStart);
+
+        stageStart = startStage();
+
+        // if a colour band is split into multiple contours
+        // we take the largest and consider only its centroid
+        colorBandLabeling.getLocations(10, _locationValues);
+
+        recordStageTime(detectionResult, DetectionResult.Stage.BandGrouping, stageStart);
     }
 }
 
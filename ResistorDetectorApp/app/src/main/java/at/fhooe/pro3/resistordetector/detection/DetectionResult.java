@@ -1,6 +1,7 @@
 package at.fhooe.pro3.resistordetector.detection;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * This class represents the Result of a Resistor Detection process.
@@ -9,11 +10,86 @@ import java.util.ArrayList;
  * the resistance value of the resistor
  * the colors of the bands of the resistor
  * a list of DetectionStrepDetails (details about the detection process)
+ * the resolution the detection was performed with
+ * the runtime of the detection stages (only if the stage timing of the detector is enabled)
+ * the verdict of the FrameQualityGate (the detection is skipped if the image was rejected)
+ * <p>
+ * The snapshots of the DetectionStepDetails are reference counted. A new result has one reference,
+ * which is owned by the ResultListener the result is passed to. Every additional owner
+ * (e.g. a view displaying the details) calls retain() and release() when it does not use the result anymore.
+ * The snapshots are released with the last reference.
  * <p>
  * Created by stefan on 17.06.2017.
  */
 public class DetectionResult {
 
+    /**
+     * Defines with which resolution of the resistor image the result was detected.
+     */
+    public enum ResolutionPath {
+        /**
+         * The image was used with its full resolution.
+         */
+        Full,
+
+        /**
+         * The image was reduced to the target band pixel density.
+         */
+        Reduced,
+
+        /**
+         * The image was reduced first, but the number of bands did not match,
+         * so the detection was repeated with the full resolution.
+         */
+        FullFallback,
+    }
+
+    /**
+     * The stages of the detection process with a measured runtime (see ResistorDetector.setStageTimingEnabled).
+     * Not every detector has all stages.
+     */
+    public enum Stage {
+        /**
+         * The Preprocessor (e.g. the bilateral filter).
+         */
+        Filter,
+
+        /**
+         * The color conversion to HSV.
+         */
+        ColorConversion,
+
+        /**
+         * The mask of the resistor (background and reflections).
+         */
+        Mask,
+
+        /**
+         * The median colors, labels or color projections of the columns.
+         */
+        ColumnStatistics,
+
+        /**
+         * The ColorName of each column.
+         */
+        ColorNaming,
+
+        /**
+         * The combination of the columns into bands (or band locations).
+         */
+        BandGrouping,
+
+        /**
+         * The calculation of the resistance value from the bands.
+         */
+        Decode,
+    }
+
+    /**
+     * Value of a stage that was not measured.
+     */
+    public static final long STAGE_NOT_MEASURED = -1;
+
     /**
      * Value for unknown resistance.
      */
@@ -35,6 +111,27 @@ public class DetectionResult {
      */
     private BandInfo bandInfo[] = null;
 
+    /**
+     * The resolution of the resistor image the result was detected with.
+     */
+    private ResolutionPath resolutionPath = ResolutionPath.Full;
+
+    /**
+     * The runtime of each stage in nanoseconds (index = Stage ordinal), STAGE_NOT_MEASURED for stages
+     * that were not measured. Null if no stage was measured, so nothing is allocated if the timing is disabled.
+     */
+    private long[] stageTimes = null;
+
+    /**
+     * The verdict of the FrameQualityGate, Accepted if the image was not checked.
+     */
+    private FrameQualityGate.Verdict qualityVerdict = FrameQualityGate.Verdict.Accepted;
+
+    /**
+     * The number of owners of this DetectionResult (see retain() and release()).
+     */
+    private int referenceCount = 1;
+
     /**
      * Creates a new DetectionResult with default values.
      * resistorValue = UNKNOWN_RESISTANCE_VALUE
@@ -75,6 +172,45 @@ public class DetectionResult {
         detectionStepDetails.add(detectionStepDetail);
     }
 
+    /**
+     * Releases the Matrix snapshots of all DetectionStepDetails (see DetectionStepDetail.release()).
+     * Should be called when this DetectionResult is not used anymore.
+     */
+    public void releaseDetectionStepDetails() {
+        for (DetectionStepDetail detectionStepDetail : detectionStepDetails) {
+            detectionStepDetail.release();
+        }
+    }
+
+    /**
+     * Adds a reference to this DetectionResult, the snapshots of the DetectionStepDetails
+     * are kept until the reference is released with release().
+     *
+     * @return this DetectionResult
+     */
+    public synchronized DetectionResult retain() {
+        if (referenceCount == 0)
+            throw new IllegalStateException("the detection result was already released!");
+
+        referenceCount++;
+
+        return this;
+    }
+
+    /**
+     * Releases a reference to this DetectionResult. The snapshots of the DetectionStepDetails
+     * are released with the last reference (see releaseDetectionStepDetails()).
+     */
+    public synchronized void release() {
+        if (referenceCount == 0)
+            throw new IllegalStateException("the detection result was already released!");
+
+        referenceCount--;
+
+        if (referenceCount == 0)
+            releaseDetectionStepDetails();
+    }
+
     /**
      * Returns the resistance value (the resul of the detection process).
      *
@@ -110,4 +246,100 @@ public class DetectionResult {
     public void setBandInfo(BandInfo[] bandInfo) {
         this.bandInfo = bandInfo;
     }
+
+    /**
+     * Returns the resolution of the resistor image the result was detected with.
+     *
+     * @return the resolution path of the detection
+     */
+    public ResolutionPath getResolutionPath() {
+        return resolutionPath;
+    }
+
+    /**
+     * Sets the resolution of the resistor image the result was detected with.
+     *
+     * @param resolutionPath the resolution path of the detection
+     */
+    public void setResolutionPath(ResolutionPath resolutionPath) {
+        if (resolutionPath == null)
+            throw new IllegalArgumentException("resolutionPath must not be null!");
+
+        this.resolutionPath = resolutionPath;
+    }
+
+    /**
+     * Returns the verdict of the FrameQualityGate.
+     *
+     * @return the verdict of the quality check, Accepted if the image was not checked
+     */
+    public FrameQualityGate.Verdict getQualityVerdict() {
+        return qualityVerdict;
+    }
+
+    /**
+     * Sets the verdict of the FrameQualityGate.
+     *
+     * @param qualityVerdict the verdict of the quality check
+     */
+    public void setQualityVerdict(FrameQualityGate.Verdict qualityVerdict) {
+        if (qualityVerdict == null)
+            throw new IllegalArgumentException("qualityVerdict must not be null!");
+
+        this.qualityVerdict = qualityVerdict;
+    }
+
+    /**
+     * Returns if the image was rejected by the FrameQualityGate, so the detection was skipped.
+     *
+     * @return true if the image was rejected, false otherwise
+     */
+    public boolean isRejected() {
+        return qualityVerdict != FrameQualityGate.Verdict.Accepted;
+    }
+
+    /**
+     * Returns if the runtime of at least one stage was measured.
+     *
+     * @return true if stage times are available, false otherwise
+     */
+    public boolean stageTimesAvailable() {
+        return stageTimes != null;
+    }
+
+    /**
+     * Returns the runtime of a stage.
+     *
+     * @param stage the stage of the detection process
+     * @return the runtime of the stage in nanoseconds, or STAGE_NOT_MEASURED
+     */
+    public long getStageTime(Stage stage) {
+        if (stageTimes == null)
+            return STAGE_NOT_MEASURED;
+
+        return stageTimes[stage.ordinal()];
+    }
+
+    /**
+     * Adds the runtime of (a part of) a stage. The runtimes of the same stage are summed up.
+     *
+     * @param stage    the stage of the detection process
+     * @param nanoTime the runtime in nanoseconds
+     */
+    public void addStageTime(Stage stage, long nanoTime) {
+        if (stage == null)
+            throw new IllegalArgumentException("stage must not be null!");
+
+        if (stageTimes == null) {
+            stageTimes = new long[Stage.values().length];
+            Arrays.fill(stageTimes, STAGE_NOT_MEASURED);
+        }
+
+        int index = stage.ordinal();
+
+        if (stageTimes[index] == STAGE_NOT_MEASURED)
+            stageTimes[index] = nanoTime;
+        else
+            stageTimes[index] += nanoTime;
+    }
 }
@@ -0,0 +1,321 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * This class checks with a cheap test if an image of a resistor is usable for the detection,
+ * so motion blurred or overexposed images can be skipped before the detection.
+ * <p>
+ * Two scores are computed:
+ * - sharpness: the variance of the Laplacian of the gray image, reduced to ANALYSIS_WIDTH columns
+ * (converted to gray first and resized with Imgproc.INTER_LINEAR, low for blurred images)
+ * - highlight ratio: the share of pixels with a V value of at least ResistorMaskBuilder.REFLECTION_MIN_VALUE,
+ * the same threshold the detectors use for the reflections. V is max(B, G, R), so it is computed
+ * on the BGR image without a conversion to HSV.
+ * <p>
+ * The accepted and rejected images are counted per verdict in the default MetricsRegistry
+ * (quality_gate.accepted, quality_gate.rejected.blurry, quality_gate.rejected.overexposed),
+ * the scores are recorded in the histograms quality_gate.sharpness and quality_gate.highlight_percent.
+ * <p>
+ * See also:
+ * - Imgproc.Laplacian: http://docs.opencv.org/2.4/modules/imgproc/doc/filtering.html#laplacian
+ * <p>
+ * The buffers are created on the first check (OpenCV may not be loaded when the gate is created)
+ * and are reused between calls. An instance is not thread safe.
+ */
+public class FrameQualityGate {
+
+    /**
+     * The result of the check of an image.
+     */
+    public enum Verdict {
+        /**
+         * The image is usable for the detection.
+         */
+        Accepted,
+
+        /**
+         * The sharpness of the image is below the sharpness threshold (e.g. motion blur or out of focus).
+         */
+        Blurry,
+
+        /**
+         * The highlight ratio of the image is above the highlight threshold (e.g. a strong reflection).
+         */
+        Overexposed,
+    }
+
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final int SHARPNESS_THRESHOLD_DEFAULT = 260;
+
+    /**
+     * Defines the minimum value for (see constant name).
+     */
+    public static final int SHARPNESS_THRESHOLD_MIN_VALUE = 0;
+
+    /**
+     * Defines the maximum value for (see constant name).
+     */
+    public static final int SHARPNESS_THRESHOLD_MAX_VALUE = 500;
+
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final float HIGHLIGHT_RATIO_THRESHOLD_DEFAULT = 0.3f;
+
+    /**
+     * Defines the minimum value for (see constant name).
+     */
+    public static final float HIGHLIGHT_RATIO_THRESHOLD_MIN_VALUE = 0.05f;
+
+    /**
+     * Defines the maximum value for (see constant name).
+     */
+    public static final float HIGHLIGHT_RATIO_THRESHOLD_MAX_VALUE = 1;
+
+    /**
+     * The number of columns the image is reduced to before the scores are computed.
+     */
+    private static final int ANALYSIS_WIDTH = 160;
+
+    /**
+     * Images with a lower sharpness are rejected as Blurry.
+     */
+    private int sharpnessThreshold = SHARPNESS_THRESHOLD_DEFAULT;
+
+    /**
+     * Images with a higher highlight ratio are rejected as Overexposed.
+     */
+    private float highlightRatioThreshold = HIGHLIGHT_RATIO_THRESHOLD_DEFAULT;
+
+    /**
+     * The sharpness of the last checked image.
+     */
+    private double lastSharpness = 0;
+
+    /**
+     * The highlight ratio of the last checked image.
+     */
+    private float lastHighlightRatio = 0;
+
+    /**
+     * Reusable buffer for the gray image.
+     */
+    private Mat grayImage = null;
+
+    /**
+     * Reusable buffer for the reduced gray image.
+     */
+    private Mat reducedImage = null;
+
+    /**
+     * Reusable buffer for the Laplacian of the reduced gray image.
+     */
+    private Mat laplacianImage = null;
+
+    /**
+     * Reusable buffer for the pixel data of the image (BGR).
+     */
+    private byte[] pixelBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the mean of the Laplacian.
+     */
+    private MatOfDouble mean = null;
+
+    /**
+     * Reusable buffer for the standard deviation of the Laplacian.
+     */
+    private MatOfDouble standardDeviation = null;
+
+    /**
+     * The number of images per verdict (index = Verdict ordinal).
+     */
+    private final StripedCounter[] verdictCounters = new StripedCounter[Verdict.values().length];
+
+    /**
+     * The sharpness of the checked images.
+     */
+    private final LatencyHistogram sharpnessHistogram;
+
+    /**
+     * The highlight ratio of the checked images in percent.
+     */
+    private final LatencyHistogram highlightPercentHistogram;
+
+    /**
+     * Creates a new quality gate with the default thresholds.
+     */
+    public FrameQualityGate() {
+        MetricsRegistry metricsRegistry = MetricsRegistry.getDefault();
+
+        for (Verdict verdict : Verdict.values()) {
+            String name = verdict == Verdict.Accepted
+                    ? "quality_gate.accepted"
+                    : "quality_gate.rejected." + verdict.name().toLowerCase();
+
+            verdictCounters[verdict.ordinal()] = metricsRegistry.counter(name);
+        }
+
+        sharpnessHistogram = metricsRegistry.histogram("quality_gate.sharpness");
+        highlightPercentHistogram = metricsRegistry.histogram("quality_gate.highlight_percent");
+    }
+
+    /**
+     * Sets the sharpness (variance of the Laplacian) below which images are rejected as Blurry.
+     *
+     * @param sharpnessThreshold the new sharpness threshold, 0 to accept every sharpness
+     */
+    public void setSharpnessThreshold(int sharpnessThreshold) {
+        if (sharpnessThreshold < SHARPNESS_THRESHOLD_MIN_VALUE || sharpnessThreshold > SHARPNESS_THRESHOLD_MAX_VALUE) {
+            throw new IllegalArgumentException("sharpnessThreshold must be between "
+                    + SHARPNESS_THRESHOLD_MIN_VALUE + " and " + SHARPNESS_THRESHOLD_MAX_VALUE);
+        }
+
+        this.sharpnessThreshold = sharpnessThreshold;
+    }
+
+    /**
+     * Sets the share of highlight pixels above which images are rejected as Overexposed.
+     *
+     * @param highlightRatioThreshold the new highlight ratio threshold, 1 to accept every highlight ratio
+     */
+    public void setHighlightRatioThreshold(float highlightRatioThreshold) {
+        if (highlightRatioThreshold < HIGHLIGHT_RATIO_THRESHOLD_MIN_VALUE || highlightRatioThreshold > HIGHLIGHT_RATIO_THRESHOLD_MAX_VALUE) {
+            throw new IllegalArgumentException("highlightRatioThreshold must be between "
+                    + HIGHLIGHT_RATIO_THRESHOLD_MIN_VALUE + " and " + HIGHLIGHT_RATIO_THRESHOLD_MAX_VALUE);
+        }
+
+        this.highlightRatioThreshold = highlightRatioThreshold;
+    }
+
+    /**
+     * Returns the sharpness (variance of the Laplacian) of the last checked image.
+     *
+     * @return the sharpness of the last checked image, 0 if no image was checked
+     */
+    public double getLastSharpness() {
+        return lastSharpness;
+    }
+
+    /**
+     * Returns the share of highlight pixels of the last checked image.
+     *
+     * @return the highlight ratio of the last checked image (0 - 1), 0 if no image was checked
+     */
+    public float getLastHighlightRatio() {
+        return lastHighlightRatio;
+    }
+
+    /**
+     * Checks if the given image is usable for the detection.
+     * Overexposed images are rejected first, because strong reflections also have sharp edges.
+     *
+     * @param resistorImage A OpenCV Matrix with the resistorImage, with BGR colors.
+     * @return the verdict of the check, Verdict.Accepted if the image is usable
+     */
+    public Verdict check(Mat resistorImage) {
+        if (resistorImage == null)
+            throw new IllegalArgumentException("resistorImage must not be null!");
+
+        Verdict verdict;
+
+        if (resistorImage.empty()) {
+            lastSharpness = 0;
+            lastHighlightRatio = 0;
+            verdict = Verdict.Blurry;
+        } else {
+            if (reducedImage == null)
+                createBuffers();
+
+            lastHighlightRatio = computeHighlightRatio(resistorImage);
+            lastSharpness = computeSharpness(resistorImage);
+
+            if (lastHighlightRatio > highlightRatioThreshold)
+                verdict = Verdict.Overexposed;
+            else if (lastSharpness < sharpnessThreshold)
+                verdict = Verdict.Blurry;
+            else
+                verdict = Verdict.Accepted;
+        }
+
+        sharpnessHistogram.record((long) lastSharpness);
+        highlightPercentHistogram.record(Math.round(lastHighlightRatio * 100));
+        verdictCounters[verdict.ordinal()].increment();
+
+        return verdict;
+    }
+
+    /**
+     * Creates the reusable buffers.
+     */
+    private void createBuffers() {
+        grayImage = MatFactory.newMat();
+        reducedImage = MatFactory.newMat();
+        laplacianImage = MatFactory.newMat();
+        mean = new MatOfDouble();
+        standardDeviation = new MatOfDouble();
+    }
+
+    /**
+     * Computes the share of pixels of the image with a V value (max(B, G, R))
+     * of at least REFLECTION_MIN_VALUE.
+     *
+     * @param resistorImage the image of the resistor, with BGR colors
+     * @return the highlight ratio (0 - 1)
+     */
+    private float computeHighlightRatio(Mat resistorImage) {
+        int pixelCount = (int) resistorImage.total();
+
+        if (pixelBuffer.length != pixelCount * 3)
+            pixelBuffer = new byte[pixelCount * 3];
+
+        resistorImage.get(0, 0, pixelBuffer);
+
+        int highlights = 0;
+
+        for (int i = 0; i < pixelCount * 3; i += 3) {
+            int value = Math.max(pixelBuffer[i] & 0xFF, Math.max(pixelBuffer[i + 1] & 0xFF, pixelBuffer[i + 2] & 0xFF));
+
+            if (value >= ResistorMaskBuilder.REFLECTION_MIN_VALUE)
+                highlights++;
+        }
+
+        return (float) highlights / pixelCount;
+    }
+
+    /**
+     * Computes the variance of the Laplacian of the gray image, reduced to ANALYSIS_WIDTH columns
+     * (resized with Imgproc.INTER_LINEAR). Smaller images are not reduced.
+     *
+     * @param resistorImage the image of the resistor, with BGR colors
+     * @return the sharpness of the image
+     */
+    private double computeSharpness(Mat resistorImage) {
+        Imgproc.cvtColor(resistorImage, grayImage, Imgproc.COLOR_BGR2GRAY);
+
+        Mat analysisImage = grayImage;
+
+        if (grayImage.cols() > ANALYSIS_WIDTH) {
+            int reducedHeight = Math.max(1, (int) Math.round((double) grayImage.rows() * ANALYSIS_WIDTH / grayImage.cols()));
+
+            Imgproc.resize(grayImage, reducedImage, new Size(ANALYSIS_WIDTH, reducedHeight), 0, 0, Imgproc.INTER_LINEAR);
+            analysisImage = reducedImage;
+        }
+
+        Imgproc.Laplacian(analysisImage, laplacianImage, CvType.CV_16S);
+
+        Core.meanStdDev(laplacianImage, mean, standardDeviation);
+
+        double deviation = standardDeviation.toArray()[0];
+
+        return deviation * deviation;
+    }
+}
@@ -0,0 +1,128 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * This Preprocessor applies a guided filter on the image, which uses the image itself as guide.
+ * Like the bilateral filter it reduces the noise but keeps the edges, but it only needs
+ * box filters (mean values), so the runtime does not depend on the radius.
+ * <p>
+ * Each channel is filtered independently:
+ * a = var(I) / (var(I) + eps), b = mean(I) - a * mean(I), result = mean(a) * I + mean(b)
+ * <p>
+ * In flat areas (variance much smaller than eps) the result is the mean value,
+ * at edges (variance much larger than eps) the image is kept.
+ * <p>
+ * See also:
+ * - K. He, J. Sun, X. Tang: Guided Image Filtering, ECCV 2010
+ * - Imgproc.boxFilter: http://docs.opencv.org/2.4/modules/imgproc/doc/filtering.html#boxfilter
+ */
+public class GuidedFilterPreprocessor implements Preprocessor {
+
+    /**
+     * The default radius of the box filters, a window of 5x5 like the bilateral filter.
+     */
+    public static final int RADIUS_DEFAULT = 2;
+
+    /**
+     * The default regularization (a standard deviation of 20 color values).
+     */
+    public static final double EPS_DEFAULT = 20 * 20;
+
+    /**
+     * The size of the box filters.
+     */
+    private final Size windowSize;
+
+    /**
+     * The regularization, variances much smaller than eps are smoothed.
+     */
+    private final Scalar eps;
+
+    /**
+     * The image as floating point values (the guide).
+     */
+    private final Mat guide = MatFactory.newMat();
+
+    /**
+     * The mean values of the guide.
+     */
+    private final Mat mean = MatFactory.newMat();
+
+    /**
+     * The mean values of the squared guide, later the variances.
+     */
+    private final Mat variance = MatFactory.newMat();
+
+    /**
+     * The coefficients a, later their mean values.
+     */
+    private final Mat a = MatFactory.newMat();
+
+    /**
+     * The coefficients b, later their mean values.
+     */
+    private final Mat b = MatFactory.newMat();
+
+    /**
+     * Creates a new GuidedFilterPreprocessor with the default parameters.
+     */
+    public GuidedFilterPreprocessor() {
+        this(RADIUS_DEFAULT, EPS_DEFAULT);
+    }
+
+    /**
+     * Creates a new GuidedFilterPreprocessor with the given parameters.
+     *
+     * @param radius the radius of the box filters (window size 2 * radius + 1), at least 1
+     * @param eps    the regularization in squared color values, greater than 0
+     */
+    public GuidedFilterPreprocessor(int radius, double eps) {
+        if (radius < 1)
+            throw new IllegalArgumentException("radius must be at least 1!");
+        if (eps <= 0)
+            throw new IllegalArgumentException("eps must be greater than 0!");
+
+        this.windowSize = new Size(2 * radius + 1, 2 * radius + 1);
+        this.eps = Scalar.all(eps);
+    }
+
+    /**
+     * Applies the guided filter on the source image.
+     *
+     * @param src The image that should be processed (CV_8UC3, BGR colors).
+     * @param dst The Matrix the result is written to, it gets the size and type of the source image.
+     */
+    @Override
+    public void apply(Mat src, Mat dst) {
+        int type = src.type();
+
+        src.convertTo(guide, CvType.CV_32F);
+
+        //mean(I) and var(I) = mean(I * I) - mean(I) * mean(I)
+        Imgproc.boxFilter(guide, mean, -1, windowSize);
+        Core.multiply(guide, guide, variance);
+        Imgproc.boxFilter(variance, variance, -1, windowSize);
+        Core.multiply(mean, mean, a);
+        Core.subtract(variance, a, variance);
+
+        //a = var(I) / (var(I) + eps), b = mean(I) - a * mean(I)
+        Core.add(variance, eps, b);
+        Core.divide(variance, b, a);
+        Core.multiply(a, mean, b);
+        Core.subtract(mean, b, b);
+
+        //result = mean(a) * I + mean(b)
+        Imgproc.boxFilter(a, a, -1, windowSize);
+        Imgproc.boxFilter(b, b, -1, windowSize);
+        Core.multiply(a, guide, a);
+        Core.add(a, b, a);
+
+        a.convertTo(dst, type);
+    }
+}
@@ -0,0 +1,265 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import org.opencv.core.Scalar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is a compiled lookup table which associates HSV colors (8 bit values) with color names.
+ * <p>
+ * The table is built once from a list of color definitions (a color name with a lower
+ * and an upper HSV bound). Later definitions take precedence over earlier ones,
+ * colors which are not covered by any definition are ColorName.Unknown.
+ * <p>
+ * Each channel is quantized into the intervals between the bounds of the definitions,
+ * a value of one channel is mapped to its interval with a table of 256 entries.
+ * All colors inside the same H, S and V interval have the same name, so the dense
+ * table over the intervals (H x S x V) contains the color name (ordinal) of every color.
+ * <p>
+ * Overlapping definitions are detected while the table is built and can be queried with
+ * getOverlaps(). The table is immutable and can be used by multiple threads.
+ */
+public class HsvColorTable {
+
+    /**
+     * Number of values of one channel (8 bit).
+     */
+    private static final int CHANNEL_VALUES = 256;
+
+    /**
+     * All color names, indexed by their ordinal.
+     */
+    private static final ColorName[] COLOR_NAMES = ColorName.values();
+
+    /**
+     * The interval of each value of the H channel.
+     */
+    private final int[] hIntervals = new int[CHANNEL_VALUES];
+
+    /**
+     * The interval of each value of the S channel.
+     */
+    private final int[] sIntervals = new int[CHANNEL_VALUES];
+
+    /**
+     * The interval of each value of the V channel.
+     */
+    private final int[] vIntervals = new int[CHANNEL_VALUES];
+
+    /**
+     * The number of intervals of the S channel.
+     */
+    private final int sIntervalCount;
+
+    /**
+     * The number of intervals of the V channel.
+     */
+    private final int vIntervalCount;
+
+    /**
+     * The ordinal of the color name of each H, S and V interval combination.
+     */
+    private final byte[] table;
+
+    /**
+     * Descriptions of the overlapping color definitions (e.g. "Brown and Black").
+     */
+    private final List<String> overlaps = new ArrayList<>();
+
+    /**
+     * Builds the lookup table from the given color definitions.
+     * The color names and bounds are matched by their index.
+     *
+     * @param names       The color names of the definitions.
+     * @param lowerBounds The lower bounds (HSV) of the definitions, inclusive.
+     * @param upperBounds The upper bounds (HSV) of the definitions, inclusive.
+     */
+    public HsvColorTable(ColorName[] names, Scalar[] lowerBounds, Scalar[] upperBounds) {
+        if (names == null || lowerBounds == null || upperBounds == null)
+            throw new IllegalArgumentException("names and bounds must not be null!");
+        if (names.length != lowerBounds.length || names.length != upperBounds.length)
+            throw new IllegalArgumentException("names and bounds must have the same length!");
+
+        int definitions = names.length;
+
+        //integer bounds of each definition and channel: a value v matches if min <= v < end
+        int[][] min = new int[definitions][3];
+        int[][] end = new int[definitions][3];
+
+        for (int i = 0; i < definitions; i++) {
+            if (names[i] == null || lowerBounds[i] == null || upperBounds[i] == null)
+                throw new IllegalArgumentException("names and bounds must not be null!");
+
+            for (int channel = 0; channel < 3; channel++) {
+                min[i][channel] = clampToChannel(Math.ceil(lowerBounds[i].val[channel]));
+                end[i][channel] = Math.max(min[i][channel], clampToChannel(Math.floor(upperBounds[i].val[channel]) + 1));
+            }
+        }
+
+        int hIntervalCount = buildIntervals(hIntervals, min, end, 0);
+        sIntervalCount = buildIntervals(sIntervals, min, end, 1);
+        vIntervalCount = buildIntervals(vIntervals, min, end, 2);
+
+        table = new byte[hIntervalCount * sIntervalCount * vIntervalCount];
+
+        int[] hRepresentatives = representativesOf(hIntervals, hIntervalCount);
+        int[] sRepresentatives = representativesOf(sIntervals, sIntervalCount);
+        int[] vRepresentatives = representativesOf(vIntervals, vIntervalCount);
+
+        boolean[][] overlapping = new boolean[COLOR_NAMES.length][COLOR_NAMES.length];
+
+        for (int h = 0; h < hIntervalCount; h++) {
+            for (int s = 0; s < sIntervalCount; s++) {
+                for (int v = 0; v < vIntervalCount; v++) {
+                    int[] color = {hRepresentatives[h], sRepresentatives[s], vRepresentatives[v]};
+                    ColorName name = ColorName.Unknown;
+
+                    for (int i = 0; i < definitions; i++) {
+                        if (isBetweenBounds(color, min[i], end[i])) {
+                            if (name != ColorName.Unknown && name != names[i])
+                                overlapping[name.ordinal()][names[i].ordinal()] = true;
+
+                            name = names[i];
+                        }
+                    }
+
+                    table[(h * sIntervalCount + s) * vIntervalCount + v] = (byte) name.ordinal();
+                }
+            }
+        }
+
+        for (int i = 0; i < COLOR_NAMES.length; i++) {
+            for (int j = 0; j < COLOR_NAMES.length; j++) {
+                if (overlapping[i][j])
+                    overlaps.add(COLOR_NAMES[i] + " and " + COLOR_NAMES[j]);
+            }
+        }
+    }
+
+    /**
+     * Returns the color name of the given HSV color.
+     * No objects are allocated, values outside of 0-255 are clamped.
+     *
+     * @param h The H value of the color (0-179)
+     * @param s The S value of the color (0-255)
+     * @param v The V value of the color (0-255)
+     * @return The name of the color, or ColorName.Unknown.
+     */
+    public ColorName classify(int h, int s, int v) {
+        return COLOR_NAMES[classifyOrdinal(h, s, v)];
+    }
+
+    /**
+     * Returns the ordinal of the color name of the given HSV color.
+     * No objects are allocated, values outside of 0-255 are clamped.
+     *
+     * @param h The H value of the color (0-179)
+     * @param s The S value of the color (0-255)
+     * @param v The V value of the color (0-255)
+     * @return The ordinal of the name of the color (see ColorName).
+     */
+    public int classifyOrdinal(int h, int s, int v) {
+        int hInterval = hIntervals[h < 0 ? 0 : (h > 255 ? 255 : h)];
+        int sInterval = sIntervals[s < 0 ? 0 : (s > 255 ? 255 : s)];
+        int vInterval = vIntervals[v < 0 ? 0 : (v > 255 ? 255 : v)];
+
+        return table[(hInterval * sIntervalCount + sInterval) * vIntervalCount + vInterval];
+    }
+
+    /**
+     * Returns the overlapping color definitions found while the table was built.
+     * Where definitions overlap, the later definition is used.
+     *
+     * @return descriptions of the overlapping definitions, an empty list if there are none
+     */
+    public List<String> getOverlaps() {
+        return overlaps;
+    }
+
+    /**
+     * Returns the number of entries of the table.
+     *
+     * @return the number of entries of the table
+     */
+    public int getTableSize() {
+        return table.length;
+    }
+
+    /**
+     * Splits the values of a channel into intervals between the bounds of all definitions
+     * and writes the interval of each value into the given array.
+     *
+     * @param intervals the array the interval of each value is written to
+     * @param min       the lower bounds of the definitions
+     * @param end       the (exclusive) upper bounds of the definitions
+     * @param channel   the channel (0 = H, 1 = S, 2 = V)
+     * @return the number of intervals
+     */
+    private static int buildIntervals(int[] intervals, int[][] min, int[][] end, int channel) {
+        boolean[] isBreakpoint = new boolean[CHANNEL_VALUES + 1];
+
+        for (int i = 0; i < min.length; i++) {
+            isBreakpoint[min[i][channel]] = true;
+            isBreakpoint[end[i][channel]] = true;
+        }
+
+        int interval = 0;
+
+        for (int value = 0; value < CHANNEL_VALUES; value++) {
+            if (isBreakpoint[value] && value > 0)
+                interval++;
+
+            intervals[value] = interval;
+        }
+
+        return interval + 1;
+    }
+
+    /**
+     * Returns the smallest value of each interval.
+     *
+     * @param intervals     the interval of each value
+     * @param intervalCount the number of intervals
+     * @return the smallest value of each interval
+     */
+    private static int[] representativesOf(int[] intervals, int intervalCount) {
+        int[] representatives = new int[intervalCount];
+        Arrays.fill(representatives, -1);
+
+        for (int value = 0; value < CHANNEL_VALUES; value++) {
+            if (representatives[intervals[value]] == -1)
+                representatives[intervals[value]] = value;
+        }
+
+        return representatives;
+    }
+
+    /**
+     * Checks if all values of a color are between the bounds.
+     *
+     * @param color the color
+     * @param min   the lower bounds (inclusive)
+     * @param end   the upper bounds (exclusive)
+     * @return true if the color is between the bounds, false otherwise
+     */
+    private static boolean isBetweenBounds(int[] color, int[] min, int[] end) {
+        for (int channel = 0; channel < 3; channel++) {
+            if (color[channel] < min[channel] || color[channel] >= end[channel])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Clamps a bound to the range 0-256.
+     *
+     * @param bound the bound
+     * @return the clamped bound
+     */
+    private static int clampToChannel(double bound) {
+        return (int) Math.max(0, Math.min(CHANNEL_VALUES, bound));
+    }
+}
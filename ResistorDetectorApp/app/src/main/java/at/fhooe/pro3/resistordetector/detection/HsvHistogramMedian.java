@@ -0,0 +1,216 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import java.util.Arrays;
+
+/**
+ * This class calculates the median HSV color of the masked pixels of an image
+ * using fixed size counting histograms (180 bins for H, 256 bins for S and V).
+ * <p>
+ * The pixel data of the image and the mask is read with one bulk read into reusable
+ * byte arrays, the histograms are also reused. No objects are allocated per pixel.
+ * <p>
+ * Pixels can also be added and removed one by one, which allows to use one instance
+ * as a running (sliding window) histogram.
+ * <p>
+ * An instance is not thread safe, use one instance per thread.
+ */
+public class HsvHistogramMedian {
+
+    /**
+     * Number of bins of the H histogram (OpenCV uses 0-179 for H in 8 bit images).
+     */
+    public static final int H_BINS = 180;
+
+    /**
+     * Number of bins of the S and V histograms.
+     */
+    public static final int SV_BINS = 256;
+
+    /**
+     * The histogram of the H channel.
+     */
+    private final int[] hHistogram = new int[H_BINS];
+
+    /**
+     * The histogram of the S channel.
+     */
+    private final int[] sHistogram = new int[SV_BINS];
+
+    /**
+     * The histogram of the V channel.
+     */
+    private final int[] vHistogram = new int[SV_BINS];
+
+    /**
+     * The number of pixels currently counted in the histograms.
+     */
+    private int count = 0;
+
+    /**
+     * Reusable buffer for the pixel data of the image.
+     */
+    private byte[] pixelBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the pixel data of the mask.
+     */
+    private byte[] maskBuffer = new byte[0];
+
+    /**
+     * Returns the median HSV color of all pixels of the image which are not masked out.
+     * Both matrices may be submatrices (e.g. a column strip of a larger image).
+     * <p>
+     * The histograms are cleared before the calculation.
+     *
+     * @param hsvImage The image (CV_8UC3, HSV colors) for which the median color should be calculated.
+     * @param mask     The mask (CV_8UC1) defining which pixels should be used for the calculation.
+     * @return The median color of the image, a Scalar (HSV color)
+     */
+    public Scalar medianOf(Mat hsvImage, Mat mask) {
+        if (hsvImage == null || mask == null)
+            throw new IllegalArgumentException("hsvImage and mask must not be null!");
+        if (hsvImage.type() != CvType.CV_8UC3)
+            throw new IllegalArgumentException("hsvImage must have the type CV_8UC3!");
+        if (mask.type() != CvType.CV_8UC1)
+            throw new IllegalArgumentException("mask must have the type CV_8UC1!");
+        if (hsvImage.rows() != mask.rows() || hsvImage.cols() != mask.cols())
+            throw new IllegalArgumentException("hsvImage and mask must have the same size!");
+
+        clear();
+
+        int pixelCount = hsvImage.rows() * hsvImage.cols();
+
+        if (pixelCount == 0)
+            return getMedian();
+
+        if (pixelBuffer.length < pixelCount * 3)
+            pixelBuffer = new byte[pixelCount * 3];
+
+        if (maskBuffer.length < pixelCount)
+            maskBuffer = new byte[pixelCount];
+
+        hsvImage.get(0, 0, pixelBuffer);
+        mask.get(0, 0, maskBuffer);
+
+        for (int i = 0; i < pixelCount; i++) {
+            if (maskBuffer[i] != 0) {
+                add(pixelBuffer[i * 3] & 0xFF, pixelBuffer[i * 3 + 1] & 0xFF, pixelBuffer[i * 3 + 2] & 0xFF);
+            }
+        }
+
+        return getMedian();
+    }
+
+    /**
+     * Removes all pixels from the histograms.
+     */
+    public void clear() {
+        Arrays.fill(hHistogram, 0);
+        Arrays.fill(sHistogram, 0);
+        Arrays.fill(vHistogram, 0);
+        count = 0;
+    }
+
+    /**
+     * Adds one pixel to the histograms.
+     *
+     * @param h the H value of the pixel (0-179)
+     * @param s the S value of the pixel (0-255)
+     * @param v the V value of the pixel (0-255)
+     */
+    public void add(int h, int s, int v) {
+        hHistogram[h < H_BINS ? h : H_BINS - 1]++;
+        sHistogram[s]++;
+        vHistogram[v]++;
+        count++;
+    }
+
+    /**
+     * Removes one pixel, that was added before, from the histograms.
+     *
+     * @param h the H value of the pixel (0-179)
+     * @param s the S value of the pixel (0-255)
+     * @param v the V value of the pixel (0-255)
+     */
+    public void remove(int h, int s, int v) {
+        hHistogram[h < H_BINS ? h : H_BINS - 1]--;
+        sHistogram[s]--;
+        vHistogram[v]--;
+        count--;
+    }
+
+    /**
+     * Returns the number of pixels currently counted in the histograms.
+     *
+     * @return the number of pixels currently counted in the histograms
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the median HSV color of the pixels currently counted in the histograms.
+     *
+     * @return The median color, a Scalar (HSV color)
+     */
+    public Scalar getMedian() {
+        return new Scalar(getMedianH(), getMedianS(), getMedianV());
+    }
+
+    /**
+     * Returns the median of the H values currently counted in the histograms.
+     *
+     * @return the median H value, or 0 if less than two pixels are counted
+     */
+    public int getMedianH() {
+        return medianOfHistogram(hHistogram);
+    }
+
+    /**
+     * Returns the median of the S values currently counted in the histograms.
+     *
+     * @return the median S value, or 0 if less than two pixels are counted
+     */
+    public int getMedianS() {
+        return medianOfHistogram(sHistogram);
+    }
+
+    /**
+     * Returns the median of the V values currently counted in the histograms.
+     *
+     * @return the median V value, or 0 if less than two pixels are counted
+     */
+    public int getMedianV() {
+        return medianOfHistogram(vHistogram);
+    }
+
+    /**
+     * Returns the median value of a counting histogram.
+     * The median is the element at position count / 2 of the sorted values.
+     * 0 is returned if less than two values are counted.
+     *
+     * @param histogram the histogram for which the median should be calculated.
+     * @return the median value of the histogram
+     */
+    private int medianOfHistogram(int[] histogram) {
+        int medianPosition = count / 2;
+
+        if (medianPosition == 0)
+            return 0;
+
+        int sum = 0;
+
+        for (int i = 0; i < histogram.length; i++) {
+            sum += histogram[i];
+
+            if (sum > medianPosition)
+                return i;
+        }
+
+        return histogram.length - 1;
+    }
+}
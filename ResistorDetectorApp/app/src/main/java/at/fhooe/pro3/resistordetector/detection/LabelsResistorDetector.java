@@ -0,0 +1,408 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements a ResistorDetector which labels every pixel of the resistor with a color name.
+ * <p>
+ * 1. The Preprocessor is applied (none by default) and the background and the reflections are masked out (see ResistorMaskBuilder).
+ * 2. Every pixel of the resistor is labeled with a ColorName using the lookup table of the ColorDefinitionsHsv.
+ * 3. The labels of each column are counted. The votes of NR_OF_COLUMNS_TO_COMBINE columns are combined into
+ *    one strip, the label with the most votes is the color of the strip if it has at least MIN_VOTE_SHARE of the votes.
+ * 4. Runs of columns shorter than MIN_BAND_WIDTH are merged into their neighbours, then consecutive columns
+ *    with the same color are combined into bands (run-length encoding).
+ * <p>
+ * No median colors are calculated, no values are sorted and no per column matrices are created.
+ * The counting of the votes can be processed in parallel (column ranges, see ParallelStrips).
+ */
+public class LabelsResistorDetector extends ResistorDetector {
+
+    /**
+     * Defines the number of columns whose votes are combined into one strip
+     * (the same strip width as in the ColumnsResistorDetector).
+     */
+    private static final int NR_OF_COLUMNS_TO_COMBINE = 5;
+
+    /**
+     * Defines the minimum width in pixel a band of the resistor must have.
+     */
+    private static final int MIN_BAND_WIDTH = NR_OF_COLUMNS_TO_COMBINE + 1;
+
+    /**
+     * Defines the minimum share of the votes of a strip the label with the most votes must have,
+     * otherwise the strip is ColorName.Unknown.
+     */
+    private static final double MIN_VOTE_SHARE = 0.4;
+
+    /**
+     * The number of different labels (color names).
+     */
+    private static final int NR_OF_LABELS = ColorName.values().length;
+
+    /**
+     * All color names, indexed by their ordinal.
+     */
+    private static final ColorName[] COLOR_NAMES = ColorName.values();
+
+    /**
+     * The detection result of the current detection process.
+     */
+    private DetectionResult detectionResult = null;
+
+    /**
+     * The height of the current input image.
+     */
+    private int inputMatHeight = 0;
+
+    /**
+     * Creates the mask of the resistor, reused for every detection.
+     */
+    private final ResistorMaskBuilder resistorMaskBuilder = new ResistorMaskBuilder();
+
+    /**
+     * The number of pixels of each label per column: votes[column][label].
+     */
+    private int[][] votes = new int[0][NR_OF_LABELS];
+
+    /**
+     * Reusable buffer for the pixel data of the image.
+     */
+    private byte[] pixelBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the pixel data of the mask.
+     */
+    private byte[] maskBuffer = new byte[0];
+
+    /**
+     * Creates a new ResistorDetector with the given ResultListener and a NoOpPreprocessor.
+     * The majority vote of each strip is robust against noise, so no filter is applied by default.
+     *
+     * @param resultListener The ResultListener which gets notified about the detection result.
+     */
+    public LabelsResistorDetector(ResultListener resultListener) {
+        super(resultListener, new NoOpPreprocessor());
+    }
+
+    /**
+     * Creates a new ResistorDetector with the given ResultListener and Preprocessor.
+     *
+     * @param resultListener The ResultListener which gets notified about the detection result.
+     * @param preprocessor   The Preprocessor applied on the image before the colors are detected.
+     */
+    public LabelsResistorDetector(ResultListener resultListener, Preprocessor preprocessor) {
+        super(resultListener, preprocessor);
+    }
+
+    /**
+     * Performs the resistor detection by labeling every pixel.
+     *
+     * @param resistorImage A OpenCV Matrix with the resistorImage, with BGR colors.
+     */
+    @Override
+    protected void performDetection(Mat resistorImage) {
+        inputMatHeight = resistorImage.height();
+
+        detectionResult = new DetectionResult();
+
+        if (isDetailLevelEnabled(DetailLevel.Summary))
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("original Image", resistorImage));
+
+        long stageStart = startStage();
+        preprocessor.apply(resistorImage, resistorImage);
+        recordStageTime(detectionResult, DetectionResult.Stage.Filter, stageStart);
+
+        stageStart = startStage();
+        Imgproc.cvtColor(resistorImage, resistorImage, Imgproc.COLOR_BGR2HSV);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColorConversion, stageStart);
+
+        stageStart = startStage();
+        Mat resistorMask = MatFactory.newMat();
+        resistorMaskBuilder.buildMask(resistorImage, resistorMask);
+        recordStageTime(detectionResult, DetectionResult.Stage.Mask, stageStart);
+
+        if (isDetailLevelEnabled(DetailLevel.Summary)) {
+            Mat tmpMat = MatColorConversions.newBgrMatFromGray(resistorMask);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("resistor mask", tmpMat));
+            tmpMat.release();
+        }
+
+        stageStart = startStage();
+        countLabelsPerColumn(resistorImage, resistorMask);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColumnStatistics, stageStart);
+
+        ColorName[] columnColorNames = getColumnColorNames(resistorImage.cols());
+
+        stageStart = startStage();
+        List<BandInfo> bands = getBandInfo(columnColorNames);
+        recordStageTime(detectionResult, DetectionResult.Stage.BandGrouping, stageStart);
+
+        if (isDetailLevelEnabled(DetailLevel.Summary))
+            addBandInfoToDetectionDetails(bands);
+
+        BandInfo[] bandsArray = new BandInfo[bands.size()];
+        bandsArray = bands.toArray(bandsArray);
+        detectionResult.setBandInfo(bandsArray);
+
+        stageStart = startStage();
+        int resistance = calculateResistance(bands);
+        recordStageTime(detectionResult, DetectionResult.Stage.Decode, stageStart);
+
+        if (resistance != -1)
+            detectionResult.setResistorValue(resistance);
+
+        resistorMask.release();
+
+        notifyListenerAboutNewResult(detectionResult);
+    }
+
+    /**
+     * Labels every pixel of the resistor which is not masked out and counts
+     * the labels of each column in the votes array.
+     *
+     * @param hsvImage     The image of the resistor (HSV colors).
+     * @param resistorMask The mask of the resistor.
+     */
+    private void countLabelsPerColumn(Mat hsvImage, Mat resistorMask) {
+        final int rows = hsvImage.rows();
+        final int cols = hsvImage.cols();
+        int pixelCount = rows * cols;
+
+        if (pixelBuffer.length < pixelCount * 3)
+            pixelBuffer = new byte[pixelCount * 3];
+
+        if (maskBuffer.length < pixelCount)
+            maskBuffer = new byte[pixelCount];
+
+        if (votes.length != cols)
+            votes = new int[cols][NR_OF_LABELS];
+
+        if (pixelCount == 0)
+            return;
+
+        hsvImage.get(0, 0, pixelBuffer);
+        resistorMask.get(0, 0, maskBuffer);
+
+        final HsvColorTable colorTable = ColorDefinitionsHsv.getColorTable();
+
+        ParallelStrips.processStrips(parallelExecutor, cols, new ParallelStrips.StripRangeProcessor() {
+            @Override
+            public void processStrips(int firstStrip, int endStrip) {
+                countLabelsOfColumnRange(colorTable, firstStrip, endStrip, rows, cols);
+            }
+        });
+    }
+
+    /**
+     * Counts the labels of the columns [firstCol, endCol). Column ranges are independent of each other.
+     *
+     * @param colorTable the lookup table used to label the pixels
+     * @param firstCol   the first column of the range
+     * @param endCol     the column after the last column of the range
+     * @param rows       the number of rows of the image
+     * @param cols       the number of columns of the image
+     */
+    private void countLabelsOfColumnRange(HsvColorTable colorTable, int firstCol, int endCol, int rows, int cols) {
+        for (int col = firstCol; col < endCol; col++) {
+            int[] columnVotes = votes[col];
+
+            for (int label = 0; label < NR_OF_LABELS; label++) {
+                columnVotes[label] = 0;
+            }
+        }
+
+        for (int row = 0; row < rows; row++) {
+            int rowOffset = row * cols;
+
+            for (int col = firstCol; col < endCol; col++) {
+                int index = rowOffset + col;
+
+                if (maskBuffer[index] != 0) {
+                    int label = colorTable.classifyOrdinal(
+                            pixelBuffer[index * 3] & 0xFF,
+                            pixelBuffer[index * 3 + 1] & 0xFF,
+                            pixelBuffer[index * 3 + 2] & 0xFF);
+
+                    votes[col][label]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an array with the ColorName for each column. The votes of NR_OF_COLUMNS_TO_COMBINE
+     * columns are combined into one strip, all columns of a strip get the label with the most votes
+     * of the strip. Strips without any votes or where the label with the most votes has less than
+     * MIN_VOTE_SHARE of the votes are ColorName.Unknown.
+     *
+     * @param cols The number of columns of the image.
+     * @return An array with the ColorName for each column.
+     */
+    private ColorName[] getColumnColorNames(int cols) {
+        long stageStart = startStage();
+
+        ColorName[] columnColors = new ColorName[cols];
+        int[] stripVotes = new int[NR_OF_LABELS];
+
+        for (int stripStart = 0; stripStart < cols; stripStart += NR_OF_COLUMNS_TO_COMBINE) {
+            int stripEnd = Math.min(stripStart + NR_OF_COLUMNS_TO_COMBINE, cols);
+
+            for (int label = 0; label < NR_OF_LABELS; label++) {
+                stripVotes[label] = 0;
+            }
+
+            for (int col = stripStart; col < stripEnd; col++) {
+                for (int label = 0; label < NR_OF_LABELS; label++) {
+                    stripVotes[label] += votes[col][label];
+                }
+            }
+
+            int bestLabel = ColorName.Unknown.ordinal();
+            int bestVotes = 0;
+            int totalVotes = 0;
+
+            for (int label = 0; label < NR_OF_LABELS; label++) {
+                totalVotes += stripVotes[label];
+
+                if (stripVotes[label] > bestVotes) {
+                    bestLabel = label;
+                    bestVotes = stripVotes[label];
+                }
+            }
+
+            if (bestVotes < MIN_VOTE_SHARE * totalVotes)
+                bestLabel = ColorName.Unknown.ordinal();
+
+            for (int col = stripStart; col < stripEnd; col++) {
+                columnColors[col] = COLOR_NAMES[bestLabel];
+            }
+        }
+
+        recordStageTime(detectionResult, DetectionResult.Stage.ColorNaming, stageStart);
+
+        recordColumnColorNames(columnColors);
+
+        if (isDetailLevelEnabled(DetailLevel.Summary))
+            addColumnColorNamesToDetectionDetails(columnColors);
+
+        return columnColors;
+    }
+
+    /**
+     * Draws the ColorName of each column and adds the image to the DetectionStepDetails.
+     *
+     * @param columnColors An array with the ColorName for each column.
+     */
+    private void addColumnColorNamesToDetectionDetails(ColorName[] columnColors) {
+        Mat tmpMat = MatFactory.newMat(1, Math.max(columnColors.length, 1), CvType.CV_8UC3, new Scalar(0, 0, 0));
+
+        for (int col = 0; col < columnColors.length; col++) {
+            Scalar detectedColor = ColorDefinitionsHsv.getColorFromName(columnColors[col]);
+            tmpMat.put(0, col, detectedColor.val[0], detectedColor.val[1], detectedColor.val[2]);
+        }
+
+        Mat tmpMat2 = MatColorConversions.newBgrMatFromHsv(tmpMat);
+        Imgproc.resize(tmpMat2, tmpMat2, new Size(tmpMat.cols(), inputMatHeight), 0, 0, Imgproc.INTER_NEAREST);
+        detectionResult.addDetectionStepDetail(new DetectionStepDetail("Detected color per column", tmpMat2));
+        tmpMat.release();
+        tmpMat2.release();
+    }
+
+    /**
+     * Merges runs of columns shorter than MIN_BAND_WIDTH into the previous run
+     * (into the next run at the start of the array), so a band interrupted by a
+     * single strip of another color is not split into two bands.
+     * <p>
+     * The given array is modified!
+     *
+     * @param columnColorNames The ColorNames of the columns. This array will be modified.
+     */
+    private static void mergeShortRuns(ColorName[] columnColorNames) {
+        int runStart = 0;
+
+        for (int i = 1; i <= columnColorNames.length; i++) {
+            if (i == columnColorNames.length || columnColorNames[i] != columnColorNames[runStart]) {
+                if (i - runStart < MIN_BAND_WIDTH) {
+                    if (runStart > 0)
+                        Arrays.fill(columnColorNames, runStart, i, columnColorNames[runStart - 1]);
+                    else if (i < columnColorNames.length)
+                        Arrays.fill(columnColorNames, runStart, i, columnColorNames[i]);
+                }
+
+                runStart = i;
+            }
+        }
+    }
+
+    /**
+     * Combines consecutive columns with the same ColorName into bands (one run-length pass),
+     * after the short runs are merged into their neighbours (see mergeShortRuns).
+     * Runs shorter than MIN_BAND_WIDTH and runs of unknown colors are ignored.
+     *
+     * @param columnColorNames The ColorNames of the columns. This array will be modified.
+     * @return A list of the detected bands.
+     */
+    private List<BandInfo> getBandInfo(ColorName[] columnColorNames) {
+        List<BandInfo> bands = new ArrayList<>();
+
+        mergeShortRuns(columnColorNames);
+
+        int runStart = 0;
+
+        for (int i = 1; i <= columnColorNames.length; i++) {
+            if (i == columnColorNames.length || columnColorNames[i] != columnColorNames[runStart]) {
+                int runWidth = i - runStart;
+
+                if (runWidth >= MIN_BAND_WIDTH && columnColorNames[runStart] != ColorName.Unknown)
+                    bands.add(new BandInfo(columnColorNames[runStart], runWidth));
+
+                runStart = i;
+            }
+        }
+
+        return bands;
+    }
+
+    /**
+     * Draws the given list of BandInfo elements and adds the image to the DetectionStepDetails.
+     *
+     * @param bands A list of resistor band info elements.
+     */
+    private void addBandInfoToDetectionDetails(List<BandInfo> bands) {
+        if (bands.size() != 0) {
+            int width = 0;
+            for (BandInfo band : bands) {
+                width += band.getWidth();
+            }
+
+            Mat tmpMat = MatFactory.newMat(1, width, CvType.CV_8UC3);
+
+            int count = 0;
+
+            for (BandInfo band : bands) {
+                Scalar detectedColor = ColorDefinitionsHsv.getColorFromName(band.getColor());
+
+                for (int j = 0; j < band.getWidth(); j++) {
+                    tmpMat.put(0, count, detectedColor.val[0], detectedColor.val[1], detectedColor.val[2]);
+                    count++;
+                }
+            }
+
+            Mat tmpMat2 = MatColorConversions.newBgrMatFromHsv(tmpMat);
+            Imgproc.resize(tmpMat2, tmpMat2, new Size(width, inputMatHeight), 0, 0, Imgproc.INTER_NEAREST);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("Detected color per band", tmpMat2));
+            tmpMat.release();
+            tmpMat2.release();
+        } else {
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("No bands found"));
+        }
+    }
+}
@@ -22,7 +22,7 @@ public class MatColorConversions {
         if (hsvMat == null)
             throw new IllegalArgumentException("hsvMat must not be null!");
 
-        Mat bgrMat = new Mat(hsvMat.rows(), hsvMat.cols(), hsvMat.type());
+        Mat bgrMat = MatFactory.newMat(hsvMat.rows(), hsvMat.cols(), hsvMat.type());
 
         Imgproc.cvtColor(hsvMat, bgrMat, Imgproc.COLOR_HSV2BGR);
 
@@ -40,7 +40,7 @@ public class MatColorConversions {
         if (grayMat == null)
             throw new IllegalArgumentException("grayMat must not be null!");
 
-        Mat bgrMat = new Mat(grayMat.rows(), grayMat.cols(), grayMat.type());
+        Mat bgrMat = MatFactory.newMat(grayMat.rows(), grayMat.cols(), grayMat.type());
 
         Imgproc.cvtColor(grayMat, bgrMat, Imgproc.COLOR_GRAY2BGR);
 
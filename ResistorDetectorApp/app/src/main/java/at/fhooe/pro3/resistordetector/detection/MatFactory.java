@@ -0,0 +1,80 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+/**
+ * This class creates the Matrices of the detection and counts them in the default MetricsRegistry
+ * (counter detection.mats.allocated), so the allocations of a detection can be checked,
+ * e.g. that no Matrix is allocated for the DetectionStepDetails with DetailLevel.None.
+ * <p>
+ * The Matrices allocated by OpenCV itself (e.g. the outputs of Imgproc.findContours) are not counted.
+ */
+public class MatFactory {
+
+    /**
+     * The number of Matrices created by this factory.
+     */
+    private static final StripedCounter ALLOCATED_MATS_COUNTER = MetricsRegistry.getDefault().counter("detection.mats.allocated");
+
+    /**
+     * Returns a new empty Matrix.
+     *
+     * @return a new empty Matrix
+     */
+    public static Mat newMat() {
+        ALLOCATED_MATS_COUNTER.increment();
+
+        return new Mat();
+    }
+
+    /**
+     * Returns a new Matrix with the given size and type.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param type the type of the Matrix (e.g. CvType.CV_8UC3)
+     * @return a new Matrix with the given size and type
+     */
+    public static Mat newMat(int rows, int cols, int type) {
+        ALLOCATED_MATS_COUNTER.increment();
+
+        return new Mat(rows, cols, type);
+    }
+
+    /**
+     * Returns a new Matrix with the given size and type, every element is set to the given value.
+     *
+     * @param rows  the number of rows
+     * @param cols  the number of columns
+     * @param type  the type of the Matrix (e.g. CvType.CV_8UC3)
+     * @param value the value of every element
+     * @return a new Matrix with the given size and type
+     */
+    public static Mat newMat(int rows, int cols, int type, Scalar value) {
+        ALLOCATED_MATS_COUNTER.increment();
+
+        return new Mat(rows, cols, type, value);
+    }
+
+    /**
+     * Returns a new copy of the given Matrix (see Mat.clone()).
+     *
+     * @param mat the Matrix to copy
+     * @return a new copy of the given Matrix
+     */
+    public static Mat newCopy(Mat mat) {
+        ALLOCATED_MATS_COUNTER.increment();
+
+        return mat.clone();
+    }
+
+    /**
+     * Returns the number of Matrices created by this factory since the start of the process.
+     *
+     * @return the number of created Matrices
+     */
+    public static long getAllocatedMats() {
+        return ALLOCATED_MATS_COUNTER.sum();
+    }
+}
@@ -11,6 +11,10 @@ import org.opencv.imgproc.Imgproc;
 /**
  * This class contains methods to convert OpenCV matrices to Bitmaps.
  * <p>
+ * The given matrices are never modified. Colors are converted with one Imgproc.cvtColor
+ * into a temporary conversion buffer (released after the call) which is then copied
+ * into the Bitmap. The Bitmap can be supplied by the caller to reuse it between calls.
+ * <p>
  * Created by stefan on 17.06.2017.
  */
 class MatToBitmap {
@@ -25,16 +29,22 @@ class MatToBitmap {
      * @return A new BufferedImage with the data of the given Matrix.
      */
     public static Bitmap matToBitmapHsv(Mat image) {
+        return matToBitmapHsv(image, null);
+    }
 
-        Bitmap bitmap = null;
-
-        Imgproc.cvtColor(image, image, Imgproc.COLOR_HSV2BGR);
-
-        bitmap = matToBitmapBgr(image);
-
-        Imgproc.cvtColor(image, image, Imgproc.COLOR_BGR2HSV);
-
-        return bitmap;
+    /**
+     * Writes the data of an OpenCV Matrix into a Bitmap.
+     * The given Matrix must use HSV colors, it is not modified.
+     * <p>
+     * If the target Bitmap is null or does not match the size of the Matrix,
+     * a new Bitmap is created.
+     *
+     * @param image  The Matrix to convert to a Bitmap, with HSV colors
+     * @param target The Bitmap the data is written to (ARGB_8888), or null
+     * @return The target Bitmap or a new Bitmap with the data of the given Matrix.
+     */
+    public static Bitmap matToBitmapHsv(Mat image, Bitmap target) {
+        return convertToBitmap(image, Imgproc.COLOR_HSV2RGB, target);
     }
 
     /**
@@ -47,16 +57,22 @@ class MatToBitmap {
      * @return A new BufferedImage with the data of the given Matrix.
      */
     public static Bitmap matToBitmapBgr(Mat image) {
+        return matToBitmapBgr(image, null);
+    }
 
-        Bitmap bitmap = null;
-
-        Imgproc.cvtColor(image, image, Imgproc.COLOR_BGR2RGBA);
-
-        bitmap = matToBitmapRgba(image);
-
-        Imgproc.cvtColor(image, image, Imgproc.COLOR_RGBA2BGR);
-
-        return bitmap;
+    /**
+     * Writes the data of an OpenCV Matrix into a Bitmap.
+     * The given Matrix must use BGR colors, it is not modified.
+     * <p>
+     * If the target Bitmap is null or does not match the size of the Matrix,
+     * a new Bitmap is created.
+     *
+     * @param image  The Matrix to convert to a Bitmap, with BGR colors
+     * @param target The Bitmap the data is written to (ARGB_8888), or null
+     * @return The target Bitmap or a new Bitmap with the data of the given Matrix.
+     */
+    public static Bitmap matToBitmapBgr(Mat image, Bitmap target) {
+        return convertToBitmap(image, Imgproc.COLOR_BGR2RGB, target);
     }
 
     /**
@@ -69,10 +85,25 @@ class MatToBitmap {
      * @return A new BufferedImage with the data of the given Matrix.
      */
     public static Bitmap matToBitmapRgba(Mat image) {
+        return matToBitmapRgba(image, null);
+    }
 
+    /**
+     * Writes the data of an OpenCV Matrix into a Bitmap.
+     * The given Matrix must use RGBA colors (RGB and gray are supported as well),
+     * it is copied directly without a color conversion.
+     * <p>
+     * If the target Bitmap is null or does not match the size of the Matrix,
+     * a new Bitmap is created.
+     *
+     * @param image  The Matrix to convert to a Bitmap, with RGBA colors
+     * @param target The Bitmap the data is written to (ARGB_8888), or null
+     * @return The target Bitmap or a new Bitmap with the data of the given Matrix, or null if the conversion failed.
+     */
+    public static Bitmap matToBitmapRgba(Mat image, Bitmap target) {
         Bitmap bitmap = null;
         try {
-            bitmap = Bitmap.createBitmap(image.cols(), image.rows(), Bitmap.Config.ARGB_8888);
+            bitmap = getCompatibleBitmap(image, target);
             Utils.matToBitmap(image, bitmap);
         } catch (CvException e) {
             Log.d("Exception", e.getMessage());
@@ -80,4 +111,41 @@ class MatToBitmap {
 
         return bitmap;
     }
+
+    /**
+     * Converts the colors of the Matrix into a temporary conversion buffer
+     * and copies the buffer into the Bitmap. The buffer is released afterwards.
+     *
+     * @param image               The Matrix to convert to a Bitmap
+     * @param colorConversionCode The Imgproc color conversion code, the result must have RGB colors
+     * @param target              The Bitmap the data is written to (ARGB_8888), or null
+     * @return The target Bitmap or a new Bitmap with the data of the given Matrix, or null if the conversion failed.
+     */
+    private static Bitmap convertToBitmap(Mat image, int colorConversionCode, Bitmap target) {
+        Mat conversionBuffer = new Mat();
+
+        try {
+            Imgproc.cvtColor(image, conversionBuffer, colorConversionCode);
+
+            return matToBitmapRgba(conversionBuffer, target);
+        } finally {
+            conversionBuffer.release();
+        }
+    }
+
+    /**
+     * Returns the target Bitmap if it can hold the data of the Matrix, otherwise a new Bitmap.
+     *
+     * @param image  The Matrix the Bitmap is created for
+     * @param target The Bitmap supplied by the caller, or null
+     * @return A mutable ARGB_8888 Bitmap with the size of the Matrix
+     */
+    private static Bitmap getCompatibleBitmap(Mat image, Bitmap target) {
+        if (target != null && target.isMutable()
+                && target.getConfig() == Bitmap.Config.ARGB_8888
+                && target.getWidth() == image.cols() && target.getHeight() == image.rows())
+            return target;
+
+        return Bitmap.createBitmap(image.cols(), image.rows(), Bitmap.Config.ARGB_8888);
+    }
 }
@@ -0,0 +1,157 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes a snapshot of a MetricsRegistry to a local file (JSON or CSV).
+ * <p>
+ * The snapshot is written to a temporary file first which then replaces the file,
+ * so readers never see a partially written snapshot. The snapshots are written
+ * by a daemon thread, the recording of the metrics is not blocked.
+ */
+public class MetricsFileExporter {
+
+    /**
+     * Defines the format of the written snapshots.
+     */
+    public enum Format {
+        Json,
+        Csv,
+    }
+
+    /**
+     * The default period in seconds between two snapshots.
+     */
+    public static final long PERIOD_SECONDS_DEFAULT = 30;
+
+    /**
+     * The registry of which the snapshots are written.
+     */
+    private final MetricsRegistry registry;
+
+    /**
+     * The file the snapshots are written to.
+     */
+    private final File file;
+
+    /**
+     * The format of the snapshots.
+     */
+    private final Format format;
+
+    /**
+     * The executor writing the snapshots, null if the exporter is not started.
+     */
+    private ScheduledExecutorService executor = null;
+
+    /**
+     * Creates a new exporter, the directory of the file is created if it does not exist.
+     *
+     * @param registry the registry of which the snapshots are written
+     * @param file     the file the snapshots are written to
+     * @param format   the format of the snapshots
+     */
+    public MetricsFileExporter(MetricsRegistry registry, File file, Format format) {
+        if (registry == null)
+            throw new IllegalArgumentException("registry must not be null!");
+        if (file == null)
+            throw new IllegalArgumentException("file must not be null!");
+        if (format == null)
+            throw new IllegalArgumentException("format must not be null!");
+
+        this.registry = registry;
+        this.file = file;
+        this.format = format;
+    }
+
+    /**
+     * Starts writing a snapshot every periodSeconds. Does nothing if the exporter is already started.
+     *
+     * @param periodSeconds the period in seconds between two snapshots, at least 1
+     */
+    public synchronized void start(long periodSeconds) {
+        if (periodSeconds < 1)
+            throw new IllegalArgumentException("periodSeconds must be at least 1!");
+
+        if (executor != null)
+            return;
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MetricsFileExporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    export();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops writing snapshots and writes a last snapshot (on the calling thread).
+     * Does nothing if the exporter is not started.
+     */
+    public synchronized void stop() {
+        if (executor == null)
+            return;
+
+        executor.shutdown();
+        executor = null;
+
+        try {
+            export();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the registry to the file.
+     *
+     * @throws IOException if the snapshot could not be written
+     */
+    public void export() throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("could not create the directory " + directory);
+
+        File tmpFile = new File(directory, file.getName() + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+
+        try {
+            if (format == Format.Csv)
+                registry.writeCsv(writer);
+            else
+                registry.writeJson(writer);
+        } finally {
+            writer.close();
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            //renameTo does not replace existing files on all platforms
+            file.delete();
+
+            if (!tmpFile.renameTo(file))
+                throw new IOException("could not write " + file);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry of named counters (StripedCounter) and histograms (LatencyHistogram).
+ * <p>
+ * The metrics are created on first use and are never removed. Looking up and updating
+ * metrics is lock-free, so they can be updated from the camera and detection threads.
+ * Callers on hot paths should keep the returned metric instead of looking it up every time.
+ * <p>
+ * The default registry (getDefault()) collects the metrics of the whole process,
+ * e.g. the detection latency of every ResistorDetector and the delivered and dropped camera frames.
+ * A snapshot of all metrics can be written as JSON or CSV (see MetricsFileExporter).
+ */
+public class MetricsRegistry {
+
+    /**
+     * The percentiles of the histograms written to the snapshots.
+     */
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    /**
+     * The registry of the whole process.
+     */
+    private static final MetricsRegistry DEFAULT_REGISTRY = new MetricsRegistry();
+
+    /**
+     * The counters by name.
+     */
+    private final ConcurrentHashMap<String, StripedCounter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * The histograms by name.
+     */
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the registry of the whole process.
+     *
+     * @return the default registry
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT_REGISTRY;
+    }
+
+    /**
+     * Returns the counter with the given name, the counter is created if it does not exist.
+     *
+     * @param name the name of the counter
+     * @return the counter with the given name
+     */
+    public StripedCounter counter(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("name must not be null!");
+
+        StripedCounter counter = counters.get(name);
+
+        if (counter == null) {
+            StripedCounter newCounter = new StripedCounter();
+            counter = counters.putIfAbsent(name, newCounter);
+
+            if (counter == null)
+                counter = newCounter;
+        }
+
+        return counter;
+    }
+
+    /**
+     * Returns the histogram with the given name, the histogram is created if it does not exist.
+     *
+     * @param name the name of the histogram
+     * @return the histogram with the given name
+     */
+    public LatencyHistogram histogram(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("name must not be null!");
+
+        LatencyHistogram histogram = histograms.get(name);
+
+        if (histogram == null) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, newHistogram);
+
+            if (histogram == null)
+                histogram = newHistogram;
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Writes a snapshot of all metrics as JSON object:
+     * {"timestamp":..., "counters":{"name":value, ...}, "histograms":{"name":{"count":..., "mean":..., "max":..., "p50":..., ...}, ...}}
+     * The metrics are sorted by name.
+     *
+     * @param writer the writer the snapshot is written to
+     * @throws IOException if the snapshot could not be written
+     */
+    public void writeJson(Writer writer) throws IOException {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("{\n  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n  \"counters\": {");
+
+        boolean first = true;
+        for (Map.Entry<String, StripedCounter> entry : new TreeMap<>(counters).entrySet()) {
+            builder.append(first ? "\n" : ",\n");
+            builder.append("    ").append(toJsonString(entry.getKey())).append(": ").append(entry.getValue().sum());
+            first = false;
+        }
+
+        builder.append("\n  },\n  \"histograms\": {");
+
+        first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+
+            builder.append(first ? "\n" : ",\n");
+            builder.append("    ").append(toJsonString(entry.getKey())).append(": {")
+                    .append("\"count\": ").append(snapshot.getCount())
+                    .append(", \"mean\": ").append(String.format(Locale.US, "%.1f", snapshot.getMean()))
+                    .append(", \"max\": ").append(snapshot.getMax());
+
+            for (double percentile : PERCENTILES) {
+                builder.append(", \"p").append((int) percentile).append("\": ").append(snapshot.getPercentile(percentile));
+            }
+
+            builder.append('}');
+            first = false;
+        }
+
+        builder.append("\n  }\n}\n");
+
+        writer.write(builder.toString());
+    }
+
+    /**
+     * Writes a snapshot of all metrics as CSV with the header
+     * timestamp,type,name,count,mean,max,p50,p95,p99.
+     * Counters only have a count. The metrics are sorted by name.
+     *
+     * @param writer the writer the snapshot is written to
+     * @throws IOException if the snapshot could not be written
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        long timestamp = System.currentTimeMillis();
+
+        builder.append("timestamp,type,name,count,mean,max");
+        for (double percentile : PERCENTILES) {
+            builder.append(",p").append((int) percentile);
+        }
+        builder.append('\n');
+
+        for (Map.Entry<String, StripedCounter> entry : new TreeMap<>(counters).entrySet()) {
+            builder.append(timestamp).append(",counter,").append(entry.getKey()).append(',').append(entry.getValue().sum());
+
+            for (int i = 0; i < 2 + PERCENTILES.length; i++) {
+                builder.append(',');
+            }
+
+            builder.append('\n');
+        }
+
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+
+            builder.append(timestamp).append(",histogram,").append(entry.getKey())
+                    .append(',').append(snapshot.getCount())
+                    .append(',').append(String.format(Locale.US, "%.1f", snapshot.getMean()))
+                    .append(',').append(snapshot.getMax());
+
+            for (double percentile : PERCENTILES) {
+                builder.append(',').append(snapshot.getPercentile(percentile));
+            }
+
+            builder.append('\n');
+        }
+
+        writer.write(builder.toString());
+    }
+
+    /**
+     * Returns the given text as JSON string (with quotes, quotes and backslashes escaped).
+     *
+     * @param text the text
+     * @return the JSON string
+     */
+    private static String toJsonString(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
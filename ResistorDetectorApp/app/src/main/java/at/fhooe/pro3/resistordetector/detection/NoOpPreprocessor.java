@@ -0,0 +1,22 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import org.opencv.core.Mat;
+
+/**
+ * This Preprocessor does not change the image.
+ * If the source and the destination are the same Matrix, nothing is done at all.
+ */
+public class NoOpPreprocessor implements Preprocessor {
+
+    /**
+     * Copies the source image into the destination, if they are not the same Matrix.
+     *
+     * @param src The image that should be processed (CV_8UC3, BGR colors).
+     * @param dst The Matrix the result is written to, it gets the size and type of the source image.
+     */
+    @Override
+    public void apply(Mat src, Mat dst) {
+        if (src != dst)
+            src.copyTo(dst);
+    }
+}
@@ -0,0 +1,25 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import org.opencv.core.Mat;
+
+/**
+ * This interface defines a preprocessing step (e.g. a noise filter) which is applied
+ * on the image of the resistor before the colors are detected.
+ * <p>
+ * Every ResistorDetector is created with a Preprocessor. The implementations trade
+ * latency for noise robustness, so the Preprocessor can be chosen per device class
+ * and different Preprocessors can be compared on the same images.
+ * <p>
+ * Implementations may reuse buffers between calls, an instance must only be used by one detector.
+ */
+public interface Preprocessor {
+
+    /**
+     * Applies the preprocessing step on the source image and writes the result into the destination image.
+     * The source and the destination may be the same Matrix (in place).
+     *
+     * @param src The image that should be processed (CV_8UC3, BGR colors).
+     * @param dst The Matrix the result is written to, it gets the size and type of the source image.
+     */
+    void apply(Mat src, Mat dst);
+}
@@ -1,12 +1,26 @@
 package at.fhooe.pro3.resistordetector.detection;
 
 import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This abstract class defines the basic ResistorDetector.
  * All ResistorDetectors use this class as baseClass.
  * <p>
  * The ResistorDetector uses a ResultListener to return the result of the detection.
+ * The image is preprocessed (e.g. filtered) with the Preprocessor given at construction.
+ * <p>
+ * Every detector records its detection latency, the number of detections without a resistance value
+ * and (for the column based detectors) the ratio of columns with an unknown color
+ * in the default MetricsRegistry. The names of the metrics end with the class name of the detector.
+ * <p>
+ * The settings (e.g. setNumberOfBands) can be changed from another thread than the detection thread
+ * (e.g. the UI thread while the LiveDetector is running), the fields are volatile so the change is visible
+ * to the next detection. A detection which is already running can see the old or the new value.
  * <p>
  * Created by stefan on 18.06.2017.
  */
@@ -27,6 +41,23 @@ public abstract class ResistorDetector {
         void resultReady(DetectionResult detectionResult);
     }
 
+    /**
+     * This Interface defines the methods a StageListener must implement.
+     * The class implementing this interface is notified about the begin and end
+     * of every detection stage and of every whole detection (e.g. to record a trace).
+     */
+    public interface StageListener {
+        /**
+         * This method is called on the thread of the detection when a stage or a detection finished.
+         * It is called during the detection, so it should return quickly and not allocate memory.
+         *
+         * @param name          the name of the stage (see DetectionResult.Stage) or the class name of the detector for a whole detection
+         * @param startNanoTime the System.nanoTime() when the stage started
+         * @param endNanoTime   the System.nanoTime() when the stage finished
+         */
+        void stageFinished(String name, long startNanoTime, long endNanoTime);
+    }
+
     /**
      * Defines the number of bands on the resistor.
      * This includes the tolerance ring.
@@ -48,10 +79,83 @@ public abstract class ResistorDetector {
         Five,
     }
 
+    /**
+     * Defines which DetectionStepDetails (images of the detection steps) are created.
+     */
+    public enum DetailLevel {
+        /**
+         * No DetectionStepDetails are created, no Matrices are allocated for visualization.
+         */
+        None,
+
+        /**
+         * The main steps of the detection are visualized.
+         */
+        Summary,
+
+        /**
+         * All steps of the detection are visualized, including intermediate results.
+         */
+        Verbose,
+    }
+
+    /**
+     * Defines the default value for (see constant name).
+     * The image is not reduced by default (see setTargetColumnsPerBand).
+     */
+    public static final int TARGET_COLUMNS_PER_BAND_DEFAULT = 0;
+
+    /**
+     * Defines the minimum value for (see constant name).
+     */
+    public static final int TARGET_COLUMNS_PER_BAND_MIN_VALUE = 0;
+
+    /**
+     * Defines the maximum value for (see constant name).
+     */
+    public static final int TARGET_COLUMNS_PER_BAND_MAX_VALUE = 64;
+
     /**
      * The number of bands the detection process should assume the resistor has.
      */
-    protected NumberOfBands numberOfBands = NumberOfBands.Auto;
+    protected volatile NumberOfBands numberOfBands = NumberOfBands.Auto;
+
+    /**
+     * Defines which DetectionStepDetails the detection process creates.
+     */
+    protected volatile DetailLevel detailLevel = DetailLevel.Summary;
+
+    /**
+     * Defines if the runtime of the detection stages is measured (see DetectionResult.Stage).
+     */
+    protected volatile boolean stageTimingEnabled = false;
+
+    /**
+     * The listener notified about the begin and end of the stages, null if there is no listener.
+     */
+    protected volatile StageListener stageListener = null;
+
+    /**
+     * The number of image columns per resistor band the image is reduced to
+     * before the detection, 0 if the image should not be reduced.
+     */
+    protected volatile int targetColumnsPerBand = TARGET_COLUMNS_PER_BAND_DEFAULT;
+
+    /**
+     * The executor used to process independent parts of the detection (e.g. column strips) in parallel.
+     * If null, the detection runs completely on the calling thread.
+     */
+    protected volatile ExecutorService parallelExecutor = null;
+
+    /**
+     * The quality gate which checks the images before the detection, null if every image is detected.
+     */
+    private volatile FrameQualityGate frameQualityGate = null;
+
+    /**
+     * The Preprocessor applied on the image before the colors are detected.
+     */
+    protected final Preprocessor preprocessor;
 
     /**
      * The result listener which gets notified about results.
@@ -59,16 +163,89 @@ public abstract class ResistorDetector {
     private ResultListener resultListener = null;
 
     /**
-     * Creates a new ResistorDetector with the given ResultListener.
+     * The class name of the detector, used for the metrics and the StageListener.
+     */
+    private final String detectorName;
+
+    /**
+     * The latency of the detections in microseconds (from detectResistorValue to the notification of the listener).
+     */
+    private final LatencyHistogram latencyHistogram;
+
+    /**
+     * The number of detections.
+     */
+    private final StripedCounter detectionCounter;
+
+    /**
+     * The number of detections without a resistance value.
+     */
+    private final StripedCounter unknownResistanceCounter;
+
+    /**
+     * The number of classified columns.
+     */
+    private final StripedCounter columnCounter;
+
+    /**
+     * The number of classified columns with the color ColorName.Unknown.
+     */
+    private final StripedCounter unknownColumnCounter;
+
+    /**
+     * The percentage of columns with the color ColorName.Unknown per detection.
+     */
+    private final LatencyHistogram unknownColumnPercentHistogram;
+
+    /**
+     * The start time (System.nanoTime) of the running detection.
+     */
+    private long detectionStartTime = 0;
+
+    /**
+     * Creates a new ResistorDetector with the given ResultListener and a BilateralFilterPreprocessor.
      * The resultListener is notified when a result is ready.
      *
      * @param resultListener The resultListener that should be notified about detection results.
      */
     public ResistorDetector(ResultListener resultListener) {
+        this(resultListener, new BilateralFilterPreprocessor());
+    }
+
+    /**
+     * Creates a new ResistorDetector with the given ResultListener and Preprocessor.
+     * The resultListener is notified when a result is ready.
+     *
+     * @param resultListener The resultListener that should be notified about detection results.
+     * @param preprocessor   The Preprocessor applied on the image before the colors are detected.
+     */
+    public ResistorDetector(ResultListener resultListener, Preprocessor preprocessor) {
         if (resultListener == null)
             throw new IllegalArgumentException("resultListener must not be null!");
+        if (preprocessor == null)
+            throw new IllegalArgumentException("preprocessor must not be null!");
 
         this.resultListener = resultListener;
+        this.preprocessor = preprocessor;
+
+        MetricsRegistry metricsRegistry = MetricsRegistry.getDefault();
+        detectorName = getClass().getSimpleName();
+
+        latencyHistogram = metricsRegistry.histogram("detection.latency_us." + detectorName);
+        detectionCounter = metricsRegistry.counter("detection.count." + detectorName);
+        unknownResistanceCounter = metricsRegistry.counter("detection.unknown_resistance." + detectorName);
+        columnCounter = metricsRegistry.counter("columns.count." + detectorName);
+        unknownColumnCounter = metricsRegistry.counter("columns.unknown." + detectorName);
+        unknownColumnPercentHistogram = metricsRegistry.histogram("columns.unknown_percent." + detectorName);
+    }
+
+    /**
+     * Returns the Preprocessor applied on the image before the colors are detected.
+     *
+     * @return the Preprocessor of this detector
+     */
+    public Preprocessor getPreprocessor() {
+        return preprocessor;
     }
 
     /**
@@ -80,8 +257,260 @@ public abstract class ResistorDetector {
         this.numberOfBands = numberOfBands;
     }
 
+    /**
+     * Sets which DetectionStepDetails the detection process creates.
+     *
+     * @param detailLevel the level of the DetectionStepDetails, DetailLevel.None for no details at all
+     */
+    public void setDetailLevel(DetailLevel detailLevel) {
+        if (detailLevel == null)
+            throw new IllegalArgumentException("detailLevel must not be null!");
+
+        this.detailLevel = detailLevel;
+    }
+
+    /**
+     * Returns which DetectionStepDetails the detection process creates.
+     *
+     * @return the level of the DetectionStepDetails
+     */
+    public DetailLevel getDetailLevel() {
+        return detailLevel;
+    }
+
+    /**
+     * Enables or disables the measurement of the runtime of the detection stages.
+     * The runtimes are added to the DetectionResult (see DetectionResult.getStageTime).
+     * If disabled, no time is measured and nothing is allocated.
+     *
+     * @param stageTimingEnabled true to measure the runtime of the stages, false otherwise
+     */
+    public void setStageTimingEnabled(boolean stageTimingEnabled) {
+        this.stageTimingEnabled = stageTimingEnabled;
+    }
+
+    /**
+     * Returns if the runtime of the detection stages is measured.
+     *
+     * @return true if the runtime of the stages is measured, false otherwise
+     */
+    public boolean isStageTimingEnabled() {
+        return stageTimingEnabled;
+    }
+
+    /**
+     * Sets the listener notified about the begin and end of the detection stages and of every detection.
+     * The stage times are measured if a listener is set, even if the stage timing is disabled.
+     *
+     * @param stageListener the listener, or null to remove the listener
+     */
+    public void setStageListener(StageListener stageListener) {
+        this.stageListener = stageListener;
+    }
+
+    /**
+     * Sets the number of image columns per resistor band (the target band pixel density)
+     * the image is reduced to before the detection. Detectors which support the reduced
+     * resolution first detect the resistor in the reduced image and only use the image
+     * with full resolution if too few bands for the numberOfBands were detected.
+     * The pixel thresholds of the detectors (e.g. the minimum band width or area) are scaled
+     * with the reduction, the Preprocessor is applied unchanged.
+     * <p>
+     * The bands and the gaps between them are assumed to be about equally wide, so an image
+     * of a resistor with n bands is about 2n + 1 band widths wide.
+     *
+     * @param targetColumnsPerBand the number of columns per band, 0 to always use the full resolution
+     */
+    public void setTargetColumnsPerBand(int targetColumnsPerBand) {
+        if (targetColumnsPerBand < TARGET_COLUMNS_PER_BAND_MIN_VALUE || targetColumnsPerBand > TARGET_COLUMNS_PER_BAND_MAX_VALUE) {
+            throw new IllegalArgumentException("targetColumnsPerBand must be between "
+                    + TARGET_COLUMNS_PER_BAND_MIN_VALUE + " and " + TARGET_COLUMNS_PER_BAND_MAX_VALUE);
+        }
+
+        this.targetColumnsPerBand = targetColumnsPerBand;
+    }
+
+    /**
+     * Sets the executor used to process independent parts of the detection in parallel
+     * (e.g. a ForkJoinPool). Detectors which do not support parallel processing ignore it.
+     * The executor is not shut down by the detector.
+     *
+     * @param parallelExecutor the executor used for parallel processing, or null to disable parallel processing
+     */
+    public void setParallelExecutor(ExecutorService parallelExecutor) {
+        this.parallelExecutor = parallelExecutor;
+    }
+
+    /**
+     * Sets the quality gate which checks the images before the detection. Images rejected by the gate
+     * are not detected, the listener receives a result without resistance value and with the verdict
+     * of the gate instead (see DetectionResult.getQualityVerdict). Rejected images are not counted
+     * as detections.
+     *
+     * @param frameQualityGate the quality gate, or null to detect every image
+     */
+    public void setFrameQualityGate(FrameQualityGate frameQualityGate) {
+        this.frameQualityGate = frameQualityGate;
+    }
+
+    /**
+     * Calculates the resistance of the resistor based on the colors of the resistor bands.
+     * If the detected bands do not match the numberOfBands, the first three bands are decoded
+     * as two digits and the multiplier.
+     *
+     * @param bands A list of resistor band info elements.
+     * @return the calculated resistance value, or -1 if the calculation is not possible.
+     */
+    protected int calculateResistance(List<BandInfo> bands) {
+        if (numberOfBands == NumberOfBands.Four && bands.size() == 4) {
+            int firstDigit = ColorValues.getValueForColor(bands.get(0).getColor());
+            int secondDigit = ColorValues.getValueForColor(bands.get(1).getColor());
+            int multiplier = ColorValues.getValueForColor(bands.get(2).getColor());
+            //int tolerance = ColorValues.getValueForColor(bands.get(3));
+
+            int resistance = (int) ((firstDigit * 10 + secondDigit) * Math.pow(10, multiplier));
+
+            return resistance;
+        } else if (numberOfBands == NumberOfBands.Five && bands.size() == 5) {
+            int firstDigit = ColorValues.getValueForColor(bands.get(0).getColor());
+            int secondDigit = ColorValues.getValueForColor(bands.get(1).getColor());
+            int thirdDigit = ColorValues.getValueForColor(bands.get(2).getColor());
+            int multiplier = ColorValues.getValueForColor(bands.get(3).getColor());
+            //int tolerance = ColorValues.getValueForColor(bands.get(4));
+
+            int resistance = (int) ((firstDigit * 100 + secondDigit * 10 + thirdDigit) * Math.pow(10, multiplier));
+
+            return resistance;
+        } else if (bands.size() >= 3) {
+            int firstDigit = ColorValues.getValueForColor(bands.get(0).getColor());
+            int secondDigit = ColorValues.getValueForColor(bands.get(1).getColor());
+            int multiplier = ColorValues.getValueForColor(bands.get(2).getColor());
+            //int tolerance = ColorValues.getValueForColor(bands.get(3));
+
+            int resistance = (int) ((firstDigit * 10 + secondDigit) * Math.pow(10, multiplier));
+
+            return resistance;
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns a new image reduced to the targetColumnsPerBand (resized with Imgproc.INTER_AREA),
+     * or null if the image is not larger than the target size or reducing is disabled.
+     * <p>
+     * See also:
+     * - Imgproc.resize: http://docs.opencv.org/2.4/modules/imgproc/doc/geometric_transformations.html#resize
+     *
+     * @param resistorImage the image of the resistor
+     * @return a new reduced image, or null if the full resolution should be used
+     */
+    protected Mat newReducedImage(Mat resistorImage) {
+        if (targetColumnsPerBand == 0)
+            return null;
+
+        int expectedBands = numberOfBands == NumberOfBands.Four ? 4 : 5;
+        int targetWidth = targetColumnsPerBand * (2 * expectedBands + 1);
+
+        if (targetWidth >= resistorImage.cols())
+            return null;
+
+        int targetHeight = Math.max(2, (int) Math.round((double) resistorImage.rows() * targetWidth / resistorImage.cols()));
+
+        Mat reducedImage = MatFactory.newMat();
+        Imgproc.resize(resistorImage, reducedImage, new Size(targetWidth, targetHeight), 0, 0, Imgproc.INTER_AREA);
+
+        return reducedImage;
+    }
+
+    /**
+     * Checks if the number of detected bands is enough for the numberOfBands.
+     * The tolerance band (e.g. gold or silver) is not one of the detected colors,
+     * so one band less than the numberOfBands is accepted.
+     * With NumberOfBands.Auto at least three bands (enough to calculate a resistance) are required.
+     *
+     * @param bandCount the number of detected bands
+     * @return true if enough bands were detected, false otherwise
+     */
+    protected boolean isBandCountAccepted(int bandCount) {
+        switch (numberOfBands) {
+            case Four:
+                return bandCount >= 3;
+            case Five:
+                return bandCount >= 4;
+            case Auto:
+            default:
+                return bandCount >= 3;
+        }
+    }
+
+    /**
+     * Checks if the DetectionStepDetails of the given level should be created.
+     *
+     * @param level the level of the DetectionStepDetail
+     * @return true if the detailLevel includes the given level, false otherwise
+     */
+    protected boolean isDetailLevelEnabled(DetailLevel level) {
+        return level != DetailLevel.None && detailLevel.ordinal() >= level.ordinal();
+    }
+
+    /**
+     * Returns the start time of a stage, to be passed to recordStageTime after the stage.
+     *
+     * @return System.nanoTime() if the stage timing is enabled or a StageListener is set, 0 otherwise
+     */
+    protected long startStage() {
+        return stageTimingEnabled || stageListener != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the runtime of a stage to the DetectionResult if the stage timing is enabled
+     * and notifies the StageListener (if set).
+     *
+     * @param detectionResult the result of the running detection process
+     * @param stage           the stage that finished
+     * @param startTime       the start time of the stage returned by startStage()
+     */
+    protected void recordStageTime(DetectionResult detectionResult, DetectionResult.Stage stage, long startTime) {
+        StageListener listener = stageListener;
+
+        if (!stageTimingEnabled && listener == null)
+            return;
+
+        long endTime = System.nanoTime();
+
+        if (stageTimingEnabled)
+            detectionResult.addStageTime(stage, endTime - startTime);
+
+        if (listener != null)
+            listener.stageFinished(stage.name(), startTime, endTime);
+    }
+
+    /**
+     * Records the number of columns and the number of columns with the color ColorName.Unknown
+     * of a detection in the metrics of this detector.
+     *
+     * @param columnColorNames the ColorName of each column
+     */
+    protected void recordColumnColorNames(ColorName[] columnColorNames) {
+        if (columnColorNames.length == 0)
+            return;
+
+        int unknownColumns = 0;
+
+        for (ColorName columnColorName : columnColorNames) {
+            if (columnColorName == ColorName.Unknown)
+                unknownColumns++;
+        }
+
+        columnCounter.add(columnColorNames.length);
+        unknownColumnCounter.add(unknownColumns);
+        unknownColumnPercentHistogram.record(unknownColumns * 100 / columnColorNames.length);
+    }
+
     /**
      * Notifies the listener about a detectionResult.
+     * The latency of the detection is recorded before the listener is notified.
      *
      * @param detectionResult the result of the detection process that is sent to the listener.
      */
@@ -89,9 +518,46 @@ public abstract class ResistorDetector {
         if (detectionResult == null)
             throw new IllegalArgumentException("detectionResult must not be null!");
 
+        long detectionEndTime = System.nanoTime();
+
+        latencyHistogram.record((detectionEndTime - detectionStartTime) / 1000);
+        detectionCounter.increment();
+
+        if (stageListener != null)
+            stageListener.stageFinished(detectorName, detectionStartTime, detectionEndTime);
+
+        if (detectionResult.getResistorValue() == DetectionResult.UNKNOWN_RESISTANCE_VALUE)
+            unknownResistanceCounter.increment();
+
         resultListener.resultReady(detectionResult);
     }
 
+    /**
+     * Performs the resistor detection on the given resistorImage (see performDetection).
+     * If a FrameQualityGate is set and rejects the image, the detection is skipped.
+     * <p>
+     * When the detection process finished, the listener is notified about the result.
+     *
+     * @param resistorImage A OpenCV Matrix with the resistorImage, with BGR colors.
+     */
+    public void detectResistorValue(Mat resistorImage) {
+        if (frameQualityGate != null) {
+            FrameQualityGate.Verdict verdict = frameQualityGate.check(resistorImage);
+
+            if (verdict != FrameQualityGate.Verdict.Accepted) {
+                DetectionResult rejectedResult = new DetectionResult();
+                rejectedResult.setQualityVerdict(verdict);
+
+                resultListener.resultReady(rejectedResult);
+                return;
+            }
+        }
+
+        detectionStartTime = System.nanoTime();
+
+        performDetection(resistorImage);
+    }
+
     /**
      * Abstract methods that performs the resistor detection.
      * Subclasses implement this method and perform the detection on the given resistorImage.
@@ -101,5 +567,5 @@ public abstract class ResistorDetector {
      *
      * @param resistorImage A OpenCV Matrix with the resistorImage, with BGR colors.
      */
-    public abstract void detectResistorValue(Mat resistorImage);
+    protected abstract void performDetection(Mat resistorImage);
 }
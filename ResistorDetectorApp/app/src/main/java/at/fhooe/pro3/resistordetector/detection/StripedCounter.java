@@ -0,0 +1,104 @@
+package at.fhooe.pro3.resistordetector.detection;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free counter which can be incremented by several threads with little contention.
+ * <p>
+ * The counter is split into stripes (cells), every thread adds to the stripe selected by its thread id.
+ * Every stripe is placed in its own cache line, so threads on different cores do not invalidate
+ * each others cache lines (false sharing). The value of the counter is the sum of all stripes.
+ * <p>
+ * This is a simple replacement for java.util.concurrent.atomic.LongAdder, which is not available
+ * on all supported Android versions.
+ */
+public class StripedCounter {
+
+    /**
+     * The number of longs in one cache line (64 bytes), only the first long of a cache line is used.
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * The maximum number of stripes.
+     */
+    private static final int MAX_STRIPES = 64;
+
+    /**
+     * The stripes, stripe i is at index i * PADDING.
+     */
+    private final AtomicLongArray cells;
+
+    /**
+     * The number of stripes - 1 (the number of stripes is a power of two).
+     */
+    private final int stripeMask;
+
+    /**
+     * Creates a new counter with one stripe per available processor.
+     */
+    public StripedCounter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new counter with the given number of stripes (rounded up to a power of two, at most MAX_STRIPES).
+     *
+     * @param concurrency the expected number of threads updating the counter at the same time, at least 1
+     */
+    public StripedCounter(int concurrency) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("concurrency must be at least 1!");
+
+        int stripes = 1;
+        while (stripes < concurrency && stripes < MAX_STRIPES) {
+            stripes <<= 1;
+        }
+
+        cells = new AtomicLongArray(stripes * PADDING);
+        stripeMask = stripes - 1;
+    }
+
+    /**
+     * Adds one to the counter.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Adds the given value to the counter.
+     *
+     * @param value the value to add
+     */
+    public void add(long value) {
+        cells.getAndAdd(getStripeIndex(), value);
+    }
+
+    /**
+     * Returns the value of the counter (the sum of all stripes).
+     * Updates during the summation may or may not be included.
+     *
+     * @return the value of the counter
+     */
+    public long sum() {
+        long sum = 0;
+
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+
+        return sum;
+    }
+
+    /**
+     * Returns the index of the stripe of the calling thread.
+     *
+     * @return the index of the stripe in the cells array
+     */
+    private int getStripeIndex() {
+        int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+
+        return ((hash >>> 16) & stripeMask) * PADDING;
+    }
+}
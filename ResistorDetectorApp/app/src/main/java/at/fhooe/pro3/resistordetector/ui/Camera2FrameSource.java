@@ -0,0 +1,463 @@
+package at.fhooe.pro3.resistordetector.ui;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import at.fhooe.pro3.resistordetector.camera.FrameSource;
+
+/**
+ * FrameSource of the back camera using the android.hardware.camera2 API.
+ * <p>
+ * The frames are read from an ImageReader in the YUV_420_888 format. The planes of the images are copied
+ * from their ByteBuffers into a reused byte[] in the NV21 layout (the row and pixel strides of the planes
+ * are respected), which is then put into the frame matrix. If the U and V planes share one buffer in the
+ * NV21 layout (pixel stride 2, the V plane starts one byte before the U plane, the common case), the VU rows
+ * are read with bulk gets, otherwise the chroma values are de-interleaved one by one.
+ * OpenCV 3.2 has no Mat constructor which wraps a ByteBuffer and Mat.put only accepts Java arrays, so each
+ * frame is still copied twice. This source saves no copies compared to the LegacyCameraFrameSource
+ * (one copy of the preview callback byte[]), it is experimental and not a performance option.
+ * The camera and the ImageReader run on a separate handler thread.
+ * <p>
+ * Zoom and flash are not supported by this source.
+ */
+public class Camera2FrameSource implements FrameSource, FrameSource.Frame, ImageReader.OnImageAvailableListener {
+
+    private static final String TAG = "Camera2FrameSource";
+
+    /**
+     * The maximum time in milliseconds to wait until the camera is opened.
+     */
+    private static final long OPEN_TIMEOUT_MILLISECONDS = 2500;
+
+    /**
+     * The camera manager of the system.
+     */
+    private final CameraManager cameraManager;
+
+    /**
+     * The thread the camera callbacks and the frames are handled on, null if the source is not open.
+     */
+    private HandlerThread cameraThread = null;
+
+    /**
+     * The handler of the cameraThread.
+     */
+    private Handler cameraHandler = null;
+
+    /**
+     * The opened camera, null if the source is not open.
+     */
+    private volatile CameraDevice cameraDevice = null;
+
+    /**
+     * The characteristics of the opened camera.
+     */
+    private CameraCharacteristics cameraCharacteristics = null;
+
+    /**
+     * The capture session of the started source, null if the source is not started.
+     */
+    private volatile CameraCaptureSession captureSession = null;
+
+    /**
+     * The image reader receiving the frames, null if the source is not started.
+     */
+    private ImageReader imageReader = null;
+
+    /**
+     * The callback receiving the frames, null if the source is not started.
+     */
+    private volatile FrameCallback frameCallback = null;
+
+    /**
+     * The image which is currently delivered.
+     */
+    private Image currentImage = null;
+
+    /**
+     * The frame in the NV21 layout, reused for every image.
+     */
+    private byte[] frameData = null;
+
+    /**
+     * A row of a chroma plane, reused for every image.
+     */
+    private byte[] chromaRow = null;
+
+    /**
+     * True if the V and U planes of the images share one buffer in the NV21 layout,
+     * null if it is not checked yet (checked once with the first image after start).
+     */
+    private Boolean chromaInterleaved = null;
+
+    /**
+     * Creates a new source.
+     *
+     * @param context the context used to get the camera manager
+     */
+    public Camera2FrameSource(Context context) {
+        if (context == null)
+            throw new IllegalArgumentException("context must not be null!");
+
+        cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+    }
+
+    /**
+     * Opens the first back facing camera and waits until it is opened.
+     *
+     * @return true if a camera was opened, false otherwise
+     */
+    @Override
+    public boolean open() {
+        cameraThread = new HandlerThread(TAG);
+        cameraThread.start();
+        cameraHandler = new Handler(cameraThread.getLooper());
+
+        try {
+            String cameraId = null;
+
+            for (String id : cameraManager.getCameraIdList()) {
+                CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(id);
+                Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+
+                if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
+                    cameraId = id;
+                    cameraCharacteristics = characteristics;
+                    break;
+                }
+            }
+
+            if (cameraId == null)
+                return false;
+
+            final CountDownLatch openedLatch = new CountDownLatch(1);
+
+            cameraManager.openCamera(cameraId, new CameraDevice.StateCallback() {
+                @Override
+                public void onOpened(CameraDevice camera) {
+                    cameraDevice = camera;
+                    openedLatch.countDown();
+                }
+
+                @Override
+                public void onDisconnected(CameraDevice camera) {
+                    camera.close();
+                    openedLatch.countDown();
+                }
+
+                @Override
+                public void onError(CameraDevice camera, int error) {
+                    Log.e(TAG, "Camera error: " + error);
+                    camera.close();
+                    openedLatch.countDown();
+                }
+            }, cameraHandler);
+
+            openedLatch.await(OPEN_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
+        } catch (SecurityException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        return cameraDevice != null;
+    }
+
+    /**
+     * Returns the sizes of the camera for the YUV_420_888 format.
+     *
+     * @return the supported frame sizes
+     */
+    @Override
+    public List<Size> getSupportedFrameSizes() {
+        StreamConfigurationMap map = cameraCharacteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+
+        if (map == null)
+            return Collections.emptyList();
+
+        List<Size> frameSizes = new ArrayList<>();
+
+        for (android.util.Size outputSize : map.getOutputSizes(ImageFormat.YUV_420_888)) {
+            frameSizes.add(new Size(outputSize.getWidth(), outputSize.getHeight()));
+        }
+
+        return frameSizes;
+    }
+
+    /**
+     * Creates the ImageReader and the capture session and starts the repeating capture request.
+     * The session is configured asynchronously, errors are logged.
+     *
+     * @param frameSize   the size of the frames
+     * @param bufferCount the maximum number of images of the ImageReader
+     * @param callback    the callback receiving the frames
+     * @return true if the capture session is configured, false otherwise
+     */
+    @Override
+    public boolean start(Size frameSize, int bufferCount, FrameCallback callback) {
+        if (callback == null)
+            throw new IllegalArgumentException("callback must not be null!");
+
+        int width = (int) frameSize.width;
+        int height = (int) frameSize.height;
+
+        frameData = new byte[width * height * 3 / 2];
+        chromaRow = new byte[width];
+        chromaInterleaved = null;
+        frameCallback = callback;
+
+        imageReader = ImageReader.newInstance(width, height, ImageFormat.YUV_420_888, bufferCount);
+        imageReader.setOnImageAvailableListener(this, cameraHandler);
+
+        try {
+            final CaptureRequest.Builder requestBuilder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            requestBuilder.addTarget(imageReader.getSurface());
+            requestBuilder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_VIDEO);
+
+            cameraDevice.createCaptureSession(Collections.singletonList(imageReader.getSurface()), new CameraCaptureSession.StateCallback() {
+                @Override
+                public void onConfigured(CameraCaptureSession session) {
+                    captureSession = session;
+
+                    try {
+                        session.setRepeatingRequest(requestBuilder.build(), null, cameraHandler);
+                    } catch (CameraAccessException e) {
+                        e.printStackTrace();
+                    } catch (IllegalStateException e) {
+                        //the camera was closed in the meantime
+                        e.printStackTrace();
+                    }
+                }
+
+                @Override
+                public void onConfigureFailed(CameraCaptureSession session) {
+                    Log.e(TAG, "Capture session configuration failed");
+                }
+            }, cameraHandler);
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes the capture session, the camera, the handler thread and the ImageReader.
+     */
+    @Override
+    public void close() {
+        frameCallback = null;
+
+        if (captureSession != null) {
+            captureSession.close();
+            captureSession = null;
+        }
+
+        if (cameraDevice != null) {
+            cameraDevice.close();
+            cameraDevice = null;
+        }
+
+        if (cameraThread != null) {
+            //wait until the last image was delivered before the ImageReader is closed
+            cameraThread.quitSafely();
+
+            try {
+                cameraThread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+
+            cameraThread = null;
+            cameraHandler = null;
+        }
+
+        if (imageReader != null) {
+            imageReader.close();
+            imageReader = null;
+        }
+    }
+
+    /**
+     * Delivers the next image of the ImageReader to the callback.
+     *
+     * @param reader the ImageReader
+     */
+    @Override
+    public void onImageAvailable(ImageReader reader) {
+        Image image = reader.acquireNextImage();
+
+        if (image == null)
+            return;
+
+        FrameCallback callback = frameCallback;
+
+        if (callback != null) {
+            currentImage = image;
+            callback.onFrame(this);
+            currentImage = null;
+        }
+
+        image.close();
+    }
+
+    /**
+     * Writes the current image in the NV21 format to the given matrix.
+     * The planes are copied into the frameData first, then the frameData is put into the matrix.
+     *
+     * @param nv21Frame the target matrix
+     */
+    @Override
+    public void copyTo(Mat nv21Frame) {
+        int width = currentImage.getWidth();
+        int height = currentImage.getHeight();
+
+        Image.Plane[] planes = currentImage.getPlanes();
+
+        //Y plane: one row after the other (the row stride can be larger than the width)
+        ByteBuffer bufferY = planes[0].getBuffer();
+        int rowStrideY = planes[0].getRowStride();
+
+        if (rowStrideY == width) {
+            bufferY.position(0);
+            bufferY.get(frameData, 0, width * height);
+        } else {
+            for (int row = 0; row < height; row++) {
+                bufferY.position(row * rowStrideY);
+                bufferY.get(frameData, row * width, width);
+            }
+        }
+
+        if (chromaInterleaved == null)
+            chromaInterleaved = isChromaInterleaved(planes[1], planes[2]);
+
+        if (chromaInterleaved) {
+            //VU plane: the V plane rows already contain the V and U values
+            copyInterleavedChroma(planes[1], planes[2], width, height);
+        } else {
+            //VU plane: interleave the V and U values of each chroma row
+            copyChromaPlane(planes[2], width, height, width * height);
+            copyChromaPlane(planes[1], width, height, width * height + 1);
+        }
+
+        nv21Frame.put(0, 0, frameData);
+    }
+
+    /**
+     * Copies the values of a chroma plane (U or V) to every second byte of the VU plane in frameData.
+     *
+     * @param plane  the chroma plane
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @param offset the index in frameData of the first value (V first, then U)
+     */
+    private void copyChromaPlane(Image.Plane plane, int width, int height, int offset) {
+        ByteBuffer buffer = plane.getBuffer();
+        int rowStride = plane.getRowStride();
+        int pixelStride = plane.getPixelStride();
+
+        int chromaWidth = width / 2;
+        int rowLength = (chromaWidth - 1) * pixelStride + 1;
+
+        if (chromaRow.length < rowLength)
+            chromaRow = new byte[rowLength];
+
+        for (int row = 0; row < height / 2; row++) {
+            buffer.position(row * rowStride);
+            buffer.get(chromaRow, 0, rowLength);
+
+            int index = offset + row * width;
+
+            for (int col = 0; col < chromaWidth; col++) {
+                frameData[index] = chromaRow[col * pixelStride];
+                index += 2;
+            }
+        }
+    }
+
+    /**
+     * Checks if the V and U planes share one buffer in the NV21 layout (VUVU...): both planes have a pixel
+     * stride of 2 and the same row stride, and the first U value is the second byte of the V plane.
+     * The overlap is tested by changing the second byte of the V plane and reading the first U value,
+     * the byte is restored afterwards.
+     *
+     * @param planeU the U plane
+     * @param planeV the V plane
+     * @return true if the V plane rows can be copied as VU rows, false otherwise
+     */
+    private static boolean isChromaInterleaved(Image.Plane planeU, Image.Plane planeV) {
+        if (planeU.getPixelStride() != 2 || planeV.getPixelStride() != 2
+                || planeU.getRowStride() != planeV.getRowStride())
+            return false;
+
+        ByteBuffer bufferU = planeU.getBuffer();
+        ByteBuffer bufferV = planeV.getBuffer();
+
+        if (bufferV.isReadOnly() || bufferV.limit() < 2)
+            return false;
+
+        byte savedValue = bufferV.get(1);
+        byte changedValue = (byte) ~savedValue;
+
+        bufferV.put(1, changedValue);
+        boolean interleaved = bufferU.get(0) == changedValue;
+        bufferV.put(1, savedValue);
+
+        return interleaved;
+    }
+
+    /**
+     * Copies the VU plane with one bulk get per chroma row from the V plane, which contains the
+     * V and U values interleaved (see isChromaInterleaved). The buffer of the V plane ends with the
+     * last V value, so the last U value is read from the U plane.
+     *
+     * @param planeU the U plane
+     * @param planeV the V plane
+     * @param width  the width of the image
+     * @param height the height of the image
+     */
+    private void copyInterleavedChroma(Image.Plane planeU, Image.Plane planeV, int width, int height) {
+        ByteBuffer bufferV = planeV.getBuffer();
+        int rowStride = planeV.getRowStride();
+        int chromaHeight = height / 2;
+        int offset = width * height;
+
+        if (rowStride == width) {
+            bufferV.position(0);
+            bufferV.get(frameData, offset, Math.min(width * chromaHeight, bufferV.limit()));
+        } else {
+            for (int row = 0; row < chromaHeight; row++) {
+                bufferV.position(row * rowStride);
+                bufferV.get(frameData, offset + row * width, Math.min(width, bufferV.limit() - row * rowStride));
+            }
+        }
+
+        ByteBuffer bufferU = planeU.getBuffer();
+        frameData[offset + chromaHeight * width - 1] = bufferU.get((chromaHeight - 1) * rowStride + width - 2);
+    }
+}
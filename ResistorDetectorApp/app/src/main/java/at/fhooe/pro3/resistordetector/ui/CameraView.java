@@ -11,6 +11,8 @@ import java.util.List;
  * This class allows to set the zoom factor of the camera
  * and to enable/disable the flash in torch mode.
  * <p>
+ * Zoom and flash are only supported in the CaptureMode.LegacyCamera.
+ * <p>
  * Created by stefan on 20.05.2017.
  */
 @SuppressWarnings("deprecation")
@@ -46,15 +48,15 @@ public class CameraView extends PortraitCameraView /* implements Camera.PictureC
 
         boolean initializeCameraResult = super.initializeCamera(width, height);
 
-        Camera.Parameters parameters = getCameraParameters();
-
+//        Camera.Parameters parameters = getCameraParameters();
+//
 //        //Needed for takePicture()
 //        Camera.Size pictureSize = getCameraParameters().getSupportedPictureSizes().get(0);
 //
 //        parameters.setPictureSize(pictureSize.width, pictureSize.height);
 //        parameters.setPreviewSize(width, height);
-
-        setCameraParameters(parameters);
+//
+//        setCameraParameters(parameters);
 
         if (onCameraInitializedCallback != null)
             onCameraInitializedCallback.cameraViewInitialized();
@@ -83,7 +85,7 @@ public class CameraView extends PortraitCameraView /* implements Camera.PictureC
      * @param callback the callback to call when the initialization of the camera has finished.
      */
     public void setOnCameraInitializedCallback(OnCameraInitializedCallback callback) {
-        if (mCamera != null)
+        if (isCameraInitialized())
             callback.cameraViewInitialized();
         else
             onCameraInitializedCallback = callback;
@@ -97,6 +99,9 @@ public class CameraView extends PortraitCameraView /* implements Camera.PictureC
     public void setZoomLevel(int zoomLevel) {
         Camera.Parameters parameters = getCameraParameters();
 
+        if (parameters == null)
+            return;
+
         parameters.setZoom(zoomLevel);
 
         setCameraParameters(parameters);
@@ -108,7 +113,9 @@ public class CameraView extends PortraitCameraView /* implements Camera.PictureC
      * @return true if the camera supports zooming, false otherwise.
      */
     public boolean isZoomSupported() {
-        return getCameraParameters().isZoomSupported();
+        Camera.Parameters parameters = getCameraParameters();
+
+        return parameters != null && parameters.isZoomSupported();
     }
 
     /**
@@ -117,7 +124,12 @@ public class CameraView extends PortraitCameraView /* implements Camera.PictureC
      * @return true if the camera supports to enable the flash in torch mode, false otherwise.
      */
     public boolean isFlashSupported() {
-        List<String> flashModes = getCameraParameters().getSupportedFlashModes();
+        Camera.Parameters parameters = getCameraParameters();
+
+        if (parameters == null)
+            return false;
+
+        List<String> flashModes = parameters.getSupportedFlashModes();
 
         return flashModes != null && flashModes.contains(Camera.Parameters.FLASH_MODE_TORCH);
     }
@@ -128,7 +140,9 @@ public class CameraView extends PortraitCameraView /* implements Camera.PictureC
      * @return the maximum zoom level of the camera.
      */
     public int getMaxZoom() {
-        return getCameraParameters().getMaxZoom();
+        Camera.Parameters parameters = getCameraParameters();
+
+        return parameters != null ? parameters.getMaxZoom() : 0;
     }
 
     /**
@@ -150,6 +164,9 @@ public class CameraView extends PortraitCameraView /* implements Camera.PictureC
     public void enableFlash() {
         Camera.Parameters parameters = getCameraParameters();
 
+        if (parameters == null)
+            return;
+
         parameters.setFlashMode(Camera.Parameters.FLASH_MODE_TORCH);
 
         setCameraParameters(parameters);
@@ -161,6 +178,9 @@ public class CameraView extends PortraitCameraView /* implements Camera.PictureC
     public void disableFlash() {
         Camera.Parameters parameters = getCameraParameters();
 
+        if (parameters == null)
+            return;
+
         parameters.setFlashMode(Camera.Parameters.FLASH_MODE_OFF);
 
         setCameraParameters(parameters);
@@ -169,10 +189,12 @@ public class CameraView extends PortraitCameraView /* implements Camera.PictureC
     /**
      * Returns the parameters of the camera.
      *
-     * @return the parameters of the camera
+     * @return the parameters of the camera, or null if the camera does not support parameters (see getLegacyCamera())
      */
     private Camera.Parameters getCameraParameters() {
-        return mCamera.getParameters();
+        Camera camera = getLegacyCamera();
+
+        return camera != null ? camera.getParameters() : null;
     }
 
     /**
@@ -181,7 +203,10 @@ public class CameraView extends PortraitCameraView /* implements Camera.PictureC
      * @param parameters The new camera parameters to set.
      */
     private void setCameraParameters(Camera.Parameters parameters) {
-        mCamera.setParameters(parameters);
+        Camera camera = getLegacyCamera();
+
+        if (camera != null)
+            camera.setParameters(parameters);
     }
 
 //    /**
@@ -3,18 +3,32 @@ package at.fhooe.pro3.resistordetector.ui;
 import android.support.v4.util.ArrayMap;
 
 import org.opencv.android.CameraBridgeViewBase;
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
 import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 
+import at.fhooe.pro3.resistordetector.camera.ImageAdjustmentLut;
+import at.fhooe.pro3.resistordetector.detection.LatencyHistogram;
+import at.fhooe.pro3.resistordetector.detection.MetricsRegistry;
+import at.fhooe.pro3.resistordetector.detection.StripedCounter;
+
 /**
  * Implementation of the openCV cameraViewListener to draw the indicator on the preview image
  * and extract the image from within the indicator.
  * <p>
+ * The indicator is either drawn into the preview frames or by an IndicatorOverlayView above the camera view
+ * (see OverlayMode). In both cases only the region of the indicator is copied from each frame
+ * (see getResistorImage), the preview frames are not copied.
+ * <p>
+ * The image modifications/adjustments (brightness, contrast and colors) are applied with one lookup table pass
+ * (see ImageAdjustmentLut), either to the whole preview frame or only to the region of the indicator
+ * (see setAdjustIndicatorOnly).
+ * <p>
+ * The number of delivered frames and the processing time of each frame are recorded
+ * in the default MetricsRegistry.
+ * <p>
  * Created by stefan on 20.05.2017.
  */
 public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewListener2 {
@@ -27,6 +41,20 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
         Large,
     }
 
+    /**
+     * Defines where the indicator is drawn.
+     */
+    public enum OverlayMode {
+        /**
+         * The indicator is drawn into the preview frames.
+         */
+        Frame,
+        /**
+         * The indicator is drawn by the IndicatorOverlayView (see setIndicatorOverlayView).
+         */
+        View,
+    }
+
     /**
      * Defines the default value for (see constant name).
      */
@@ -77,6 +105,16 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
      */
     public static final IndicatorSize INDICATOR_SIZE_DEFAULT = IndicatorSize.Large;
 
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final OverlayMode OVERLAY_MODE_DEFAULT = OverlayMode.View;
+
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final boolean ADJUST_INDICATOR_ONLY_DEFAULT = false;
+
     /**
      * The height of the indicator in pixels.
      */
@@ -103,14 +141,30 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
     private static final Scalar INDICATOR_COLOR = new Scalar(0, 0, 255, 255);
 
     /**
-     * This matrix holds the last received full image frame.
+     * This matrix holds the last received full image frame (owned by the camera view).
      */
     private Mat fullImage;
 
     /**
-     * This matrix is used for temporary processing.
+     * This matrix holds a copy of the region of the indicator of the last received frame.
+     */
+    private Mat resistorImageSnapshot;
+
+    /**
+     * The region of the indicator in the last received frame, reused as long as the frame data
+     * and the indicator do not change.
      */
-    private Mat fullImageTemp;
+    private Mat indicatorRegion;
+
+    /**
+     * The address of the frame data indicatorRegion refers to.
+     */
+    private long indicatorRegionFrameAddress;
+
+    /**
+     * The indicator indicatorRegion was created for.
+     */
+    private Rect indicatorRegionIndicator;
 
     /**
      * The current value used to modify the contrast of the preview image.
@@ -137,16 +191,48 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
      */
     private int colorModifierBlue = COLOR_MODIFIER_DEFAULT;
 
+    /**
+     * True if the image modifications/adjustments are only applied to the region of the indicator
+     * and not to the displayed preview.
+     */
+    private boolean adjustIndicatorOnly = ADJUST_INDICATOR_ONLY_DEFAULT;
+
+    /**
+     * The lookup table of the current image modifications/adjustments,
+     * null if the camera view is not started (OpenCV is not loaded before).
+     */
+    private ImageAdjustmentLut imageAdjustmentLut;
+
     /**
      * The current size of the indicator.
      */
     private IndicatorSize indicatorSize = INDICATOR_SIZE_DEFAULT;
 
+    /**
+     * The current overlay mode.
+     */
+    private OverlayMode overlayMode = OVERLAY_MODE_DEFAULT;
+
+    /**
+     * The view drawing the indicator in the OverlayMode.View, null if not set.
+     */
+    private IndicatorOverlayView indicatorOverlayView;
+
     /**
      * A list of indicators, one for each possible indicator size.
      */
     private ArrayMap<String, Rect> indicatorRects = new ArrayMap<>(IndicatorSize.values().length);
 
+    /**
+     * The number of frames delivered by the camera view.
+     */
+    private final StripedCounter deliveredFramesCounter = MetricsRegistry.getDefault().counter("camera.frames.delivered");
+
+    /**
+     * The processing time of each frame in microseconds.
+     */
+    private final LatencyHistogram frameProcessingHistogram = MetricsRegistry.getDefault().histogram("camera.frame_processing_us");
+
     /**
      * Creates a new instance of this object with all modifiers set to default values.
      */
@@ -163,9 +249,11 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
      * @param height - the height of the frames that will be delivered
      */
     @Override
-    public void onCameraViewStarted(int width, int height) {
-        fullImage = new Mat(height, width, CvType.CV_8UC4);
-        fullImageTemp = new Mat(height, width, CvType.CV_8UC4);
+    public synchronized void onCameraViewStarted(int width, int height) {
+        resistorImageSnapshot = new Mat();
+
+        imageAdjustmentLut = new ImageAdjustmentLut();
+        updateImageAdjustmentLut();
 
         int xPos = width / 2;
         int yPos = (int) (height * INDICATOR_DISTANCE_TOP_PERCENT / 100);
@@ -182,6 +270,8 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
 
         indicatorRects.put(IndicatorSize.Small.name(), smallRect);
         indicatorRects.put(IndicatorSize.Large.name(), largRect);
+
+        updateIndicatorOverlayView();
     }
 
     /**
@@ -189,26 +279,34 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
      * Frees used resources.
      */
     @Override
-    public void onCameraViewStopped() {
-        if (fullImage != null)
-            fullImage.release();
+    public synchronized void onCameraViewStopped() {
+        if (resistorImageSnapshot != null)
+            resistorImageSnapshot.release();
+
+        if (indicatorRegion != null) {
+            indicatorRegion.release();
+            indicatorRegion = null;
+        }
 
-        if (fullImageTemp != null)
-            fullImageTemp.release();
+        if (imageAdjustmentLut != null) {
+            imageAdjustmentLut.release();
+            imageAdjustmentLut = null;
+        }
     }
 
     /**
      * Called from OpenCV when a new camera preview frame is available.
      * <p>
      * This method performs the image modifications/adjustments (eg. brightness, color, ...)
-     * if they are not set to the default values
-     * and draws the indicator into the image.
+     * if they are not set to the default values (only to the copy of the indicator region
+     * if setAdjustIndicatorOnly() is enabled), copies the region of the indicator
+     * and draws the indicator into the image in the OverlayMode.Frame.
      * <p>
-     * synchronized with getResistorImage() to ensure the image in fullImage
-     * is always one complete frame when getResistorImage is called.
+     * synchronized with getResistorImage() to ensure the image in resistorImageSnapshot
+     * is always from one complete frame when getResistorImage is called.
      *
      * @param inputFrame the new camera preview image
-     * @return the new camera preview image with the indicator drawn into it.
+     * @return the new camera preview image (with the indicator drawn into it in the OverlayMode.Frame).
      */
     @Override
     public synchronized Mat onCameraFrame(CameraBridgeViewBase.CvCameraViewFrame inputFrame) {
@@ -224,60 +322,121 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
          * All matrices are contain RGBA colors.
          */
 
-        fullImage = inputFrame.rgba();
+        long frameStartTime = System.nanoTime();
+        deliveredFramesCounter.increment();
 
-        //change brightnes and contrast
-        //g(x) = contrastModifier * f(x) + brightnessModifier
-        //see http://docs.opencv.org/2.4/doc/tutorials/core/basic_linear_transform/basic_linear_transform.html
-        if (contrastModifier != CONTRAST_MODIFIER_DEFAULT || brightnessModifier != BRIGHTNESS_MODIFIER_DEFAULT) {
-            fullImage.convertTo(fullImage, -1, contrastModifier, brightnessModifier);
-        }
+        fullImage = inputFrame.rgba();
 
+        if (!adjustIndicatorOnly)
+            applyImageModifiers(fullImage, false);
 
-        //change color amount in image of red, green and blue
-        if (colorModifierRed != COLOR_MODIFIER_DEFAULT || colorModifierGreen != COLOR_MODIFIER_DEFAULT || colorModifierBlue != COLOR_MODIFIER_DEFAULT) {
-            float multiplierRed = (float) (colorModifierRed) / COLOR_MODIFIER_DEFAULT;
-            float multiplierGreen = (float) (colorModifierGreen) / COLOR_MODIFIER_DEFAULT;
-            float multiplierBlue = (float) (colorModifierBlue) / COLOR_MODIFIER_DEFAULT;
-            float multiplierAlpha = 1;
+        //copy only the unmarked region of the indicator before the indicator is drawn
+        //(copyTo() only allocates resistorImageSnapshot again if the indicator size changed)
+        Rect indicator = getIndicator();
 
-            Scalar multiplier = new Scalar(multiplierRed, multiplierGreen, multiplierBlue, multiplierAlpha);
+        if (indicatorRegion == null || indicatorRegionFrameAddress != fullImage.dataAddr() || indicatorRegionIndicator != indicator) {
+            if (indicatorRegion != null)
+                indicatorRegion.release();
 
-            Core.multiply(fullImage, multiplier, fullImage);
+            indicatorRegion = fullImage.submat(indicator);
+            indicatorRegionFrameAddress = fullImage.dataAddr();
+            indicatorRegionIndicator = indicator;
         }
 
-        //draw the indicatorSize only to a temporary image
-        //display the temporary image with the indicatorSize
-        fullImage.copyTo(fullImageTemp);
+        indicatorRegion.copyTo(resistorImageSnapshot);
 
-        Rect indicator = getIndicator();
-        Imgproc.rectangle(fullImageTemp, indicator.tl(), indicator.br(), INDICATOR_COLOR, INDICATOR_THICKNESS);
+        if (adjustIndicatorOnly)
+            applyImageModifiers(resistorImageSnapshot, false);
 
-        //fullImage contains the last captured image frame
-        //fullImageTemp contains the last captured image frame AND the search indicatorSize
-        return fullImageTemp;
+        if (overlayMode == OverlayMode.Frame)
+            Imgproc.rectangle(fullImage, indicator.tl(), indicator.br(), INDICATOR_COLOR, INDICATOR_THICKNESS);
+
+        frameProcessingHistogram.record((System.nanoTime() - frameStartTime) / 1000);
+
+        return fullImage;
     }
 
     /**
      * Returns a copy of the last camera image frame inside the indicatorSize rectangle.
      * Release the returned matrix if not needed anymore.
      * The returned matrix is in RGBA color.
+     * The image is copied from the snapshot of the indicator region taken in onCameraFrame(),
+     * the preview frame is not used.
      * <p>
-     * synchronized with onCameraFrame() to ensure the image in fullImage
-     * is always one complete frame when getResistorImage() is called.
+     * synchronized with onCameraFrame() to ensure the image in resistorImageSnapshot
+     * is always from one complete frame when getResistorImage() is called.
      *
-     * @return A new matrix object containing the image inside the search indicatorSize (of the last frame).
+     * @return A new matrix object containing the image inside the search indicatorSize (of the last frame),
+     * or null if no frame was received yet.
      */
     public synchronized Mat getResistorImage() {
-        Rect indicator = getIndicator();
+        if (resistorImageSnapshot == null || resistorImageSnapshot.empty())
+            return null;
 
-        Mat resistorImageRgba = new Mat(indicator.height, indicator.width, fullImage.type());
+        Mat resistorImageRgba = new Mat();
 
-        fullImage.submat(indicator).copyTo(resistorImageRgba);
+        resistorImageSnapshot.copyTo(resistorImageRgba);
 
         return resistorImageRgba;
     }
 
+    /**
+     * Returns the last camera image frame inside the indicator rectangle as new BGR matrix,
+     * ready to be passed to a ResistorDetector. The image modifications/adjustments are applied.
+     * <p>
+     * Unlike getResistorImage(), only the region of the indicator is taken from the NV21 frame of the camera view
+     * and converted to color (see PortraitCameraView.getFrameRegionBgr), the preview frames are not used.
+     * Release the returned matrix if not needed anymore.
+     *
+     * @param cameraView the camera view which delivers the frames to this listener
+     * @return A new BGR matrix containing the image inside the indicator (of the last frame),
+     * or null if the camera view did not receive a frame yet.
+     */
+    public Mat getResistorImageBgr(PortraitCameraView cameraView) {
+        if (cameraView == null)
+            throw new IllegalArgumentException("cameraView must not be null!");
+
+        Mat resistorImageBgr = cameraView.getFrameRegionBgr(getIndicator());
+
+        if (resistorImageBgr != null) {
+            synchronized (this) {
+                applyImageModifiers(resistorImageBgr, true);
+            }
+        }
+
+        return resistorImageBgr;
+    }
+
+    /**
+     * Performs the image modifications/adjustments (eg. brightness, color, ...)
+     * if they are not set to the default values.
+     * Must be called while holding the lock of this object.
+     *
+     * @param image    the image which is modified, RGBA or BGR
+     * @param bgrOrder true if the image is in BGR color, false if it is in RGBA color
+     */
+    private void applyImageModifiers(Mat image, boolean bgrOrder) {
+        //brightness, contrast and color amount of red, green and blue in one pass:
+        //g(x) = (contrastModifier * f(x) + brightnessModifier) * colorModifier / COLOR_MODIFIER_DEFAULT
+        //see http://docs.opencv.org/2.4/doc/tutorials/core/basic_linear_transform/basic_linear_transform.html
+        if (imageAdjustmentLut != null)
+            imageAdjustmentLut.apply(image, bgrOrder);
+    }
+
+    /**
+     * Passes the current modifiers to the lookup table, which is only rebuilt if a modifier changed.
+     */
+    private synchronized void updateImageAdjustmentLut() {
+        if (imageAdjustmentLut == null)
+            return;
+
+        float multiplierRed = (float) (colorModifierRed) / COLOR_MODIFIER_DEFAULT;
+        float multiplierGreen = (float) (colorModifierGreen) / COLOR_MODIFIER_DEFAULT;
+        float multiplierBlue = (float) (colorModifierBlue) / COLOR_MODIFIER_DEFAULT;
+
+        imageAdjustmentLut.setAdjustments(contrastModifier, brightnessModifier, multiplierRed, multiplierGreen, multiplierBlue);
+    }
+
     /**
      * (Re)Sets all camera image modifications/adjustments to their default values.
      */
@@ -290,6 +449,8 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
         colorModifierBlue = COLOR_MODIFIER_DEFAULT;
 
         indicatorSize = INDICATOR_SIZE_DEFAULT;
+
+        updateImageAdjustmentLut();
     }
 
     /**
@@ -298,12 +459,14 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
      * @param brightnessModifier the new brightness modifier.
      */
     public void setBrightnessModifier(int brightnessModifier) {
-        if (brightnessModifier < BRIGHTNESS_MODIFIER_MIN_VALUE || contrastModifier > BRIGHTNESS_MODIFIER_MAX_VALUE) {
+        if (brightnessModifier < BRIGHTNESS_MODIFIER_MIN_VALUE || brightnessModifier > BRIGHTNESS_MODIFIER_MAX_VALUE) {
             throw new IllegalArgumentException("brightnessModifier must be between "
                     + BRIGHTNESS_MODIFIER_MIN_VALUE + " and " + BRIGHTNESS_MODIFIER_MAX_VALUE);
         }
 
         this.brightnessModifier = brightnessModifier;
+
+        updateImageAdjustmentLut();
     }
 
     /**
@@ -318,6 +481,8 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
         }
 
         this.contrastModifier = contrastModifier;
+
+        updateImageAdjustmentLut();
     }
 
     /**
@@ -346,6 +511,18 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
         colorModifierRed = red;
         colorModifierGreen = green;
         colorModifierBlue = blue;
+
+        updateImageAdjustmentLut();
+    }
+
+    /**
+     * Sets whether the image modifications/adjustments are only applied to the region of the indicator
+     * used for the detection, leaving the displayed preview untouched.
+     *
+     * @param adjustIndicatorOnly true to adjust only the region of the indicator, false to adjust the whole preview
+     */
+    public void setAdjustIndicatorOnly(boolean adjustIndicatorOnly) {
+        this.adjustIndicatorOnly = adjustIndicatorOnly;
     }
 
     /**
@@ -355,12 +532,52 @@ public class CameraViewListener implements CameraBridgeViewBase.CvCameraViewList
      */
     public void setIndicatorSize(IndicatorSize size) {
         indicatorSize = size;
+
+        updateIndicatorOverlayView();
+    }
+
+    /**
+     * Sets where the indicator is drawn.
+     *
+     * @param overlayMode the new overlay mode
+     */
+    public void setOverlayMode(OverlayMode overlayMode) {
+        if (overlayMode == null)
+            throw new IllegalArgumentException("overlayMode must not be null!");
+
+        this.overlayMode = overlayMode;
+
+        updateIndicatorOverlayView();
+    }
+
+    /**
+     * Sets the view drawing the indicator in the OverlayMode.View.
+     *
+     * @param indicatorOverlayView the overlay view
+     */
+    public void setIndicatorOverlayView(IndicatorOverlayView indicatorOverlayView) {
+        if (indicatorOverlayView == null)
+            throw new IllegalArgumentException("indicatorOverlayView must not be null!");
+
+        this.indicatorOverlayView = indicatorOverlayView;
+
+        updateIndicatorOverlayView();
+    }
+
+    /**
+     * Passes the current indicator to the overlay view, or no indicator if it is drawn into the frames.
+     */
+    private void updateIndicatorOverlayView() {
+        if (indicatorOverlayView == null)
+            return;
+
+        indicatorOverlayView.setIndicator(overlayMode == OverlayMode.View ? getIndicator() : null);
     }
 
     /**
-     * Returns the current size of the indicator.
+     * Returns the indicator rectangle of the current size of the indicator.
      *
-     * @return the current size of the indicator.
+     * @return the current indicator rectangle, or null if the camera view is not started yet.
      */
     private Rect getIndicator() {
         return indicatorRects.get(indicatorSize.name());
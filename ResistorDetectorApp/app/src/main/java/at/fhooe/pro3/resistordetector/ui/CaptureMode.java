@@ -0,0 +1,13 @@
+package at.fhooe.pro3.resistordetector.ui;
+
+/**
+ * Lists the available FrameSources of the camera view.
+ * This enum is used to display the available capture modes
+ * and to save the selected mode in the AppSettings.
+ * Camera2 is experimental: it copies each frame twice and supports no zoom and flash,
+ * so it is not faster than LegacyCamera.
+ */
+public enum CaptureMode {
+    LegacyCamera,
+    Camera2,
+}
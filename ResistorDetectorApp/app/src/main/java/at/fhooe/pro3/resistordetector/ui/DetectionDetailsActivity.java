@@ -6,15 +6,23 @@ import android.widget.ListView;
 
 import at.fhooe.pro3.resistordetector.DetectionResultHolder;
 import at.fhooe.pro3.resistordetector.R;
+import at.fhooe.pro3.resistordetector.detection.DetectionResult;
 
 /**
  * This activity displays the Detection Step Details of the last detection process.
  * The data to display is from the DetectionResultHolder static class.
+ * The displayed result is retained until the activity is destroyed, so its images are kept
+ * when the holder receives a new result in the meantime (e.g. of the live detection).
  * <p>
  * Created by stefan on 28.05.2017.
  */
 public class DetectionDetailsActivity extends AppCompatActivity {
 
+    /**
+     * The displayed (retained) DetectionResult, null if there is none.
+     */
+    private DetectionResult detectionResult = null;
+
     /**
      * Sets up the view and initializes the view elements (controls).
      *
@@ -25,12 +33,27 @@ public class DetectionDetailsActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_detection_details);
 
-        if (DetectionResultHolder.detectionResultAvailable()) {
+        detectionResult = DetectionResultHolder.acquireDetectionResult();
+
+        if (detectionResult != null) {
             ListView detectionDetailsList = (ListView) findViewById(R.id.detection_deteils_activity_list);
 
-            DetectionDetailsListAdapter adapter = new DetectionDetailsListAdapter(this, DetectionResultHolder.getDetectionResult().getDetectionStepDetails());
+            DetectionDetailsListAdapter adapter = new DetectionDetailsListAdapter(this, detectionResult);
 
             detectionDetailsList.setAdapter(adapter);
         }
     }
+
+    /**
+     * Releases the displayed DetectionResult.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        if (detectionResult != null) {
+            detectionResult.release();
+            detectionResult = null;
+        }
+    }
 }
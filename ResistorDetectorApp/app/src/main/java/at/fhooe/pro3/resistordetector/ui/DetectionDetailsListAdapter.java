@@ -12,6 +12,7 @@ import android.widget.TextView;
 import java.util.ArrayList;
 
 import at.fhooe.pro3.resistordetector.R;
+import at.fhooe.pro3.resistordetector.detection.DetectionResult;
 import at.fhooe.pro3.resistordetector.detection.DetectionStepDetail;
 
 /**
@@ -36,6 +37,39 @@ public class DetectionDetailsListAdapter extends ArrayAdapter<DetectionStepDetai
         super(context, R.layout.detection_details_list_row, data);
     }
 
+    /**
+     * Creates a new instance of this class to display the DetectionStepDetails of the given result,
+     * followed by one row per measured stage time (if the stage timing was enabled).
+     *
+     * @param context         android context
+     * @param detectionResult the result to display inside the list
+     */
+    public DetectionDetailsListAdapter(Context context, DetectionResult detectionResult) {
+        this(context, getRowData(detectionResult));
+    }
+
+    /**
+     * Returns the rows of the list: the DetectionStepDetails of the result
+     * and a DetectionStepDetail (description only) for each measured stage time.
+     *
+     * @param detectionResult the result to display inside the list
+     * @return a new list with the rows
+     */
+    private static ArrayList<DetectionStepDetail> getRowData(DetectionResult detectionResult) {
+        ArrayList<DetectionStepDetail> rows = new ArrayList<DetectionStepDetail>(detectionResult.getDetectionStepDetails());
+
+        if (detectionResult.stageTimesAvailable()) {
+            for (DetectionResult.Stage stage : DetectionResult.Stage.values()) {
+                long stageTime = detectionResult.getStageTime(stage);
+
+                if (stageTime != DetectionResult.STAGE_NOT_MEASURED)
+                    rows.add(new DetectionStepDetail(stage.name() + ": " + String.format("%.2f", stageTime / 1e6) + " ms"));
+            }
+        }
+
+        return rows;
+    }
+
     /**
      * Returns the number of elements in this adapter.
      *
@@ -84,8 +118,9 @@ public class DetectionDetailsListAdapter extends ArrayAdapter<DetectionStepDetai
             }
 
             if (imageView != null) {
-                if (rowData.isImageAvailable()) {
-                    Bitmap detectionStepImage = rowData.getImage();
+                Bitmap detectionStepImage = rowData.isImageAvailable() ? rowData.getImage() : null;
+
+                if (detectionStepImage != null) {
                     Bitmap scaledBitmap = Bitmap.createScaledBitmap(detectionStepImage, detectionStepImage.getWidth() * IMAGE_SCALE_FACTOR, detectionStepImage.getHeight() * IMAGE_SCALE_FACTOR, false);
                     imageView.setImageBitmap(scaledBitmap);
                 } else {
@@ -11,4 +11,5 @@ public enum DetectionMode {
     ColumnResistorDetection,
     ContoursModResistorDetection,
     ExperimentsResistorDetection,
+    LabelsResistorDetection,
 }
@@ -0,0 +1,136 @@
+package at.fhooe.pro3.resistordetector.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.View;
+
+import org.opencv.core.Rect;
+
+/**
+ * Transparent view which draws the indicator and the detection result above a PortraitCameraView
+ * (see CameraViewListener.OverlayMode.View).
+ * <p>
+ * The indicator is given in the coordinates of the frames of the camera view and mapped
+ * to the coordinates of this view (see PortraitCameraView.mapFrameRectToView).
+ * Therefore this view must have the same position and size as the camera view.
+ * <p>
+ * Drawing the indicator here instead of into the frames saves one copy of each preview frame.
+ */
+public class IndicatorOverlayView extends View {
+
+    /**
+     * The thickness of the indicator line in frame pixels.
+     */
+    private static final float INDICATOR_THICKNESS = 2;
+
+    /**
+     * The size of the result text in pixels.
+     */
+    private static final float RESULT_TEXT_SIZE = 48;
+
+    /**
+     * The camera view this overlay is drawn above, null if not set.
+     */
+    private PortraitCameraView cameraView;
+
+    /**
+     * The indicator in frame coordinates, null if no indicator is drawn.
+     */
+    private volatile Rect indicator;
+
+    /**
+     * The text of the detection result drawn below the indicator, null if no text is drawn.
+     */
+    private volatile String resultText;
+
+    /**
+     * Paint of the indicator.
+     */
+    private final Paint indicatorPaint = new Paint();
+
+    /**
+     * Paint of the result text.
+     */
+    private final Paint resultTextPaint = new Paint();
+
+    /**
+     * Creates a new overlay view.
+     * See android documentation.
+     */
+    public IndicatorOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        indicatorPaint.setColor(Color.RED);
+        indicatorPaint.setStyle(Paint.Style.STROKE);
+
+        resultTextPaint.setColor(Color.RED);
+        resultTextPaint.setTextAlign(Paint.Align.CENTER);
+        resultTextPaint.setTextSize(RESULT_TEXT_SIZE);
+        resultTextPaint.setAntiAlias(true);
+    }
+
+    /**
+     * Sets the camera view this overlay is drawn above.
+     *
+     * @param cameraView the camera view
+     */
+    public void setCameraView(PortraitCameraView cameraView) {
+        if (cameraView == null)
+            throw new IllegalArgumentException("cameraView must not be null!");
+
+        this.cameraView = cameraView;
+        postInvalidate();
+    }
+
+    /**
+     * Sets the indicator to draw. Can be called from any thread.
+     *
+     * @param indicator the indicator in frame coordinates, or null to draw no indicator
+     */
+    public void setIndicator(Rect indicator) {
+        this.indicator = indicator != null ? indicator.clone() : null;
+        postInvalidate();
+    }
+
+    /**
+     * Sets the text of the detection result drawn below the indicator. Can be called from any thread.
+     *
+     * @param resultText the text to draw, or null to draw no text
+     */
+    public void setResultText(String resultText) {
+        this.resultText = resultText;
+        postInvalidate();
+    }
+
+    /**
+     * Draws the indicator and the result text.
+     *
+     * @param canvas see android documentation
+     */
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        Rect currentIndicator = indicator;
+
+        if (cameraView == null || currentIndicator == null)
+            return;
+
+        RectF indicatorRect = cameraView.mapFrameRectToView(currentIndicator);
+
+        if (indicatorRect == null)
+            return;
+
+        indicatorPaint.setStrokeWidth(INDICATOR_THICKNESS * cameraView.getFrameToViewScale());
+        canvas.drawRect(indicatorRect, indicatorPaint);
+
+        String currentResultText = resultText;
+
+        if (currentResultText != null)
+            canvas.drawText(currentResultText, indicatorRect.centerX(), indicatorRect.bottom + RESULT_TEXT_SIZE, resultTextPaint);
+    }
+}
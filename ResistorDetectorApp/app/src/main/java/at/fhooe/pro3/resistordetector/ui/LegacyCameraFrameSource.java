@@ -0,0 +1,203 @@
+package at.fhooe.pro3.resistordetector.ui;
+
+import android.graphics.ImageFormat;
+import android.graphics.SurfaceTexture;
+import android.hardware.Camera;
+import android.util.Log;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import at.fhooe.pro3.resistordetector.camera.FrameSource;
+
+/**
+ * FrameSource of the back camera using the (deprecated) android.hardware.Camera API.
+ * <p>
+ * The camera writes the preview frames (NV21) into preallocated callback buffers,
+ * which are returned to the camera after the frame was delivered.
+ */
+@SuppressWarnings("deprecation")
+public class LegacyCameraFrameSource implements FrameSource, FrameSource.Frame, Camera.PreviewCallback {
+
+    private static final int MAGIC_TEXTURE_ID = 10;
+    private static final String TAG = "LegacyCameraFrameSource";
+
+    /**
+     * The opened camera, null if the source is not open.
+     */
+    private Camera camera = null;
+
+    /**
+     * The texture the preview is rendered to (the preview is not displayed).
+     */
+    private SurfaceTexture surfaceTexture = null;
+
+    /**
+     * The callback receiving the frames, null if the source is not started.
+     */
+    private FrameCallback frameCallback = null;
+
+    /**
+     * The data of the frame which is currently delivered.
+     */
+    private byte[] currentFrameData = null;
+
+    /**
+     * Opens the first back facing camera.
+     *
+     * @return true if a camera was opened, false otherwise
+     */
+    @Override
+    public boolean open() {
+        int numberOfCameras = Camera.getNumberOfCameras();
+        Camera.CameraInfo cameraInfo = new Camera.CameraInfo();
+
+        for (int i = 0; i < numberOfCameras && camera == null; i++) {
+            Camera.getCameraInfo(i, cameraInfo);
+
+            if (cameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_BACK) {
+                try {
+                    camera = Camera.open(i);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Camera #" + i + "failed to open: " + e.getMessage());
+                }
+            }
+        }
+
+        return camera != null;
+    }
+
+    /**
+     * Returns the supported preview sizes of the camera.
+     *
+     * @return the supported preview sizes
+     */
+    @Override
+    public List<Size> getSupportedFrameSizes() {
+        List<Size> frameSizes = new ArrayList<>();
+        List<Camera.Size> previewSizes = camera.getParameters().getSupportedPreviewSizes();
+
+        if (previewSizes != null) {
+            for (Camera.Size previewSize : previewSizes) {
+                frameSizes.add(new Size(previewSize.width, previewSize.height));
+            }
+        }
+
+        return frameSizes;
+    }
+
+    /**
+     * Sets the preview parameters, registers the callback buffers and starts the preview.
+     *
+     * @param frameSize   the preview size
+     * @param bufferCount the number of callback buffers
+     * @param callback    the callback receiving the frames
+     * @return true if the preview was started, false otherwise
+     */
+    @Override
+    public boolean start(Size frameSize, int bufferCount, FrameCallback callback) {
+        if (callback == null)
+            throw new IllegalArgumentException("callback must not be null!");
+
+        try {
+            Camera.Parameters params = camera.getParameters();
+
+            params.setPreviewFormat(ImageFormat.NV21);
+            Log.d(TAG, "Set preview size to " + (int) frameSize.width + "x" + (int) frameSize.height);
+            params.setPreviewSize((int) frameSize.width, (int) frameSize.height);
+            params.setRecordingHint(true);
+
+            List<String> focusModes = params.getSupportedFocusModes();
+            if (focusModes != null && focusModes.contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO)) {
+                params.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO);
+            }
+
+            camera.setParameters(params);
+            params = camera.getParameters();
+
+            int size = params.getPreviewSize().width * params.getPreviewSize().height;
+            size = size * ImageFormat.getBitsPerPixel(params.getPreviewFormat()) / 8;
+
+            //the camera fills the callback buffers which are returned in onPreviewFrame
+            for (int i = 0; i < bufferCount; i++) {
+                camera.addCallbackBuffer(new byte[size]);
+            }
+
+            frameCallback = callback;
+            camera.setPreviewCallbackWithBuffer(this);
+
+            surfaceTexture = new SurfaceTexture(MAGIC_TEXTURE_ID);
+            camera.setPreviewTexture(surfaceTexture);
+
+            Log.d(TAG, "startPreview");
+            camera.startPreview();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops the preview and releases the camera.
+     */
+    @Override
+    public void close() {
+        if (camera != null) {
+            camera.stopPreview();
+            camera.setPreviewCallback(null);
+            camera.release();
+            camera = null;
+        }
+
+        if (surfaceTexture != null) {
+            surfaceTexture.release();
+            surfaceTexture = null;
+        }
+
+        frameCallback = null;
+    }
+
+    /**
+     * Returns the opened camera, e.g. to set the zoom or flash parameters.
+     *
+     * @return the camera, null if the source is not open
+     */
+    public Camera getCamera() {
+        return camera;
+    }
+
+    /**
+     * Delivers a preview frame to the callback and returns the buffer to the camera.
+     *
+     * @param frame         the preview frame
+     * @param previewCamera the camera which captured the frame
+     */
+    @Override
+    public void onPreviewFrame(byte[] frame, Camera previewCamera) {
+        FrameCallback callback = frameCallback;
+
+        if (callback != null) {
+            currentFrameData = frame;
+            callback.onFrame(this);
+            currentFrameData = null;
+        }
+
+        if (camera != null)
+            camera.addCallbackBuffer(frame);
+    }
+
+    /**
+     * Writes the data of the current preview frame to the given matrix.
+     *
+     * @param nv21Frame the target matrix
+     */
+    @Override
+    public void copyTo(Mat nv21Frame) {
+        nv21Frame.put(0, 0, currentFrameData);
+    }
+}
@@ -28,20 +28,32 @@ import org.opencv.android.OpenCVLoader;
 import org.opencv.android.Utils;
 import org.opencv.core.CvException;
 import org.opencv.core.Mat;
-import org.opencv.imgproc.Imgproc;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import at.fhooe.pro3.resistordetector.AppSettings;
 import at.fhooe.pro3.resistordetector.DetectionResultHolder;
 import at.fhooe.pro3.resistordetector.R;
+import at.fhooe.pro3.resistordetector.detection.BilateralFilterPreprocessor;
 import at.fhooe.pro3.resistordetector.detection.ColumnsResistorDetector;
 import at.fhooe.pro3.resistordetector.detection.ContoursModResistorDetector;
 import at.fhooe.pro3.resistordetector.detection.DetectionResult;
+import at.fhooe.pro3.resistordetector.detection.FrameQualityGate;
 import at.fhooe.pro3.resistordetector.detection.ExperimentsResistorDetector;
+import at.fhooe.pro3.resistordetector.detection.GuidedFilterPreprocessor;
+import at.fhooe.pro3.resistordetector.detection.LabelsResistorDetector;
+import at.fhooe.pro3.resistordetector.detection.LiveDetector;
+import at.fhooe.pro3.resistordetector.detection.MedianBlurPreprocessor;
+import at.fhooe.pro3.resistordetector.detection.MetricsFileExporter;
+import at.fhooe.pro3.resistordetector.detection.MetricsRegistry;
+import at.fhooe.pro3.resistordetector.detection.NoOpPreprocessor;
+import at.fhooe.pro3.resistordetector.detection.Preprocessor;
 import at.fhooe.pro3.resistordetector.detection.ResistorDetector;
+import at.fhooe.pro3.resistordetector.detection.TemporalResultFusion;
 
 /**
  * This activity is the main and launch activity for the app.
@@ -77,12 +89,37 @@ public class MainActivity extends AppCompatActivity {
      */
     private ResistorDetector resistorDetector;
 
+    /**
+     * The executor used by the resistorDetector to process the detection in parallel.
+     * Created when parallel detection is enabled for the first time.
+     */
+    private ExecutorService parallelExecutor;
+
     /**
      * The ResultListener that handles the result of the resistorDetector
      * after a detection process finished.
      */
     private ResistorDetector.ResultListener resultListener;
 
+    /**
+     * Runs the detections of the resistorDetector on a background thread,
+     * either when the start detection button is pressed or continuously (see AppSettings.getLiveDetectionEnabled).
+     */
+    private LiveDetector liveDetector;
+
+    /**
+     * Fuses the results of the continuous live detection to a stable result (used instead of the resultListener
+     * by the resistorDetector if the live detection is enabled). The live detection is stopped as soon as
+     * the result is stable or the fusion timed out.
+     */
+    private TemporalResultFusion resultFusion;
+
+    /**
+     * Writes the detection and camera metrics periodically to the metrics file
+     * in the private storage of the app (files/metrics/metrics.json) while the app is in the foreground.
+     */
+    private MetricsFileExporter metricsFileExporter;
+
     /**
      * The callback used to handle the load event of the OpenCV library.
      */
@@ -120,6 +157,9 @@ public class MainActivity extends AppCompatActivity {
 
         cameraViewListener = new CameraViewListener();
 
+        metricsFileExporter = new MetricsFileExporter(MetricsRegistry.getDefault(),
+                new File(new File(getFilesDir(), "metrics"), "metrics.json"), MetricsFileExporter.Format.Json);
+
         cameraView = (CameraView) findViewById(R.id.main_activity_camera_view);
         cameraView.setVisibility(SurfaceView.VISIBLE);
 
@@ -128,6 +168,17 @@ public class MainActivity extends AppCompatActivity {
 
         cameraView.setCvCameraViewListener(cameraViewListener);
 
+        liveDetector = new LiveDetector(new LiveDetector.ImageSource() {
+            @Override
+            public Mat getImage() {
+                return cameraViewListener.getResistorImageBgr(cameraView);
+            }
+        });
+
+        final IndicatorOverlayView indicatorOverlayView = (IndicatorOverlayView) findViewById(R.id.main_activity_indicator_overlay);
+        indicatorOverlayView.setCameraView(cameraView);
+        cameraViewListener.setIndicatorOverlayView(indicatorOverlayView);
+
         cameraView.setOnCameraInitializedCallback(new CameraView.OnCameraInitializedCallback() {
             @Override
             public void cameraViewInitialized() {
@@ -156,12 +207,15 @@ public class MainActivity extends AppCompatActivity {
                 runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
-                        if(detectionResult.getResistorValue() == DetectionResult.UNKNOWN_RESISTANCE_VALUE){
+                        if(detectionResult.isRejected()){
+                            resultTextView.setText("N/A (" + detectionResult.getQualityVerdict().name().toLowerCase() + ")");
+                        }else if(detectionResult.getResistorValue() == DetectionResult.UNKNOWN_RESISTANCE_VALUE){
                             resultTextView.setText("N/A");
                         }else{
                             resultTextView.setText(detectionResult.getResistorValue() + " Ohm");
                         }
                         resultTextView.setVisibility(View.VISIBLE);
+                        indicatorOverlayView.setResultText(resultTextView.getText().toString());
 
                         DetectionResultHolder.setDetectionResult(detectionResult);
 
@@ -172,13 +226,26 @@ public class MainActivity extends AppCompatActivity {
             }
         };
 
+        resultFusion = new TemporalResultFusion(new TemporalResultFusion.FusionListener() {
+            @Override
+            public void fusedResultReady(DetectionResult detectionResult, float confidence, TemporalResultFusion.FusionState state) {
+                //stop triggering detections, the button starts a new fusion
+                if (state != TemporalResultFusion.FusionState.Collecting)
+                    liveDetector.stop();
+
+                //the fused result is owned by the fusion, the holder needs its own reference
+                resultListener.resultReady(detectionResult.retain());
+            }
+        });
+
         requestPermissions();
     }
 
     /**
      * Sets up and initializes the button which starts the detection process.
      * When the button is pressed, the image matrix of the inside of the displayed indicator
-     * will be used to start the resistor detection.
+     * will be passed to the liveDetector, which detects it on its background thread.
+     * If the live detection is enabled, the button starts a new fusion of the continuous live detection instead.
      */
     private void setupStartDetectionControl() {
         Button startDetectionButton = (Button) findViewById(R.id.mainActivity_start_detection);
@@ -187,13 +254,17 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onClick(View v) {
 
-                Mat resistorImage = cameraViewListener.getResistorImage();
+                if (settings.getLiveDetectionEnabled()) {
+                    startLiveDetection();
+                    return;
+                }
 
-                Imgproc.cvtColor(resistorImage, resistorImage, Imgproc.COLOR_RGBA2BGR);
+                Mat resistorImage = cameraViewListener.getResistorImageBgr(cameraView);
 
-                resistorDetector.detectResistorValue(resistorImage);
+                if (resistorImage == null)
+                    return;
 
-                resistorImage.release();
+                liveDetector.offer(resistorImage);
             }
         });
 
@@ -265,6 +336,9 @@ public class MainActivity extends AppCompatActivity {
 
                 Mat resistorImage = cameraViewListener.getResistorImage();
 
+                if (resistorImage == null)
+                    return;
+
                 Bitmap bitmap = null;
 
                 try {
@@ -274,6 +348,8 @@ public class MainActivity extends AppCompatActivity {
                     Log.d("Exception", e.getMessage());
                 }
 
+                resistorImage.release();
+
                 if (bitmap != null) {
                     try {
                         File folder = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES), "resistorDetector");
@@ -386,7 +462,7 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Called when the app is paused (e.g. moved to background).
-     * Stops the preview of the camera image.
+     * Stops the preview of the camera image and writes the last metrics snapshot.
      */
     @Override
     public void onPause() {
@@ -394,6 +470,10 @@ public class MainActivity extends AppCompatActivity {
         if (cameraView != null) {
             cameraView.disableView();
         }
+
+        metricsFileExporter.stop();
+
+        liveDetector.stop();
     }
 
     /**
@@ -409,6 +489,15 @@ public class MainActivity extends AppCompatActivity {
         loadCameraListenerSettings();
         loadResistorDetecionSettings();
 
+        if (settings.getLiveDetectionEnabled())
+            startLiveDetection();
+
+        cameraView.setCaptureMode(settings.getCaptureMode());
+        cameraView.setFrameBufferCount(settings.getFrameBufferCount());
+        cameraView.setFrameDropPolicy(settings.getFrameDropPolicy());
+
+        metricsFileExporter.start(MetricsFileExporter.PERIOD_SECONDS_DEFAULT);
+
         super.onResume();
         if (!OpenCVLoader.initDebug()) {
             Log.d("ResistorDetector", "Internal OpenCV library not found. Using OpenCV Manager for initialization");
@@ -428,6 +517,11 @@ public class MainActivity extends AppCompatActivity {
         super.onDestroy();
         if (cameraView != null)
             cameraView.disableView();
+
+        liveDetector.shutdown();
+
+        if (parallelExecutor != null)
+            parallelExecutor.shutdown();
     }
 
     /**
@@ -447,6 +541,20 @@ public class MainActivity extends AppCompatActivity {
         CameraViewListener.IndicatorSize indicatorSize = settings.getIndicatoreSize();
         cameraViewListener.setIndicatorSize(indicatorSize);
 
+        CameraViewListener.OverlayMode overlayMode = settings.getOverlayMode();
+        cameraViewListener.setOverlayMode(overlayMode);
+
+        boolean adjustIndicatorOnly = settings.getAdjustIndicatorOnly();
+        cameraViewListener.setAdjustIndicatorOnly(adjustIndicatorOnly);
+
+    }
+
+    /**
+     * Starts a new fusion and the continuous live detection (see TemporalResultFusion).
+     */
+    private void startLiveDetection() {
+        resultFusion.reset();
+        liveDetector.start(settings.getLiveDetectionRate());
     }
 
     /**
@@ -455,17 +563,69 @@ public class MainActivity extends AppCompatActivity {
      */
     private void loadResistorDetecionSettings() {
         DetectionMode detectionMode = settings.getDetectionMode();
+        Preprocessor preprocessor = newPreprocessor(settings.getPreprocessingMode());
+
+        resultFusion.setWindowSize(settings.getFusionWindowSize());
+        resultFusion.setAgreementThreshold(settings.getFusionAgreementThreshold());
+        resultFusion.setTimeoutSeconds(settings.getFusionTimeoutSeconds());
+
+        //the results of the live detection are fused before they are displayed
+        ResistorDetector.ResultListener resultListener = settings.getLiveDetectionEnabled() ? resultFusion : this.resultListener;
 
         switch (detectionMode) {
             case ColumnResistorDetection:
-                resistorDetector = new ColumnsResistorDetector(resultListener);
+                resistorDetector = new ColumnsResistorDetector(resultListener, preprocessor);
                 break;
             case ContoursModResistorDetection:
-                resistorDetector = new ContoursModResistorDetector(resultListener);
+                resistorDetector = new ContoursModResistorDetector(resultListener, preprocessor);
                 break;
             case ExperimentsResistorDetection:
-                resistorDetector = new ExperimentsResistorDetector(resultListener);
+                resistorDetector = new ExperimentsResistorDetector(resultListener, preprocessor);
                 break;
+            case LabelsResistorDetection:
+                resistorDetector = new LabelsResistorDetector(resultListener, preprocessor);
+                break;
+        }
+
+        resistorDetector.setDetailLevel(settings.getDetailLevel());
+        resistorDetector.setStageTimingEnabled(settings.getStageTimingEnabled());
+        resistorDetector.setTargetColumnsPerBand(settings.getTargetColumnsPerBand());
+
+        if (settings.getParallelDetectionEnabled()) {
+            if (parallelExecutor == null)
+                parallelExecutor = new ForkJoinPool();
+
+            resistorDetector.setParallelExecutor(parallelExecutor);
+        }
+
+        if (settings.getQualityGateEnabled()) {
+            FrameQualityGate frameQualityGate = new FrameQualityGate();
+            frameQualityGate.setSharpnessThreshold(settings.getQualityGateSharpnessThreshold());
+            frameQualityGate.setHighlightRatioThreshold(settings.getQualityGateHighlightThreshold());
+
+            resistorDetector.setFrameQualityGate(frameQualityGate);
+        }
+
+        liveDetector.setResistorDetector(resistorDetector);
+    }
+
+    /**
+     * Creates the Preprocessor of the given preprocessing mode.
+     *
+     * @param preprocessingMode the selected preprocessing mode
+     * @return a new Preprocessor
+     */
+    private Preprocessor newPreprocessor(PreprocessingMode preprocessingMode) {
+        switch (preprocessingMode) {
+            case MedianBlur:
+                return new MedianBlurPreprocessor();
+            case GuidedFilter:
+                return new GuidedFilterPreprocessor();
+            case None:
+                return new NoOpPreprocessor();
+            case BilateralFilter:
+            default:
+                return new BilateralFilterPreprocessor();
         }
     }
 
@@ -1,23 +1,24 @@
 package at.fhooe.pro3.resistordetector.ui;
 
 import android.content.Context;
-import android.graphics.ImageFormat;
-import android.graphics.SurfaceTexture;
+import android.graphics.RectF;
 import android.hardware.Camera;
-import android.os.Build;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.ViewGroup.LayoutParams;
 
 import org.opencv.android.CameraBridgeViewBase;
 import org.opencv.core.Core;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.Rect;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
 import java.util.List;
 
+import at.fhooe.pro3.resistordetector.camera.FramePipeline;
+import at.fhooe.pro3.resistordetector.camera.FrameSource;
+
 /**
  * Implementation of JavaCameraView class for Portrait Mode.
  * This class is very similar to the JavaCameraView, but displays the camera preview image in portrait mode.
@@ -26,33 +27,69 @@ import java.util.List;
  * <p>
  * See: http://answers.opencv.org/question/7313/rotating-android-camera-to-portrait/
  * <p>
+ * The frames are captured by a FrameSource (see CaptureMode) and delivered by a FramePipeline,
+ * which copies them into a ring of preallocated frame buffers (see setFrameBufferCount) and hands them
+ * to its worker thread without locks. If all buffers are in use because the delivery is slower
+ * than the camera, a frame is dropped according to the FrameDropPolicy.
+ * <p>
  * Created by stefan on 15.06.2017.
  */
-public class PortraitCameraView extends CameraBridgeViewBase implements Camera.PreviewCallback {
-    private static final int MAGIC_TEXTURE_ID = 10;
+public class PortraitCameraView extends CameraBridgeViewBase {
     private static final String TAG = "JavaCameraView";
 
-    private byte mBuffer[];
-    private Mat[] mFrameChain;
-    private int mChainIdx = 0;
-    private Thread mThread;
-    private boolean mStopThread;
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final CaptureMode CAPTURE_MODE_DEFAULT = CaptureMode.LegacyCamera;
 
-    protected Camera mCamera;
-    protected JavaCameraFrame[] mCameraFrame;
-    private SurfaceTexture mSurfaceTexture;
-    private int mCameraId;
+    /**
+     * Guards the frame source and the frame pipeline against concurrent initialization and release.
+     */
+    private final Object mLifecycleLock = new Object();
 
-    public static class JavaCameraSizeAccessor implements ListItemAccessor {
+    /**
+     * The capture mode used when the camera is initialized the next time.
+     */
+    private CaptureMode mCaptureMode = CAPTURE_MODE_DEFAULT;
+
+    /**
+     * The number of frame buffers used when the camera is initialized the next time.
+     */
+    private int mFrameBufferCount = FramePipeline.FRAME_BUFFER_COUNT_DEFAULT;
+
+    /**
+     * The policy used if a frame is received while all frame buffers are in use.
+     */
+    private FramePipeline.FrameDropPolicy mFrameDropPolicy = FramePipeline.FRAME_DROP_POLICY_DEFAULT;
+
+    /**
+     * The source of the frames, null if the camera is not initialized.
+     */
+    private volatile FrameSource mFrameSource;
+
+    /**
+     * The pipeline delivering the frames, null if the camera is not initialized.
+     */
+    private volatile FramePipeline mFramePipeline;
+
+    /**
+     * The frame delivered to the CvCameraViewListener, reused for every frame.
+     */
+    protected JavaCameraFrame mCameraFrame;
+
+    /**
+     * Accesses the width and height of the frame sizes of a FrameSource.
+     */
+    public static class FrameSizeAccessor implements ListItemAccessor {
 
         public int getWidth(Object obj) {
-            Camera.Size size = (Camera.Size) obj;
-            return size.width;
+            Size size = (Size) obj;
+            return (int) size.width;
         }
 
         public int getHeight(Object obj) {
-            Camera.Size size = (Camera.Size) obj;
-            return size.height;
+            Size size = (Size) obj;
+            return (int) size.height;
         }
     }
 
@@ -65,123 +102,96 @@ public class PortraitCameraView extends CameraBridgeViewBase implements Camera.P
     }
 
     protected boolean initializeCamera(int width, int height) {
-        Log.d(TAG, "Initialize java camera");
-        boolean result = true;
-        synchronized (this) {
-            mCamera = null;
-
-            boolean connected = false;
-            int numberOfCameras = android.hardware.Camera.getNumberOfCameras();
-            android.hardware.Camera.CameraInfo cameraInfo = new android.hardware.Camera.CameraInfo();
-            for (int i = 0; i < numberOfCameras; i++) {
-                android.hardware.Camera.getCameraInfo(i, cameraInfo);
-                if (cameraInfo.facing == android.hardware.Camera.CameraInfo.CAMERA_FACING_BACK) {
-                    try {
-                        mCamera = Camera.open(i);
-                        mCameraId = i;
-                        connected = true;
-                    } catch (RuntimeException e) {
-                        Log.e(TAG, "Camera #" + i + "failed to open: " + e.getMessage());
-                    }
-                    if (connected) break;
-                }
+        Log.d(TAG, "Initialize camera: " + mCaptureMode);
+        synchronized (mLifecycleLock) {
+            FrameSource frameSource = newFrameSource(mCaptureMode);
+
+            if (!frameSource.open()) {
+                frameSource.close();
+                return false;
             }
 
-            if (mCamera == null) return false;
+            FramePipeline framePipeline = null;
 
-        /* Now set camera parameters */
             try {
-                Camera.Parameters params = mCamera.getParameters();
-                Log.d(TAG, "getSupportedPreviewSizes()");
-                List<Camera.Size> sizes = params.getSupportedPreviewSizes();
+                Log.d(TAG, "getSupportedFrameSizes()");
+                List<Size> sizes = frameSource.getSupportedFrameSizes();
 
-                if (sizes != null) {
                 /* Select the size that fits surface considering maximum size allowed */
-                    Size frameSize = calculateCameraFrameSize(sizes, new JavaCameraSizeAccessor(), height, width); //use turn around values here to get the correct prev size for portrait mode
+                Size frameSize = calculateCameraFrameSize(sizes, new FrameSizeAccessor(), height, width); //use turn around values here to get the correct prev size for portrait mode
 
-                    params.setPreviewFormat(ImageFormat.NV21);
-                    Log.d(TAG, "Set preview size to " + Integer.valueOf((int) frameSize.width) + "x" + Integer.valueOf((int) frameSize.height));
-                    params.setPreviewSize((int) frameSize.width, (int) frameSize.height);
+                if (frameSize.width <= 0 || frameSize.height <= 0) {
+                    frameSource.close();
+                    return false;
+                }
 
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH)
-                        params.setRecordingHint(true);
+                int realWidth = (int) frameSize.width; //the real width and height are the width and height of the frames of the frame source
+                int realHeight = (int) frameSize.height;
 
-                    List<String> FocusModes = params.getSupportedFocusModes();
-                    if (FocusModes != null && FocusModes.contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO)) {
-                        params.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO);
-                    }
+                mFrameWidth = realHeight; //the frame width and height of the super class are used to generate the cached bitmap and they need to be the size of the resulting frame
+                mFrameHeight = realWidth;
 
-                    mCamera.setParameters(params);
-                    params = mCamera.getParameters();
+                if ((getLayoutParams().width == LayoutParams.MATCH_PARENT) && (getLayoutParams().height == LayoutParams.MATCH_PARENT))
+                    mScale = Math.min(((float) height) / mFrameHeight, ((float) width) / mFrameWidth);
+                else
+                    mScale = 0;
 
-                    mFrameWidth = params.getPreviewSize().height; //the frame width and height of the super class are used to generate the cached bitmap and they need to be the size of the resulting frame
-                    mFrameHeight = params.getPreviewSize().width;
+                if (mFpsMeter != null) {
+                    mFpsMeter.setResolution(mFrameWidth, mFrameHeight);
+                }
 
-                    int realWidth = mFrameHeight; //the real width and height are the width and height of the frame received in onPreviewFrame
-                    int realHeight = mFrameWidth;
+                AllocateCache();
 
-                    if ((getLayoutParams().width == LayoutParams.MATCH_PARENT) && (getLayoutParams().height == LayoutParams.MATCH_PARENT))
-                        mScale = Math.min(((float) height) / mFrameHeight, ((float) width) / mFrameWidth);
-                    else
-                        mScale = 0;
+                mCameraFrame = new JavaCameraFrame(mFrameWidth, mFrameHeight); //the camera frame is in portrait
 
-                    if (mFpsMeter != null) {
-                        mFpsMeter.setResolution(mFrameWidth, mFrameHeight);
+                framePipeline = new FramePipeline(realWidth, realHeight, mFrameBufferCount, new FramePipeline.FrameHandler() {
+                    @Override
+                    public void handleFrame(Mat nv21Frame) {
+                        mCameraFrame.setYuvFrameData(nv21Frame);
+                        deliverAndDrawFrame(mCameraFrame);
                     }
-
-                    int size = mFrameWidth * mFrameHeight;
-                    size = size * ImageFormat.getBitsPerPixel(params.getPreviewFormat()) / 8;
-                    mBuffer = new byte[size];
-
-                    mCamera.addCallbackBuffer(mBuffer);
-                    mCamera.setPreviewCallbackWithBuffer(this);
-
-                    mFrameChain = new Mat[2];
-                    mFrameChain[0] = new Mat(realHeight + (realHeight / 2), realWidth, CvType.CV_8UC1); //the frame chane is still in landscape
-                    mFrameChain[1] = new Mat(realHeight + (realHeight / 2), realWidth, CvType.CV_8UC1);
-
-                    AllocateCache();
-
-                    mCameraFrame = new JavaCameraFrame[2];
-                    mCameraFrame[0] = new JavaCameraFrame(mFrameChain[0], mFrameWidth, mFrameHeight); //the camera frame is in portrait
-                    mCameraFrame[1] = new JavaCameraFrame(mFrameChain[1], mFrameWidth, mFrameHeight);
-
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-                        mSurfaceTexture = new SurfaceTexture(MAGIC_TEXTURE_ID);
-                        mCamera.setPreviewTexture(mSurfaceTexture);
-                    } else
-                        mCamera.setPreviewDisplay(null);
-
-                /* Finally we are ready to start the preview */
-                    Log.d(TAG, "startPreview");
-                    mCamera.startPreview();
-                } else
-                    result = false;
+                });
+                framePipeline.setFrameDropPolicy(mFrameDropPolicy);
+                framePipeline.start();
+
+                if (!frameSource.start(frameSize, mFrameBufferCount, framePipeline)) {
+                    frameSource.close();
+                    framePipeline.stop();
+                    framePipeline.release();
+                    return false;
+                }
             } catch (Exception e) {
-                result = false;
                 e.printStackTrace();
+                frameSource.close();
+                if (framePipeline != null) {
+                    framePipeline.stop();
+                    framePipeline.release();
+                }
+                return false;
             }
+
+            mFrameSource = frameSource;
+            mFramePipeline = framePipeline;
         }
 
-        return result;
+        return true;
     }
 
     protected void releaseCamera() {
-        synchronized (this) {
-            if (mCamera != null) {
-                mCamera.stopPreview();
-                mCamera.setPreviewCallback(null);
-
-                mCamera.release();
+        synchronized (mLifecycleLock) {
+            //no frames are received after the source is closed, the pipeline can be stopped and released
+            if (mFrameSource != null) {
+                mFrameSource.close();
+                mFrameSource = null;
             }
-            mCamera = null;
-            if (mFrameChain != null) {
-                mFrameChain[0].release();
-                mFrameChain[1].release();
+            if (mFramePipeline != null) {
+                mFramePipeline.stop();
+                mFramePipeline.release();
+                mFramePipeline = null;
             }
             if (mCameraFrame != null) {
-                mCameraFrame[0].release();
-                mCameraFrame[1].release();
+                mCameraFrame.release();
+                mCameraFrame = null;
             }
         }
     }
@@ -190,57 +200,183 @@ public class PortraitCameraView extends CameraBridgeViewBase implements Camera.P
     protected boolean connectCamera(int width, int height) {
 
     /* 1. We need to instantiate camera
-     * 2. We need to start thread which will be getting frames
+     * 2. We need to start the pipeline which will be getting frames
      */
-    /* First step - initialize camera connection */
         Log.d(TAG, "Connecting to camera");
-        if (!initializeCamera(width, height))
-            return false;
-
-    /* now we can start update thread */
-        Log.d(TAG, "Starting processing thread");
-        mStopThread = false;
-        mThread = new Thread(new CameraWorker());
-        mThread.start();
-
-        return true;
+        return initializeCamera(width, height);
     }
 
     protected void disconnectCamera() {
-    /* 1. We need to stop thread which updating the frames
-     * 2. Stop camera and release it
+    /* 1. We need to stop the camera and the pipeline updating the frames
+     * 2. Release camera
      */
         Log.d(TAG, "Disconnecting from camera");
-        try {
-            mStopThread = true;
-            Log.d(TAG, "Notify thread");
-            synchronized (this) {
-                this.notify();
-            }
-            Log.d(TAG, "Wating for thread");
-            if (mThread != null)
-                mThread.join();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        } finally {
-            mThread = null;
+        releaseCamera();
+    }
+
+    /**
+     * Sets the source of the frames, which is used when the camera is initialized the next time
+     * (e.g. by disableView() and enableView()).
+     *
+     * @param captureMode the new capture mode
+     */
+    public void setCaptureMode(CaptureMode captureMode) {
+        if (captureMode == null)
+            throw new IllegalArgumentException("captureMode must not be null!");
+
+        mCaptureMode = captureMode;
+    }
+
+    /**
+     * Returns the source of the frames used when the camera is initialized the next time.
+     *
+     * @return the current capture mode
+     */
+    public CaptureMode getCaptureMode() {
+        return mCaptureMode;
+    }
+
+    /**
+     * Sets the number of frame buffers, which is used when the camera is initialized the next time
+     * (e.g. by disableView() and enableView()).
+     * More buffers absorb short delays of the delivery, but need more memory and can increase the latency
+     * with FrameDropPolicy.DropNewest.
+     *
+     * @param frameBufferCount the number of frame buffers
+     */
+    public void setFrameBufferCount(int frameBufferCount) {
+        if (frameBufferCount < FramePipeline.FRAME_BUFFER_COUNT_MIN_VALUE || frameBufferCount > FramePipeline.FRAME_BUFFER_COUNT_MAX_VALUE) {
+            throw new IllegalArgumentException("frameBufferCount must be between "
+                    + FramePipeline.FRAME_BUFFER_COUNT_MIN_VALUE + " and " + FramePipeline.FRAME_BUFFER_COUNT_MAX_VALUE);
         }
 
-    /* Now release camera */
-        releaseCamera();
+        mFrameBufferCount = frameBufferCount;
+    }
+
+    /**
+     * Returns the number of frame buffers used when the camera is initialized the next time.
+     *
+     * @return the number of frame buffers
+     */
+    public int getFrameBufferCount() {
+        return mFrameBufferCount;
+    }
+
+    /**
+     * Sets which frame is dropped if a frame is received while all frame buffers are in use.
+     *
+     * @param frameDropPolicy the new frame drop policy
+     */
+    public void setFrameDropPolicy(FramePipeline.FrameDropPolicy frameDropPolicy) {
+        if (frameDropPolicy == null)
+            throw new IllegalArgumentException("frameDropPolicy must not be null!");
+
+        mFrameDropPolicy = frameDropPolicy;
+
+        FramePipeline framePipeline = mFramePipeline;
+        if (framePipeline != null)
+            framePipeline.setFrameDropPolicy(frameDropPolicy);
+    }
+
+    /**
+     * Returns which frame is dropped if a frame is received while all frame buffers are in use.
+     *
+     * @return the current frame drop policy
+     */
+    public FramePipeline.FrameDropPolicy getFrameDropPolicy() {
+        return mFrameDropPolicy;
+    }
+
+    /**
+     * Returns the given region of the last received frame as new BGR matrix in portrait orientation,
+     * without converting and rotating the whole frame (see FramePipeline.getFrameRegionBgr).
+     * <p>
+     * Release the returned matrix if not needed anymore.
+     *
+     * @param region the region in the coordinates of the (portrait) frames delivered to the CvCameraViewListener
+     * @return a new BGR matrix with the size of the region, or null if no frame was received yet
+     */
+    public Mat getFrameRegionBgr(Rect region) {
+        FramePipeline framePipeline = mFramePipeline;
+
+        if (framePipeline == null)
+            return null;
+
+        return framePipeline.getFrameRegionBgr(region);
+    }
+
+    /**
+     * Returns the scale of the frames drawn on this view (see CameraBridgeViewBase.deliverAndDrawFrame).
+     *
+     * @return the number of view pixels per frame pixel
+     */
+    public float getFrameToViewScale() {
+        return mScale != 0 ? mScale : 1;
+    }
+
+    /**
+     * Maps a rectangle of the frames delivered to the CvCameraViewListener to the coordinates of this view.
+     * The frames are drawn scaled (see getFrameToViewScale) and centered on this view.
+     *
+     * @param frameRect the rectangle in frame coordinates
+     * @return the rectangle in view coordinates, or null if the camera is not initialized
+     */
+    public RectF mapFrameRectToView(Rect frameRect) {
+        if (frameRect == null)
+            throw new IllegalArgumentException("frameRect must not be null!");
+
+        if (!isCameraInitialized() || mFrameWidth <= 0 || mFrameHeight <= 0)
+            return null;
+
+        float scale = getFrameToViewScale();
+        float left = (getWidth() - scale * mFrameWidth) / 2;
+        float top = (getHeight() - scale * mFrameHeight) / 2;
+
+        return new RectF(left + scale * frameRect.x, top + scale * frameRect.y,
+                left + scale * (frameRect.x + frameRect.width), top + scale * (frameRect.y + frameRect.height));
+    }
+
+    /**
+     * Returns the camera of the LegacyCamera capture mode, e.g. to set the zoom or flash parameters.
+     *
+     * @return the camera, or null if the camera is not initialized or another capture mode is used
+     */
+    @SuppressWarnings("deprecation")
+    protected Camera getLegacyCamera() {
+        FrameSource frameSource = mFrameSource;
+
+        if (frameSource instanceof LegacyCameraFrameSource)
+            return ((LegacyCameraFrameSource) frameSource).getCamera();
+
+        return null;
+    }
+
+    /**
+     * Returns whether the camera is initialized.
+     *
+     * @return true if the camera is initialized, false otherwise
+     */
+    protected boolean isCameraInitialized() {
+        return mFramePipeline != null;
     }
 
-    public void onPreviewFrame(byte[] frame, Camera arg1) {
-        Log.d(TAG, "Preview Frame received. Frame size: " + frame.length);
-        synchronized (this) {
-            mFrameChain[1 - mChainIdx].put(0, 0, frame);
-            this.notify();
+    /**
+     * Creates the FrameSource of the given capture mode.
+     *
+     * @param captureMode the capture mode
+     * @return a new FrameSource
+     */
+    private FrameSource newFrameSource(CaptureMode captureMode) {
+        switch (captureMode) {
+            case Camera2:
+                return new Camera2FrameSource(getContext());
+            case LegacyCamera:
+            default:
+                return new LegacyCameraFrameSource();
         }
-        if (mCamera != null)
-            mCamera.addCallbackBuffer(mBuffer);
     }
 
-    private class JavaCameraFrame implements CvCameraViewFrame {
+    protected class JavaCameraFrame implements CvCameraViewFrame {
         private Mat mYuvFrameData;
         private Mat mRgba;
         private int mWidth;
@@ -259,15 +395,23 @@ public class PortraitCameraView extends CameraBridgeViewBase implements Camera.P
             return mRotated;
         }
 
-        public JavaCameraFrame(Mat Yuv420sp, int width, int height) {
+        public JavaCameraFrame(int width, int height) {
             super();
             mWidth = width;
             mHeight = height;
-            mYuvFrameData = Yuv420sp;
             mRgba = new Mat();
             mRotated = new Mat();
         }
 
+        /**
+         * Sets the NV21 frame (landscape) which is converted by rgba().
+         *
+         * @param Yuv420sp the frame received by the FramePipeline
+         */
+        public void setYuvFrameData(Mat Yuv420sp) {
+            mYuvFrameData = Yuv420sp;
+        }
+
         public void release() {
             mRgba.release();
             if (mRotated != null) mRotated.release();
@@ -275,26 +419,4 @@ public class PortraitCameraView extends CameraBridgeViewBase implements Camera.P
 
 
     }
-
-    private class CameraWorker implements Runnable {
-
-        public void run() {
-            do {
-                synchronized (PortraitCameraView.this) {
-                    try {
-                        PortraitCameraView.this.wait();
-                    } catch (InterruptedException e) {
-                        Log.e(TAG, "CameraWorker interrupted", e);
-                    }
-                }
-
-                if (!mStopThread) {
-                    if (!mFrameChain[mChainIdx].empty())
-                        deliverAndDrawFrame(mCameraFrame[mChainIdx]);
-                    mChainIdx = 1 - mChainIdx;
-                }
-            } while (!mStopThread);
-            Log.d(TAG, "Finish processing thread");
-        }
-    }
-}
\ No newline at end of file
+}
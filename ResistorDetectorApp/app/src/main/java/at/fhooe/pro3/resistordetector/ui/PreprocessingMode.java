@@ -0,0 +1,13 @@
+package at.fhooe.pro3.resistordetector.ui;
+
+/**
+ * Lists the available implementations of the Preprocessor interface.
+ * This enum is used to display the available preprocessing modes
+ * and to save the selected mode in the AppSettings.
+ */
+public enum PreprocessingMode {
+    BilateralFilter,
+    MedianBlur,
+    GuidedFilter,
+    None,
+}
@@ -5,11 +5,19 @@ import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
 import android.widget.SeekBar;
 import android.widget.Spinner;
+import android.widget.TextView;
 
 import at.fhooe.pro3.resistordetector.AppSettings;
 import at.fhooe.pro3.resistordetector.R;
+import at.fhooe.pro3.resistordetector.camera.FramePipeline;
+import at.fhooe.pro3.resistordetector.detection.FrameQualityGate;
+import at.fhooe.pro3.resistordetector.detection.LiveDetector;
+import at.fhooe.pro3.resistordetector.detection.ResistorDetector;
+import at.fhooe.pro3.resistordetector.detection.TemporalResultFusion;
 
 /**
  * This activity contains the different settings the user can adjust
@@ -43,6 +51,18 @@ public class SettingsActivity extends AppCompatActivity {
         setupIndicatorSizeControl();
 
         setupModeSelectionControl();
+        setupPreprocessingSelectionControl();
+        setupDetailLevelSelectionControl();
+        setupParallelDetectionControl();
+        setupStageTimingControl();
+        setupTargetColumnsPerBandControl();
+        setupCaptureModeSelectionControl();
+        setupFrameBufferControls();
+        setupOverlayModeSelectionControl();
+        setupAdjustIndicatorOnlyControl();
+        setupLiveDetectionControls();
+        setupFusionControls();
+        setupQualityGateControls();
     }
 
     /**
@@ -264,6 +284,556 @@ public class SettingsActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Sets up and initializes the preprocessing mode selection spinner.
+     * The initial value is set to the last saved value (if there is any)
+     * or to the default value.
+     */
+    private void setupPreprocessingSelectionControl() {
+        Spinner preprocessingModeSpinner = (Spinner) findViewById(R.id.settings_activity_preprocessing_select);
+
+        final ArrayAdapter<String> preprocessingModeElements = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item);
+
+        for (PreprocessingMode mode : PreprocessingMode.values()) {
+            preprocessingModeElements.add(mode.name());
+        }
+
+        PreprocessingMode preprocessingMode = settings.getPreprocessingMode();
+
+        int selectionPosition = preprocessingModeElements.getPosition(preprocessingMode.name());
+
+        if (selectionPosition < 0 || selectionPosition > preprocessingModeElements.getCount()) {
+            selectionPosition = preprocessingModeElements.getPosition(AppSettings.DEFAULT_PREPROCESSING_MODE);
+        }
+
+        preprocessingModeElements.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        preprocessingModeSpinner.setAdapter(preprocessingModeElements);
+        preprocessingModeSpinner.setSelection(selectionPosition);
+
+        preprocessingModeSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                PreprocessingMode selectedPreprocessingMode = PreprocessingMode.valueOf(preprocessingModeElements.getItem(position));
+
+                settings.savePreprocessingMode(selectedPreprocessingMode);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+
+            }
+        });
+    }
+
+    /**
+     * Sets up and initializes the detail level selection spinner.
+     * The initial value is set to the last saved value (if there is any)
+     * or to the default value.
+     */
+    private void setupDetailLevelSelectionControl() {
+        Spinner detailLevelSpinner = (Spinner) findViewById(R.id.settings_activity_detail_level_select);
+
+        final ArrayAdapter<String> detailLevelElements = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item);
+
+        for (ResistorDetector.DetailLevel level : ResistorDetector.DetailLevel.values()) {
+            detailLevelElements.add(level.name());
+        }
+
+        ResistorDetector.DetailLevel detailLevel = settings.getDetailLevel();
+
+        int selectionPosition = detailLevelElements.getPosition(detailLevel.name());
+
+        if (selectionPosition < 0 || selectionPosition > detailLevelElements.getCount()) {
+            selectionPosition = detailLevelElements.getPosition(AppSettings.DEFAULT_DETAIL_LEVEL);
+        }
+
+        detailLevelElements.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        detailLevelSpinner.setAdapter(detailLevelElements);
+        detailLevelSpinner.setSelection(selectionPosition);
+
+        detailLevelSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                ResistorDetector.DetailLevel selectedDetailLevel = ResistorDetector.DetailLevel.valueOf(detailLevelElements.getItem(position));
+
+                settings.saveDetailLevel(selectedDetailLevel);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+
+            }
+        });
+    }
+
+    /**
+     * Sets up and initializes the parallel detection check box.
+     * The initial value is set to the last saved value (if there is any)
+     * or to the default value.
+     */
+    private void setupParallelDetectionControl() {
+        CheckBox parallelDetectionCheckBox = (CheckBox) findViewById(R.id.settings_activity_parallel_detection);
+
+        parallelDetectionCheckBox.setChecked(settings.getParallelDetectionEnabled());
+
+        parallelDetectionCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                settings.saveParallelDetectionEnabled(isChecked);
+            }
+        });
+    }
+
+    /**
+     * Sets up and initializes the stage timing check box.
+     * The initial value is set to the last saved value (if there is any)
+     * or to the default value.
+     */
+    private void setupStageTimingControl() {
+        CheckBox stageTimingCheckBox = (CheckBox) findViewById(R.id.settings_activity_stage_timing);
+
+        stageTimingCheckBox.setChecked(settings.getStageTimingEnabled());
+
+        stageTimingCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                settings.saveStageTimingEnabled(isChecked);
+            }
+        });
+    }
+
+    /**
+     * Sets up and initializes the seek bar of the columns per band of the reduced resolution.
+     * The initial value is set to the last saved value (if there is any)
+     * or to the default value.
+     */
+    private void setupTargetColumnsPerBandControl() {
+        final TextView targetColumnsPerBandLabel = (TextView) findViewById(R.id.settings_activity_target_columns_per_band_label);
+        SeekBar targetColumnsPerBandSeekBar = (SeekBar) findViewById(R.id.settings_activity_target_columns_per_band);
+
+        targetColumnsPerBandSeekBar.setMax(ResistorDetector.TARGET_COLUMNS_PER_BAND_MAX_VALUE - ResistorDetector.TARGET_COLUMNS_PER_BAND_MIN_VALUE);
+
+        int targetColumnsPerBand = settings.getTargetColumnsPerBand();
+
+        targetColumnsPerBandSeekBar.setProgress(targetColumnsPerBand - ResistorDetector.TARGET_COLUMNS_PER_BAND_MIN_VALUE);
+        targetColumnsPerBandLabel.setText(targetColumnsPerBandToText(targetColumnsPerBand));
+
+        targetColumnsPerBandSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                targetColumnsPerBandLabel.setText(targetColumnsPerBandToText(progress + ResistorDetector.TARGET_COLUMNS_PER_BAND_MIN_VALUE));
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                int newTargetColumnsPerBand = seekBar.getProgress() + ResistorDetector.TARGET_COLUMNS_PER_BAND_MIN_VALUE;
+
+                settings.saveTargetColumnsPerBand(newTargetColumnsPerBand);
+            }
+        });
+    }
+
+    /**
+     * Returns the label text of the given columns per band of the reduced resolution.
+     *
+     * @param targetColumnsPerBand the columns per band, 0 if the reduced resolution is disabled
+     * @return the label text
+     */
+    private static String targetColumnsPerBandToText(int targetColumnsPerBand) {
+        if (targetColumnsPerBand == 0)
+            return "Reduced resolution: off";
+
+        return "Reduced resolution: " + targetColumnsPerBand + " columns per band";
+    }
+
+    /**
+     * Sets up and initializes the capture mode selection spinner.
+     * The initial value is set to the last saved value (if there is any)
+     * or to the default value.
+     */
+    private void setupCaptureModeSelectionControl() {
+        Spinner captureModeSpinner = (Spinner) findViewById(R.id.settings_activity_capture_mode_select);
+
+        final ArrayAdapter<String> captureModeElements = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item);
+
+        for (CaptureMode mode : CaptureMode.values()) {
+            captureModeElements.add(mode.name());
+        }
+
+        CaptureMode captureMode = settings.getCaptureMode();
+
+        int selectionPosition = captureModeElements.getPosition(captureMode.name());
+
+        if (selectionPosition < 0 || selectionPosition > captureModeElements.getCount()) {
+            selectionPosition = captureModeElements.getPosition(AppSettings.DEFAULT_CAPTURE_MODE);
+        }
+
+        captureModeElements.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        captureModeSpinner.setAdapter(captureModeElements);
+        captureModeSpinner.setSelection(selectionPosition);
+
+        captureModeSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                CaptureMode selectedCaptureMode = CaptureMode.valueOf(captureModeElements.getItem(position));
+
+                settings.saveCaptureMode(selectedCaptureMode);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+
+            }
+        });
+    }
+
+    /**
+     * Sets up and initializes the seek bar of the frame buffer count and the frame drop policy selection spinner.
+     * The initial values are set to the last saved values (if there are any)
+     * or to the default values.
+     */
+    private void setupFrameBufferControls() {
+        final TextView frameBufferCountLabel = (TextView) findViewById(R.id.settings_activity_frame_buffer_count_label);
+        SeekBar frameBufferCountSeekBar = (SeekBar) findViewById(R.id.settings_activity_frame_buffer_count);
+
+        frameBufferCountSeekBar.setMax(FramePipeline.FRAME_BUFFER_COUNT_MAX_VALUE - FramePipeline.FRAME_BUFFER_COUNT_MIN_VALUE);
+
+        int frameBufferCount = settings.getFrameBufferCount();
+
+        frameBufferCountSeekBar.setProgress(frameBufferCount - FramePipeline.FRAME_BUFFER_COUNT_MIN_VALUE);
+        frameBufferCountLabel.setText("Frame buffers: " + frameBufferCount);
+
+        frameBufferCountSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                frameBufferCountLabel.setText("Frame buffers: " + (progress + FramePipeline.FRAME_BUFFER_COUNT_MIN_VALUE));
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                int newFrameBufferCount = seekBar.getProgress() + FramePipeline.FRAME_BUFFER_COUNT_MIN_VALUE;
+
+                settings.saveFrameBufferCount(newFrameBufferCount);
+            }
+        });
+
+        Spinner frameDropPolicySpinner = (Spinner) findViewById(R.id.settings_activity_frame_drop_policy_select);
+
+        final ArrayAdapter<String> frameDropPolicyElements = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item);
+
+        for (FramePipeline.FrameDropPolicy policy : FramePipeline.FrameDropPolicy.values()) {
+            frameDropPolicyElements.add(policy.name());
+        }
+
+        FramePipeline.FrameDropPolicy frameDropPolicy = settings.getFrameDropPolicy();
+
+        int selectionPosition = frameDropPolicyElements.getPosition(frameDropPolicy.name());
+
+        if (selectionPosition < 0 || selectionPosition > frameDropPolicyElements.getCount()) {
+            selectionPosition = frameDropPolicyElements.getPosition(AppSettings.DEFAULT_FRAME_DROP_POLICY);
+        }
+
+        frameDropPolicyElements.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        frameDropPolicySpinner.setAdapter(frameDropPolicyElements);
+        frameDropPolicySpinner.setSelection(selectionPosition);
+
+        frameDropPolicySpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                FramePipeline.FrameDropPolicy selectedFrameDropPolicy = FramePipeline.FrameDropPolicy.valueOf(frameDropPolicyElements.getItem(position));
+
+                settings.saveFrameDropPolicy(selectedFrameDropPolicy);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+
+            }
+        });
+    }
+
+    /**
+     * Sets up and initializes the overlay mode selection spinner.
+     * The initial value is set to the last saved value (if there is any)
+     * or to the default value.
+     */
+    private void setupOverlayModeSelectionControl() {
+        Spinner overlayModeSpinner = (Spinner) findViewById(R.id.settings_activity_overlay_mode_select);
+
+        final ArrayAdapter<String> overlayModeElements = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item);
+
+        for (CameraViewListener.OverlayMode mode : CameraViewListener.OverlayMode.values()) {
+            overlayModeElements.add(mode.name());
+        }
+
+        CameraViewListener.OverlayMode overlayMode = settings.getOverlayMode();
+
+        int selectionPosition = overlayModeElements.getPosition(overlayMode.name());
+
+        if (selectionPosition < 0 || selectionPosition > overlayModeElements.getCount()) {
+            selectionPosition = overlayModeElements.getPosition(AppSettings.DEFAULT_OVERLAY_MODE);
+        }
+
+        overlayModeElements.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        overlayModeSpinner.setAdapter(overlayModeElements);
+        overlayModeSpinner.setSelection(selectionPosition);
+
+        overlayModeSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                CameraViewListener.OverlayMode selectedOverlayMode = CameraViewListener.OverlayMode.valueOf(overlayModeElements.getItem(position));
+
+                settings.saveOverlayMode(selectedOverlayMode);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+
+            }
+        });
+    }
+
+    /**
+     * Sets up and initializes the check box to adjust only the image inside the indicator.
+     * The initial value is set to the last saved value (if there is any)
+     * or to the default value.
+     */
+    private void setupAdjustIndicatorOnlyControl() {
+        CheckBox adjustIndicatorOnlyCheckBox = (CheckBox) findViewById(R.id.settings_activity_adjust_indicator_only);
+
+        adjustIndicatorOnlyCheckBox.setChecked(settings.getAdjustIndicatorOnly());
+
+        adjustIndicatorOnlyCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                settings.saveAdjustIndicatorOnly(isChecked);
+            }
+        });
+    }
+
+    /**
+     * Sets up and initializes the live detection check box and the seek bar of the live detection rate.
+     * The initial values are set to the last saved values (if there are any)
+     * or to the default values.
+     */
+    private void setupLiveDetectionControls() {
+        CheckBox liveDetectionCheckBox = (CheckBox) findViewById(R.id.settings_activity_live_detection);
+
+        liveDetectionCheckBox.setChecked(settings.getLiveDetectionEnabled());
+
+        liveDetectionCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                settings.saveLiveDetectionEnabled(isChecked);
+            }
+        });
+
+        final TextView liveDetectionRateLabel = (TextView) findViewById(R.id.settings_activity_live_detection_rate_label);
+        SeekBar liveDetectionRateSeekBar = (SeekBar) findViewById(R.id.settings_activity_live_detection_rate);
+
+        liveDetectionRateSeekBar.setMax(LiveDetector.DETECTIONS_PER_SECOND_MAX_VALUE - LiveDetector.DETECTIONS_PER_SECOND_MIN_VALUE);
+
+        int liveDetectionRate = settings.getLiveDetectionRate();
+
+        liveDetectionRateSeekBar.setProgress(liveDetectionRate - LiveDetector.DETECTIONS_PER_SECOND_MIN_VALUE);
+        liveDetectionRateLabel.setText("Live detections per second: " + liveDetectionRate);
+
+        liveDetectionRateSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                liveDetectionRateLabel.setText("Live detections per second: " + (progress + LiveDetector.DETECTIONS_PER_SECOND_MIN_VALUE));
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                int newLiveDetectionRate = seekBar.getProgress() + LiveDetector.DETECTIONS_PER_SECOND_MIN_VALUE;
+
+                settings.saveLiveDetectionRate(newLiveDetectionRate);
+            }
+        });
+    }
+
+    /**
+     * Sets up and initializes the seek bars of the window size, the agreement threshold and the timeout
+     * of the fusion of the live detection results.
+     * The initial values are set to the last saved values (if there are any)
+     * or to the default values.
+     */
+    private void setupFusionControls() {
+        final TextView windowSizeLabel = (TextView) findViewById(R.id.settings_activity_fusion_window_size_label);
+        SeekBar windowSizeSeekBar = (SeekBar) findViewById(R.id.settings_activity_fusion_window_size);
+
+        windowSizeSeekBar.setMax(TemporalResultFusion.WINDOW_SIZE_MAX_VALUE - TemporalResultFusion.WINDOW_SIZE_MIN_VALUE);
+
+        int windowSize = settings.getFusionWindowSize();
+
+        windowSizeSeekBar.setProgress(windowSize - TemporalResultFusion.WINDOW_SIZE_MIN_VALUE);
+        windowSizeLabel.setText("Fused live detection results: " + windowSize);
+
+        windowSizeSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                windowSizeLabel.setText("Fused live detection results: " + (progress + TemporalResultFusion.WINDOW_SIZE_MIN_VALUE));
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                settings.saveFusionWindowSize(seekBar.getProgress() + TemporalResultFusion.WINDOW_SIZE_MIN_VALUE);
+            }
+        });
+
+        //the agreement threshold is set in percent
+        final int agreementThresholdMinPercent = Math.round(TemporalResultFusion.AGREEMENT_THRESHOLD_MIN_VALUE * 100);
+        final TextView agreementThresholdLabel = (TextView) findViewById(R.id.settings_activity_fusion_agreement_threshold_label);
+        SeekBar agreementThresholdSeekBar = (SeekBar) findViewById(R.id.settings_activity_fusion_agreement_threshold);
+
+        agreementThresholdSeekBar.setMax(Math.round(TemporalResultFusion.AGREEMENT_THRESHOLD_MAX_VALUE * 100) - agreementThresholdMinPercent);
+
+        int agreementThresholdPercent = Math.round(settings.getFusionAgreementThreshold() * 100);
+
+        agreementThresholdSeekBar.setProgress(agreementThresholdPercent - agreementThresholdMinPercent);
+        agreementThresholdLabel.setText("Agreement of the fused results: " + agreementThresholdPercent + "%");
+
+        agreementThresholdSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                agreementThresholdLabel.setText("Agreement of the fused results: " + (progress + agreementThresholdMinPercent) + "%");
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                settings.saveFusionAgreementThreshold((seekBar.getProgress() + agreementThresholdMinPercent) / 100f);
+            }
+        });
+
+        final TextView timeoutLabel = (TextView) findViewById(R.id.settings_activity_fusion_timeout_label);
+        SeekBar timeoutSeekBar = (SeekBar) findViewById(R.id.settings_activity_fusion_timeout);
+
+        timeoutSeekBar.setMax(TemporalResultFusion.TIMEOUT_SECONDS_MAX_VALUE - TemporalResultFusion.TIMEOUT_SECONDS_MIN_VALUE);
+
+        int timeoutSeconds = settings.getFusionTimeoutSeconds();
+
+        timeoutSeekBar.setProgress(timeoutSeconds - TemporalResultFusion.TIMEOUT_SECONDS_MIN_VALUE);
+        timeoutLabel.setText("Live detection timeout: " + timeoutSeconds + " s");
+
+        timeoutSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                timeoutLabel.setText("Live detection timeout: " + (progress + TemporalResultFusion.TIMEOUT_SECONDS_MIN_VALUE) + " s");
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                settings.saveFusionTimeoutSeconds(seekBar.getProgress() + TemporalResultFusion.TIMEOUT_SECONDS_MIN_VALUE);
+            }
+        });
+    }
+
+    /**
+     * Sets up and initializes the quality gate check box and the seek bars of the sharpness
+     * and highlight thresholds of the quality gate.
+     * The initial values are set to the last saved values (if there are any)
+     * or to the default values.
+     */
+    private void setupQualityGateControls() {
+        CheckBox qualityGateCheckBox = (CheckBox) findViewById(R.id.settings_activity_quality_gate);
+
+        qualityGateCheckBox.setChecked(settings.getQualityGateEnabled());
+
+        qualityGateCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                settings.saveQualityGateEnabled(isChecked);
+            }
+        });
+
+        final TextView sharpnessLabel = (TextView) findViewById(R.id.settings_activity_quality_gate_sharpness_label);
+        SeekBar sharpnessSeekBar = (SeekBar) findViewById(R.id.settings_activity_quality_gate_sharpness);
+
+        sharpnessSeekBar.setMax(FrameQualityGate.SHARPNESS_THRESHOLD_MAX_VALUE - FrameQualityGate.SHARPNESS_THRESHOLD_MIN_VALUE);
+
+        int sharpnessThreshold = settings.getQualityGateSharpnessThreshold();
+
+        sharpnessSeekBar.setProgress(sharpnessThreshold - FrameQualityGate.SHARPNESS_THRESHOLD_MIN_VALUE);
+        sharpnessLabel.setText("Minimum sharpness: " + sharpnessThreshold);
+
+        sharpnessSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                sharpnessLabel.setText("Minimum sharpness: " + (progress + FrameQualityGate.SHARPNESS_THRESHOLD_MIN_VALUE));
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                settings.saveQualityGateSharpnessThreshold(seekBar.getProgress() + FrameQualityGate.SHARPNESS_THRESHOLD_MIN_VALUE);
+            }
+        });
+
+        //the highlight threshold is set in percent
+        final int highlightThresholdMinPercent = Math.round(FrameQualityGate.HIGHLIGHT_RATIO_THRESHOLD_MIN_VALUE * 100);
+        final TextView highlightLabel = (TextView) findViewById(R.id.settings_activity_quality_gate_highlight_label);
+        SeekBar highlightSeekBar = (SeekBar) findViewById(R.id.settings_activity_quality_gate_highlight);
+
+        highlightSeekBar.setMax(Math.round(FrameQualityGate.HIGHLIGHT_RATIO_THRESHOLD_MAX_VALUE * 100) - highlightThresholdMinPercent);
+
+        int highlightThresholdPercent = Math.round(settings.getQualityGateHighlightThreshold() * 100);
+
+        highlightSeekBar.setProgress(highlightThresholdPercent - highlightThresholdMinPercent);
+        highlightLabel.setText("Maximum highlights: " + highlightThresholdPercent + "%");
+
+        highlightSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                highlightLabel.setText("Maximum highlights: " + (progress + highlightThresholdMinPercent) + "%");
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                settings.saveQualityGateHighlightThreshold((seekBar.getProgress() + highlightThresholdMinPercent) / 100f);
+            }
+        });
+    }
+
     /**
      * Method to snap the button of a seek bar to the center if the button is moved
      * within one percent of the seek bar length around the center.
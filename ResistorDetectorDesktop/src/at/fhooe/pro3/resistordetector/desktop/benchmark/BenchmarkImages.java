@@ -0,0 +1,86 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.BufferedImageConversions;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class contains the methods the benchmarks and runners use to load the test images
+ * of the 'resistorImages' directory.
+ */
+public class BenchmarkImages {
+
+    /**
+     * The directory of the test images (relative to the working directory).
+     */
+    public static final String IMAGE_DIRECTORY = "resistorImages";
+
+    /**
+     * Returns the png files of the 'resistorImages' directory, sorted by their name.
+     *
+     * @return the image files, an empty list if the directory does not exist
+     */
+    public static List<File> listImageFiles() {
+        List<File> imageFiles = new ArrayList<>();
+        File[] listOfFiles = new File(IMAGE_DIRECTORY).listFiles();
+
+        if (listOfFiles == null)
+            return imageFiles;
+
+        Arrays.sort(listOfFiles);
+
+        for (File file : listOfFiles) {
+            if (file.isFile() && file.getName().endsWith(".png"))
+                imageFiles.add(file);
+        }
+
+        return imageFiles;
+    }
+
+    /**
+     * Loads an image with BGR colors.
+     *
+     * @param file the image file
+     * @return the image, or null if the image could not be loaded
+     */
+    public static Mat loadImage(File file) {
+        try {
+            BufferedImage image = ImageIO.read(file);
+            BufferedImage imageBgr = BufferedImageConversions.toBufferedImageOfType(image, BufferedImage.TYPE_3BYTE_BGR);
+
+            return BufferedImageConversions.bufferedImageToMatBgr(imageBgr);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Loads an image, applies the bilateral filter and converts it to HSV
+     * (the same preprocessing as the detectors).
+     *
+     * @param file the image file
+     * @return the image with HSV colors, or null if the image could not be loaded
+     */
+    public static Mat loadHsvImage(File file) {
+        Mat bgr = loadImage(file);
+
+        if (bgr == null)
+            return null;
+
+        Mat filtered = new Mat();
+        Imgproc.bilateralFilter(bgr, filtered, 5, 80, 80);
+        Imgproc.cvtColor(filtered, filtered, Imgproc.COLOR_BGR2HSV);
+
+        bgr.release();
+        return filtered;
+    }
+}
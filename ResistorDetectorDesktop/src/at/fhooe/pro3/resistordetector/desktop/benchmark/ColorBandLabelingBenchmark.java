@@ -0,0 +1,223 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.ColorBandLabeling;
+import at.fhooe.pro3.resistordetector.desktop.detection.ColorDefinitionsHsv;
+import at.fhooe.pro3.resistordetector.desktop.detection.SparseIntArray;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.imgproc.Moments;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares the band locations of the ContoursModResistorDetector found with one
+ * Core.inRange and Imgproc.findContours per color code with the single pass ColorBandLabeling.
+ * <p>
+ * For every image of the 'resistorImages' directory the runtime of both methods
+ * and the resulting locations (centroid=color code) are printed. The bands of Imgproc.findContours
+ * are also merged in the reversed order, to check that the locations do not depend on the order
+ * of the contours. The benchmark exits with the status 1 if any locations differ.
+ */
+public class ColorBandLabelingBenchmark {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Number of warm up runs before the measurement.
+     */
+    private static final int WARMUP_RUNS = 20;
+
+    /**
+     * Number of measured runs.
+     */
+    private static final int MEASURED_RUNS = 100;
+
+    /**
+     * The bounds of the color codes, the same as in the ContoursModResistorDetector.
+     */
+    private static final Scalar[][] CODE_BOUNDS = {
+            {ColorDefinitionsHsv.BLACK_MIN, ColorDefinitionsHsv.BLACK_MAX},
+            {ColorDefinitionsHsv.BROWN_MIN, ColorDefinitionsHsv.BROWN_MAX},
+            {ColorDefinitionsHsv.RED1_MIN, ColorDefinitionsHsv.RED1_MAX, ColorDefinitionsHsv.RED2_MIN, ColorDefinitionsHsv.RED2_MAX},
+            {ColorDefinitionsHsv.ORANGE_MIN, ColorDefinitionsHsv.ORANGE_MAX},
+            {ColorDefinitionsHsv.YELLOW_MIN, ColorDefinitionsHsv.YELLOW_MAX},
+            {ColorDefinitionsHsv.GREEN_MIN, ColorDefinitionsHsv.GREEN_MAX},
+            {ColorDefinitionsHsv.BLUE_MIN, ColorDefinitionsHsv.BLUE_MAX},
+            {ColorDefinitionsHsv.VIOLET_MIN, ColorDefinitionsHsv.VIOLET_MAX},
+            {ColorDefinitionsHsv.GREY_MIN, ColorDefinitionsHsv.GREY_MAX},
+            {ColorDefinitionsHsv.WHITE_MIN, ColorDefinitionsHsv.WHITE_MAX}
+    };
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        ColorBandLabeling colorBandLabeling = new ColorBandLabeling(CODE_BOUNDS);
+        int equalLocations = 0;
+        int orderIndependentLocations = 0;
+        int images = 0;
+
+        System.out.println("image\tus/contours\tus/labeling\tlocations/contours\tlocations/labeling\torder independent");
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat hsvImage = BenchmarkImages.loadHsvImage(file);
+
+            if (hsvImage == null)
+                continue;
+
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                locationsWithContours(hsvImage);
+                locationsWithLabeling(hsvImage, colorBandLabeling);
+            }
+
+            long timeBefore = System.nanoTime();
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                locationsWithContours(hsvImage);
+            }
+            long contoursTime = (System.nanoTime() - timeBefore) / MEASURED_RUNS;
+
+            timeBefore = System.nanoTime();
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                locationsWithLabeling(hsvImage, colorBandLabeling);
+            }
+            long labelingTime = (System.nanoTime() - timeBefore) / MEASURED_RUNS;
+
+            String contoursLocations = locationsToString(locationsWithContours(hsvImage));
+            String reversedLocations = locationsToString(locationsWithReversedContours(hsvImage));
+            String labelingLocations = locationsToString(locationsWithLabeling(hsvImage, colorBandLabeling));
+
+            images++;
+            if (contoursLocations.equals(labelingLocations))
+                equalLocations++;
+            if (contoursLocations.equals(reversedLocations))
+                orderIndependentLocations++;
+
+            System.out.println(file.getName() + "\t" + contoursTime / 1000 + "\t" + labelingTime / 1000
+                    + "\t" + contoursLocations + "\t" + labelingLocations
+                    + "\t" + contoursLocations.equals(reversedLocations));
+
+            hsvImage.release();
+        }
+
+        System.out.println(equalLocations + " of " + images + " images with the same locations");
+        System.out.println(orderIndependentLocations + " of " + images + " images with the same locations in the reversed contour order");
+
+        if (equalLocations != images || orderIndependentLocations != images)
+            System.exit(1);
+    }
+
+    /**
+     * Finds the band locations with one Core.inRange and Imgproc.findContours per color code,
+     * the same way the ContoursModResistorDetector found them before the ColorBandLabeling.
+     *
+     * @param hsvImage the image (HSV colors)
+     * @return the locations (centroid to color code)
+     */
+    private static SparseIntArray locationsWithContours(Mat hsvImage) {
+        SparseIntArray locationValues = new SparseIntArray(4);
+        ColorBandLabeling.mergeLocations(contourBands(hsvImage), 10, locationValues);
+
+        return locationValues;
+    }
+
+    /**
+     * Finds the band locations like locationsWithContours(), but merges the bands
+     * in the reversed order of Imgproc.findContours.
+     *
+     * @param hsvImage the image (HSV colors)
+     * @return the locations (centroid to color code)
+     */
+    private static SparseIntArray locationsWithReversedContours(Mat hsvImage) {
+        List<int[]> bands = contourBands(hsvImage);
+        Collections.reverse(bands);
+
+        SparseIntArray locationValues = new SparseIntArray(4);
+        ColorBandLabeling.mergeLocations(bands, 10, locationValues);
+
+        return locationValues;
+    }
+
+    /**
+     * Finds the bands with one Core.inRange and Imgproc.findContours per color code.
+     *
+     * @param hsvImage the image (HSV colors)
+     * @return the bands in the order of Imgproc.findContours ({color code, centroid, area})
+     */
+    private static List<int[]> contourBands(Mat hsvImage) {
+        List<int[]> bands = new ArrayList<>();
+
+        for (int code = 0; code < CODE_BOUNDS.length; code++) {
+            Mat mask = new Mat();
+            Core.inRange(hsvImage, CODE_BOUNDS[code][0], CODE_BOUNDS[code][1], mask);
+
+            for (int i = 2; i < CODE_BOUNDS[code].length; i += 2) {
+                Mat rangeMask = new Mat();
+                Core.inRange(hsvImage, CODE_BOUNDS[code][i], CODE_BOUNDS[code][i + 1], rangeMask);
+                Core.bitwise_or(mask, rangeMask, mask);
+                rangeMask.release();
+            }
+
+            List<MatOfPoint> contours = new ArrayList<>();
+            Mat hierarchy = new Mat();
+            Imgproc.findContours(mask, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+
+            for (MatOfPoint contour : contours) {
+                int area = (int) Imgproc.contourArea(contour);
+
+                if (area > 20) {
+                    Moments m = Imgproc.moments(contour);
+                    bands.add(new int[]{code, (int) (m.get_m10() / m.get_m00()), area});
+                }
+
+                contour.release();
+            }
+
+            hierarchy.release();
+            mask.release();
+        }
+
+        return bands;
+    }
+
+    /**
+     * Finds the band locations with the ColorBandLabeling.
+     *
+     * @param hsvImage          the image (HSV colors)
+     * @param colorBandLabeling the labeling
+     * @return the locations (centroid to color code)
+     */
+    private static SparseIntArray locationsWithLabeling(Mat hsvImage, ColorBandLabeling colorBandLabeling) {
+        SparseIntArray locationValues = new SparseIntArray(4);
+
+        colorBandLabeling.findBands(hsvImage, 20);
+        colorBandLabeling.getLocations(10, locationValues);
+
+        return locationValues;
+    }
+
+    /**
+     * Returns the locations as text.
+     *
+     * @param locationValues the locations
+     * @return the locations as text (centroid=color code, separated by spaces)
+     */
+    private static String locationsToString(SparseIntArray locationValues) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < locationValues.size(); i++) {
+            if (builder.length() > 0)
+                builder.append(' ');
+
+            builder.append(locationValues.keyAt(i)).append('=').append(locationValues.valueAt(i));
+        }
+
+        return builder.toString();
+    }
+}
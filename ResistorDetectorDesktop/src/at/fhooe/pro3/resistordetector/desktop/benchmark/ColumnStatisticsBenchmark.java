@@ -0,0 +1,320 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.BandInfo;
+import at.fhooe.pro3.resistordetector.desktop.detection.ColumnStatisticsKernel;
+import at.fhooe.pro3.resistordetector.desktop.detection.ColumnsResistorDetector;
+import at.fhooe.pro3.resistordetector.desktop.detection.DetectionResult;
+import at.fhooe.pro3.resistordetector.desktop.detection.HsvHistogramMedian;
+import at.fhooe.pro3.resistordetector.desktop.detection.MatFactory;
+import at.fhooe.pro3.resistordetector.desktop.detection.ResistorDetector;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the calculation of the median colors of the column strips
+ * using one submatrix per strip with the single pass ColumnStatisticsKernel.
+ * <p>
+ * For every image of the 'resistorImages' directory (scaled to different widths)
+ * the number of allocated OpenCV matrices (for the kernel counted by the MatFactory),
+ * the allocated bytes on the java heap and the runtime per detection are printed. The results of both methods are compared.
+ * <p>
+ * Afterwards the ColumnsResistorDetector with ColumnMode.SlidingWindow is compared with ColumnMode.Strips:
+ * for every image the runtime per detection, the detected bands and the resistance values are printed.
+ */
+public class ColumnStatisticsBenchmark {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Number of columns combined into one strip, the same as in the ColumnsResistorDetector.
+     */
+    private static final int NR_OF_COLUMNS_TO_COMBINE = 5;
+
+    /**
+     * Number of warm up runs before the measurement.
+     */
+    private static final int WARMUP_RUNS = 50;
+
+    /**
+     * Number of measured runs.
+     */
+    private static final int MEASURED_RUNS = 200;
+
+    /**
+     * The image widths are multiplied with these factors.
+     */
+    private static final int[] SCALE_FACTORS = {1, 2, 4};
+
+    /**
+     * Number of matrices allocated by the last call of medianPerStrip().
+     */
+    private static int perStripMatAllocations = 0;
+
+    /**
+     * The result of the last detection.
+     */
+    private static DetectionResult lastResult = null;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        List<Mat> images = loadHsvImages();
+
+        HsvHistogramMedian hsvHistogramMedian = new HsvHistogramMedian();
+        ColumnStatisticsKernel kernel = new ColumnStatisticsKernel();
+
+        System.out.println("scale\tcols\tstrips\tmats/strip-wise\tmats/kernel\tbytes/strip-wise\tbytes/kernel\tus/strip-wise\tus/kernel\tequal");
+
+        for (int scale : SCALE_FACTORS) {
+            for (Mat image : images) {
+                Mat hsvImage = new Mat();
+                Imgproc.resize(image, hsvImage, new Size(image.cols() * scale, image.rows()), 0, 0, Imgproc.INTER_LINEAR);
+
+                Mat mask = new Mat();
+                Core.inRange(hsvImage, new Scalar(0, 0, 0), new Scalar(180, 256, 200), mask);
+
+                for (int i = 0; i < WARMUP_RUNS; i++) {
+                    medianPerStrip(hsvImage, mask, hsvHistogramMedian).release();
+                    kernel.medianOfColumnStrips(hsvImage, mask, NR_OF_COLUMNS_TO_COMBINE).release();
+                }
+
+                long bytesBefore = allocatedBytes();
+                long timeBefore = System.nanoTime();
+                for (int i = 0; i < MEASURED_RUNS; i++) {
+                    medianPerStrip(hsvImage, mask, hsvHistogramMedian).release();
+                }
+                long perStripTime = (System.nanoTime() - timeBefore) / MEASURED_RUNS;
+                long perStripBytes = (allocatedBytes() - bytesBefore) / MEASURED_RUNS;
+
+                long matsBefore = MatFactory.getAllocatedMats();
+                bytesBefore = allocatedBytes();
+                timeBefore = System.nanoTime();
+                for (int i = 0; i < MEASURED_RUNS; i++) {
+                    kernel.medianOfColumnStrips(hsvImage, mask, NR_OF_COLUMNS_TO_COMBINE).release();
+                }
+                long kernelTime = (System.nanoTime() - timeBefore) / MEASURED_RUNS;
+                long kernelBytes = (allocatedBytes() - bytesBefore) / MEASURED_RUNS;
+                long kernelMatAllocations = (MatFactory.getAllocatedMats() - matsBefore) / MEASURED_RUNS;
+
+                Mat perStripResult = medianPerStrip(hsvImage, mask, hsvHistogramMedian);
+                Mat kernelResult = kernel.medianOfColumnStrips(hsvImage, mask, NR_OF_COLUMNS_TO_COMBINE);
+                Mat diff = difference(perStripResult, kernelResult);
+                boolean equal = Core.countNonZero(diff) == 0;
+
+                System.out.println(scale + "\t" + hsvImage.cols()
+                        + "\t" + ColumnStatisticsKernel.getNumberOfStrips(hsvImage.cols(), NR_OF_COLUMNS_TO_COMBINE)
+                        + "\t" + perStripMatAllocations + "\t" + kernelMatAllocations
+                        + "\t" + perStripBytes + "\t" + kernelBytes
+                        + "\t" + perStripTime / 1000 + "\t" + kernelTime / 1000
+                        + "\t" + equal);
+
+                diff.release();
+                perStripResult.release();
+                kernelResult.release();
+                mask.release();
+                hsvImage.release();
+            }
+        }
+
+        compareColumnModes();
+    }
+
+    /**
+     * Compares the ColumnsResistorDetector with ColumnMode.SlidingWindow and ColumnMode.Strips
+     * on the images of the 'resistorImages' directory.
+     */
+    private static void compareColumnModes() {
+        ResistorDetector.ResultListener resultListener = new ResistorDetector.ResultListener() {
+            @Override
+            public void resultReady(DetectionResult detectionResult) {
+                lastResult = detectionResult;
+            }
+        };
+
+        ColumnsResistorDetector stripsDetector = new ColumnsResistorDetector(resultListener);
+        ColumnsResistorDetector slidingWindowDetector = new ColumnsResistorDetector(resultListener);
+        stripsDetector.setColumnMode(ColumnsResistorDetector.ColumnMode.Strips);
+        slidingWindowDetector.setColumnMode(ColumnsResistorDetector.ColumnMode.SlidingWindow);
+        stripsDetector.setDetailLevel(ResistorDetector.DetailLevel.None);
+        slidingWindowDetector.setDetailLevel(ResistorDetector.DetailLevel.None);
+
+        int sameBands = 0;
+        int sameResistance = 0;
+        int images = 0;
+
+        System.out.println();
+        System.out.println("image\tus/strips\tus/sliding-window\tbands/strips\tbands/sliding-window\tresistance/strips\tresistance/sliding-window");
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat image = BenchmarkImages.loadImage(file);
+
+            if (image == null)
+                continue;
+
+            long stripsTime = measure(stripsDetector, image);
+            DetectionResult stripsResult = lastResult;
+
+            long slidingWindowTime = measure(slidingWindowDetector, image);
+            DetectionResult slidingWindowResult = lastResult;
+
+            String stripsBands = bandsToString(stripsResult.getBandInfo());
+            String slidingWindowBands = bandsToString(slidingWindowResult.getBandInfo());
+
+            images++;
+            if (stripsBands.equals(slidingWindowBands))
+                sameBands++;
+            if (stripsResult.getResistorValue() == slidingWindowResult.getResistorValue())
+                sameResistance++;
+
+            System.out.println(file.getName() + "\t" + stripsTime / 1000 + "\t" + slidingWindowTime / 1000
+                    + "\t" + stripsBands + "\t" + slidingWindowBands
+                    + "\t" + stripsResult.getResistorValue() + "\t" + slidingWindowResult.getResistorValue());
+
+            image.release();
+        }
+
+        System.out.println(sameBands + " of " + images + " images with the same bands, "
+                + sameResistance + " of " + images + " images with the same resistance value");
+    }
+
+    /**
+     * Returns the average runtime of the detection of the given image.
+     * The detector modifies its input, so every run uses a copy of the image.
+     *
+     * @param detector the detector
+     * @param image    the image (BGR colors)
+     * @return the average runtime in nanoseconds
+     */
+    private static long measure(ResistorDetector detector, Mat image) {
+        Mat copy = new Mat();
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            image.copyTo(copy);
+            detector.detectResistorValue(copy);
+        }
+
+        long time = 0;
+
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            image.copyTo(copy);
+
+            long timeBefore = System.nanoTime();
+            detector.detectResistorValue(copy);
+            time += System.nanoTime() - timeBefore;
+        }
+
+        copy.release();
+
+        return time / MEASURED_RUNS;
+    }
+
+    /**
+     * Returns the colors of the bands as text.
+     *
+     * @param bands the bands
+     * @return the colors of the bands, separated by spaces
+     */
+    private static String bandsToString(BandInfo[] bands) {
+        if (bands == null)
+            return "-";
+
+        StringBuilder builder = new StringBuilder();
+
+        for (BandInfo band : bands) {
+            if (builder.length() > 0)
+                builder.append(' ');
+
+            builder.append(band.getColor());
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Calculates the median colors with one submatrix of the image and the mask per strip.
+     *
+     * @param hsvImage           the image (HSV colors)
+     * @param mask               the mask
+     * @param hsvHistogramMedian the median engine used for each strip
+     * @return the median row
+     */
+    private static Mat medianPerStrip(Mat hsvImage, Mat mask, HsvHistogramMedian hsvHistogramMedian) {
+        Mat medianValues = Mat.zeros(1, hsvImage.cols(), hsvImage.type());
+        perStripMatAllocations = 1;
+
+        int n = NR_OF_COLUMNS_TO_COMBINE;
+
+        for (int i = 0; i < hsvImage.cols() - n; i += n) {
+            Mat col = hsvImage.submat(new Rect(i, 0, n, hsvImage.rows()));
+            Mat colMask = mask.submat(new Rect(i, 0, n, hsvImage.rows()));
+            perStripMatAllocations += 2;
+
+            Scalar median = hsvHistogramMedian.medianOf(col, colMask);
+
+            for (int j = 0; j < n; j++) {
+                medianValues.put(0, i + j, median.val[0], median.val[1], median.val[2]);
+            }
+
+            col.release();
+            colMask.release();
+        }
+
+        return medianValues;
+    }
+
+    /**
+     * Returns a one channel matrix which is non zero where the given matrices differ.
+     *
+     * @param mat1 the first matrix
+     * @param mat2 the second matrix
+     * @return the difference of the matrices as one channel matrix
+     */
+    private static Mat difference(Mat mat1, Mat mat2) {
+        Mat diff = new Mat();
+        Core.absdiff(mat1, mat2, diff);
+        return diff.reshape(1);
+    }
+
+    /**
+     * Returns the number of bytes allocated on the java heap by the current thread.
+     *
+     * @return the number of allocated bytes, or 0 if the measurement is not supported
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        return 0;
+    }
+
+    /**
+     * Loads the images from the 'resistorImages' directory,
+     * applies the bilateral filter and converts them to HSV.
+     *
+     * @return the loaded images with HSV colors
+     */
+    private static List<Mat> loadHsvImages() {
+        List<Mat> images = new ArrayList<>();
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat image = BenchmarkImages.loadHsvImage(file);
+
+            if (image != null)
+                images.add(image);
+        }
+
+        return images;
+    }
+}
@@ -0,0 +1,185 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.*;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import java.io.File;
+
+/**
+ * Compares the runtime of the detectors with the different DetailLevels.
+ * <p>
+ * For every image of the 'resistorImages' directory, every detector and every DetailLevel
+ * the runtime per detection, the number of DetectionStepDetails and the number of Matrices
+ * allocated by one detection (see MatFactory) are printed.
+ * The check fails (exit code 1) if a detector creates any DetectionStepDetail with DetailLevel.None,
+ * allocates more Matrices with DetailLevel.None than its production path needs
+ * or detects a different resistance value than with DetailLevel.Verbose.
+ */
+public class DetailLevelBenchmark {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Number of warm up runs before the measurement.
+     */
+    private static final int WARMUP_RUNS = 20;
+
+    /**
+     * Number of measured runs.
+     */
+    private static final int MEASURED_RUNS = 100;
+
+    /**
+     * The number of Matrices the production path of the ColumnsResistorDetector allocates per detection
+     * (the resistor mask and the median colors of the columns).
+     */
+    private static final int COLUMNS_PRODUCTION_MATS = 2;
+
+    /**
+     * The number of Matrices the production path of the LabelsResistorDetector allocates per detection
+     * (the resistor mask).
+     */
+    private static final int LABELS_PRODUCTION_MATS = 1;
+
+    /**
+     * The number of Matrices the production path of the ContoursModResistorDetector allocates per detection
+     * (the filtered image, the buffers of the ColorBandLabeling are reused).
+     */
+    private static final int CONTOURS_MOD_PRODUCTION_MATS = 1;
+
+    /**
+     * The result of the last detection.
+     */
+    private static DetectionResult lastResult = null;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        ResistorDetector.ResultListener resultListener = new ResistorDetector.ResultListener() {
+            @Override
+            public void resultReady(DetectionResult detectionResult) {
+                lastResult = detectionResult;
+            }
+        };
+
+        ResistorDetector[] detectors = {
+                new ColumnsResistorDetector(resultListener),
+                new LabelsResistorDetector(resultListener),
+                new ContoursModResistorDetector(resultListener)
+        };
+
+        int[] productionMats = {COLUMNS_PRODUCTION_MATS, LABELS_PRODUCTION_MATS, CONTOURS_MOD_PRODUCTION_MATS};
+
+        int failures = 0;
+
+        System.out.println("image\tdetector\tlevel\tus\tdetails\tmats\tresistance");
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat image = BenchmarkImages.loadImage(file);
+
+            if (image == null)
+                continue;
+
+            for (int detectorIdx = 0; detectorIdx < detectors.length; detectorIdx++) {
+                ResistorDetector detector = detectors[detectorIdx];
+                int verboseResistance = DetectionResult.UNKNOWN_RESISTANCE_VALUE;
+
+                for (ResistorDetector.DetailLevel level : new ResistorDetector.DetailLevel[]{
+                        ResistorDetector.DetailLevel.Verbose,
+                        ResistorDetector.DetailLevel.Summary,
+                        ResistorDetector.DetailLevel.None}) {
+
+                    detector.setDetailLevel(level);
+
+                    long time = measure(detector, image);
+                    long mats = countAllocatedMats(detector, image);
+                    int details = lastResult.getDetectionStepDetails().size();
+                    int resistance = lastResult.getResistorValue();
+
+                    if (level == ResistorDetector.DetailLevel.Verbose)
+                        verboseResistance = resistance;
+
+                    boolean failed = resistance != verboseResistance
+                            || (level == ResistorDetector.DetailLevel.None
+                            && (details != 0 || mats > productionMats[detectorIdx]));
+
+                    if (failed)
+                        failures++;
+
+                    System.out.println(file.getName() + "\t" + detector.getClass().getSimpleName() + "\t" + level
+                            + "\t" + time / 1000 + "\t" + details + "\t" + mats + "\t" + resistance + (failed ? "\tFAILED" : ""));
+                }
+            }
+
+            image.release();
+        }
+
+        System.out.println(failures + " failures");
+
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Returns the average runtime of the detection of the given image.
+     * The detector modifies its input, so every run uses a copy of the image.
+     * The step details of all but the last result are released.
+     *
+     * @param detector the detector
+     * @param image    the image (BGR colors)
+     * @return the average runtime in nanoseconds
+     */
+    private static long measure(ResistorDetector detector, Mat image) {
+        Mat copy = new Mat();
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            image.copyTo(copy);
+            detector.detectResistorValue(copy);
+            lastResult.releaseDetectionStepDetails();
+        }
+
+        long time = 0;
+
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            image.copyTo(copy);
+
+            long timeBefore = System.nanoTime();
+            detector.detectResistorValue(copy);
+            time += System.nanoTime() - timeBefore;
+
+            if (i < MEASURED_RUNS - 1)
+                lastResult.releaseDetectionStepDetails();
+        }
+
+        copy.release();
+
+        return time / MEASURED_RUNS;
+    }
+
+    /**
+     * Returns the number of Matrices allocated (see MatFactory) by one detection of the given image.
+     * The step details of the result are released.
+     *
+     * @param detector the detector
+     * @param image    the image (BGR colors)
+     * @return the number of allocated Matrices
+     */
+    private static long countAllocatedMats(ResistorDetector detector, Mat image) {
+        Mat copy = image.clone();
+
+        long matsBefore = MatFactory.getAllocatedMats();
+        detector.detectResistorValue(copy);
+        long mats = MatFactory.getAllocatedMats() - matsBefore;
+
+        lastResult.releaseDetectionStepDetails();
+        copy.release();
+
+        return mats;
+    }
+}
@@ -0,0 +1,236 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.*;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compares the ColumnsResistorDetector with the LabelsResistorDetector.
+ * <p>
+ * For every image of the 'resistorImages' directory the runtime per detection
+ * and the detected bands and resistance values of both detectors are printed.
+ * The detection details (images of the detection steps) are part of the measured time.
+ * <p>
+ * At the end the latency percentiles recorded by the detectors in the MetricsRegistry are printed
+ * and a snapshot of all metrics is written to 'metrics/detector-benchmark.csv'.
+ * <p>
+ * Then the ColumnsResistorDetector with the image reduced to REDUCED_COLUMNS_PER_BAND is compared
+ * with the full resolution: the runtime, the resolution path (Reduced or FullFallback)
+ * and the resistance values of both are printed.
+ */
+public class DetectorBenchmark {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Number of warm up runs before the measurement.
+     */
+    private static final int WARMUP_RUNS = 20;
+
+    /**
+     * Number of measured runs.
+     */
+    private static final int MEASURED_RUNS = 100;
+
+    /**
+     * The number of columns per band the image is reduced to in the reduced resolution comparison.
+     */
+    private static final int REDUCED_COLUMNS_PER_BAND = 16;
+
+    /**
+     * The result of the last detection.
+     */
+    private static DetectionResult lastResult = null;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        ResistorDetector.ResultListener resultListener = new ResistorDetector.ResultListener() {
+            @Override
+            public void resultReady(DetectionResult detectionResult) {
+                lastResult = detectionResult;
+            }
+        };
+
+        ResistorDetector columnsDetector = new ColumnsResistorDetector(resultListener);
+        ResistorDetector labelsDetector = new LabelsResistorDetector(resultListener);
+        columnsDetector.setNumberOfBands(ResistorDetector.NumberOfBands.Four);
+        labelsDetector.setNumberOfBands(ResistorDetector.NumberOfBands.Four);
+
+        int sameResistance = 0;
+        int images = 0;
+
+        System.out.println("image\tus/columns\tus/labels\tbands/columns\tbands/labels\tresistance/columns\tresistance/labels");
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat image = BenchmarkImages.loadImage(file);
+
+            if (image == null)
+                continue;
+
+            long columnsTime = measure(columnsDetector, image);
+            DetectionResult columnsResult = lastResult;
+
+            long labelsTime = measure(labelsDetector, image);
+            DetectionResult labelsResult = lastResult;
+
+            images++;
+            if (columnsResult.getResistorValue() == labelsResult.getResistorValue())
+                sameResistance++;
+
+            System.out.println(file.getName() + "\t" + columnsTime / 1000 + "\t" + labelsTime / 1000
+                    + "\t" + bandsToString(columnsResult.getBandInfo()) + "\t" + bandsToString(labelsResult.getBandInfo())
+                    + "\t" + columnsResult.getResistorValue() + "\t" + labelsResult.getResistorValue());
+
+            image.release();
+        }
+
+        System.out.println(sameResistance + " of " + images + " images with the same resistance value");
+
+        printLatency(ColumnsResistorDetector.class);
+        printLatency(LabelsResistorDetector.class);
+
+        try {
+            new MetricsFileExporter(MetricsRegistry.getDefault(), new File("metrics", "detector-benchmark.csv"),
+                    MetricsFileExporter.Format.Csv).export();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        compareReducedResolution(resultListener);
+    }
+
+    /**
+     * Compares the ColumnsResistorDetector with the image reduced to REDUCED_COLUMNS_PER_BAND
+     * with the ColumnsResistorDetector at the full resolution.
+     *
+     * @param resultListener the listener storing the last result
+     */
+    private static void compareReducedResolution(ResistorDetector.ResultListener resultListener) {
+        ResistorDetector fullDetector = new ColumnsResistorDetector(resultListener);
+        ResistorDetector reducedDetector = new ColumnsResistorDetector(resultListener);
+        fullDetector.setNumberOfBands(ResistorDetector.NumberOfBands.Four);
+        reducedDetector.setNumberOfBands(ResistorDetector.NumberOfBands.Four);
+        reducedDetector.setTargetColumnsPerBand(REDUCED_COLUMNS_PER_BAND);
+
+        int sameResistance = 0;
+        int fallbacks = 0;
+        int images = 0;
+        long fullTimeSum = 0;
+        long reducedTimeSum = 0;
+
+        System.out.println("image	us/full	us/reduced	path/reduced	resistance/full	resistance/reduced");
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat image = BenchmarkImages.loadImage(file);
+
+            if (image == null)
+                continue;
+
+            long fullTime = measure(fullDetector, image);
+            DetectionResult fullResult = lastResult;
+
+            long reducedTime = measure(reducedDetector, image);
+            DetectionResult reducedResult = lastResult;
+
+            images++;
+            fullTimeSum += fullTime;
+            reducedTimeSum += reducedTime;
+
+            if (fullResult.getResistorValue() == reducedResult.getResistorValue())
+                sameResistance++;
+            if (reducedResult.getResolutionPath() == DetectionResult.ResolutionPath.FullFallback)
+                fallbacks++;
+
+            System.out.println(file.getName() + "\t" + fullTime / 1000 + "\t" + reducedTime / 1000
+                    + "\t" + reducedResult.getResolutionPath()
+                    + "\t" + fullResult.getResistorValue() + "\t" + reducedResult.getResistorValue());
+
+            image.release();
+        }
+
+        if (images == 0)
+            return;
+
+        System.out.println("reduced to " + REDUCED_COLUMNS_PER_BAND + " columns per band: " + fallbacks + " of " + images
+                + " images fall back to the full resolution, " + sameResistance + " of " + images
+                + " images with the same resistance value, us/full " + fullTimeSum / images / 1000
+                + ", us/reduced " + reducedTimeSum / images / 1000);
+    }
+
+    /**
+     * Prints the latency percentiles of a detector recorded in the default MetricsRegistry
+     * (including the warm up runs).
+     *
+     * @param detectorClass the class of the detector
+     */
+    private static void printLatency(Class<? extends ResistorDetector> detectorClass) {
+        LatencyHistogram.Snapshot latency = MetricsRegistry.getDefault()
+                .histogram("detection.latency_us." + detectorClass.getSimpleName()).snapshot();
+
+        System.out.println(detectorClass.getSimpleName() + ": " + latency.getCount() + " detections, us/p50 "
+                + latency.getPercentile(50) + ", us/p95 " + latency.getPercentile(95)
+                + ", us/p99 " + latency.getPercentile(99) + ", us/max " + latency.getMax());
+    }
+
+    /**
+     * Returns the average runtime of the detection of the given image.
+     * The detector modifies its input, so every run uses a copy of the image.
+     *
+     * @param detector the detector
+     * @param image    the image (BGR colors)
+     * @return the average runtime in nanoseconds
+     */
+    private static long measure(ResistorDetector detector, Mat image) {
+        Mat copy = new Mat();
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            image.copyTo(copy);
+            detector.detectResistorValue(copy);
+        }
+
+        long time = 0;
+
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            image.copyTo(copy);
+
+            long timeBefore = System.nanoTime();
+            detector.detectResistorValue(copy);
+            time += System.nanoTime() - timeBefore;
+        }
+
+        copy.release();
+
+        return time / MEASURED_RUNS;
+    }
+
+    /**
+     * Returns the colors of the bands as text.
+     *
+     * @param bands the bands
+     * @return the colors of the bands, separated by spaces
+     */
+    private static String bandsToString(BandInfo[] bands) {
+        if (bands == null)
+            return "-";
+
+        StringBuilder builder = new StringBuilder();
+
+        for (BandInfo band : bands) {
+            if (builder.length() > 0)
+                builder.append(' ');
+
+            builder.append(band.getColor());
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,156 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.camera.FramePipeline;
+import at.fhooe.pro3.resistordetector.desktop.camera.SyntheticFrameSource;
+import at.fhooe.pro3.resistordetector.desktop.detection.LatencyHistogram;
+import at.fhooe.pro3.resistordetector.desktop.detection.MetricsRegistry;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Runs the FramePipeline with a SyntheticFrameSource on the JVM, without a camera.
+ * <p>
+ * For every FrameDropPolicy the source delivers FRAMES_PER_SECOND frames to a handler which is slower
+ * than the source, and the received, processed and dropped frames are printed. Afterwards the region
+ * conversion (FramePipeline.getFrameRegionBgr) is compared with the conversion of the whole frame
+ * used by the preview.
+ */
+public class FramePipelineRunner {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * The width of the synthetic frames (landscape).
+     */
+    private static final int FRAME_WIDTH = 1280;
+
+    /**
+     * The height of the synthetic frames (landscape).
+     */
+    private static final int FRAME_HEIGHT = 720;
+
+    /**
+     * The frame rate of the synthetic source.
+     */
+    private static final double FRAMES_PER_SECOND = 30;
+
+    /**
+     * The time in milliseconds the handler needs per frame (slower than the source).
+     */
+    private static final long HANDLER_MILLISECONDS = 50;
+
+    /**
+     * The time in milliseconds each drop policy is run.
+     */
+    private static final long RUN_MILLISECONDS = 3000;
+
+    /**
+     * Number of region conversions measured.
+     */
+    private static final int REGION_RUNS = 100;
+
+    /**
+     * Runs the pipeline for every drop policy and compares the region conversion.
+     *
+     * @param args not used
+     * @throws InterruptedException if the runner is interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Mat imageBgr = new Mat(FRAME_HEIGHT, FRAME_WIDTH, CvType.CV_8UC3);
+        Core.randu(imageBgr, 0, 256);
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+        for (FramePipeline.FrameDropPolicy policy : FramePipeline.FrameDropPolicy.values()) {
+            long received = metrics.counter("camera.frames.received").sum();
+            long processed = metrics.counter("camera.frames.processed").sum();
+            long dropped = metrics.counter("camera.frames.dropped").sum();
+
+            SyntheticFrameSource frameSource = new SyntheticFrameSource(imageBgr, FRAMES_PER_SECOND);
+            FramePipeline framePipeline = new FramePipeline(FRAME_WIDTH, FRAME_HEIGHT, FramePipeline.FRAME_BUFFER_COUNT_DEFAULT,
+                    new FramePipeline.FrameHandler() {
+                        @Override
+                        public void handleFrame(Mat nv21Frame) {
+                            try {
+                                Thread.sleep(HANDLER_MILLISECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    });
+            framePipeline.setFrameDropPolicy(policy);
+            framePipeline.start();
+
+            frameSource.open();
+            frameSource.start(imageBgr.size(), FramePipeline.FRAME_BUFFER_COUNT_DEFAULT, framePipeline);
+
+            Thread.sleep(RUN_MILLISECONDS);
+
+            frameSource.close();
+
+            if (policy == FramePipeline.FRAME_DROP_POLICY_DEFAULT)
+                compareRegionConversion(framePipeline, imageBgr);
+
+            framePipeline.stop();
+            framePipeline.release();
+
+            System.out.println(policy + ": received " + (metrics.counter("camera.frames.received").sum() - received)
+                    + ", processed " + (metrics.counter("camera.frames.processed").sum() - processed)
+                    + ", dropped " + (metrics.counter("camera.frames.dropped").sum() - dropped));
+        }
+
+        imageBgr.release();
+    }
+
+    /**
+     * Compares the region of the last frame converted by the pipeline with the same region
+     * of the whole frame converted like the preview, and prints the time of both conversions.
+     *
+     * @param framePipeline the pipeline which received the frames
+     * @param imageBgr      the image delivered as frame by the synthetic source
+     */
+    private static void compareRegionConversion(FramePipeline framePipeline, Mat imageBgr) {
+        //the region in portrait coordinates, like the indicator of the CameraViewListener
+        Rect region = new Rect(FRAME_HEIGHT / 4 + 1, FRAME_WIDTH / 3 + 1, FRAME_HEIGHT / 2 - 1, FRAME_WIDTH / 8 - 1);
+
+        Mat imageNv21 = SyntheticFrameSource.toNv21(imageBgr);
+        Mat rgba = new Mat();
+        Mat rotated = new Mat();
+        Mat expected = new Mat();
+
+        LatencyHistogram fullHistogram = new LatencyHistogram();
+        Mat regionBgr = null;
+
+        for (int i = 0; i < REGION_RUNS; i++) {
+            if (regionBgr != null)
+                regionBgr.release();
+            regionBgr = framePipeline.getFrameRegionBgr(region);
+
+            long startTime = System.nanoTime();
+            Imgproc.cvtColor(imageNv21, rgba, Imgproc.COLOR_YUV2BGR_NV12, 4);
+            Core.transpose(rgba, rotated);
+            Core.flip(rotated, rotated, 1);
+            Imgproc.cvtColor(rotated.submat(region), expected, Imgproc.COLOR_RGBA2BGR);
+            fullHistogram.record((System.nanoTime() - startTime) / 1000);
+        }
+
+        LatencyHistogram.Snapshot regionSnapshot = MetricsRegistry.getDefault().histogram("camera.region_conversion_us").snapshot();
+        LatencyHistogram.Snapshot fullSnapshot = fullHistogram.snapshot();
+
+        System.out.println("region " + region + ": max difference " + (regionBgr != null ? Core.norm(regionBgr, expected, Core.NORM_INF) : Double.NaN));
+        System.out.println("region conversion: mean " + regionSnapshot.getMean() + " us, p99 " + regionSnapshot.getPercentile(99) + " us");
+        System.out.println("full conversion:   mean " + fullSnapshot.getMean() + " us, p99 " + fullSnapshot.getPercentile(99) + " us");
+
+        if (regionBgr != null)
+            regionBgr.release();
+        imageNv21.release();
+        rgba.release();
+        rotated.release();
+        expected.release();
+    }
+}
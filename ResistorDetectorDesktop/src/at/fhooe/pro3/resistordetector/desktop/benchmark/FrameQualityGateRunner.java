@@ -0,0 +1,147 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.FrameQualityGate;
+import at.fhooe.pro3.resistordetector.desktop.detection.MetricsRegistry;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the images of the 'resistorImages' directory with a FrameQualityGate, to tune its thresholds.
+ * <p>
+ * Every image is checked as it is, motion blurred (a horizontal box blur) and overexposed
+ * (brightness increased). The verdict, the sharpness and the highlight ratio of each check are printed,
+ * followed by the per verdict counters of the gate. Checks with the wrong verdict (a blurred or
+ * overexposed image that is accepted, an original image that is rejected) are flagged and counted.
+ * <p>
+ * At the end the average runtime of a check of the original images is measured (after a warm up).
+ */
+public class FrameQualityGateRunner {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * The width of the simulated motion blur in pixels.
+     */
+    private static final int MOTION_BLUR_WIDTH = 25;
+
+    /**
+     * The brightness added to simulate an overexposed image.
+     */
+    private static final int OVEREXPOSURE_BRIGHTNESS = 120;
+
+    /**
+     * Number of warm up runs before the measurement.
+     */
+    private static final int WARMUP_RUNS = 200;
+
+    /**
+     * Number of measured runs.
+     */
+    private static final int MEASURED_RUNS = 1000;
+
+    /**
+     * Number of checks with the wrong verdict.
+     */
+    private static int wrongVerdicts = 0;
+
+    /**
+     * Checks the images and prints the results.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        FrameQualityGate gate = new FrameQualityGate();
+
+        Mat blurredImage = new Mat();
+        Mat overexposedImage = new Mat();
+        List<Mat> images = new ArrayList<>();
+        int checks = 0;
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat image = BenchmarkImages.loadImage(file);
+
+            if (image == null)
+                continue;
+
+            Imgproc.blur(image, blurredImage, new Size(MOTION_BLUR_WIDTH, 1));
+            image.convertTo(overexposedImage, -1, 1, OVEREXPOSURE_BRIGHTNESS);
+
+            System.out.println(file.getName());
+            printCheck(gate, "original", image, FrameQualityGate.Verdict.Accepted);
+            printCheck(gate, "blurred", blurredImage, FrameQualityGate.Verdict.Blurry);
+            printCheck(gate, "overexposed", overexposedImage, FrameQualityGate.Verdict.Overexposed);
+            checks += 3;
+
+            images.add(image);
+        }
+
+        blurredImage.release();
+        overexposedImage.release();
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+        System.out.println("accepted " + metrics.counter("quality_gate.accepted").sum()
+                + ", blurry " + metrics.counter("quality_gate.rejected.blurry").sum()
+                + ", overexposed " + metrics.counter("quality_gate.rejected.overexposed").sum());
+        System.out.println(wrongVerdicts + " of " + checks + " checks with the wrong verdict");
+
+        measureCheckTime(gate, images);
+
+        for (Mat image : images) {
+            image.release();
+        }
+    }
+
+    /**
+     * Measures and prints the average runtime of a check of the given images.
+     *
+     * @param gate   the quality gate
+     * @param images the images, with BGR colors
+     */
+    private static void measureCheckTime(FrameQualityGate gate, List<Mat> images) {
+        if (images.isEmpty())
+            return;
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            gate.check(images.get(i % images.size()));
+        }
+
+        long timeBefore = System.nanoTime();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            gate.check(images.get(i % images.size()));
+        }
+        long checkTime = (System.nanoTime() - timeBefore) / MEASURED_RUNS;
+
+        System.out.println("us/check " + checkTime / 1000 + " (" + images.get(0).cols() + "x" + images.get(0).rows() + ")");
+    }
+
+    /**
+     * Checks an image and prints the result, a wrong verdict is flagged.
+     *
+     * @param gate            the quality gate
+     * @param name            the name of the variant of the image
+     * @param image           the image, with BGR colors
+     * @param expectedVerdict the verdict the image should get
+     */
+    private static void printCheck(FrameQualityGate gate, String name, Mat image, FrameQualityGate.Verdict expectedVerdict) {
+        FrameQualityGate.Verdict verdict = gate.check(image);
+
+        String flag = "";
+
+        if (verdict != expectedVerdict) {
+            wrongVerdicts++;
+            flag = "  <-- expected " + expectedVerdict;
+        }
+
+        System.out.println(String.format("  %-12s %-12s sharpness %8.1f, highlights %5.1f%%%s",
+                name, verdict, gate.getLastSharpness(), gate.getLastHighlightRatio() * 100, flag));
+    }
+}
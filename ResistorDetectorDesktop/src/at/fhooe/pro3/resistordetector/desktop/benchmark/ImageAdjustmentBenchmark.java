@@ -0,0 +1,96 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.camera.ImageAdjustmentLut;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+/**
+ * Compares the ImageAdjustmentLut with the previous adjustment of the preview frames
+ * (Mat.convertTo() for brightness and contrast followed by Core.multiply() for the colors).
+ * <p>
+ * For every set of adjustments the maximum difference of both results and the runtime of both
+ * on a random BGR frame are printed.
+ */
+public class ImageAdjustmentBenchmark {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Number of warm up runs before the measurement.
+     */
+    private static final int WARMUP_RUNS = 20;
+
+    /**
+     * Number of measured runs.
+     */
+    private static final int MEASURED_RUNS = 200;
+
+    /**
+     * The compared adjustments: contrast, brightness, multipliers of red, green and blue.
+     */
+    private static final float[][] ADJUSTMENTS = {
+            {1.0f, 0, 1.0f, 1.0f, 1.0f},
+            {1.5f, 0, 1.0f, 1.0f, 1.0f},
+            {1.0f, -30, 1.0f, 1.0f, 1.0f},
+            {0.7f, 25, 1.2f, 0.9f, 1.0f},
+            {2.0f, 50, 0.0f, 2.0f, 1.35f},
+    };
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        Mat frame = new Mat(1280, 720, CvType.CV_8UC3);
+        Core.randu(frame, 0, 256);
+
+        Mat expected = new Mat();
+        Mat actual = new Mat();
+
+        ImageAdjustmentLut lut = new ImageAdjustmentLut();
+
+        for (float[] adjustment : ADJUSTMENTS) {
+            float contrast = adjustment[0];
+            int brightness = (int) adjustment[1];
+            Scalar multiplier = new Scalar(adjustment[4], adjustment[3], adjustment[2]);
+
+            lut.setAdjustments(contrast, brightness, adjustment[2], adjustment[3], adjustment[4]);
+
+            long twoPassNanos = 0;
+            long lutNanos = 0;
+
+            for (int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++) {
+                frame.copyTo(expected);
+                long startTime = System.nanoTime();
+                expected.convertTo(expected, -1, contrast, brightness);
+                Core.multiply(expected, multiplier, expected);
+                long twoPassTime = System.nanoTime() - startTime;
+
+                frame.copyTo(actual);
+                startTime = System.nanoTime();
+                lut.apply(actual, true);
+                long lutTime = System.nanoTime() - startTime;
+
+                if (i >= WARMUP_RUNS) {
+                    twoPassNanos += twoPassTime;
+                    lutNanos += lutTime;
+                }
+            }
+
+            System.out.println(String.format("contrast %.2f, brightness %d, rgb %.2f/%.2f/%.2f: max difference %.0f, two passes %.3f ms, lut %.3f ms",
+                    contrast, brightness, adjustment[2], adjustment[3], adjustment[4],
+                    Core.norm(expected, actual, Core.NORM_INF),
+                    twoPassNanos / 1e6 / MEASURED_RUNS, lutNanos / 1e6 / MEASURED_RUNS));
+        }
+
+        lut.release();
+        frame.release();
+        expected.release();
+        actual.release();
+    }
+}
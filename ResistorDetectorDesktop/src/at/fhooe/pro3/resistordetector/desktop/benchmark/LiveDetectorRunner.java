@@ -0,0 +1,98 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.*;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the continuous mode of a LiveDetector with the images of the 'resistorImages' directory.
+ * <p>
+ * The images are captured in turn at the maximum rate, which is faster than the detection,
+ * so pending images are replaced. The offered, replaced and detected images, the number of results
+ * and the longest start() or stop() call (which must not wait for a detection) are printed.
+ */
+public class LiveDetectorRunner {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * The time in milliseconds the continuous mode is run.
+     */
+    private static final long RUN_MILLISECONDS = 5000;
+
+    /**
+     * Runs the continuous mode and prints the counters.
+     *
+     * @param args not used
+     * @throws InterruptedException if the runner is interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final List<Mat> images = new ArrayList<>();
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat image = BenchmarkImages.loadImage(file);
+
+            if (image != null)
+                images.add(image);
+        }
+
+        if (images.isEmpty())
+            return;
+
+        final AtomicInteger results = new AtomicInteger();
+
+        ResistorDetector detector = new ColumnsResistorDetector(new ResistorDetector.ResultListener() {
+            @Override
+            public void resultReady(DetectionResult detectionResult) {
+                results.incrementAndGet();
+            }
+        });
+        detector.setNumberOfBands(ResistorDetector.NumberOfBands.Four);
+        detector.setDetailLevel(ResistorDetector.DetailLevel.None);
+
+        final AtomicInteger nextImage = new AtomicInteger();
+        final LatencyHistogram callHistogram = new LatencyHistogram();
+
+        LiveDetector liveDetector = new LiveDetector(new LiveDetector.ImageSource() {
+            @Override
+            public Mat getImage() {
+                Mat image = images.get(nextImage.getAndIncrement() % images.size());
+                Mat copy = new Mat();
+                image.copyTo(copy);
+                return copy;
+            }
+        });
+        liveDetector.setResistorDetector(detector);
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+        long startTime = System.nanoTime();
+        liveDetector.start(LiveDetector.DETECTIONS_PER_SECOND_MAX_VALUE);
+        callHistogram.record((System.nanoTime() - startTime) / 1000);
+
+        Thread.sleep(RUN_MILLISECONDS);
+
+        startTime = System.nanoTime();
+        liveDetector.stop();
+        callHistogram.record((System.nanoTime() - startTime) / 1000);
+
+        liveDetector.shutdown();
+
+        System.out.println("offered " + metrics.counter("live_detection.images.offered").sum()
+                + ", replaced " + metrics.counter("live_detection.images.replaced").sum()
+                + ", detected " + metrics.counter("live_detection.images.detected").sum()
+                + ", results " + results.get());
+        System.out.println("longest start()/stop() call: " + callHistogram.snapshot().getMax() + " us");
+
+        for (Mat image : images) {
+            image.release();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.*;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import java.io.File;
+
+/**
+ * Compares the Preprocessors on the same images.
+ * <p>
+ * For every image of the 'resistorImages' directory the runtime of each Preprocessor
+ * and the resistance value detected by a ColumnsResistorDetector built with it are printed.
+ */
+public class PreprocessorBenchmark {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Number of warm up runs before the measurement.
+     */
+    private static final int WARMUP_RUNS = 20;
+
+    /**
+     * Number of measured runs.
+     */
+    private static final int MEASURED_RUNS = 100;
+
+    /**
+     * The compared Preprocessors.
+     */
+    private static final Preprocessor[] PREPROCESSORS = {
+            new BilateralFilterPreprocessor(),
+            new MedianBlurPreprocessor(),
+            new GuidedFilterPreprocessor(),
+            new NoOpPreprocessor()
+    };
+
+    /**
+     * The result of the last detection.
+     */
+    private static DetectionResult lastResult = null;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        ResistorDetector.ResultListener resultListener = new ResistorDetector.ResultListener() {
+            @Override
+            public void resultReady(DetectionResult detectionResult) {
+                lastResult = detectionResult;
+            }
+        };
+
+        ResistorDetector[] detectors = new ResistorDetector[PREPROCESSORS.length];
+        StringBuilder header = new StringBuilder("image");
+
+        for (int i = 0; i < PREPROCESSORS.length; i++) {
+            detectors[i] = new ColumnsResistorDetector(resultListener, PREPROCESSORS[i]);
+            detectors[i].setNumberOfBands(ResistorDetector.NumberOfBands.Four);
+
+            header.append("\tus/").append(PREPROCESSORS[i].getClass().getSimpleName());
+        }
+
+        for (Preprocessor preprocessor : PREPROCESSORS) {
+            header.append("\tresistance/").append(preprocessor.getClass().getSimpleName());
+        }
+
+        System.out.println(header);
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat image = BenchmarkImages.loadImage(file);
+
+            if (image == null)
+                continue;
+
+            StringBuilder times = new StringBuilder();
+            StringBuilder resistances = new StringBuilder();
+
+            for (int i = 0; i < PREPROCESSORS.length; i++) {
+                times.append('\t').append(measure(PREPROCESSORS[i], image) / 1000);
+                resistances.append('\t').append(detect(detectors[i], image));
+            }
+
+            System.out.println(file.getName() + times + resistances);
+
+            image.release();
+        }
+    }
+
+    /**
+     * Returns the average runtime of the Preprocessor on the given image.
+     *
+     * @param preprocessor the Preprocessor
+     * @param image        the image (BGR colors)
+     * @return the average runtime in nanoseconds
+     */
+    private static long measure(Preprocessor preprocessor, Mat image) {
+        Mat result = new Mat();
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            preprocessor.apply(image, result);
+        }
+
+        long timeBefore = System.nanoTime();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            preprocessor.apply(image, result);
+        }
+        long time = (System.nanoTime() - timeBefore) / MEASURED_RUNS;
+
+        result.release();
+
+        return time;
+    }
+
+    /**
+     * Detects the resistance value of the given image.
+     * The detector modifies its input, so a copy of the image is used.
+     *
+     * @param detector the detector
+     * @param image    the image (BGR colors)
+     * @return the detected resistance value
+     */
+    private static int detect(ResistorDetector detector, Mat image) {
+        Mat copy = new Mat();
+        image.copyTo(copy);
+
+        detector.detectResistorValue(copy);
+
+        copy.release();
+
+        return lastResult.getResistorValue();
+    }
+}
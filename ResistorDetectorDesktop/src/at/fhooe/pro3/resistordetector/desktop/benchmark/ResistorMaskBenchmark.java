@@ -0,0 +1,119 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.ResistorMaskBuilder;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+
+/**
+ * Compares the resistor mask created with the separate OpenCV operations
+ * (inRange, erode, bitwise_or, bitwise_not) with the single pass ResistorMaskBuilder.
+ * <p>
+ * For every image of the 'resistorImages' directory the runtime of both methods
+ * and the number of pixels where the masks differ are printed.
+ */
+public class ResistorMaskBenchmark {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Number of warm up runs before the measurement (enough for the JIT to compile the ResistorMaskBuilder).
+     */
+    private static final int WARMUP_RUNS = 500;
+
+    /**
+     * Number of measured runs.
+     */
+    private static final int MEASURED_RUNS = 200;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        ResistorMaskBuilder resistorMaskBuilder = new ResistorMaskBuilder();
+        Mat builderMask = new Mat();
+        int differentImages = 0;
+
+        System.out.println("image\tus/separate\tus/builder\tdifferent pixels");
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat hsvImage = BenchmarkImages.loadHsvImage(file);
+
+            if (hsvImage == null)
+                continue;
+
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                separateOperationsMask(hsvImage).release();
+                resistorMaskBuilder.buildMask(hsvImage, builderMask);
+            }
+
+            long timeBefore = System.nanoTime();
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                separateOperationsMask(hsvImage).release();
+            }
+            long separateTime = (System.nanoTime() - timeBefore) / MEASURED_RUNS;
+
+            timeBefore = System.nanoTime();
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                resistorMaskBuilder.buildMask(hsvImage, builderMask);
+            }
+            long builderTime = (System.nanoTime() - timeBefore) / MEASURED_RUNS;
+
+            Mat separateMask = separateOperationsMask(hsvImage);
+            Mat diff = new Mat();
+            Core.absdiff(separateMask, builderMask, diff);
+            int differentPixels = Core.countNonZero(diff);
+
+            if (differentPixels != 0)
+                differentImages++;
+
+            System.out.println(file.getName() + "\t" + separateTime / 1000 + "\t" + builderTime / 1000 + "\t" + differentPixels);
+
+            diff.release();
+            separateMask.release();
+            hsvImage.release();
+        }
+
+        builderMask.release();
+
+        System.out.println(differentImages == 0 ? "all masks are equal" : differentImages + " masks differ");
+    }
+
+    /**
+     * Creates the resistor mask with separate OpenCV operations,
+     * the same way the ColumnsResistorDetector created it before the ResistorMaskBuilder.
+     *
+     * @param hsvImage the image (HSV colors)
+     * @return the mask of the resistor
+     */
+    private static Mat separateOperationsMask(Mat hsvImage) {
+        Mat reflectionMask = new Mat();
+        Core.inRange(hsvImage, new Scalar(0, 0, 200), new Scalar(180, 256, 256), reflectionMask);
+        Core.bitwise_not(reflectionMask, reflectionMask);
+        Imgproc.erode(reflectionMask, reflectionMask, new Mat(), new Point(-1, -1), 2);
+        Core.bitwise_not(reflectionMask, reflectionMask);
+
+        Mat backgroundMaskTop = new Mat();
+        Mat backgroundMaskBottom = new Mat();
+        Scalar backgroundColorTop = Core.mean(hsvImage.rowRange(0, 1), new Mat());
+        Scalar backgroundColorBottom = Core.mean(hsvImage.rowRange(hsvImage.rows() - 2, hsvImage.rows() - 1), new Mat());
+        Core.inRange(hsvImage, backgroundColorTop.mul(new Scalar(0.6, 0.6, 0.6)), backgroundColorTop.mul(new Scalar(1.4, 1.4, 1.4)), backgroundMaskTop);
+        Core.inRange(hsvImage, backgroundColorBottom.mul(new Scalar(0.6, 0.6, 0.6)), backgroundColorBottom.mul(new Scalar(1.4, 1.4, 1.4)), backgroundMaskBottom);
+
+        Mat resistorMask = new Mat();
+        Core.bitwise_or(backgroundMaskTop, backgroundMaskBottom, resistorMask);
+        Core.bitwise_or(reflectionMask, resistorMask, resistorMask);
+        Core.bitwise_not(resistorMask, resistorMask);
+
+        reflectionMask.release();
+        backgroundMaskTop.release();
+        backgroundMaskBottom.release();
+
+        return resistorMask;
+    }
+}
@@ -0,0 +1,137 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.BandInfo;
+import at.fhooe.pro3.resistordetector.desktop.detection.ColorName;
+import at.fhooe.pro3.resistordetector.desktop.detection.DetectionResult;
+import at.fhooe.pro3.resistordetector.desktop.detection.TemporalResultFusion;
+
+import java.util.Random;
+
+/**
+ * Feeds a TemporalResultFusion with synthetic results of a flickering live detection.
+ * <p>
+ * Each result has the bands of the same resistor (yellow, violet, red = 4700 Ohm), but with the given
+ * probability one band flickers to a random color or the detection fails. For every flicker probability
+ * the average number of results until a stable result, the share of stable fusions and the share of
+ * stable fusions with the correct bands are printed.
+ */
+public class TemporalResultFusionRunner {
+
+    /**
+     * The bands of the synthetic resistor.
+     */
+    private static final ColorName[] BANDS = {ColorName.Yellow, ColorName.Violet, ColorName.Red};
+
+    /**
+     * The probabilities of a flickering result.
+     */
+    private static final double[] FLICKER_PROBABILITIES = {0, 0.1, 0.2, 0.3, 0.5};
+
+    /**
+     * The number of fusions per flicker probability.
+     */
+    private static final int FUSIONS = 1000;
+
+    /**
+     * The maximum number of results per fusion, the fusion is counted as not stable afterwards.
+     */
+    private static final int MAX_RESULTS = 100;
+
+    /**
+     * Runs the fusions and prints the statistics.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        final Random random = new Random(42);
+
+        for (double flickerProbability : FLICKER_PROBABILITIES) {
+            final DetectionResult[] fusedResult = new DetectionResult[1];
+            final TemporalResultFusion.FusionState[] fusedState = new TemporalResultFusion.FusionState[1];
+
+            TemporalResultFusion fusion = new TemporalResultFusion(new TemporalResultFusion.FusionListener() {
+                @Override
+                public void fusedResultReady(DetectionResult detectionResult, float confidence, TemporalResultFusion.FusionState state) {
+                    fusedResult[0] = detectionResult;
+                    fusedState[0] = state;
+                }
+            });
+            fusion.setTimeoutSeconds(TemporalResultFusion.TIMEOUT_SECONDS_MAX_VALUE);
+
+            int stableFusions = 0;
+            int correctFusions = 0;
+            long stableResults = 0;
+
+            for (int i = 0; i < FUSIONS; i++) {
+                fusion.reset();
+
+                for (int results = 1; results <= MAX_RESULTS && !fusion.isFinished(); results++) {
+                    fusion.resultReady(newResult(random, flickerProbability));
+
+                    if (fusedState[0] == TemporalResultFusion.FusionState.Stable) {
+                        stableFusions++;
+                        stableResults += results;
+
+                        if (hasBands(fusedResult[0]))
+                            correctFusions++;
+                    }
+                }
+            }
+
+            System.out.println(String.format("flicker %.0f%%: stable %.1f%%, correct %.1f%%, results until stable %.1f",
+                    flickerProbability * 100, stableFusions * 100.0 / FUSIONS, correctFusions * 100.0 / FUSIONS,
+                    stableFusions > 0 ? (double) stableResults / stableFusions : 0));
+        }
+    }
+
+    /**
+     * Creates a result of the synthetic resistor.
+     *
+     * @param random             the random number generator
+     * @param flickerProbability the probability of a flickering result
+     * @return the result
+     */
+    private static DetectionResult newResult(Random random, double flickerProbability) {
+        DetectionResult result = new DetectionResult();
+        ColorName[] colors = BANDS.clone();
+
+        if (random.nextDouble() < flickerProbability) {
+            //half of the flickering results fail, the other half has a wrong band
+            if (random.nextBoolean())
+                return result;
+
+            colors[random.nextInt(colors.length)] = ColorName.values()[random.nextInt(ColorName.White.ordinal() + 1)];
+        }
+
+        BandInfo[] bands = new BandInfo[colors.length];
+
+        for (int i = 0; i < colors.length; i++) {
+            bands[i] = new BandInfo(colors[i], 1);
+        }
+
+        result.setBandInfo(bands);
+        result.setResistorValue(4700);
+
+        return result;
+    }
+
+    /**
+     * Returns whether the result has the bands of the synthetic resistor.
+     *
+     * @param result the result
+     * @return true if the bands are correct, false otherwise
+     */
+    private static boolean hasBands(DetectionResult result) {
+        BandInfo[] bands = result.getBandInfo();
+
+        if (bands == null || bands.length != BANDS.length)
+            return false;
+
+        for (int i = 0; i < bands.length; i++) {
+            if (bands[i].getColor() != BANDS[i])
+                return false;
+        }
+
+        return true;
+    }
+}
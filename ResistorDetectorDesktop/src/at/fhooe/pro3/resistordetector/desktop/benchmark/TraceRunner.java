@@ -0,0 +1,86 @@
+package at.fhooe.pro3.resistordetector.desktop.benchmark;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.*;
+import at.fhooe.pro3.resistordetector.desktop.trace.TraceEventRecorder;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Processes the images of the 'resistorImages' directory without a window and records
+ * the stages of every detection with a TraceEventRecorder.
+ * <p>
+ * Every image is detected RUNS times by the ColumnsResistorDetector and the LabelsResistorDetector
+ * (with parallel processing). The trace is written to 'traces/detection-trace.json'
+ * and can be opened in chrome://tracing or https://ui.perfetto.dev.
+ */
+public class TraceRunner {
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Number of detections per image and detector.
+     */
+    private static final int RUNS = 10;
+
+    /**
+     * Runs the detections and writes the trace.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        ResistorDetector.ResultListener resultListener = new ResistorDetector.ResultListener() {
+            @Override
+            public void resultReady(DetectionResult detectionResult) {
+            }
+        };
+
+        TraceEventRecorder recorder = new TraceEventRecorder(TraceEventRecorder.CAPACITY_DEFAULT);
+        ForkJoinPool parallelExecutor = new ForkJoinPool();
+
+        ResistorDetector[] detectors = {new ColumnsResistorDetector(resultListener), new LabelsResistorDetector(resultListener)};
+
+        for (ResistorDetector detector : detectors) {
+            detector.setNumberOfBands(ResistorDetector.NumberOfBands.Four);
+            detector.setDetailLevel(ResistorDetector.DetailLevel.None);
+            detector.setParallelExecutor(parallelExecutor);
+            detector.setStageListener(recorder);
+        }
+
+        Mat copy = new Mat();
+
+        for (File file : BenchmarkImages.listImageFiles()) {
+            Mat image = BenchmarkImages.loadImage(file);
+
+            if (image == null)
+                continue;
+
+            for (ResistorDetector detector : detectors) {
+                for (int i = 0; i < RUNS; i++) {
+                    image.copyTo(copy);
+                    detector.detectResistorValue(copy);
+                }
+            }
+
+            image.release();
+        }
+
+        copy.release();
+        parallelExecutor.shutdown();
+
+        File traceFile = new File("traces", "detection-trace.json");
+
+        try {
+            recorder.writeTrace(traceFile);
+            System.out.println(recorder.getRecordedEvents() + " events (" + recorder.getOverwrittenEvents()
+                    + " overwritten) written to " + traceFile.getPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package at.fhooe.pro3.resistordetector.desktop.camera;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+import java.util.List;
+
+/**
+ * A source of camera frames, e.g. the camera of the device or a synthetic source
+ * to run the FramePipeline on the JVM.
+ * <p>
+ * The frames are in the NV21 format (the Y plane in full resolution followed by the interleaved
+ * V and U values in half the resolution) and in the orientation of the camera sensor (landscape).
+ * <p>
+ * Usage:
+ * if (frameSource.open()) {
+ * Size frameSize = ... one of frameSource.getSupportedFrameSizes() ...
+ * frameSource.start(frameSize, bufferCount, framePipeline);
+ * ... frames are delivered to the callback ...
+ * }
+ * frameSource.close();
+ */
+public interface FrameSource {
+
+    /**
+     * A frame captured by a FrameSource, only valid during FrameCallback.onFrame().
+     */
+    interface Frame {
+
+        /**
+         * Writes the frame in the NV21 format to the given matrix.
+         *
+         * @param nv21Frame the target matrix, CV_8UC1 with height * 3 / 2 rows and width columns
+         */
+        void copyTo(Mat nv21Frame);
+    }
+
+    /**
+     * Receives the frames of a FrameSource.
+     */
+    interface FrameCallback {
+
+        /**
+         * Called on a thread of the FrameSource for every captured frame.
+         * The frame must be copied if it is needed after this method returned.
+         *
+         * @param frame the captured frame
+         */
+        void onFrame(Frame frame);
+    }
+
+    /**
+     * Opens the source (e.g. connects to the camera).
+     *
+     * @return true if the source was opened, false otherwise
+     */
+    boolean open();
+
+    /**
+     * Returns the frame sizes (width and height in landscape) the source can deliver.
+     * Only valid after the source was opened.
+     *
+     * @return the supported frame sizes
+     */
+    List<Size> getSupportedFrameSizes();
+
+    /**
+     * Starts the capturing of frames, which are delivered to the callback until the source is closed.
+     *
+     * @param frameSize   the size of the frames, one of getSupportedFrameSizes()
+     * @param bufferCount the number of frames the source may capture ahead, at least 1
+     * @param callback    the callback receiving the frames
+     * @return true if the capturing was started, false otherwise
+     */
+    boolean start(Size frameSize, int bufferCount, FrameCallback callback);
+
+    /**
+     * Stops the capturing and releases the source. No frames are delivered after this method returned.
+     * Does nothing if the source is not open.
+     */
+    void close();
+}
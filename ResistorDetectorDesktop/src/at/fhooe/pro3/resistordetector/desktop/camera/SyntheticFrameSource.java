@@ -0,0 +1,195 @@
+package at.fhooe.pro3.resistordetector.desktop.camera;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A FrameSource which delivers the same image at a fixed frame rate, without a camera.
+ * Used to run and measure the FramePipeline on the JVM.
+ * <p>
+ * The image is converted to NV21 once when the source is started.
+ */
+public class SyntheticFrameSource implements FrameSource, FrameSource.Frame {
+
+    /**
+     * The image delivered as frame in BGR color (landscape).
+     */
+    private final Mat imageBgr;
+
+    /**
+     * The number of frames delivered per second.
+     */
+    private final double framesPerSecond;
+
+    /**
+     * The image in the NV21 format, null if the source is not started.
+     */
+    private Mat imageNv21 = null;
+
+    /**
+     * The executor delivering the frames, null if the source is not started.
+     */
+    private ScheduledExecutorService executor = null;
+
+    /**
+     * Creates a new source for the given image.
+     *
+     * @param imageBgr        the image delivered as frame in BGR color (landscape), width and height must be even
+     * @param framesPerSecond the number of frames delivered per second
+     */
+    public SyntheticFrameSource(Mat imageBgr, double framesPerSecond) {
+        if (imageBgr == null)
+            throw new IllegalArgumentException("imageBgr must not be null!");
+
+        if (imageBgr.type() != CvType.CV_8UC3 || imageBgr.cols() % 2 != 0 || imageBgr.rows() % 2 != 0)
+            throw new IllegalArgumentException("imageBgr must be a BGR image with even width and height!");
+
+        if (framesPerSecond <= 0)
+            throw new IllegalArgumentException("framesPerSecond must be positive!");
+
+        this.imageBgr = imageBgr;
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    /**
+     * Opens the source, always successful.
+     *
+     * @return true
+     */
+    @Override
+    public boolean open() {
+        return true;
+    }
+
+    /**
+     * Returns the size of the image as only supported frame size.
+     *
+     * @return the size of the image
+     */
+    @Override
+    public List<Size> getSupportedFrameSizes() {
+        return Collections.singletonList(imageBgr.size());
+    }
+
+    /**
+     * Starts delivering the image as frame on a daemon thread.
+     *
+     * @param frameSize   the size of the image
+     * @param bufferCount not used
+     * @param callback    the callback receiving the frames
+     * @return true if the source was started, false if it is started already
+     */
+    @Override
+    public synchronized boolean start(Size frameSize, int bufferCount, final FrameCallback callback) {
+        if (frameSize == null || !frameSize.equals(imageBgr.size()))
+            throw new IllegalArgumentException("frameSize must be the size of the image!");
+
+        if (callback == null)
+            throw new IllegalArgumentException("callback must not be null!");
+
+        if (executor != null)
+            return false;
+
+        imageNv21 = toNv21(imageBgr);
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SyntheticFrameSource");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond);
+
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                callback.onFrame(SyntheticFrameSource.this);
+            }
+        }, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+        return true;
+    }
+
+    /**
+     * Stops delivering frames and waits until the current frame was delivered.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor == null)
+            return;
+
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        executor = null;
+
+        imageNv21.release();
+        imageNv21 = null;
+    }
+
+    /**
+     * Writes the image in the NV21 format to the given matrix.
+     *
+     * @param nv21Frame the target matrix
+     */
+    @Override
+    public void copyTo(Mat nv21Frame) {
+        imageNv21.copyTo(nv21Frame);
+    }
+
+    /**
+     * Converts a BGR image to the NV21 format.
+     * OpenCV has no conversion to NV21, the image is converted to I420 (planar Y, U, V)
+     * and the U and V planes are interleaved to the VU plane.
+     *
+     * @param imageBgr the image in BGR color, width and height must be even
+     * @return a new matrix with the image in the NV21 format
+     */
+    public static Mat toNv21(Mat imageBgr) {
+        int width = imageBgr.cols();
+        int height = imageBgr.rows();
+
+        Mat imageI420 = new Mat();
+        Imgproc.cvtColor(imageBgr, imageI420, Imgproc.COLOR_BGR2YUV_I420);
+
+        //the U and V planes (width / 2 x height / 2 each) follow the Y plane
+        Mat chroma = imageI420.rowRange(height, height + height / 2).reshape(1, height);
+        Mat planeU = chroma.rowRange(0, height / 2);
+        Mat planeV = chroma.rowRange(height / 2, height);
+
+        List<Mat> planesVu = new ArrayList<>(2);
+        planesVu.add(planeV);
+        planesVu.add(planeU);
+
+        Mat interleavedVu = new Mat();
+        Core.merge(planesVu, interleavedVu);
+
+        Mat imageNv21 = new Mat(height + height / 2, width, imageI420.type());
+        imageI420.rowRange(0, height).copyTo(imageNv21.rowRange(0, height));
+        interleavedVu.reshape(1, height / 2).copyTo(imageNv21.rowRange(height, height + height / 2));
+
+        interleavedVu.release();
+        imageI420.release();
+
+        return imageNv21;
+    }
+}
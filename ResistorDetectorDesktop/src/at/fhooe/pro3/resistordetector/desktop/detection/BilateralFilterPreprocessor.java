@@ -0,0 +1,90 @@
+package at.fhooe.pro3.resistordetector.desktop.detection;
+
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * This Preprocessor applies a bilateral filter on the image.
+ * This reduces the noise in the image but keeps the edges fairly sharp.
+ * It is the most robust but also the slowest of the Preprocessors.
+ * <p>
+ * See also:
+ * - Imgproc.bilateralFilter: http://docs.opencv.org/2.4/modules/imgproc/doc/filtering.html#bilateralfilter
+ * - Imgproc.bilateralFilter: http://docs.opencv.org/2.4/doc/tutorials/imgproc/gausian_median_blur_bilateral_filter/gausian_median_blur_bilateral_filter.html
+ */
+public class BilateralFilterPreprocessor implements Preprocessor {
+
+    /**
+     * The default diameter of the pixel neighborhood.
+     */
+    public static final int DIAMETER_DEFAULT = 5;
+
+    /**
+     * The default filter sigma in the color space.
+     */
+    public static final double SIGMA_COLOR_DEFAULT = 80;
+
+    /**
+     * The default filter sigma in the coordinate space.
+     */
+    public static final double SIGMA_SPACE_DEFAULT = 80;
+
+    /**
+     * The diameter of the pixel neighborhood.
+     */
+    private final int diameter;
+
+    /**
+     * The filter sigma in the color space.
+     */
+    private final double sigmaColor;
+
+    /**
+     * The filter sigma in the coordinate space.
+     */
+    private final double sigmaSpace;
+
+    /**
+     * Reusable buffer for filtering in place (the bilateral filter does not support it).
+     */
+    private final Mat filteredImage = MatFactory.newMat();
+
+    /**
+     * Creates a new BilateralFilterPreprocessor with the default parameters (5, 80, 80).
+     */
+    public BilateralFilterPreprocessor() {
+        this(DIAMETER_DEFAULT, SIGMA_COLOR_DEFAULT, SIGMA_SPACE_DEFAULT);
+    }
+
+    /**
+     * Creates a new BilateralFilterPreprocessor with the given parameters.
+     *
+     * @param diameter   the diameter of the pixel neighborhood, at least 1
+     * @param sigmaColor the filter sigma in the color space
+     * @param sigmaSpace the filter sigma in the coordinate space
+     */
+    public BilateralFilterPreprocessor(int diameter, double sigmaColor, double sigmaSpace) {
+        if (diameter < 1)
+            throw new IllegalArgumentException("diameter must be at least 1!");
+
+        this.diameter = diameter;
+        this.sigmaColor = sigmaColor;
+        this.sigmaSpace = sigmaSpace;
+    }
+
+    /**
+     * Applies the bilateral filter on the source image.
+     *
+     * @param src The image that should be processed (CV_8UC3, BGR colors).
+     * @param dst The Matrix the result is written to, it gets the size and type of the source image.
+     */
+    @Override
+    public void apply(Mat src, Mat dst) {
+        if (src == dst) {
+            Imgproc.bilateralFilter(src, filteredImage, diameter, sigmaColor, sigmaSpace);
+            filteredImage.copyTo(dst);
+        } else {
+            Imgproc.bilateralFilter(src, dst, diameter, sigmaColor, sigmaSpace);
+        }
+    }
+}
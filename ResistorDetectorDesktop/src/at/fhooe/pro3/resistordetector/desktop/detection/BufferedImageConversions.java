@@ -14,6 +14,11 @@ import java.awt.image.WritableRaster;
  * as well as methods to convert from BufferedImage to Mat,
  * and methods to convert a BufferedImage to different types.
  * <p>
+ * The conversions from Mat to BufferedImage never modify the given Mat. Colors are converted
+ * with one Imgproc.cvtColor into a temporary conversion buffer (released after the call),
+ * which is copied directly into the DataBufferByte of the image. The image can be supplied
+ * by the caller to reuse it between calls.
+ * <p>
  * Created by stefan on 05.06.2017.
  */
 public class BufferedImageConversions {
@@ -87,6 +92,22 @@ public class BufferedImageConversions {
      * @return A new BufferedImage with the data of the given Matrix, with type TYPE_BYTE_GRAY or TYPE_3BYTE_BGR.
      */
     public static BufferedImage matToBufferedImage(Mat matBgrOrGray) {
+        return matToBufferedImage(matBgrOrGray, null);
+    }
+
+    /**
+     * Writes the data of an OpenCV Matrix into a BufferedImage.
+     * The given Matrix must use BGR or gray colors, it is not modified.
+     * <p>
+     * The type of the image is either TYPE_BYTE_GRAY if the matrix has one channel
+     * or TYPE_3BYTE_BGR if the matrix has three channels. If the target image is null
+     * or does not match the size and type, a new BufferedImage is created.
+     *
+     * @param matBgrOrGray The Matrix to convert to a BufferedImage, with BGR or gray colors
+     * @param target       The image the data is written to, or null
+     * @return The target image or a new BufferedImage with the data of the given Matrix.
+     */
+    public static BufferedImage matToBufferedImage(Mat matBgrOrGray, BufferedImage target) {
         if (matBgrOrGray == null)
             throw new IllegalArgumentException("matBgrOrGray is null!");
 
@@ -98,11 +119,8 @@ public class BufferedImageConversions {
             type = BufferedImage.TYPE_3BYTE_BGR;
         }
 
-        BufferedImage image = new BufferedImage(matBgrOrGray.width(), matBgrOrGray.height(), type);
-        WritableRaster raster = image.getRaster();
-        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
-        byte[] data = dataBuffer.getData();
-        matBgrOrGray.get(0, 0, data);
+        BufferedImage image = getCompatibleImage(matBgrOrGray, type, target);
+        matBgrOrGray.get(0, 0, getData(image));
 
         return image;
     }
@@ -118,18 +136,26 @@ public class BufferedImageConversions {
      * @return A new BufferedImage with the data of the given Matrix, with type TYPE_3BYTE_BGR.
      */
     public static BufferedImage matToBufferedImageHsv(Mat matHsv) {
+        return matToBufferedImageHsv(matHsv, null);
+    }
+
+    /**
+     * Writes the data of an OpenCV Matrix into a BufferedImage of type TYPE_3BYTE_BGR.
+     * The given Matrix must use HSV colors, it is not modified.
+     * <p>
+     * If the target image is null or does not match the size and type, a new BufferedImage is created.
+     *
+     * @param matHsv The Matrix to convert to a BufferedImage, with HSV colors
+     * @param target The image the data is written to, or null
+     * @return The target image or a new BufferedImage with the data of the given Matrix.
+     */
+    public static BufferedImage matToBufferedImageHsv(Mat matHsv, BufferedImage target) {
         if (matHsv == null)
             throw new IllegalArgumentException("matHsv is null!");
         if (matHsv.channels() != 3)
-            throw new IllegalArgumentException("matRgba must have 3 channels!");
-
-        BufferedImage bitmap = null;
+            throw new IllegalArgumentException("matHsv must have 3 channels!");
 
-        Imgproc.cvtColor(matHsv, matHsv, Imgproc.COLOR_HSV2BGR);
-        bitmap = matToBufferedImage(matHsv);
-        Imgproc.cvtColor(matHsv, matHsv, Imgproc.COLOR_BGR2HSV);
-
-        return bitmap;
+        return convertToBufferedImage(matHsv, Imgproc.COLOR_HSV2BGR, target);
     }
 
     /**
@@ -143,17 +169,78 @@ public class BufferedImageConversions {
      * @return A new BufferedImage with the data of the given Matrix, with type TYPE_3BYTE_BGR.
      */
     public static BufferedImage matToBufferedImageRgba(Mat matRgba) {
+        return matToBufferedImageRgba(matRgba, null);
+    }
+
+    /**
+     * Writes the data of an OpenCV Matrix into a BufferedImage of type TYPE_3BYTE_BGR.
+     * The given Matrix must use RGBA colors, it is not modified.
+     * <p>
+     * If the target image is null or does not match the size and type, a new BufferedImage is created.
+     *
+     * @param matRgba The Matrix to convert to a BufferedImage, with RGBA colors
+     * @param target  The image the data is written to, or null
+     * @return The target image or a new BufferedImage with the data of the given Matrix.
+     */
+    public static BufferedImage matToBufferedImageRgba(Mat matRgba, BufferedImage target) {
         if (matRgba == null)
             throw new IllegalArgumentException("matRgba is null!");
         if (matRgba.channels() != 4)
             throw new IllegalArgumentException("matRgba must have 4 channels!");
 
-        BufferedImage bitmap = null;
+        return convertToBufferedImage(matRgba, Imgproc.COLOR_RGBA2BGR, target);
+    }
+
+    /**
+     * Converts the colors of the Matrix into a temporary conversion buffer
+     * and copies the buffer into the DataBufferByte of a TYPE_3BYTE_BGR image. The buffer is released afterwards.
+     *
+     * @param mat                 The Matrix to convert to a BufferedImage
+     * @param colorConversionCode The Imgproc color conversion code, the result must have BGR colors
+     * @param target              The image the data is written to, or null
+     * @return The target image or a new BufferedImage with the data of the given Matrix.
+     */
+    private static BufferedImage convertToBufferedImage(Mat mat, int colorConversionCode, BufferedImage target) {
+        Mat conversionBuffer = new Mat();
 
-        Imgproc.cvtColor(matRgba, matRgba, Imgproc.COLOR_RGBA2BGR);
-        bitmap = matToBufferedImage(matRgba);
-        Imgproc.cvtColor(matRgba, matRgba, Imgproc.COLOR_BGR2RGBA);
+        try {
+            Imgproc.cvtColor(mat, conversionBuffer, colorConversionCode);
+
+            BufferedImage image = getCompatibleImage(conversionBuffer, BufferedImage.TYPE_3BYTE_BGR, target);
+            conversionBuffer.get(0, 0, getData(image));
+
+            return image;
+        } finally {
+            conversionBuffer.release();
+        }
+    }
+
+    /**
+     * Returns the target image if it has the size of the Matrix and the given type, otherwise a new image.
+     *
+     * @param mat    The Matrix the image is created for
+     * @param type   The type of the image (TYPE_BYTE_GRAY or TYPE_3BYTE_BGR)
+     * @param target The image supplied by the caller, or null
+     * @return An image with the size of the Matrix and the given type
+     */
+    private static BufferedImage getCompatibleImage(Mat mat, int type, BufferedImage target) {
+        if (target != null && target.getType() == type
+                && target.getWidth() == mat.width() && target.getHeight() == mat.height())
+            return target;
+
+        return new BufferedImage(mat.width(), mat.height(), type);
+    }
+
+    /**
+     * Returns the pixel data of an image (the array of its DataBufferByte).
+     *
+     * @param image The image, with type TYPE_BYTE_GRAY or TYPE_3BYTE_BGR
+     * @return the pixel data of the image
+     */
+    private static byte[] getData(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
 
-        return bitmap;
+        return dataBuffer.getData();
     }
 }
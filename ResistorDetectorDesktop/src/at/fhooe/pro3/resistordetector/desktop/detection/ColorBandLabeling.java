@@ -0,0 +1,602 @@
+package at.fhooe.pro3.resistordetector.desktop.detection;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.imgproc.Moments;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class finds the areas of several colors (color codes) in an image.
+ * <p>
+ * Every color code is defined by one or more HSV ranges (e.g. red is defined by two ranges).
+ * The ranges are compiled into one bit table per channel, so every pixel is labeled
+ * with all matching color codes in one pass (a bit mask, overlapping ranges are possible).
+ * <p>
+ * The bands of a color code are the contours of its areas, the same contours Imgproc.findContours
+ * (RETR_LIST, CHAIN_APPROX_SIMPLE) finds in the mask of the color code:
+ * the connected components of the mask (inside the bounding box of the color code) are found with
+ * Imgproc.connectedComponentsWithStats and only the components whose bounding box is large enough for a contour with more than minArea
+ * are traced, each in its own bounding box. The area and the horizontal centroid of each band
+ * are calculated like Imgproc.contourArea and Imgproc.moments do, so the bands are the same
+ * as the ones of Core.inRange and Imgproc.findContours per color code.
+ * <p>
+ * The order of the bands is not defined (neither is the order of Imgproc.findContours),
+ * getLocations() merges the bands independent of their order.
+ * <p>
+ * The bounds are rounded like Core.inRange does with Scalar bounds on 8 bit images.
+ * The buffers are created on the first call (OpenCV may not be loaded when the labeling is created)
+ * and are reused between calls. An instance is not thread safe.
+ * <p>
+ * See also:
+ * - Imgproc.connectedComponentsWithStats: http://docs.opencv.org/3.2.0/d3/dc0/group__imgproc__shape.html
+ * - Imgproc.findContours: http://docs.opencv.org/2.4/modules/imgproc/doc/structural_analysis_and_shape_descriptors.html?#findcontours
+ */
+public class ColorBandLabeling {
+
+    /**
+     * Number of values of one channel (8 bit).
+     */
+    private static final int CHANNEL_VALUES = 256;
+
+    /**
+     * Orders the bands for the merge: descending by the area, bands with the same area
+     * ascending by the centroid and the color code.
+     */
+    private static final Comparator<int[]> LARGEST_FIRST = new Comparator<int[]>() {
+        @Override
+        public int compare(int[] band1, int[] band2) {
+            if (band1[MERGE_AREA] != band2[MERGE_AREA])
+                return band2[MERGE_AREA] - band1[MERGE_AREA];
+
+            if (band1[MERGE_CENTROID] != band2[MERGE_CENTROID])
+                return band1[MERGE_CENTROID] - band2[MERGE_CENTROID];
+
+            return band1[MERGE_CODE] - band2[MERGE_CODE];
+        }
+    };
+
+    /**
+     * Index of the horizontal centroid in a band entry.
+     */
+    private static final int BAND_CENTROID = 0;
+
+    /**
+     * Index of the area in a band entry.
+     */
+    private static final int BAND_AREA = 1;
+
+    /**
+     * Index of the color code in a band entry of mergeLocations().
+     */
+    private static final int MERGE_CODE = 0;
+
+    /**
+     * Index of the horizontal centroid in a band entry of mergeLocations().
+     */
+    private static final int MERGE_CENTROID = 1;
+
+    /**
+     * Index of the area in a band entry of mergeLocations().
+     */
+    private static final int MERGE_AREA = 2;
+
+    /**
+     * The number of color codes.
+     */
+    private final int numberOfCodes;
+
+    /**
+     * The bit tables of the three channels (H, S, V), 256 entries per channel.
+     * Bit r of an entry is set if the value is inside the range r.
+     */
+    private final int[] rangeTable = new int[3 * CHANNEL_VALUES];
+
+    /**
+     * The color code bit mask of every combination of ranges.
+     */
+    private final short[] rangesToCodes;
+
+    /**
+     * The color code bit mask of each pixel.
+     */
+    private short[] labelBuffer = new short[0];
+
+    /**
+     * The bands of each color code, each band is an entry {centroid, area}.
+     */
+    private final List<List<int[]>> bands;
+
+    /**
+     * The bounding box of the pixels of each color code (top, left, bottom, right, inclusive),
+     * the connected components are only searched inside of it.
+     */
+    private final int[][] codeBounds;
+
+    /**
+     * Reusable buffer for the pixel data of the image.
+     */
+    private byte[] pixelBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the mask of one color code (and the mask of one component).
+     */
+    private byte[] maskBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the component labels of one color code.
+     */
+    private int[] componentBuffer = new int[0];
+
+    /**
+     * Reusable buffer for the statistics of the components of one color code.
+     */
+    private int[] statsBuffer = new int[0];
+
+    /**
+     * Reusable matrix for the mask of one color code.
+     */
+    private Mat codeMask = null;
+
+    /**
+     * Reusable matrix for the component labels of one color code.
+     */
+    private Mat componentLabels = null;
+
+    /**
+     * Reusable matrix for the statistics of the components of one color code.
+     */
+    private Mat componentStats = null;
+
+    /**
+     * Reusable matrix for the centroids of the components of one color code (not used).
+     */
+    private Mat componentCentroids = null;
+
+    /**
+     * Reusable matrix for the mask of one component (with a margin of one pixel).
+     */
+    private Mat componentMask = null;
+
+    /**
+     * Reusable matrix for the hierarchy of the contours of one component (not used).
+     */
+    private Mat hierarchy = null;
+
+    /**
+     * The number of rows of the last labeled image.
+     */
+    private int rows = 0;
+
+    /**
+     * The number of columns of the last labeled image.
+     */
+    private int cols = 0;
+
+    /**
+     * Creates a new labeling for the given color codes.
+     * The bounds of code i are codeBounds[i] = {min1, max1, min2, max2, ...} (HSV, inclusive).
+     * At most 16 color codes and 16 ranges are supported.
+     *
+     * @param codeBounds the lower and upper bounds of the ranges of each color code
+     */
+    public ColorBandLabeling(Scalar[][] codeBounds) {
+        if (codeBounds == null)
+            throw new IllegalArgumentException("codeBounds must not be null!");
+        if (codeBounds.length > 16)
+            throw new IllegalArgumentException("at most 16 color codes are supported!");
+
+        numberOfCodes = codeBounds.length;
+        bands = new ArrayList<>(numberOfCodes);
+        this.codeBounds = new int[numberOfCodes][4];
+
+        for (int code = 0; code < numberOfCodes; code++) {
+            bands.add(new ArrayList<int[]>());
+        }
+
+        int[] rangeCodes = new int[16];
+        int numberOfRanges = 0;
+
+        for (int code = 0; code < numberOfCodes; code++) {
+            if (codeBounds[code] == null || codeBounds[code].length % 2 != 0)
+                throw new IllegalArgumentException("the bounds of each color code must be pairs of Scalars!");
+
+            for (int i = 0; i < codeBounds[code].length; i += 2) {
+                if (numberOfRanges == 16)
+                    throw new IllegalArgumentException("at most 16 ranges are supported!");
+
+                addRangeToTable(numberOfRanges, codeBounds[code][i], codeBounds[code][i + 1]);
+                rangeCodes[numberOfRanges] = code;
+                numberOfRanges++;
+            }
+        }
+
+        rangesToCodes = new short[1 << numberOfRanges];
+
+        for (int ranges = 0; ranges < rangesToCodes.length; ranges++) {
+            int codes = 0;
+
+            for (int range = 0; range < numberOfRanges; range++) {
+                if ((ranges & (1 << range)) != 0)
+                    codes |= 1 << rangeCodes[range];
+            }
+
+            rangesToCodes[ranges] = (short) codes;
+        }
+    }
+
+    /**
+     * Labels every pixel of the image and finds the bands of all color codes with an area above minArea.
+     *
+     * @param hsvImage The image (CV_8UC3, HSV colors).
+     * @param minArea  Bands with an area (Imgproc.contourArea, truncated) of at most minArea are skipped.
+     */
+    public void findBands(Mat hsvImage, int minArea) {
+        if (hsvImage == null)
+            throw new IllegalArgumentException("hsvImage must not be null!");
+        if (hsvImage.type() != CvType.CV_8UC3)
+            throw new IllegalArgumentException("hsvImage must have the type CV_8UC3!");
+
+        rows = hsvImage.rows();
+        cols = hsvImage.cols();
+        int pixelCount = rows * cols;
+
+        ensureCapacity(pixelCount);
+
+        for (List<int[]> codeBands : bands) {
+            codeBands.clear();
+        }
+
+        if (pixelCount == 0)
+            return;
+
+        hsvImage.get(0, 0, pixelBuffer);
+
+        for (int[] bounds : codeBounds) {
+            bounds[0] = rows;
+            bounds[1] = cols;
+            bounds[2] = -1;
+            bounds[3] = -1;
+        }
+
+        for (int row = 0; row < rows; row++) {
+            int rowOffset = row * cols;
+
+            for (int col = 0; col < cols; col++) {
+                int index = rowOffset + col;
+
+                int ranges = rangeTable[pixelBuffer[index * 3] & 0xFF]
+                        & rangeTable[CHANNEL_VALUES + (pixelBuffer[index * 3 + 1] & 0xFF)]
+                        & rangeTable[2 * CHANNEL_VALUES + (pixelBuffer[index * 3 + 2] & 0xFF)];
+
+                int codes = rangesToCodes[ranges] & 0xFFFF;
+                labelBuffer[index] = (short) codes;
+
+                while (codes != 0) {
+                    int[] bounds = codeBounds[Integer.numberOfTrailingZeros(codes)];
+
+                    if (row < bounds[0])
+                        bounds[0] = row;
+                    if (col < bounds[1])
+                        bounds[1] = col;
+                    bounds[2] = row;
+                    if (col > bounds[3])
+                        bounds[3] = col;
+
+                    codes &= codes - 1;
+                }
+            }
+        }
+
+        for (int code = 0; code < numberOfCodes; code++) {
+            int[] bounds = codeBounds[code];
+
+            //the contour points are pixel centers inside the bounding box, so no contour can be larger
+            if (bounds[2] >= 0 && (long) (bounds[2] - bounds[0]) * (bounds[3] - bounds[1]) > minArea)
+                findBandsOfCode(code, minArea);
+        }
+    }
+
+    /**
+     * Finds the bands (contours of the connected components) of one color code.
+     *
+     * @param code    the color code
+     * @param minArea bands with an area of at most minArea are skipped
+     */
+    private void findBandsOfCode(int code, int minArea) {
+        int codeBit = 1 << code;
+        int regionTop = codeBounds[code][0];
+        int regionLeft = codeBounds[code][1];
+        int regionRows = codeBounds[code][2] - regionTop + 1;
+        int regionCols = codeBounds[code][3] - regionLeft + 1;
+
+        for (int row = 0; row < regionRows; row++) {
+            int imageOffset = (regionTop + row) * cols + regionLeft;
+            int maskOffset = row * regionCols;
+
+            for (int col = 0; col < regionCols; col++) {
+                maskBuffer[maskOffset + col] = (labelBuffer[imageOffset + col] & codeBit) != 0 ? (byte) 255 : 0;
+            }
+        }
+
+        codeMask.create(regionRows, regionCols, CvType.CV_8UC1);
+        codeMask.put(0, 0, maskBuffer);
+
+        //8-connectivity, like the borders followed by Imgproc.findContours
+        int components = Imgproc.connectedComponentsWithStats(codeMask, componentLabels, componentStats,
+                componentCentroids, 8, CvType.CV_32S);
+
+        if (statsBuffer.length < components * Imgproc.CC_STAT_MAX)
+            statsBuffer = new int[components * Imgproc.CC_STAT_MAX];
+
+        componentStats.get(0, 0, statsBuffer);
+
+        boolean labelsRead = false;
+
+        //component 0 is the background
+        for (int component = 1; component < components; component++) {
+            int left = statsBuffer[component * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_LEFT];
+            int top = statsBuffer[component * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_TOP];
+            int width = statsBuffer[component * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_WIDTH];
+            int height = statsBuffer[component * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_HEIGHT];
+
+            //the contour points are pixel centers inside the bounding box, so no contour can be larger
+            if ((long) (width - 1) * (height - 1) <= minArea)
+                continue;
+
+            if (!labelsRead) {
+                componentLabels.get(0, 0, componentBuffer);
+                labelsRead = true;
+            }
+
+            traceComponent(code, component, regionCols, left, top, width, height,
+                    new Point(regionLeft + left - 1, regionTop + top - 1), minArea);
+        }
+    }
+
+    /**
+     * Finds the contours (outer and holes) of one component in its bounding box
+     * and adds the contours with an area above minArea to the bands of the color code.
+     *
+     * @param code       the color code
+     * @param component  the label of the component
+     * @param regionCols the number of columns of the component labels
+     * @param left       the left column of the bounding box (in the component labels)
+     * @param top        the top row of the bounding box (in the component labels)
+     * @param width      the width of the bounding box
+     * @param height     the height of the bounding box
+     * @param offset     the position of the component mask in the image
+     * @param minArea    bands with an area of at most minArea are skipped
+     */
+    private void traceComponent(int code, int component, int regionCols, int left, int top, int width, int height,
+                                Point offset, int minArea) {
+        //a margin of one pixel, so only the borders of this component are traced
+        int maskCols = width + 2;
+        int maskRows = height + 2;
+
+        Arrays.fill(maskBuffer, 0, maskRows * maskCols, (byte) 0);
+
+        for (int row = 0; row < height; row++) {
+            int labelOffset = (top + row) * regionCols + left;
+            int maskOffset = (row + 1) * maskCols + 1;
+
+            for (int col = 0; col < width; col++) {
+                if (componentBuffer[labelOffset + col] == component)
+                    maskBuffer[maskOffset + col] = (byte) 255;
+            }
+        }
+
+        componentMask.create(maskRows, maskCols, CvType.CV_8UC1);
+        componentMask.put(0, 0, maskBuffer);
+
+        List<MatOfPoint> contours = new ArrayList<>();
+        Imgproc.findContours(componentMask, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE, offset);
+
+        for (MatOfPoint contour : contours) {
+            int area = (int) Imgproc.contourArea(contour);
+
+            if (area > minArea) {
+                Moments moments = Imgproc.moments(contour);
+
+                bands.get(code).add(new int[]{(int) (moments.get_m10() / moments.get_m00()), area});
+            }
+
+            contour.release();
+        }
+    }
+
+    /**
+     * Returns the number of bands of a color code found by the last call of findBands().
+     *
+     * @param code the color code
+     * @return the number of bands of the color code
+     */
+    public int getBandCount(int code) {
+        return bands.get(code).size();
+    }
+
+    /**
+     * Returns the horizontal centroid (column) of a band.
+     *
+     * @param code the color code
+     * @param band the index of the band (0 - getBandCount(code) - 1)
+     * @return the horizontal centroid of the band
+     */
+    public int getBandCentroid(int code, int band) {
+        return bands.get(code).get(band)[BAND_CENTROID];
+    }
+
+    /**
+     * Returns the area (Imgproc.contourArea, truncated) of a band.
+     *
+     * @param code the color code
+     * @param band the index of the band (0 - getBandCount(code) - 1)
+     * @return the area of the band
+     */
+    public int getBandArea(int code, int band) {
+        return bands.get(code).get(band)[BAND_AREA];
+    }
+
+    /**
+     * Stores the locations of the bands found by the last call of findBands() in locationValues
+     * (horizontal centroid to color code), see mergeLocations().
+     *
+     * @param mergeDistance  of bands with centroids closer than this distance only the largest one is kept
+     * @param locationValues the locations, cleared first
+     */
+    public void getLocations(double mergeDistance, SparseIntArray locationValues) {
+        List<int[]> allBands = new ArrayList<>();
+
+        for (int code = 0; code < numberOfCodes; code++) {
+            for (int[] band : bands.get(code)) {
+                allBands.add(new int[]{code, band[BAND_CENTROID], band[BAND_AREA]});
+            }
+        }
+
+        mergeLocations(allBands, mergeDistance, locationValues);
+    }
+
+    /**
+     * Stores the locations of the given bands in locationValues (horizontal centroid to color code).
+     * A color band can be split into several bands (of one or more color codes),
+     * so of bands with centroids closer than mergeDistance only the largest one is kept.
+     * <p>
+     * The bands are merged from the largest to the smallest (bands with the same area ordered
+     * by the centroid and the color code), so the locations do not depend on the order of the given bands
+     * (e.g. the order of the contours of Imgproc.findContours, which can change between OpenCV versions).
+     *
+     * @param bands          the bands, each band is an entry {color code, centroid, area}, the list is sorted
+     * @param mergeDistance  of bands with centroids closer than this distance only the largest one is kept
+     * @param locationValues the locations, cleared first
+     */
+    public static void mergeLocations(List<int[]> bands, double mergeDistance, SparseIntArray locationValues) {
+        if (bands == null || locationValues == null)
+            throw new IllegalArgumentException("bands and locationValues must not be null!");
+
+        Collections.sort(bands, LARGEST_FIRST);
+        locationValues.clear();
+
+        for (int[] band : bands) {
+            boolean shouldStoreLocation = true;
+
+            for (int locIdx = 0; locIdx < locationValues.size(); locIdx++) {
+                if (Math.abs(locationValues.keyAt(locIdx) - band[MERGE_CENTROID]) < mergeDistance) {
+                    shouldStoreLocation = false;
+                    break;
+                }
+            }
+
+            if (shouldStoreLocation)
+                locationValues.put(band[MERGE_CENTROID], band[MERGE_CODE]);
+        }
+    }
+
+    /**
+     * Returns a new image of the labels of the last call of findBands().
+     * Each pixel gets the given color of its lowest color code, pixels without a color code are black.
+     *
+     * @param codeColors the color (HSV) of each color code
+     * @return A new Matrix (CV_8UC3, HSV colors) with the size of the labeled image.
+     */
+    public Mat newLabelImageHsv(Scalar[] codeColors) {
+        if (codeColors == null || codeColors.length != numberOfCodes)
+            throw new IllegalArgumentException("codeColors must contain one color per color code!");
+
+        byte[] imageBuffer = new byte[rows * cols * 3];
+
+        for (int i = 0; i < rows * cols; i++) {
+            int codes = labelBuffer[i] & 0xFFFF;
+
+            if (codes != 0) {
+                Scalar color = codeColors[Integer.numberOfTrailingZeros(codes)];
+                imageBuffer[i * 3] = (byte) color.val[0];
+                imageBuffer[i * 3 + 1] = (byte) color.val[1];
+                imageBuffer[i * 3 + 2] = (byte) color.val[2];
+            }
+        }
+
+        Mat labelImage = MatFactory.newMat(rows, cols, CvType.CV_8UC3);
+        labelImage.put(0, 0, imageBuffer);
+
+        return labelImage;
+    }
+
+    /**
+     * Releases the matrices of the labeling. They are created again by the next call of findBands().
+     */
+    public void release() {
+        if (codeMask == null)
+            return;
+
+        codeMask.release();
+        componentLabels.release();
+        componentStats.release();
+        componentCentroids.release();
+        componentMask.release();
+        hierarchy.release();
+
+        codeMask = null;
+    }
+
+    /**
+     * Sets the bit of a range in the bit tables for all values between the bounds (inclusive).
+     *
+     * @param range      the index of the range
+     * @param lowerBound the lower bound (HSV)
+     * @param upperBound the upper bound (HSV)
+     */
+    private void addRangeToTable(int range, Scalar lowerBound, Scalar upperBound) {
+        if (lowerBound == null || upperBound == null)
+            throw new IllegalArgumentException("bounds must not be null!");
+
+        for (int channel = 0; channel < 3; channel++) {
+            int lower = (int) Math.rint(lowerBound.val[channel]);
+            int upper = (int) Math.rint(upperBound.val[channel]);
+
+            if (lower > upper || lower > 255 || upper < 0)
+                continue;
+
+            for (int value = Math.max(lower, 0); value <= Math.min(upper, 255); value++) {
+                rangeTable[channel * CHANNEL_VALUES + value] |= 1 << range;
+            }
+        }
+    }
+
+    /**
+     * Makes sure the buffers are large enough for the given number of pixels
+     * and creates the matrices if needed.
+     *
+     * @param pixelCount the number of pixels of the image
+     */
+    private void ensureCapacity(int pixelCount) {
+        if (pixelBuffer.length < pixelCount * 3)
+            pixelBuffer = new byte[pixelCount * 3];
+
+        if (labelBuffer.length < pixelCount)
+            labelBuffer = new short[pixelCount];
+
+        //the component masks (bounding box with margin) need up to (rows + 2) * (cols + 2) entries
+        if (maskBuffer.length < (rows + 2) * (cols + 2))
+            maskBuffer = new byte[(rows + 2) * (cols + 2)];
+
+        if (componentBuffer.length < pixelCount)
+            componentBuffer = new int[pixelCount];
+
+        if (codeMask == null) {
+            codeMask = MatFactory.newMat();
+            componentLabels = MatFactory.newMat();
+            componentStats = MatFactory.newMat();
+            componentCentroids = MatFactory.newMat();
+            componentMask = MatFactory.newMat();
+            hierarchy = MatFactory.newMat();
+        }
+    }
+}
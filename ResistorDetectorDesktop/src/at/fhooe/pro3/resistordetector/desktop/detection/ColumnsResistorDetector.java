@@ -1,10 +1,12 @@
 package at.fhooe.pro3.resistordetector.desktop.detection;
 
-import org.opencv.core.*;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -19,6 +21,23 @@ import java.util.List;
  */
 public class ColumnsResistorDetector extends ResistorDetector {
 
+    /**
+     * Defines how the median color of the columns is calculated.
+     */
+    public enum ColumnMode {
+        /**
+         * NR_OF_COLUMNS_TO_COMBINE columns are combined into one strip.
+         * All columns of a strip get the median color of the strip.
+         */
+        Strips,
+
+        /**
+         * The median color of every column is calculated over a window around the column (stride 1).
+         * The band boundaries are detected with the full resolution of the image.
+         */
+        SlidingWindow,
+    }
+
     /**
      * Defines the number of columns of the resistor image that will be combined
      * to perform the detection of the median color.
@@ -26,14 +45,14 @@ public class ColumnsResistorDetector extends ResistorDetector {
     private static final int NR_OF_COLUMNS_TO_COMBINE = 5;
 
     /**
-     * Defines the minimum width in pixel a band of the resistor must have.
+     * Defines the default width (in columns) of the sliding window.
      */
-    private static final int MIN_BAND_WIDTH = NR_OF_COLUMNS_TO_COMBINE + 1;
+    public static final int SLIDING_WINDOW_WIDTH_DEFAULT = NR_OF_COLUMNS_TO_COMBINE;
 
     /**
-     * Defines if all detection steps should be included in the list of DetectionStepDetails
+     * Defines the minimum width in pixel a band of the resistor must have.
      */
-    private static final boolean VERBOSE_DETECTION_DETAILS = false;
+    private static final int MIN_BAND_WIDTH = NR_OF_COLUMNS_TO_COMBINE + 1;
 
     /**
      * The DetectionResult of the currently running detection process.
@@ -50,6 +69,44 @@ public class ColumnsResistorDetector extends ResistorDetector {
      */
     private int inputMatWidth = 0;
 
+    /**
+     * The mode used to calculate the median color of the columns.
+     */
+    private volatile ColumnMode columnMode = ColumnMode.Strips;
+
+    /**
+     * The width of the sliding window in columns, used with ColumnMode.SlidingWindow.
+     */
+    private volatile int slidingWindowWidth = SLIDING_WINDOW_WIDTH_DEFAULT;
+
+    /**
+     * The number of columns combined into one strip at the current resolution
+     * (NR_OF_COLUMNS_TO_COMBINE scaled with the scale of the image).
+     */
+    private int columnsToCombine = NR_OF_COLUMNS_TO_COMBINE;
+
+    /**
+     * The width of the sliding window at the current resolution
+     * (slidingWindowWidth scaled with the scale of the image).
+     */
+    private int scaledSlidingWindowWidth = SLIDING_WINDOW_WIDTH_DEFAULT;
+
+    /**
+     * The minimum width of a band at the current resolution
+     * (MIN_BAND_WIDTH scaled with the scale of the image).
+     */
+    private int minBandWidth = MIN_BAND_WIDTH;
+
+    /**
+     * Used to calculate the median colors of all columns in one pass.
+     */
+    private final ColumnStatisticsKernel columnStatisticsKernel = new ColumnStatisticsKernel();
+
+    /**
+     * Creates the mask of the resistor, reused for every detection.
+     */
+    private final ResistorMaskBuilder resistorMaskBuilder = new ResistorMaskBuilder();
+
     /**
      * Creates a new ResistorDetector with the given ResultListener.
      * The resultListener is notified when a result is ready.
@@ -60,22 +117,103 @@ public class ColumnsResistorDetector extends ResistorDetector {
         super(resultListener);
     }
 
+    /**
+     * Creates a new ResistorDetector with the given ResultListener and Preprocessor.
+     * The resultListener is notified when a result is ready.
+     *
+     * @param resultListener The resultListener that should be notified about detection results.
+     * @param preprocessor   The Preprocessor applied on the image before the colors are detected.
+     */
+    public ColumnsResistorDetector(ResultListener resultListener, Preprocessor preprocessor) {
+        super(resultListener, preprocessor);
+    }
+
+    /**
+     * Sets the mode used to calculate the median color of the columns.
+     *
+     * @param columnMode the mode used to calculate the median color of the columns
+     */
+    public void setColumnMode(ColumnMode columnMode) {
+        if (columnMode == null)
+            throw new IllegalArgumentException("columnMode must not be null!");
+
+        this.columnMode = columnMode;
+    }
+
+    /**
+     * Sets the width of the sliding window in columns, used with ColumnMode.SlidingWindow.
+     *
+     * @param slidingWindowWidth the width of the sliding window in columns, at least 1
+     */
+    public void setSlidingWindowWidth(int slidingWindowWidth) {
+        if (slidingWindowWidth < 1)
+            throw new IllegalArgumentException("slidingWindowWidth must be at least 1!");
+
+        this.slidingWindowWidth = slidingWindowWidth;
+    }
+
     /**
      * Performs the resistor detection with a column wise approach.
+     * <p>
+     * The detection is performed with the image reduced to the targetColumnsPerBand first.
+     * If too few bands are detected, the detection is repeated with the full resolution.
      *
      * @param resistorImage A OpenCV Matrix with the resistorImage, with BGR colors.
      */
     @Override
-    public void detectResistorValue(Mat resistorImage) {
+    protected void performDetection(Mat resistorImage) {
+        Mat reducedImage = newReducedImage(resistorImage);
+
+        if (reducedImage != null) {
+            DetectionResult reducedResult = detectAtResolution(reducedImage, (double) reducedImage.cols() / resistorImage.cols());
+            reducedImage.release();
+
+            if (isBandCountAccepted(reducedResult.getBandInfo().length)) {
+                reducedResult.setResolutionPath(DetectionResult.ResolutionPath.Reduced);
+                notifyListenerAboutNewResult(reducedResult);
+                return;
+            }
+
+            reducedResult.releaseDetectionStepDetails();
+        }
+
+        DetectionResult fullResult = detectAtResolution(resistorImage, 1);
+
+        if (reducedImage != null)
+            fullResult.setResolutionPath(DetectionResult.ResolutionPath.FullFallback);
+
+        notifyListenerAboutNewResult(fullResult);
+    }
+
+    /**
+     * Performs the resistor detection on the given image.
+     * <p>
+     * The NR_OF_COLUMNS_TO_COMBINE, the slidingWindowWidth, the MIN_BAND_WIDTH and the
+     * dilation radius of the reflections are scaled with the scale of the image.
+     *
+     * @param resistorImage A OpenCV Matrix with the resistorImage, with BGR colors. This image will be modified.
+     * @param scale         The scale of the resistorImage relative to the full resolution (1 at the full resolution).
+     * @return the result of the detection
+     */
+    private DetectionResult detectAtResolution(Mat resistorImage, double scale) {
         inputMatHeight = resistorImage.height();
         inputMatWidth = resistorImage.width();
 
+        columnsToCombine = Math.max(1, (int) Math.round(NR_OF_COLUMNS_TO_COMBINE * scale));
+        scaledSlidingWindowWidth = Math.max(1, (int) Math.round(slidingWindowWidth * scale));
+        minBandWidth = columnsToCombine + (MIN_BAND_WIDTH - NR_OF_COLUMNS_TO_COMBINE);
+        resistorMaskBuilder.setReflectionDilationRadius((int) Math.round(ResistorMaskBuilder.REFLECTION_DILATION_RADIUS_DEFAULT * scale));
+
         detectionResult = new DetectionResult();
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("original Image", resistorImage));
 
-        applyBilateralFilter(resistorImage);
+        if (isDetailLevelEnabled(DetailLevel.Summary))
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("original Image", resistorImage));
+
+        applyPreprocessor(resistorImage);
 
+        long stageStart = startStage();
         Imgproc.cvtColor(resistorImage, resistorImage, Imgproc.COLOR_BGR2HSV);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColorConversion, stageStart);
 
         Mat resistorMask = getResistorAsMask(resistorImage);
 
@@ -83,15 +221,20 @@ public class ColumnsResistorDetector extends ResistorDetector {
 
         ColorName[] columnColorNames = getColumnColorNames(medianValues);
 
+        stageStart = startStage();
         List<BandInfo> bands = getBandInfo(columnColorNames);
+        recordStageTime(detectionResult, DetectionResult.Stage.BandGrouping, stageStart);
 
-        addBandInfoToDetectionDetails(bands);
+        if (isDetailLevelEnabled(DetailLevel.Summary))
+            addBandInfoToDetectionDetails(bands);
 
         BandInfo[] bandsArray = new BandInfo[bands.size()];
         bandsArray = bands.toArray(bandsArray);
         detectionResult.setBandInfo(bandsArray);
 
+        stageStart = startStage();
         int resistance = calculateResistance(bands);
+        recordStageTime(detectionResult, DetectionResult.Stage.Decode, stageStart);
 
         if (resistance != -1)
             detectionResult.setResistorValue(resistance);
@@ -99,268 +242,154 @@ public class ColumnsResistorDetector extends ResistorDetector {
         resistorMask.release();
         medianValues.release();
 
-        notifyListenerAboutNewResult(detectionResult);
+        return detectionResult;
     }
 
     /**
-     * Applies a bilateral filter on the image.
-     * This reduces the noise in the image but keeps the edges fairly sharp.
+     * Applies the Preprocessor (e.g. a bilateral filter) on the image.
      * <p>
      * The given image is modified!
-     * <p>
-     * See also:
-     * - Imgproc.bilateralFilter: http://docs.opencv.org/2.4/modules/imgproc/doc/filtering.html#bilateralfilter
-     * - Imgproc.bilateralFilter: http://docs.opencv.org/2.4/doc/tutorials/imgproc/gausian_median_blur_bilateral_filter/gausian_median_blur_bilateral_filter.html
      *
-     * @param resistorImage The image the filter should be applied to. This image will be modified.
+     * @param resistorImage The image the Preprocessor should be applied to. This image will be modified.
      */
-    private void applyBilateralFilter(Mat resistorImage) {
-        Mat filteredResistorImage = new Mat();
-        Imgproc.bilateralFilter(resistorImage, filteredResistorImage, 5, 80, 80);
-
-        if (VERBOSE_DETECTION_DETAILS)
-            detectionResult.addDetectionStepDetail(new DetectionStepDetail("filtered Image", filteredResistorImage));
+    private void applyPreprocessor(Mat resistorImage) {
+        long stageStart = startStage();
+        preprocessor.apply(resistorImage, resistorImage);
+        recordStageTime(detectionResult, DetectionResult.Stage.Filter, stageStart);
 
-        //copy result back to original image
-        filteredResistorImage.copyTo(resistorImage);
-
-        filteredResistorImage.release();
+        if (isDetailLevelEnabled(DetailLevel.Verbose))
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("filtered Image", resistorImage));
     }
 
     /**
      * Returns a mask of the resistor where the background and reflections are masked out.
-     * <p>
-     * See also:
-     * - Core.bitwise_or: http://docs.opencv.org/2.4/modules/core/doc/operations_on_arrays.html#bitwise-or
-     * - Core.bitwise_not: http://docs.opencv.org/2.4/modules/core/doc/operations_on_arrays.html#bitwise-not
+     * The mask is created in one pass over the image, see ResistorMaskBuilder.
      *
-     * @param resistorImage The image of the resistor
+     * @param resistorImage The image of the resistor (HSV colors)
      * @return a mask of the resistor where the background and reflections are masked out.
      */
     private Mat getResistorAsMask(Mat resistorImage) {
-        Mat reflectionMask = getReflectionsAsMask(resistorImage);
-
-        Mat backgroundMask = getBackgroundAsMask(resistorImage);
-
-        Mat resistorMask = new Mat();
-
-        Core.bitwise_or(reflectionMask, backgroundMask, resistorMask);
-        Core.bitwise_not(resistorMask, resistorMask);
+        Mat resistorMask = MatFactory.newMat();
 
-        Mat tmpMat = MatColorConversions.newBgrMatFromGray(resistorMask);
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("resistor mask", tmpMat));
+        if (isDetailLevelEnabled(DetailLevel.Verbose)) {
+            Mat reflectionMask = MatFactory.newMat();
+            Mat backgroundMask = MatFactory.newMat();
 
-        backgroundMask.release();
-        reflectionMask.release();
+            long stageStart = startStage();
+            resistorMaskBuilder.buildMask(resistorImage, resistorMask, reflectionMask, backgroundMask);
+            recordStageTime(detectionResult, DetectionResult.Stage.Mask, stageStart);
 
-        return resistorMask;
-    }
-
-    /**
-     * Returns a mask of the reflections in the image.
-     * This returns a mask where everything but the reflections is masked out.
-     * <p>
-     * See also:
-     * - Core.inRange: http://docs.opencv.org/2.4/modules/core/doc/operations_on_arrays.html#inrange
-     * - Core.inRange: http://docs.opencv.org/trunk/da/d97/tutorial_threshold_inRange.html
-     * - Imgproc.erode: http://docs.opencv.org/2.4/modules/imgproc/doc/filtering.html?highlight=erode#erode
-     * - Imgproc.erode: http://docs.opencv.org/2.4/doc/tutorials/imgproc/erosion_dilatation/erosion_dilatation.html#erosion
-     *
-     * @param resistorImage The image for which the mask should be created
-     * @return A mask of the reflections (everything but the reflections is masked out)
-     */
-    private Mat getReflectionsAsMask(Mat resistorImage) {
-        Mat mask = new Mat();
-
-        Core.inRange(resistorImage, new Scalar(0, 0, 200), new Scalar(180, 256, 256), mask);
-
-        //erode to smooth the edges of the mask and increase the size of the masked areas
-        //invert mask to increase the reflections
-        Core.bitwise_not(mask, mask);
-        Imgproc.erode(mask, mask, new Mat(), new Point(-1, -1), 2);
-        Core.bitwise_not(mask, mask);
-
-        if (VERBOSE_DETECTION_DETAILS) {
-            Mat tmpMat = MatColorConversions.newBgrMatFromGray(mask);
+            Mat tmpMat = MatColorConversions.newBgrMatFromGray(reflectionMask);
             detectionResult.addDetectionStepDetail(new DetectionStepDetail("reflections", tmpMat));
-        }
-
-        return mask;
-    }
-
-    /**
-     * Returns a mask of the background of the image.
-     * This returns a mask where everything but the background is masked out.
-     * <p>
-     * See also:
-     * - Core.mean: http://docs.opencv.org/2.4/modules/core/doc/operations_on_arrays.html#mean
-     * - Core.inRange: http://docs.opencv.org/2.4/modules/core/doc/operations_on_arrays.html#inrange
-     * - Core.bitwise_or: http://docs.opencv.org/2.4/modules/core/doc/operations_on_arrays.html#bitwise-or
-     *
-     * @param resistorImage The image for which the mask should be created
-     * @return A mask of the background (everything but the background is masked out)
-     */
-    private Mat getBackgroundAsMask(Mat resistorImage) {
-        Mat backgroundMaskTop = new Mat();
-        Mat backgroundMaskBottom = new Mat();
-        Mat backgroundMask = new Mat();
-
-        Scalar backgroundColorTop = Core.mean(resistorImage.rowRange(0, 1), new Mat());
-        Scalar backgroundColorBottom = Core.mean(resistorImage.rowRange(resistorImage.rows() - 2, resistorImage.rows() - 1), new Mat());
-
-        Core.inRange(resistorImage, backgroundColorTop.mul(new Scalar(0.6, 0.6, 0.6)), backgroundColorTop.mul(new Scalar(1.4, 1.4, 1.4)), backgroundMaskTop);
-        Core.inRange(resistorImage, backgroundColorBottom.mul(new Scalar(0.6, 0.6, 0.6)), backgroundColorBottom.mul(new Scalar(1.4, 1.4, 1.4)), backgroundMaskBottom);
-
-        Core.bitwise_or(backgroundMaskTop, backgroundMaskBottom, backgroundMask);
+            tmpMat.release();
 
-        if (VERBOSE_DETECTION_DETAILS) {
-            Mat tmpMat = MatColorConversions.newBgrMatFromGray(backgroundMask);
+            tmpMat = MatColorConversions.newBgrMatFromGray(backgroundMask);
             detectionResult.addDetectionStepDetail(new DetectionStepDetail("background", tmpMat));
+            tmpMat.release();
+
+            reflectionMask.release();
+            backgroundMask.release();
+        } else {
+            long stageStart = startStage();
+            resistorMaskBuilder.buildMask(resistorImage, resistorMask);
+            recordStageTime(detectionResult, DetectionResult.Stage.Mask, stageStart);
         }
 
-        backgroundMaskTop.release();
-        backgroundMaskBottom.release();
+        if (isDetailLevelEnabled(DetailLevel.Summary)) {
+            Mat tmpMat = MatColorConversions.newBgrMatFromGray(resistorMask);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("resistor mask", tmpMat));
+            tmpMat.release();
+        }
 
-        return backgroundMask;
+        return resistorMask;
     }
 
     /**
      * Returns a new Matrix with the median color for each column of the given resistor image.
-     * If NR_OF_COLUMNS_TO_COMBINE is greater than 1, NR_OF_COLUMNS_TO_COMBINE defines the number
+     * In the mode ColumnMode.Strips, columnsToCombine (NR_OF_COLUMNS_TO_COMBINE at the full resolution) defines the number
      * of columns that get grouped together. The median color is than calculated over more than
      * one column.
+     * In the mode ColumnMode.SlidingWindow, the median color of each column is calculated
+     * over the scaled slidingWindowWidth columns around the column.
      * The mask defines the regions of the resistor image that should be used for the calculation.
      * All masked out areas are not used for the median calculation.
      * <p>
-     * The returned Matrix has only one row and the same number of columns as the input image.
+     * The median colors of all columns are calculated in one pass over the image
+     * by the ColumnStatisticsKernel. If a parallel executor is set, ranges of strips
+     * are processed in parallel (the sliding window is always calculated sequentially).
      * <p>
-     * See also:
-     * - Mat.submat: http://docs.opencv.org/java/2.4.2/org/opencv/core/Mat.html#submat(int, int, int, int)
-     * - Mat.put: http://docs.opencv.org/java/2.4.2/org/opencv/core/Mat.html#put(int, int, double...)
+     * The returned Matrix has only one row and the same number of columns as the input image.
      *
      * @param resistorImage The image for which the median column color should be calculated.
      * @param resistorMask  The mask defining the areas to consider in the calculation.
      * @return A new Matrix with one row and as many columns as the input image with the median color for each column.
      */
     private Mat getMedianColorsOfColumns(Mat resistorImage, Mat resistorMask) {
-        Mat medianValues = new Mat(1, resistorImage.cols(), resistorImage.type());
-
-        int n = NR_OF_COLUMNS_TO_COMBINE;
+        Mat medianValues;
 
-        for (int i = 0; i < resistorImage.cols() - n; i += n) {
-            Mat col = resistorImage.submat(new Rect(i, 0, n, resistorImage.rows()));
-            Mat mask = resistorMask.submat(new Rect(i, 0, n, resistorImage.rows()));
+        long stageStart = startStage();
 
-            Scalar median = getColorUsingHsvMedian(col, mask);
+        if (columnMode == ColumnMode.SlidingWindow)
+            medianValues = columnStatisticsKernel.medianOfSlidingWindow(resistorImage, resistorMask, scaledSlidingWindowWidth);
+        else
+            medianValues = columnStatisticsKernel.medianOfColumnStrips(resistorImage, resistorMask, columnsToCombine, parallelExecutor);
 
-            for (int j = 0; j < n; j++) {
-                medianValues.put(0, i + j, median.val[0], median.val[1], median.val[2]);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColumnStatistics, stageStart);
 
-            }
+        if (isDetailLevelEnabled(DetailLevel.Summary)) {
+            Mat tmpMat = MatColorConversions.newBgrMatFromHsv(medianValues);
+            Imgproc.resize(tmpMat, tmpMat, new Size(resistorImage.cols(), resistorImage.rows()), 0, 0, Imgproc.INTER_NEAREST);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("median value of colums", tmpMat));
+            tmpMat.release();
         }
 
-        Mat tmpMat = MatColorConversions.newBgrMatFromHsv(medianValues);
-        Imgproc.resize(tmpMat, tmpMat, new Size(resistorImage.cols(), resistorImage.rows()), 0, 0, Imgproc.INTER_NEAREST);
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("median value of colums", tmpMat));
-        tmpMat.release();
-
         return medianValues;
     }
 
     /**
-     * Returns the median color of the given matrix.
-     * The mask defines which pixel should be used for the calculation.
+     * Returns an array with the ColorName for each column of the medianColors.
+     * The given matrix with the median colors must have one row.
      * <p>
-     * See also:
-     * - Core.split: http://docs.opencv.org/2.4/modules/core/doc/operations_on_arrays.html#split
-     * - Mat.get: http://docs.opencv.org/java/2.4.2/org/opencv/core/Mat.html#get(int, int)
+     * The resulting array has as many elements as the matrix has columns.
      *
-     * @param image The matrix for which the media color should be calculated.
-     * @param mask  The mask defining which pixel should be used for the calculation.
-     * @return The median color of the matrix, a Scalar (HSV color)
+     * @param medianColors The matrix for which the color names per column should be returned.
+     * @return An array with the ColorName for each column.
      */
-    private Scalar getColorUsingHsvMedian(Mat image, Mat mask) {
-        List<Mat> hsvPlanes = new ArrayList<Mat>();
-        Core.split(image, hsvPlanes);
-
-        Mat hMat = new Mat();
-        hsvPlanes.get(0).copyTo(hMat, mask);
-        double hMedian = medianOfMat(hMat, mask);
-
-        Mat sMat = new Mat();
-        hsvPlanes.get(1).copyTo(sMat, mask);
-        double sMedian = medianOfMat(sMat, mask);
+    private ColorName[] getColumnColorNames(Mat medianColors) {
+        long stageStart = startStage();
 
-        Mat vMat = new Mat();
-        hsvPlanes.get(2).copyTo(vMat, mask);
-        double vMedian = medianOfMat(vMat, mask);
+        ColorName[] columnColors = new ColorName[medianColors.cols()];
 
-        hMat.release();
-        sMat.release();
-        vMat.release();
+        byte[] colValues = new byte[medianColors.cols() * 3];
+        medianColors.get(0, 0, colValues);
 
-        return new Scalar(hMedian, sMedian, vMedian);
-    }
-
-    /**
-     * Returns the median value of a matrix.
-     * The mask defines which pixel should be used for the calculation.
-     * <p>
-     * See also:
-     * - Mat.reshape: http://docs.opencv.org/java/2.4.2/org/opencv/core/Mat.html#reshape(int, int)
-     * - Mat.get: http://docs.opencv.org/java/2.4.2/org/opencv/core/Mat.html#get(int, int)
-     *
-     * @param image The matrix for which the media value should be calculated.
-     * @param mask  The mask defining which pixel should be used for the calculation.
-     * @return The median value of the matrix
-     */
-    private double medianOfMat(Mat image, Mat mask) {
-        image.reshape(image.channels(), 1);
-        Mat mask2 = new Mat();
-        mask.copyTo(mask2);
-        mask2.reshape(mask2.channels(), 1);
+        for (int i = 0; i < medianColors.cols(); i++) {
 
-        ArrayList<Double> valueList = new ArrayList<>();
+            ColorName colColor = ColorDefinitionsHsv.classify(colValues[i * 3] & 0xFF, colValues[i * 3 + 1] & 0xFF, colValues[i * 3 + 2] & 0xFF);
 
-        for (int i = 0; i < image.rows(); i++) {
-            if (mask2.get(i, 0)[0] != 0)
-                valueList.add(image.get(i, 0)[0]);
+            columnColors[i] = colColor;
         }
 
-        Collections.sort(valueList);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColorNaming, stageStart);
 
-        int median = valueList.size() / 2;
+        recordColumnColorNames(columnColors);
 
-        if (median == 0)
-            return 0;
+        if (isDetailLevelEnabled(DetailLevel.Summary))
+            addColumnColorNamesToDetectionDetails(columnColors);
 
-        mask2.release();
-
-        return valueList.get(median);
+        return columnColors;
     }
 
     /**
-     * Returns an array with the ColorName for each column of the medianColors.
-     * The given matrix with the median colors must have one row.
-     * <p>
-     * The resulting array has as many elements as the matrix has columns.
+     * Draws the ColorName of each column and adds the image to the DetectionStepDetails.
      *
-     * @param medianColors The matrix for which the color names per column should be returned.
-     * @return An array with the ColorName for each column.
+     * @param columnColors An array with the ColorName for each column.
      */
-    private ColorName[] getColumnColorNames(Mat medianColors) {
-        ColorName[] columnColors = new ColorName[medianColors.cols()];
-
-        Mat tmpMat = new Mat(medianColors.rows(), medianColors.cols(), medianColors.type());
-
-        for (int i = 0; i < medianColors.cols(); i++) {
-
-            double[] colValue = medianColors.get(0, i);
-            ColorName colColor = ColorDefinitionsHsv.getColorName(new Scalar(colValue));
+    private void addColumnColorNamesToDetectionDetails(ColorName[] columnColors) {
+        Mat tmpMat = MatFactory.newMat(1, columnColors.length, CvType.CV_8UC3);
 
-            columnColors[i] = colColor;
-
-            Scalar detectedColor = ColorDefinitionsHsv.getColorFromName(colColor);
+        for (int i = 0; i < columnColors.length; i++) {
+            Scalar detectedColor = ColorDefinitionsHsv.getColorFromName(columnColors[i]);
             tmpMat.put(0, i, detectedColor.val[0], detectedColor.val[1], detectedColor.val[2]);
         }
 
@@ -369,14 +398,15 @@ public class ColumnsResistorDetector extends ResistorDetector {
         detectionResult.addDetectionStepDetail(new DetectionStepDetail("Detected color per column", tmpMat2));
         tmpMat.release();
         tmpMat2.release();
-
-        return columnColors;
     }
 
     /**
      * Returns a list with Resistor Band Infos calculated from the columnColorNames.
      * The same color names in one row are combined into one entry (the width is also saved).
-     * Only columns wider than MIN_BAND_WIDTH are added to the resulting list.
+     * Only columns wider than the minBandWidth (MIN_BAND_WIDTH at the full resolution) are added to the resulting list.
+     * <p>
+     * The array contains one entry for every pixel column of the resistor image,
+     * so the band boundaries have the resolution of the column mode (strips or single columns).
      *
      * @param columnColorNames An array with the column name for each column
      * @return A list with BandInfo element for each band of the resistor.
@@ -398,7 +428,7 @@ public class ColumnsResistorDetector extends ResistorDetector {
                 tmpWidth++;
             }
 
-            if (tmpWidth >= MIN_BAND_WIDTH) {
+            if (tmpWidth >= minBandWidth) {
                 if (tmpName != ColorName.Unknown) {
                     bands.add(new BandInfo(tmpName, tmpWidth));
                 }
@@ -420,7 +450,7 @@ public class ColumnsResistorDetector extends ResistorDetector {
                 width += band.getWidth();
             }
 
-            Mat tmpMat = new Mat(1, width, CvType.CV_8UC3);
+            Mat tmpMat = MatFactory.newMat(1, width, CvType.CV_8UC3);
 
             int count = 0;
 
@@ -443,44 +473,4 @@ public class ColumnsResistorDetector extends ResistorDetector {
             detectionResult.addDetectionStepDetail(new DetectionStepDetail("No bands found"));
         }
     }
-
-    /**
-     * Calculates the resistance of the resistor based on the colors of the resistor bands.
-     *
-     * @param bands A list of resistor band info elements.
-     * @return the calculated resistance value, or -1 if the calculation is not possible.
-     */
-    private int calculateResistance(List<BandInfo> bands) {
-        if (numberOfBands == NumberOfBands.Four && bands.size() == 4) {
-            int firstDigit = ColorValues.getValueForColor(bands.get(0).getColor());
-            int secondDigit = ColorValues.getValueForColor(bands.get(1).getColor());
-            int multiplier = ColorValues.getValueForColor(bands.get(2).getColor());
-            //int tolerance = ColorValues.getValueForColor(bands.get(3));
-
-            int resistance = (int) ((firstDigit * 10 + secondDigit) * Math.pow(10, multiplier));
-
-            return resistance;
-        } else if (numberOfBands == NumberOfBands.Five && bands.size() == 5) {
-            int firstDigit = ColorValues.getValueForColor(bands.get(0).getColor());
-            int secondDigit = ColorValues.getValueForColor(bands.get(1).getColor());
-            int thirdDigit = ColorValues.getValueForColor(bands.get(2).getColor());
-            int multiplier = ColorValues.getValueForColor(bands.get(3).getColor());
-            //int tolerance = ColorValues.getValueForColor(bands.get(4));
-
-            int resistance = (int) ((firstDigit * 100 + secondDigit * 10 + thirdDigit) * Math.pow(10, multiplier));
-
-            return resistance;
-        } else if (bands.size() >= 3) {
-            int firstDigit = ColorValues.getValueForColor(bands.get(0).getColor());
-            int secondDigit = ColorValues.getValueForColor(bands.get(1).getColor());
-            int multiplier = ColorValues.getValueForColor(bands.get(2).getColor());
-            //int tolerance = ColorValues.getValueForColor(bands.get(3));
-
-            int resistance = (int) ((firstDigit * 10 + secondDigit) * Math.pow(10, multiplier));
-
-            return resistance;
-        } else {
-            return -1;
-        }
-    }
 }
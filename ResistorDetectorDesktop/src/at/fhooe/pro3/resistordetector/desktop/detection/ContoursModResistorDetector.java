@@ -1,14 +1,8 @@
 package at.fhooe.pro3.resistordetector.desktop.detection;
 
-import org.opencv.core.Core;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.imgproc.Moments;
-
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Modified version of the resistor detection code from GitHub: https://github.com/thegouger/ResistorScanner.
@@ -18,12 +12,17 @@ import java.util.List;
  */
 public class ContoursModResistorDetector extends ResistorDetector {
 
+    private static final int NUM_CODES = 10;
+
     /**
-     * Defines if all detection steps should be included in the list of DetectionStepDetails
+     * The minimum area of a band (at the full resolution).
      */
-    private static final boolean VERBOSE_DETECTION_DETAILS = false;
+    private static final int MIN_BAND_AREA = 20;
 
-    private static final int NUM_CODES = 10;
+    /**
+     * Bands with centroids closer than this distance (at the full resolution) are merged.
+     */
+    private static final int MERGE_DISTANCE = 10;
 
     // HSV colour bounds
     private static final Scalar COLOR_BOUNDS[][] = {
@@ -45,36 +44,106 @@ public class ContoursModResistorDetector extends ResistorDetector {
     private static Scalar LOWER_RED2 = ColorDefinitionsHsv.RED2_MIN;
     private static Scalar UPPER_RED2 = ColorDefinitionsHsv.RED2_MAX;
 
+    // colours of the color codes used to draw the label image (color code i is the color name with the ordinal i)
+    private static final Scalar COLOR_NAME_COLORS[] = new Scalar[NUM_CODES];
+
+    static {
+        for (int i = 0; i < NUM_CODES; i++) {
+            COLOR_NAME_COLORS[i] = ColorDefinitionsHsv.getColorFromName(ColorName.values()[i]);
+        }
+    }
+
     private SparseIntArray locationValues = new SparseIntArray(4);
 
+    /**
+     * Finds the areas of all color codes in one pass (index i of COLOR_BOUNDS is color code i, red uses both red ranges).
+     */
+    private final ColorBandLabeling colorBandLabeling = new ColorBandLabeling(new Scalar[][]{
+            {COLOR_BOUNDS[0][0], COLOR_BOUNDS[0][1]},
+            {COLOR_BOUNDS[1][0], COLOR_BOUNDS[1][1]},
+            {LOWER_RED1, UPPER_RED1, LOWER_RED2, UPPER_RED2},
+            {COLOR_BOUNDS[3][0], COLOR_BOUNDS[3][1]},
+            {COLOR_BOUNDS[4][0], COLOR_BOUNDS[4][1]},
+            {COLOR_BOUNDS[5][0], COLOR_BOUNDS[5][1]},
+            {COLOR_BOUNDS[6][0], COLOR_BOUNDS[6][1]},
+            {COLOR_BOUNDS[7][0], COLOR_BOUNDS[7][1]},
+            {COLOR_BOUNDS[8][0], COLOR_BOUNDS[8][1]},
+            {COLOR_BOUNDS[9][0], COLOR_BOUNDS[9][1]}
+    });
+
     public ContoursModResistorDetector(ResultListener resultListener) {
         super(resultListener);
     }
 
+    public ContoursModResistorDetector(ResultListener resultListener, Preprocessor preprocessor) {
+        super(resultListener, preprocessor);
+    }
+
     private DetectionResult detectionResult;
 
     /**
      * Performs the resistor detection by trying to find the locations
      * of each possible color.
      *
+     * <p>
+     * The detection is performed with the image reduced to the targetColumnsPerBand first.
+     * If too few locations are found, the detection is repeated with the full resolution.
+     *
      * @param resistorImage A OpenCV Matrix with the resistorImage, with BGR colors.
      */
     @Override
-    public void detectResistorValue(Mat resistorImage) {
+    protected void performDetection(Mat resistorImage) {
+        Mat reducedImage = newReducedImage(resistorImage);
+
+        if (reducedImage != null) {
+            detectAtResolution(reducedImage, (double) reducedImage.cols() / resistorImage.cols());
+            reducedImage.release();
 
+            if (isBandCountAccepted(locationValues.size())) {
+                detectionResult.setResolutionPath(DetectionResult.ResolutionPath.Reduced);
+                notifyListenerAboutNewResult(detectionResult);
+                return;
+            }
+
+            detectionResult.releaseDetectionStepDetails();
+        }
+
+        detectAtResolution(resistorImage, 1);
+
+        if (reducedImage != null)
+            detectionResult.setResolutionPath(DetectionResult.ResolutionPath.FullFallback);
+
+        notifyListenerAboutNewResult(detectionResult);
+    }
+
+    /**
+     * Performs the resistor detection on the given image,
+     * the result is stored in detectionResult and locationValues.
+     *
+     * @param resistorImage A OpenCV Matrix with the resistorImage, with BGR colors.
+     * @param scale         The scale of the resistorImage relative to the full resolution (1 at the full resolution).
+     */
+    private void detectAtResolution(Mat resistorImage, double scale) {
         detectionResult = new DetectionResult();
 
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("original Image", resistorImage));
+        if (isDetailLevelEnabled(DetailLevel.Summary))
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("original Image", resistorImage));
 
-        Mat filteredMat = new Mat();
-        Imgproc.bilateralFilter(resistorImage, filteredMat, 5, 80, 80);
+        long stageStart = startStage();
+        Mat filteredMat = MatFactory.newMat();
+        preprocessor.apply(resistorImage, filteredMat);
+        recordStageTime(detectionResult, DetectionResult.Stage.Filter, stageStart);
 
-        if (VERBOSE_DETECTION_DETAILS)
+        if (isDetailLevelEnabled(DetailLevel.Verbose))
             detectionResult.addDetectionStepDetail(new DetectionStepDetail("filtered Image", filteredMat));
 
+        stageStart = startStage();
         Imgproc.cvtColor(filteredMat, filteredMat, Imgproc.COLOR_BGR2HSV);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColorConversion, stageStart);
 
-        findLocations(filteredMat);
+        findLocations(filteredMat, scale);
+
+        stageStart = startStage();
 
         if (locationValues.size() >= 3) {
             // recover the resistor value by iterating through the centroid locations
@@ -89,71 +158,48 @@ public class ContoursModResistorDetector extends ResistorDetector {
             detectionResult.setResistorValue(value);
         }
 
-        notifyListenerAboutNewResult(detectionResult);
+        recordStageTime(detectionResult, DetectionResult.Stage.Decode, stageStart);
+
+        filteredMat.release();
     }
 
     /**
-     * See also:
-     * - Core.inRange: http://docs.opencv.org/2.4/modules/core/doc/operations_on_arrays.html#inrange
-     * - Imgproc.findContours: http://docs.opencv.org/2.4/modules/imgproc/doc/structural_analysis_and_shape_descriptors.html?#findcontours
-     * - Imgproc.findContours: http://docs.opencv.org/2.4/doc/tutorials/imgproc/shapedescriptors/find_contours/find_contours.html
-     * - Imgproc.contourArea: http://docs.opencv.org/2.4/modules/imgproc/doc/structural_analysis_and_shape_descriptors.html#contourarea
-     * - Imgproc.moments: http://docs.opencv.org/2.4/modules/imgproc/doc/structural_analysis_and_shape_descriptors.html#moments
+     * Finds the locations (horizontal centroids) of the color bands and stores them with
+     * their color code in locationValues.
+     * <p>
+     * All color codes are labeled in one pass over the image, the bands are the contours
+     * of the connected components of each color code (see ColorBandLabeling).
+     * Of bands closer than the MERGE_DISTANCE only the largest one is kept, independent of
+     * the order the bands were found in (see ColorBandLabeling.mergeLocations()).
      *
-     * @param searchMat
+     * The MIN_BAND_AREA and the MERGE_DISTANCE are scaled with the scale of the image.
+     *
+     * @param searchMat The image of the resistor (HSV colors).
+     * @param scale     The scale of the searchMat relative to the full resolution (1 at the full resolution).
      */
-    private void findLocations(Mat searchMat) {
-        locationValues.clear();
-        SparseIntArray areas = new SparseIntArray(4);
-
-        for (int i = 0; i < NUM_CODES; i++) {
-            Mat mask = new Mat();
-            List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
-            Mat hierarchy = new Mat();
-
-            if (i == 2) {
-                // combine the two ranges for red
-                Core.inRange(searchMat, LOWER_RED1, UPPER_RED1, mask);
-                Mat rmask2 = new Mat();
-                Core.inRange(searchMat, LOWER_RED2, UPPER_RED2, rmask2);
-                Core.bitwise_or(mask, rmask2, mask);
-            } else
-                Core.inRange(searchMat, COLOR_BOUNDS[i][0], COLOR_BOUNDS[i][1], mask);
-
-            Imgproc.findContours(mask, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
-
-            Mat tmpMat = MatColorConversions.newBgrMatFromHsv(searchMat);
-            Imgproc.drawContours(tmpMat, contours, -1, new Scalar(255, 255, 255), 1);
-            detectionResult.addDetectionStepDetail(new DetectionStepDetail("area of color " + ColorDefinitionsHsv.getColorName(COLOR_BOUNDS[i][0]), tmpMat));
-
-            for (int contIdx = 0; contIdx < contours.size(); contIdx++) {
-                int area;
-                if ((area = (int) Imgproc.contourArea(contours.get(contIdx))) > 20) {
-                    Moments M = Imgproc.moments(contours.get(contIdx));
-                    int cx = (int) (M.get_m10() / M.get_m00());
-
-                    // if a colour band is split into multiple contours
-                    // we take the largest and consider only its centroid
-                    boolean shouldStoreLocation = true;
-                    for (int locIdx = 0; locIdx < locationValues.size(); locIdx++) {
-                        if (Math.abs(locationValues.keyAt(locIdx) - cx) < 10) {
-                            if (areas.get(locationValues.keyAt(locIdx)) > area) {
-                                shouldStoreLocation = false;
-                                break;
-                            } else {
-                                locationValues.delete(locationValues.keyAt(locIdx));
-                                areas.delete(locationValues.keyAt(locIdx));
-                            }
-                        }
-                    }
-
-                    if (shouldStoreLocation) {
-                        areas.put(cx, area);
-                        locationValues.put(cx, i);
-                    }
-                }
-            }
+    private void findLocations(Mat searchMat, double scale) {
+        int minArea = (int) (MIN_BAND_AREA * scale * scale);
+        double mergeDistance = MERGE_DISTANCE * scale;
+
+        long stageStart = startStage();
+        colorBandLabeling.findBands(searchMat, minArea);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColumnStatistics, stageStart);
+
+        if (isDetailLevelEnabled(DetailLevel.Summary)) {
+            Mat labelImage = colorBandLabeling.newLabelImageHsv(COLOR_NAME_COLORS);
+            Mat tmpMat = MatColorConversions.newBgrMatFromHsv(labelImage);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("color labels", tmpMat));
+            labelImage.release();
+            tmpMat.release();
         }
+
+        stageStart = startStage();
+
+        // if a colour band is split into multiple contours
+        // we take the largest and consider only its centroid
+        colorBandLabeling.getLocations(mergeDistance, locationValues);
+
+        recordStageTime(detectionResult, DetectionResult.Stage.BandGrouping, stageStart);
     }
 }
 
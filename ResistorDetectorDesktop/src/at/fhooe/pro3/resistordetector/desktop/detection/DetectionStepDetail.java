@@ -8,6 +8,10 @@ import java.awt.image.BufferedImage;
  * This class represents one step of the detection process
  * and contains information (descriptions and image) about the detection step.
  * <p>
+ * The image is not converted while the detection is running. A snapshot (copy) of the
+ * Matrix is kept and the image is only created when it is requested the first time.
+ * The snapshot is released afterwards or when release() is called.
+ * <p>
  * Created by stefan on 28.05.2017.
  */
 public class DetectionStepDetail {
@@ -17,14 +21,21 @@ public class DetectionStepDetail {
     private String description = null;
 
     /**
-     * Image representing the DetectionStep or the result of the DetectionStep.
+     * Image representing the DetectionStep or the result of the DetectionStep,
+     * null until it is requested the first time.
      */
     private BufferedImage image = null;
 
+    /**
+     * Snapshot of the Matrix the image is created from (BGR colors),
+     * null if there is no image, the image was already created or the snapshot was released.
+     */
+    private Mat imageSnapshot = null;
+
     /**
      * Creates a new DetectionStepDetail object with a description and an image.
-     * The image is creates from the given Matrix.
-     * The Matrix must have BGR colors.
+     * The image is created from a copy of the given Matrix when it is requested.
+     * The Matrix must have BGR colors, it can be modified or released afterwards.
      *
      * @param description the string describing the detection step
      * @param imageMatBgr a matrix representing the DetectionStep or the result of the DetectionStep, in BGR colors
@@ -36,7 +47,7 @@ public class DetectionStepDetail {
             throw new IllegalArgumentException("imageMatBgr must not be null!");
 
         this.description = description;
-        this.image = BufferedImageConversions.matToBufferedImage(imageMatBgr);
+        this.imageSnapshot = MatFactory.newCopy(imageMatBgr);
     }
 
     /**
@@ -63,10 +74,18 @@ public class DetectionStepDetail {
 
     /**
      * Returns the image representing the DetectionStep or the result of the DetectionStep.
+     * The image is created from the snapshot on the first call, the snapshot is released afterwards.
      *
-     * @return the image representing the DetectionStep
+     * @return the image representing the DetectionStep, or null if there is no image
      */
-    public BufferedImage getImage() {
+    public synchronized BufferedImage getImage() {
+        if (image == null && imageSnapshot != null) {
+            image = BufferedImageConversions.matToBufferedImage(imageSnapshot);
+
+            imageSnapshot.release();
+            imageSnapshot = null;
+        }
+
         return image;
     }
 
@@ -75,8 +94,19 @@ public class DetectionStepDetail {
      *
      * @return true if this DetectionStepDetail contains an image
      */
-    public boolean isImageAvailable() {
-        return image != null;
+    public synchronized boolean isImageAvailable() {
+        return image != null || imageSnapshot != null;
+    }
+
+    /**
+     * Releases the snapshot of the Matrix. An image which was not requested
+     * before is not available afterwards, an already created image is kept.
+     */
+    public synchronized void release() {
+        if (imageSnapshot != null) {
+            imageSnapshot.release();
+            imageSnapshot = null;
+        }
     }
 
     /**
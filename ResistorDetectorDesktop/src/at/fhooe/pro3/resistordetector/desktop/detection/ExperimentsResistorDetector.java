@@ -20,27 +20,35 @@ public class ExperimentsResistorDetector extends ResistorDetector {
     private static final int NR_OF_COLUMNS_TO_COMBINE = 5;
     private static final int MIN_BAND_WIDTH = NR_OF_COLUMNS_TO_COMBINE + 1;
 
-    private boolean verboseDetectionDetails = false;
     private DetectionResult detectionResult = null;
 
     public ExperimentsResistorDetector(ResultListener resultListener) {
         super(resultListener);
     }
 
+    public ExperimentsResistorDetector(ResultListener resultListener, Preprocessor preprocessor) {
+        super(resultListener, preprocessor);
+    }
+
     @Override
-    public void detectResistorValue(Mat resistorImage) {
+    protected void performDetection(Mat resistorImage) {
 
         detectionResult = new DetectionResult();
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("original Image", resistorImage));
+
+        if (isDetailLevelEnabled(DetailLevel.Summary))
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("original Image", resistorImage));
 
         applyFilters(resistorImage);
 
+        long stageStart = startStage();
         Imgproc.cvtColor(resistorImage, resistorImage, Imgproc.COLOR_BGR2HSV);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColorConversion, stageStart);
 
         Mat resistorMask = getResistorAsMask(resistorImage);
 
         Mat medianValues = getMedianColorsOfColumns(resistorImage, resistorMask);
 
+        if (isDetailLevelEnabled(DetailLevel.Verbose)) {
                 ////detect edges
                 Mat detectedEdges = new Mat(medianValues.rows(), medianValues.cols(), CvType.CV_8UC1);
 
@@ -105,27 +113,33 @@ public class ExperimentsResistorDetector extends ResistorDetector {
 //
 //                detectionResult.addDetectionStepDetail(new DetectionStepDetail(sb2.toString()));
 
-                Imgproc.cvtColor(resistorImage, resistorImage, Imgproc.COLOR_HSV2BGR);
-
-        detectedEdges.release();
-
-
-        //find background color of resistor
-        //the most common color *should* be the background
-        Scalar mainColor = getColorUsingHsvHistogram(resistorImage, resistorMask);
-        Mat tmpMat2 = new Mat(50,50,resistorImage.type());
-        tmpMat2.setTo(mainColor);
-        Imgproc.cvtColor(tmpMat2, tmpMat2, Imgproc.COLOR_HSV2BGR);
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("main resistor color", tmpMat2));
+            detectedEdges.release();
+        }
 
-        Mat m = new Mat();
-        Core.inRange(resistorImage, mainColor.mul(new Scalar(0.6, 0.6, 0.6)), mainColor.mul(new Scalar(1.4, 1.4, 1.4)), m);
+        // the caller gets the image back with BGR colors at every detail level,
+        // the histogram colors of the bands are only painted into it at DetailLevel.Verbose
+        Imgproc.cvtColor(resistorImage, resistorImage, Imgproc.COLOR_HSV2BGR);
+
+        if (isDetailLevelEnabled(DetailLevel.Verbose)) {
+            //find background color of resistor
+            //the most common color *should* be the background
+            Scalar mainColor = getColorUsingHsvHistogram(resistorImage, resistorMask);
+            Mat tmpMat2 = new Mat(50,50,resistorImage.type());
+            tmpMat2.setTo(mainColor);
+            Imgproc.cvtColor(tmpMat2, tmpMat2, Imgproc.COLOR_HSV2BGR);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("main resistor color", tmpMat2));
+
+            Mat m = new Mat();
+            Core.inRange(resistorImage, mainColor.mul(new Scalar(0.6, 0.6, 0.6)), mainColor.mul(new Scalar(1.4, 1.4, 1.4)), m);
+
+            Mat tmpMat3 = new Mat();
+            Imgproc.cvtColor(m, tmpMat3, Imgproc.COLOR_GRAY2BGR);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("main resistor color mask", tmpMat3));
+        }
 
-        Mat tmpMat3 = new Mat();
-        Imgproc.cvtColor(m, tmpMat3, Imgproc.COLOR_GRAY2BGR);
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("main resistor color mask", tmpMat3));
 
 
+        stageStart = startStage();
 
         ColorName[] columnColors = new ColorName[medianValues.cols()];
 
@@ -137,15 +151,23 @@ public class ExperimentsResistorDetector extends ResistorDetector {
             columnColors[i] = colColor;
         }
 
-        for (int i = 0; i < columnColors.length; i++) {
-            Scalar detectedColor = ColorDefinitionsHsv.getColorFromName(columnColors[i]);
+        recordStageTime(detectionResult, DetectionResult.Stage.ColorNaming, stageStart);
+
+        recordColumnColorNames(columnColors);
+
+        if (isDetailLevelEnabled(DetailLevel.Summary)) {
+            for (int i = 0; i < columnColors.length; i++) {
+                Scalar detectedColor = ColorDefinitionsHsv.getColorFromName(columnColors[i]);
 
-            medianValues.put(0, i, detectedColor.val[0], detectedColor.val[1], detectedColor.val[2]);
+                medianValues.put(0, i, detectedColor.val[0], detectedColor.val[1], detectedColor.val[2]);
+            }
+
+            Mat tmpMat5 = MatColorConversions.newBgrMatFromHsv(medianValues);
+            Imgproc.resize(tmpMat5, tmpMat5, new Size(resistorImage.cols(), resistorImage.rows()), 0, 0, Imgproc.INTER_NEAREST);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("Detected color per column", tmpMat5));
         }
 
-        Mat tmpMat5 = MatColorConversions.newBgrMatFromHsv(medianValues);
-        Imgproc.resize(tmpMat5, tmpMat5, new Size(resistorImage.cols(), resistorImage.rows()), 0, 0, Imgproc.INTER_NEAREST);
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("Detected color per column", tmpMat5));
+        stageStart = startStage();
 
         List<ColorName> bands = new ArrayList<>();
         List<Integer> bandsWidth = new ArrayList<>();
@@ -172,22 +194,29 @@ public class ExperimentsResistorDetector extends ResistorDetector {
             }
         }
 
-        medianValues.setTo(new Scalar(0, 0, 0));
-        int count = 0;
-        for (int i = 0; i < bands.size(); i++) {
+        recordStageTime(detectionResult, DetectionResult.Stage.BandGrouping, stageStart);
+
+        if (isDetailLevelEnabled(DetailLevel.Summary)) {
+            medianValues.setTo(new Scalar(0, 0, 0));
+            int count = 0;
+            for (int i = 0; i < bands.size(); i++) {
 
-            for (int j = 0; j < bandsWidth.get(i); j++) {
+                for (int j = 0; j < bandsWidth.get(i); j++) {
 
-                Scalar detectedColor = ColorDefinitionsHsv.getColorFromName(bands.get(i));
+                    Scalar detectedColor = ColorDefinitionsHsv.getColorFromName(bands.get(i));
 
-                medianValues.put(0, count, detectedColor.val[0], detectedColor.val[1], detectedColor.val[2]);
-                count++;
+                    medianValues.put(0, count, detectedColor.val[0], detectedColor.val[1], detectedColor.val[2]);
+                    count++;
+                }
             }
+
+            Mat tmpMat4 = MatColorConversions.newBgrMatFromHsv(medianValues);
+            Imgproc.resize(tmpMat4, tmpMat4, new Size(resistorImage.cols(), resistorImage.rows()), 0, 0, Imgproc.INTER_NEAREST);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("Detected color per band", tmpMat4));
+            tmpMat4.release();
         }
 
-        Mat tmpMat4 = MatColorConversions.newBgrMatFromHsv(medianValues);
-        Imgproc.resize(tmpMat4, tmpMat4, new Size(resistorImage.cols(), resistorImage.rows()), 0, 0, Imgproc.INTER_NEAREST);
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("Detected color per band", tmpMat4));
+        stageStart = startStage();
 
         if (numberOfBands == NumberOfBands.Four && bands.size() == 4) {
             int firstDigit = ColorValues.getValueForColor(bands.get(0));
@@ -221,14 +250,17 @@ public class ExperimentsResistorDetector extends ResistorDetector {
             detectionResult.setResistorValue(-1);
         }
 
+        recordStageTime(detectionResult, DetectionResult.Stage.Decode, stageStart);
+
         medianValues.release();
-        tmpMat4.release();
 
         notifyListenerAboutNewResult(detectionResult);
     }
 
-    private Mat getMedianColorsOfColumns(Mat resistorImage, Mat resistorMask) {
+    private Mat getMedianColorsOfColumns(final Mat resistorImage, final Mat resistorMask) {
+
 
+        long stageStart = startStage();
 
         Mat medianValues = new Mat(1, resistorImage.cols(), resistorImage.type());
 
@@ -237,18 +269,34 @@ public class ExperimentsResistorDetector extends ResistorDetector {
 //            meanValues.put(0, i, m.val[0], m.val[1], m.val[2]);
 //        }
 
-        int n = NR_OF_COLUMNS_TO_COMBINE;
+        final int n = NR_OF_COLUMNS_TO_COMBINE;
+
+        int strips = ColumnStatisticsKernel.getNumberOfStrips(resistorImage.cols(), n);
+        final Scalar[] stripColors = new Scalar[strips];
+
+        //the strips are independent, ranges of strips are processed in parallel if an executor is set
+        ParallelStrips.processStrips(parallelExecutor, strips, new ParallelStrips.StripRangeProcessor() {
+            @Override
+            public void processStrips(int firstStrip, int endStrip) {
+                for (int i = firstStrip; i < endStrip; i++) {
+                    Mat col = resistorImage.submat(new Rect(i * n, 0, n, resistorImage.rows()));
+                    Mat mask = resistorMask.submat(new Rect(i * n, 0, n, resistorImage.rows()));
+
+                    //result with hist and medianOfMat is almost the same
+                    stripColors[i] = getColorUsingHsvHistogram(col, mask);
+                    //Scalar medianOfMat = getColorUsingHsvMedian(col, mask);
 
-        for (int i = 0; i < resistorImage.cols() - n; i += n) {
-            Mat col = resistorImage.submat(new Rect(i, 0, n, resistorImage.rows()));
-            Mat mask = resistorMask.submat(new Rect(i, 0, n, resistorImage.rows()));
+                    col.release();
+                    mask.release();
+                }
+            }
+        });
 
-            //result with hist and medianOfMat is almost the same
-            Scalar median = getColorUsingHsvHistogram(col, mask);
-            //Scalar medianOfMat = getColorUsingHsvMedian(col, mask);
+        for (int i = 0; i < strips; i++) {
+            Scalar median = stripColors[i];
 
             for (int j = 0; j < n; j++) {
-                medianValues.put(0, i + j, median.val[0], median.val[1], median.val[2]);
+                medianValues.put(0, i * n + j, median.val[0], median.val[1], median.val[2]);
 
             }
         }
@@ -260,18 +308,24 @@ public class ExperimentsResistorDetector extends ResistorDetector {
         //            meanValues.put(0, i, m[0], m[1], m[2]);
         //        }
 
-        Mat tmpMat = MatColorConversions.newBgrMatFromHsv(medianValues);
-        Imgproc.resize(tmpMat, tmpMat, new Size(resistorImage.cols(), resistorImage.rows()), 0, 0, Imgproc.INTER_NEAREST);
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("hist max value of colums", tmpMat));
+        recordStageTime(detectionResult, DetectionResult.Stage.ColumnStatistics, stageStart);
+
+        if (isDetailLevelEnabled(DetailLevel.Summary)) {
+            Mat tmpMat = MatColorConversions.newBgrMatFromHsv(medianValues);
+            Imgproc.resize(tmpMat, tmpMat, new Size(resistorImage.cols(), resistorImage.rows()), 0, 0, Imgproc.INTER_NEAREST);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("hist max value of colums", tmpMat));
+        }
 
         return medianValues;
     }
 
     private void applyFilters(Mat resistorImage) {
+        long stageStart = startStage();
         Mat filteredResistorImage = new Mat();
-        Imgproc.bilateralFilter(resistorImage, filteredResistorImage, 5, 80, 80);
+        preprocessor.apply(resistorImage, filteredResistorImage);
+        recordStageTime(detectionResult, DetectionResult.Stage.Filter, stageStart);
 
-        if (verboseDetectionDetails)
+        if (isDetailLevelEnabled(DetailLevel.Verbose))
             detectionResult.addDetectionStepDetail(new DetectionStepDetail("filtered Image", filteredResistorImage));
 
         //copy result back to original image
@@ -382,6 +436,8 @@ public class ExperimentsResistorDetector extends ResistorDetector {
     }
 
     private Mat getResistorAsMask(Mat resistorImage) {
+        long stageStart = startStage();
+
         Mat reflectionMask = getReflectionsAsMask(resistorImage);
 
         Mat backgroundMask = getBackgroundAsMask(resistorImage);
@@ -391,8 +447,12 @@ public class ExperimentsResistorDetector extends ResistorDetector {
         Core.bitwise_or(reflectionMask, backgroundMask, resistorMask);
         Core.bitwise_not(resistorMask, resistorMask);
 
-        Mat tmpMat = MatColorConversions.newBgrMatFromGray(resistorMask);
-        detectionResult.addDetectionStepDetail(new DetectionStepDetail("resistor mask", tmpMat));
+        recordStageTime(detectionResult, DetectionResult.Stage.Mask, stageStart);
+
+        if (isDetailLevelEnabled(DetailLevel.Summary)) {
+            Mat tmpMat = MatColorConversions.newBgrMatFromGray(resistorMask);
+            detectionResult.addDetectionStepDetail(new DetectionStepDetail("resistor mask", tmpMat));
+        }
 
         return resistorMask;
     }
@@ -412,7 +472,7 @@ public class ExperimentsResistorDetector extends ResistorDetector {
         Imgproc.erode(mask, mask, new Mat(), new Point(-1, -1), 2);
         Core.bitwise_not(mask, mask);
 
-        if (verboseDetectionDetails) {
+        if (isDetailLevelEnabled(DetailLevel.Verbose)) {
             Mat tmpMat = MatColorConversions.newBgrMatFromGray(mask);
             detectionResult.addDetectionStepDetail(new DetectionStepDetail("reflections", tmpMat));
         }
@@ -432,7 +492,7 @@ public class ExperimentsResistorDetector extends ResistorDetector {
 
         Core.bitwise_or(backgroundMaskTop, backgroundMaskBottom, backgroundMaskTop);
 
-        if (verboseDetectionDetails) {
+        if (isDetailLevelEnabled(DetailLevel.Verbose)) {
             Mat tmpMat = MatColorConversions.newBgrMatFromGray(backgroundMaskTop);
             detectionResult.addDetectionStepDetail(new DetectionStepDetail("background", tmpMat));
         }
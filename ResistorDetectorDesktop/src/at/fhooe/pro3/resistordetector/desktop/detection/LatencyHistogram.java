@@ -0,0 +1,211 @@
+package at.fhooe.pro3.resistordetector.desktop.detection;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values (e.g. latencies in microseconds) with fixed buckets.
+ * <p>
+ * The buckets are log-linear like in a HdrHistogram: the values 0 - 15 have their own bucket,
+ * every larger power of two range is split into SUB_BUCKETS buckets of the same width.
+ * So the value of a bucket is at most 1/SUB_BUCKETS (about 6%) larger than the recorded values,
+ * independent of the magnitude of the values. All values of a long fit into the fixed buckets,
+ * recording never allocates memory.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of bits of the sub buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * The number of buckets per power of two range.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of buckets: the first SUB_BUCKETS values and the ranges 2^4 - 2^63.
+     */
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * The number of recorded values of each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * The sum of all recorded values.
+     */
+    private final StripedCounter sum = new StripedCounter();
+
+    /**
+     * The largest recorded value.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value, negative values are recorded as 0.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        counts.incrementAndGet(getBucketIndex(value));
+        sum.add(value);
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns a copy of the current state of the histogram.
+     * Values recorded during the copy may or may not be included.
+     *
+     * @return a snapshot of the histogram
+     */
+    public Snapshot snapshot() {
+        long[] bucketCounts = new long[BUCKETS];
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCounts[i] = counts.get(i);
+            count += bucketCounts[i];
+        }
+
+        return new Snapshot(bucketCounts, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Returns the index of the bucket of a value.
+     *
+     * @param value the value (not negative)
+     * @return the index of the bucket
+     */
+    private static int getBucketIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value of a bucket.
+     *
+     * @param index the index of the bucket
+     * @return the largest value of the bucket
+     */
+    private static long getBucketMaxValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowerBound = (long) (SUB_BUCKETS + subBucket) << shift;
+
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    /**
+     * A copy of the state of a LatencyHistogram.
+     */
+    public static class Snapshot {
+
+        /**
+         * The number of recorded values of each bucket.
+         */
+        private final long[] bucketCounts;
+
+        /**
+         * The number of recorded values.
+         */
+        private final long count;
+
+        /**
+         * The sum of all recorded values.
+         */
+        private final long sum;
+
+        /**
+         * The largest recorded value.
+         */
+        private final long max;
+
+        /**
+         * Creates a new snapshot.
+         *
+         * @param bucketCounts the number of recorded values of each bucket
+         * @param count        the number of recorded values
+         * @param sum          the sum of all recorded values
+         * @param max          the largest recorded value
+         */
+        private Snapshot(long[] bucketCounts, long count, long sum, long max) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the mean of the recorded values.
+         *
+         * @return the mean of the recorded values, 0 if no value was recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the largest recorded value.
+         *
+         * @return the largest recorded value, 0 if no value was recorded
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the value below or equal to which the given percentage of the recorded values are.
+         * The value is the largest value of the bucket (at most 1/SUB_BUCKETS larger than the recorded value).
+         *
+         * @param percentile the percentile (0 - 100), e.g. 95 for p95
+         * @return the value of the percentile, 0 if no value was recorded
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("percentile must be between 0 and 100!");
+
+            if (count == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+
+                if (seen >= rank)
+                    return Math.min(getBucketMaxValue(i), max);
+            }
+
+            return max;
+        }
+    }
+}
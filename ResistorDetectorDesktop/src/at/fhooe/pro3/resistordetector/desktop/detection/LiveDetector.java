@@ -0,0 +1,278 @@
+package at.fhooe.pro3.resistordetector.desktop.detection;
+
+import org.opencv.core.Mat;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the detection of a ResistorDetector on a single background worker thread.
+ * <p>
+ * The images are passed to the worker through a mailbox with one slot: a newer image replaces
+ * the pending one (latest image wins), so the worker never builds up a backlog and always detects
+ * the most recent image. Offering an image never blocks.
+ * <p>
+ * In the continuous mode (see start()) the images are captured from an ImageSource at a fixed rate.
+ * The results are passed to the ResultListener of the ResistorDetector as usual (on the worker thread).
+ * <p>
+ * The offered, replaced and detected images are counted in the default MetricsRegistry.
+ */
+public class LiveDetector {
+
+    /**
+     * Supplies the images of the continuous mode.
+     */
+    public interface ImageSource {
+        /**
+         * Returns the current image to detect. Called on the capture thread, so it should return quickly.
+         *
+         * @return a new BGR matrix which is released by the LiveDetector, or null if there is no image
+         */
+        Mat getImage();
+    }
+
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final int DETECTIONS_PER_SECOND_DEFAULT = 4;
+
+    /**
+     * Defines the minimum value for (see constant name).
+     */
+    public static final int DETECTIONS_PER_SECOND_MIN_VALUE = 1;
+
+    /**
+     * Defines the maximum value for (see constant name).
+     */
+    public static final int DETECTIONS_PER_SECOND_MAX_VALUE = 15;
+
+    /**
+     * The source of the images of the continuous mode.
+     */
+    private final ImageSource imageSource;
+
+    /**
+     * The mailbox with one slot, holds the pending image or null.
+     */
+    private final AtomicReference<Mat> mailbox = new AtomicReference<>();
+
+    /**
+     * The detector used by the worker.
+     */
+    private volatile ResistorDetector resistorDetector;
+
+    /**
+     * True if the worker should stop.
+     */
+    private volatile boolean shutdown = false;
+
+    /**
+     * The thread detecting the images.
+     */
+    private final Thread workerThread;
+
+    /**
+     * The executor capturing the images of the continuous mode.
+     */
+    private final ScheduledExecutorService captureExecutor;
+
+    /**
+     * The scheduled capture of the continuous mode, null if the continuous mode is not started.
+     */
+    private ScheduledFuture<?> captureFuture = null;
+
+    /**
+     * The number of images offered to the mailbox.
+     */
+    private final StripedCounter offeredImagesCounter = MetricsRegistry.getDefault().counter("live_detection.images.offered");
+
+    /**
+     * The number of pending images replaced by a newer image.
+     */
+    private final StripedCounter replacedImagesCounter = MetricsRegistry.getDefault().counter("live_detection.images.replaced");
+
+    /**
+     * The number of images detected by the worker.
+     */
+    private final StripedCounter detectedImagesCounter = MetricsRegistry.getDefault().counter("live_detection.images.detected");
+
+    /**
+     * Creates a new live detector and starts its worker thread.
+     *
+     * @param imageSource the source of the images of the continuous mode
+     */
+    public LiveDetector(ImageSource imageSource) {
+        if (imageSource == null)
+            throw new IllegalArgumentException("imageSource must not be null!");
+
+        this.imageSource = imageSource;
+
+        captureExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "LiveDetectionCapture");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        workerThread = new Thread(new Worker(), "LiveDetectionWorker");
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Sets the detector used for the next images.
+     *
+     * @param resistorDetector the detector
+     */
+    public void setResistorDetector(ResistorDetector resistorDetector) {
+        if (resistorDetector == null)
+            throw new IllegalArgumentException("resistorDetector must not be null!");
+
+        this.resistorDetector = resistorDetector;
+    }
+
+    /**
+     * Passes an image to the worker. A pending image which was not detected yet is replaced and released.
+     * Never blocks.
+     *
+     * @param image a BGR matrix which is released by the LiveDetector after the detection
+     */
+    public void offer(Mat image) {
+        if (image == null)
+            throw new IllegalArgumentException("image must not be null!");
+
+        if (shutdown) {
+            image.release();
+            return;
+        }
+
+        offeredImagesCounter.increment();
+
+        Mat replacedImage = mailbox.getAndSet(image);
+
+        if (replacedImage != null) {
+            replacedImage.release();
+            replacedImagesCounter.increment();
+        }
+
+        LockSupport.unpark(workerThread);
+    }
+
+    /**
+     * Starts the continuous mode, which captures an image from the ImageSource detectionsPerSecond times
+     * per second. Restarts the continuous mode if it is started already. Never blocks.
+     *
+     * @param detectionsPerSecond the number of captured images per second
+     */
+    public synchronized void start(int detectionsPerSecond) {
+        if (detectionsPerSecond < DETECTIONS_PER_SECOND_MIN_VALUE || detectionsPerSecond > DETECTIONS_PER_SECOND_MAX_VALUE) {
+            throw new IllegalArgumentException("detectionsPerSecond must be between "
+                    + DETECTIONS_PER_SECOND_MIN_VALUE + " and " + DETECTIONS_PER_SECOND_MAX_VALUE);
+        }
+
+        if (shutdown)
+            return;
+
+        stop();
+
+        long periodMicroseconds = TimeUnit.SECONDS.toMicros(1) / detectionsPerSecond;
+
+        captureFuture = captureExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Mat image = imageSource.getImage();
+
+                    if (image != null)
+                        offer(image);
+                } catch (RuntimeException e) {
+                    //an exception would cancel the scheduled capture
+                    e.printStackTrace();
+                }
+            }
+        }, periodMicroseconds, periodMicroseconds, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Stops the continuous mode and discards the pending image. Does not wait for the current detection,
+     * so it never blocks. Does nothing if the continuous mode is not started.
+     */
+    public synchronized void stop() {
+        if (captureFuture == null)
+            return;
+
+        captureFuture.cancel(false);
+        captureFuture = null;
+
+        Mat pendingImage = mailbox.getAndSet(null);
+
+        if (pendingImage != null)
+            pendingImage.release();
+    }
+
+    /**
+     * Returns whether the continuous mode is started.
+     *
+     * @return true if the continuous mode is started, false otherwise
+     */
+    public synchronized boolean isStarted() {
+        return captureFuture != null;
+    }
+
+    /**
+     * Stops the continuous mode and the worker thread. The worker finishes the current detection
+     * and releases the pending image. Offered images are released immediately afterwards.
+     */
+    public void shutdown() {
+        stop();
+
+        shutdown = true;
+        captureExecutor.shutdown();
+        LockSupport.unpark(workerThread);
+    }
+
+    /**
+     * Detects the images of the mailbox until the live detector is shut down.
+     */
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            while (!shutdown) {
+                Mat image = mailbox.getAndSet(null);
+
+                if (image == null) {
+                    //unpark() before park() is not lost, the loop re-checks the mailbox after every wake-up
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                ResistorDetector detector = resistorDetector;
+
+                try {
+                    if (detector != null) {
+                        detector.detectResistorValue(image);
+                        detectedImagesCounter.increment();
+                    }
+                } catch (RuntimeException e) {
+                    //keep the worker alive for the next images
+                    e.printStackTrace();
+                } finally {
+                    image.release();
+                }
+            }
+
+            Mat pendingImage = mailbox.getAndSet(null);
+
+            if (pendingImage != null)
+                pendingImage.release();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package at.fhooe.pro3.resistordetector.desktop.detection;
+
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * This Preprocessor applies a median blur on the image.
+ * It removes salt and pepper noise and keeps the edges, but rounds the corners of small structures.
+ * It is a lot faster than the bilateral filter.
+ * <p>
+ * See also:
+ * - Imgproc.medianBlur: http://docs.opencv.org/2.4/modules/imgproc/doc/filtering.html#medianblur
+ */
+public class MedianBlurPreprocessor implements Preprocessor {
+
+    /**
+     * The default size of the (square) filter kernel.
+     */
+    public static final int KERNEL_SIZE_DEFAULT = 5;
+
+    /**
+     * The size of the (square) filter kernel.
+     */
+    private final int kernelSize;
+
+    /**
+     * Creates a new MedianBlurPreprocessor with the default kernel size (5).
+     */
+    public MedianBlurPreprocessor() {
+        this(KERNEL_SIZE_DEFAULT);
+    }
+
+    /**
+     * Creates a new MedianBlurPreprocessor with the given kernel size.
+     *
+     * @param kernelSize the size of the filter kernel, an odd number greater than 1
+     */
+    public MedianBlurPreprocessor(int kernelSize) {
+        if (kernelSize < 3 || kernelSize % 2 == 0)
+            throw new IllegalArgumentException("kernelSize must be an odd number greater than 1!");
+
+        this.kernelSize = kernelSize;
+    }
+
+    /**
+     * Applies the median blur on the source image.
+     *
+     * @param src The image that should be processed (CV_8UC3, BGR colors).
+     * @param dst The Matrix the result is written to, it gets the size and type of the source image.
+     */
+    @Override
+    public void apply(Mat src, Mat dst) {
+        Imgproc.medianBlur(src, dst, kernelSize);
+    }
+}
@@ -0,0 +1,104 @@
+package at.fhooe.pro3.resistordetector.desktop.detection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class splits the column strips of an image into contiguous ranges
+ * and processes the ranges in parallel with an ExecutorService (e.g. a ForkJoinPool).
+ * <p>
+ * Each strip must be independent of all other strips. The processor writes the result
+ * of a strip to the position of the strip (e.g. an array index), so the results are
+ * merged in order without further synchronization.
+ */
+public class ParallelStrips {
+
+    /**
+     * The minimum number of strips a range must contain.
+     * Smaller ranges are not worth the overhead of a task.
+     */
+    private static final int MIN_STRIPS_PER_RANGE = 4;
+
+    /**
+     * This Interface defines the method to process a range of strips.
+     */
+    public interface StripRangeProcessor {
+        /**
+         * Processes the strips [firstStrip, endStrip).
+         * Called from the threads of the executor, different ranges are processed at the same time.
+         *
+         * @param firstStrip the first strip of the range
+         * @param endStrip   the strip after the last strip of the range
+         */
+        void processStrips(int firstStrip, int endStrip);
+    }
+
+    /**
+     * Processes all strips [0, numberOfStrips) with the given processor.
+     * If the executor is null or there are not enough strips, all strips are processed
+     * on the calling thread. Otherwise the strips are split into contiguous ranges, one range
+     * per thread of the executor, and this method waits until all ranges are processed.
+     *
+     * @param executor       the executor used to process the ranges, may be null
+     * @param numberOfStrips the number of strips to process
+     * @param processor      the processor which is called for each range
+     */
+    public static void processStrips(ExecutorService executor, int numberOfStrips, final StripRangeProcessor processor) {
+        if (processor == null)
+            throw new IllegalArgumentException("processor must not be null!");
+
+        int numberOfRanges = Math.min(getParallelism(executor), numberOfStrips / MIN_STRIPS_PER_RANGE);
+
+        if (executor == null || numberOfRanges <= 1) {
+            processor.processStrips(0, numberOfStrips);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(numberOfRanges);
+
+        for (int i = 0; i < numberOfRanges; i++) {
+            final int firstStrip = (int) ((long) numberOfStrips * i / numberOfRanges);
+            final int endStrip = (int) ((long) numberOfStrips * (i + 1) / numberOfRanges);
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    processor.processStrips(firstStrip, endStrip);
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("processing of the strips was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("processing of the strips failed", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number of threads the executor uses.
+     *
+     * @param executor the executor, may be null
+     * @return the number of threads of the executor, 1 if the executor is null
+     */
+    private static int getParallelism(ExecutorService executor) {
+        if (executor == null)
+            return 1;
+
+        if (executor instanceof ForkJoinPool)
+            return ((ForkJoinPool) executor).getParallelism();
+
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,349 @@
+package at.fhooe.pro3.resistordetector.desktop.detection;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+
+/**
+ * This class creates a mask of the resistor where the background and the reflections are masked out.
+ * <p>
+ * The mask is the same as the one created with Core.inRange, Imgproc.erode, Core.bitwise_or
+ * and Core.bitwise_not, but every pixel of the HSV image is classified only once:
+ * - reflection: V of at least REFLECTION_MIN_VALUE
+ * - top background: every channel between 0.6 and 1.4 times the mean color of the first row
+ * - bottom background: every channel between 0.6 and 1.4 times the mean color of the second last row
+ * - resistor: everything else
+ * <p>
+ * The bounds are precomputed into one table per channel. The reflections are enlarged
+ * with one morphological pass (by default a 5x5 dilation, the same as inverting, eroding two times
+ * with a 3x3 kernel and inverting again, see setReflectionDilationRadius).
+ * <p>
+ * The buffers are reused between calls. An instance is not thread safe.
+ */
+public class ResistorMaskBuilder {
+
+    /**
+     * Pixels with a V value of at least this value are reflections.
+     */
+    public static final int REFLECTION_MIN_VALUE = 200;
+
+    /**
+     * The lower bound of the background color is the mean color multiplied with this factor.
+     */
+    private static final double BACKGROUND_LOWER_FACTOR = 0.6;
+
+    /**
+     * The upper bound of the background color is the mean color multiplied with this factor.
+     */
+    private static final double BACKGROUND_UPPER_FACTOR = 1.4;
+
+    /**
+     * Defines the default value for (see constant name).
+     * The reflections are enlarged by this number of pixels in every direction.
+     */
+    public static final int REFLECTION_DILATION_RADIUS_DEFAULT = 2;
+
+    /**
+     * Bit set in the bounds table if the channel value is inside the reflection bounds.
+     */
+    private static final int CLASS_REFLECTION = 1;
+
+    /**
+     * Bit set in the bounds table if the channel value is inside the top background bounds.
+     */
+    private static final int CLASS_BACKGROUND_TOP = 2;
+
+    /**
+     * Bit set in the bounds table if the channel value is inside the bottom background bounds.
+     */
+    private static final int CLASS_BACKGROUND_BOTTOM = 4;
+
+    /**
+     * The bounds tables of the three channels (H, S, V), 256 entries per channel.
+     * Each entry contains the CLASS_* bits of the classes the channel value belongs to.
+     */
+    private final byte[] boundsTable = new byte[3 * 256];
+
+    /**
+     * The reflections are enlarged by this number of pixels in every direction.
+     */
+    private int reflectionDilationRadius = REFLECTION_DILATION_RADIUS_DEFAULT;
+
+    /**
+     * Reusable buffer for the pixel data of the image.
+     */
+    private byte[] pixelBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the reflections.
+     */
+    private byte[] reflectionBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the horizontally dilated reflections.
+     */
+    private byte[] dilationBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the number of reflections per column in the vertical dilation window.
+     */
+    private int[] columnCounts = new int[0];
+
+    /**
+     * Reusable buffer for the background.
+     */
+    private byte[] backgroundBuffer = new byte[0];
+
+    /**
+     * Reusable buffer for the resulting mask.
+     */
+    private byte[] maskBuffer = new byte[0];
+
+    /**
+     * Sets the number of pixels the reflections are enlarged by in every direction,
+     * e.g. scaled down for images with a reduced resolution.
+     *
+     * @param reflectionDilationRadius the radius in pixels, 0 to not enlarge the reflections
+     */
+    public void setReflectionDilationRadius(int reflectionDilationRadius) {
+        if (reflectionDilationRadius < 0)
+            throw new IllegalArgumentException("reflectionDilationRadius must not be negative!");
+
+        this.reflectionDilationRadius = reflectionDilationRadius;
+    }
+
+    /**
+     * Creates the mask of the resistor and writes it into resistorMask.
+     *
+     * @param hsvImage     The image of the resistor (CV_8UC3, HSV colors), at least two rows.
+     * @param resistorMask The matrix the mask is written to (reallocated as CV_8UC1 with the size of the image if needed).
+     */
+    public void buildMask(Mat hsvImage, Mat resistorMask) {
+        buildMask(hsvImage, resistorMask, null, null);
+    }
+
+    /**
+     * Creates the mask of the resistor and writes it into resistorMask.
+     * If reflectionMask or backgroundMask is not null, the (enlarged) reflections
+     * or the background are also written into these matrices.
+     *
+     * @param hsvImage       The image of the resistor (CV_8UC3, HSV colors), at least two rows.
+     * @param resistorMask   The matrix the mask is written to (reallocated as CV_8UC1 with the size of the image if needed).
+     * @param reflectionMask The matrix the reflections are written to, or null.
+     * @param backgroundMask The matrix the background is written to, or null.
+     */
+    public void buildMask(Mat hsvImage, Mat resistorMask, Mat reflectionMask, Mat backgroundMask) {
+        if (hsvImage == null || resistorMask == null)
+            throw new IllegalArgumentException("hsvImage and resistorMask must not be null!");
+        if (hsvImage.type() != CvType.CV_8UC3)
+            throw new IllegalArgumentException("hsvImage must have the type CV_8UC3!");
+        if (hsvImage.rows() < 2)
+            throw new IllegalArgumentException("hsvImage must have at least two rows!");
+
+        int rows = hsvImage.rows();
+        int cols = hsvImage.cols();
+        int pixelCount = rows * cols;
+
+        ensureCapacity(pixelCount);
+
+        hsvImage.get(0, 0, pixelBuffer);
+
+        buildBoundsTable(rowMean(0, cols), rowMean(rows - 2, cols));
+
+        //classify each pixel once
+        int reflections = 0;
+
+        for (int i = 0, pixel = 0; i < pixelCount; i++, pixel += 3) {
+            int pixelClass = boundsTable[pixelBuffer[pixel] & 0xFF]
+                    & boundsTable[256 + (pixelBuffer[pixel + 1] & 0xFF)]
+                    & boundsTable[512 + (pixelBuffer[pixel + 2] & 0xFF)];
+
+            reflectionBuffer[i] = (byte) (pixelClass & CLASS_REFLECTION);
+            backgroundBuffer[i] = (byte) (pixelClass & (CLASS_BACKGROUND_TOP | CLASS_BACKGROUND_BOTTOM));
+            reflections += pixelClass & CLASS_REFLECTION;
+        }
+
+        if (reflections > 0 && reflectionDilationRadius > 0)
+            dilateReflections(rows, cols);
+
+        for (int i = 0; i < pixelCount; i++) {
+            maskBuffer[i] = (reflectionBuffer[i] | backgroundBuffer[i]) != 0 ? 0 : (byte) 255;
+        }
+
+        writeToMat(resistorMask, maskBuffer, rows, cols);
+
+        if (reflectionMask != null) {
+            for (int i = 0; i < pixelCount; i++) {
+                maskBuffer[i] = reflectionBuffer[i] != 0 ? (byte) 255 : 0;
+            }
+
+            writeToMat(reflectionMask, maskBuffer, rows, cols);
+        }
+
+        if (backgroundMask != null) {
+            for (int i = 0; i < pixelCount; i++) {
+                maskBuffer[i] = backgroundBuffer[i] != 0 ? (byte) 255 : 0;
+            }
+
+            writeToMat(backgroundMask, maskBuffer, rows, cols);
+        }
+    }
+
+    /**
+     * Returns the mean color of one row of the image in the pixelBuffer.
+     *
+     * @param row  the row
+     * @param cols the number of columns of the image
+     * @return the mean H, S and V value of the row
+     */
+    private double[] rowMean(int row, int cols) {
+        long[] sum = new long[3];
+
+        for (int i = row * cols * 3; i < (row + 1) * cols * 3; i += 3) {
+            sum[0] += pixelBuffer[i] & 0xFF;
+            sum[1] += pixelBuffer[i + 1] & 0xFF;
+            sum[2] += pixelBuffer[i + 2] & 0xFF;
+        }
+
+        return new double[]{(double) sum[0] / cols, (double) sum[1] / cols, (double) sum[2] / cols};
+    }
+
+    /**
+     * Fills the bounds table with the reflection and background bounds.
+     *
+     * @param backgroundColorTop    the mean color of the top background
+     * @param backgroundColorBottom the mean color of the bottom background
+     */
+    private void buildBoundsTable(double[] backgroundColorTop, double[] backgroundColorBottom) {
+        Arrays.fill(boundsTable, (byte) 0);
+
+        //reflections: H and S are not restricted
+        addBoundsToTable(0, 0, 180, CLASS_REFLECTION);
+        addBoundsToTable(1, 0, 256, CLASS_REFLECTION);
+        addBoundsToTable(2, REFLECTION_MIN_VALUE, 256, CLASS_REFLECTION);
+
+        for (int channel = 0; channel < 3; channel++) {
+            addBoundsToTable(channel,
+                    backgroundColorTop[channel] * BACKGROUND_LOWER_FACTOR,
+                    backgroundColorTop[channel] * BACKGROUND_UPPER_FACTOR,
+                    CLASS_BACKGROUND_TOP);
+
+            addBoundsToTable(channel,
+                    backgroundColorBottom[channel] * BACKGROUND_LOWER_FACTOR,
+                    backgroundColorBottom[channel] * BACKGROUND_UPPER_FACTOR,
+                    CLASS_BACKGROUND_BOTTOM);
+        }
+    }
+
+    /**
+     * Sets the class bit for all values of one channel between lowerBound and upperBound (inclusive).
+     * The bounds are rounded like Core.inRange does with Scalar bounds on 8 bit images.
+     *
+     * @param channel    the channel (0 = H, 1 = S, 2 = V)
+     * @param lowerBound the lower bound
+     * @param upperBound the upper bound
+     * @param classBit   the class bit to set
+     */
+    private void addBoundsToTable(int channel, double lowerBound, double upperBound, int classBit) {
+        int lower = (int) Math.rint(lowerBound);
+        int upper = (int) Math.rint(upperBound);
+
+        if (lower > upper || lower > 255 || upper < 0)
+            return;
+
+        lower = Math.max(lower, 0);
+        upper = Math.min(upper, 255);
+
+        for (int value = lower; value <= upper; value++) {
+            boundsTable[channel * 256 + value] |= classBit;
+        }
+    }
+
+    /**
+     * Enlarges the reflections in the reflectionBuffer by reflectionDilationRadius pixels
+     * in every direction (a square dilation, separated into a horizontal and a vertical pass).
+     * Each pass moves a window along the image and counts the reflections inside of it,
+     * so every pixel is only added and removed once per pass.
+     *
+     * @param rows the number of rows of the image
+     * @param cols the number of columns of the image
+     */
+    private void dilateReflections(int rows, int cols) {
+        int r = reflectionDilationRadius;
+
+        for (int row = 0; row < rows; row++) {
+            int rowOffset = row * cols;
+            int count = 0;
+
+            for (int col = 0; col < Math.min(r, cols); col++) {
+                count += reflectionBuffer[rowOffset + col];
+            }
+
+            for (int col = 0; col < cols; col++) {
+                if (col + r < cols)
+                    count += reflectionBuffer[rowOffset + col + r];
+                if (col - r - 1 >= 0)
+                    count -= reflectionBuffer[rowOffset + col - r - 1];
+
+                dilationBuffer[rowOffset + col] = count > 0 ? (byte) 1 : 0;
+            }
+        }
+
+        if (columnCounts.length < cols)
+            columnCounts = new int[cols];
+
+        Arrays.fill(columnCounts, 0, cols, 0);
+
+        for (int row = 0; row < Math.min(r, rows); row++) {
+            for (int col = 0; col < cols; col++) {
+                columnCounts[col] += dilationBuffer[row * cols + col];
+            }
+        }
+
+        for (int row = 0; row < rows; row++) {
+            int addOffset = (row + r) * cols;
+            int removeOffset = (row - r - 1) * cols;
+            int rowOffset = row * cols;
+
+            for (int col = 0; col < cols; col++) {
+                if (row + r < rows)
+                    columnCounts[col] += dilationBuffer[addOffset + col];
+                if (row - r - 1 >= 0)
+                    columnCounts[col] -= dilationBuffer[removeOffset + col];
+
+                reflectionBuffer[rowOffset + col] = columnCounts[col] > 0 ? (byte) 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Writes the data into the given matrix, the matrix is reallocated if needed.
+     *
+     * @param mat  the matrix to write to
+     * @param data the data, one byte per pixel
+     * @param rows the number of rows
+     * @param cols the number of columns
+     */
+    private static void writeToMat(Mat mat, byte[] data, int rows, int cols) {
+        mat.create(rows, cols, CvType.CV_8UC1);
+        mat.put(0, 0, data);
+    }
+
+    /**
+     * Makes sure the buffers are large enough for the given number of pixels.
+     *
+     * @param pixelCount the number of pixels of the image
+     */
+    private void ensureCapacity(int pixelCount) {
+        if (pixelBuffer.length < pixelCount * 3)
+            pixelBuffer = new byte[pixelCount * 3];
+
+        if (maskBuffer.length != pixelCount) {
+            reflectionBuffer = new byte[pixelCount];
+            dilationBuffer = new byte[pixelCount];
+            backgroundBuffer = new byte[pixelCount];
+            maskBuffer = new byte[pixelCount];
+        }
+    }
+}
@@ -26,7 +26,7 @@ package at.fhooe.pro3.resistordetector.desktop.detection;
  * there can be gaps in the indices.  It is intended to be more efficient
  * than using a HashMap to map Integers to Integers.
  */
-class SparseIntArray implements Cloneable {
+public class SparseIntArray implements Cloneable {
 
     private int[] mKeys;
     private int[] mValues;
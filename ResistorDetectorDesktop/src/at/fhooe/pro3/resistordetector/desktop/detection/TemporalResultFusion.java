@@ -0,0 +1,448 @@
+package at.fhooe.pro3.resistordetector.desktop.detection;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * ResultListener which fuses the results of consecutive detections (e.g. of the LiveDetector)
+ * to one stable result.
+ * <p>
+ * The last results are kept in a window of a bounded size. For every band position the colors of the results
+ * are voted, a result without bands (e.g. of the ContoursModResistorDetector) votes with its resistance value.
+ * The confidence of the voted band sequence is the lowest share of agreeing results of all band positions,
+ * results without a resistance value count as disagreeing. Results of images rejected by the FrameQualityGate
+ * are not added to the window. As soon as the window is filled and the confidence
+ * reaches the agreement threshold, the result is reported as stable and further results are ignored until reset()
+ * is called, so the caller can stop triggering detections. If no stable result is found within the timeout,
+ * the best result so far is reported as timed out.
+ * <p>
+ * Every result is passed to the FusionListener with the current state, the fused result is always one of the
+ * received results (the most recent one with the voted band sequence).
+ * <p>
+ * The fusion owns the reference of every received result (see DetectionResult.retain()). The results of the window
+ * are released when they are removed from the window, all other results after they were reported.
+ * A listener which keeps the fused result after fusedResultReady returns must retain it.
+ */
+public class TemporalResultFusion implements ResistorDetector.ResultListener {
+
+    /**
+     * Defines the state of the fusion.
+     */
+    public enum FusionState {
+        /**
+         * More results are needed for a stable result.
+         */
+        Collecting,
+
+        /**
+         * The result is stable, further results are ignored until reset() is called.
+         */
+        Stable,
+
+        /**
+         * No stable result was found within the timeout, further results are ignored until reset() is called.
+         */
+        TimedOut,
+    }
+
+    /**
+     * Interface defining a method to receive the fused results.
+     */
+    public interface FusionListener {
+        /**
+         * This method is called after every received result (on the thread of the detection).
+         * The fused result is only valid during the call, it must be retained to keep it (see DetectionResult.retain()).
+         *
+         * @param detectionResult the fused result, the most recent received result with the voted bands
+         * @param confidence      the share of agreeing results in the window (0 - 1)
+         * @param state           the state of the fusion
+         */
+        void fusedResultReady(DetectionResult detectionResult, float confidence, FusionState state);
+    }
+
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final int WINDOW_SIZE_DEFAULT = 5;
+
+    /**
+     * Defines the minimum value for (see constant name).
+     */
+    public static final int WINDOW_SIZE_MIN_VALUE = 2;
+
+    /**
+     * Defines the maximum value for (see constant name).
+     */
+    public static final int WINDOW_SIZE_MAX_VALUE = 20;
+
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final float AGREEMENT_THRESHOLD_DEFAULT = 0.8f;
+
+    /**
+     * Defines the minimum value for (see constant name).
+     */
+    public static final float AGREEMENT_THRESHOLD_MIN_VALUE = 0.5f;
+
+    /**
+     * Defines the maximum value for (see constant name).
+     */
+    public static final float AGREEMENT_THRESHOLD_MAX_VALUE = 1;
+
+    /**
+     * Defines the default value for (see constant name).
+     */
+    public static final int TIMEOUT_SECONDS_DEFAULT = 10;
+
+    /**
+     * Defines the minimum value for (see constant name).
+     */
+    public static final int TIMEOUT_SECONDS_MIN_VALUE = 1;
+
+    /**
+     * Defines the maximum value for (see constant name).
+     */
+    public static final int TIMEOUT_SECONDS_MAX_VALUE = 60;
+
+    /**
+     * The listener receiving the fused results.
+     */
+    private final FusionListener fusionListener;
+
+    /**
+     * The received results of the window, the most recent result last.
+     */
+    private final ArrayDeque<DetectionResult> window = new ArrayDeque<>();
+
+    /**
+     * The number of results needed for a stable result.
+     */
+    private int windowSize = WINDOW_SIZE_DEFAULT;
+
+    /**
+     * The share of agreeing results needed for a stable result.
+     */
+    private float agreementThreshold = AGREEMENT_THRESHOLD_DEFAULT;
+
+    /**
+     * The time in seconds after the first result until the fusion times out.
+     */
+    private int timeoutSeconds = TIMEOUT_SECONDS_DEFAULT;
+
+    /**
+     * The time (System.nanoTime()) of the first result after the last reset, 0 if no result was received.
+     */
+    private long firstResultTime = 0;
+
+    /**
+     * True if a stable or timed out result was reported.
+     */
+    private boolean finished = false;
+
+    /**
+     * The number of stable results.
+     */
+    private final StripedCounter stableResultsCounter = MetricsRegistry.getDefault().counter("fusion.results.stable");
+
+    /**
+     * The number of timed out fusions.
+     */
+    private final StripedCounter timedOutResultsCounter = MetricsRegistry.getDefault().counter("fusion.results.timed_out");
+
+    /**
+     * Creates a new fusion with the default window size, agreement threshold and timeout.
+     *
+     * @param fusionListener the listener receiving the fused results
+     */
+    public TemporalResultFusion(FusionListener fusionListener) {
+        if (fusionListener == null)
+            throw new IllegalArgumentException("fusionListener must not be null!");
+
+        this.fusionListener = fusionListener;
+    }
+
+    /**
+     * Sets the number of results needed for a stable result. The window is cleared.
+     *
+     * @param windowSize the new window size
+     */
+    public synchronized void setWindowSize(int windowSize) {
+        if (windowSize < WINDOW_SIZE_MIN_VALUE || windowSize > WINDOW_SIZE_MAX_VALUE) {
+            throw new IllegalArgumentException("windowSize must be between "
+                    + WINDOW_SIZE_MIN_VALUE + " and " + WINDOW_SIZE_MAX_VALUE);
+        }
+
+        this.windowSize = windowSize;
+        releaseWindow();
+    }
+
+    /**
+     * Sets the share of agreeing results needed for a stable result.
+     *
+     * @param agreementThreshold the new agreement threshold
+     */
+    public synchronized void setAgreementThreshold(float agreementThreshold) {
+        if (agreementThreshold < AGREEMENT_THRESHOLD_MIN_VALUE || agreementThreshold > AGREEMENT_THRESHOLD_MAX_VALUE) {
+            throw new IllegalArgumentException("agreementThreshold must be between "
+                    + AGREEMENT_THRESHOLD_MIN_VALUE + " and " + AGREEMENT_THRESHOLD_MAX_VALUE);
+        }
+
+        this.agreementThreshold = agreementThreshold;
+    }
+
+    /**
+     * Sets the time after the first result until the fusion times out.
+     *
+     * @param timeoutSeconds the new timeout in seconds
+     */
+    public synchronized void setTimeoutSeconds(int timeoutSeconds) {
+        if (timeoutSeconds < TIMEOUT_SECONDS_MIN_VALUE || timeoutSeconds > TIMEOUT_SECONDS_MAX_VALUE) {
+            throw new IllegalArgumentException("timeoutSeconds must be between "
+                    + TIMEOUT_SECONDS_MIN_VALUE + " and " + TIMEOUT_SECONDS_MAX_VALUE);
+        }
+
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Clears the window and starts a new fusion.
+     */
+    public synchronized void reset() {
+        releaseWindow();
+        firstResultTime = 0;
+        finished = false;
+    }
+
+    /**
+     * Returns whether a stable or timed out result was reported since the last reset.
+     *
+     * @return true if the fusion is finished, false otherwise
+     */
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Adds the result to the window and reports the fused result.
+     * Ignores (releases) the result if the fusion is finished.
+     *
+     * @param detectionResult the result of a detection
+     */
+    @Override
+    public void resultReady(DetectionResult detectionResult) {
+        DetectionResult fusedResult;
+        float confidence;
+        FusionState state;
+
+        synchronized (this) {
+            if (finished) {
+                detectionResult.release();
+                return;
+            }
+
+            long now = System.nanoTime();
+
+            if (firstResultTime == 0)
+                firstResultTime = now;
+
+            if (!detectionResult.isRejected())
+                window.addLast(detectionResult);
+
+            while (window.size() > windowSize) {
+                window.removeFirst().release();
+            }
+
+            Object[] votedSignature = voteSignature();
+            fusedResult = findMostRecentResult(votedSignature);
+            confidence = votedSignature != null ? getConfidence(votedSignature) : 0;
+
+            if (fusedResult != null && window.size() >= windowSize && confidence >= agreementThreshold) {
+                state = FusionState.Stable;
+                stableResultsCounter.increment();
+            } else if (now - firstResultTime >= timeoutSeconds * 1000000000L) {
+                state = FusionState.TimedOut;
+                timedOutResultsCounter.increment();
+            } else {
+                state = FusionState.Collecting;
+            }
+
+            if (fusedResult == null) {
+                //no result with a resistance value, report the received result
+                fusedResult = detectionResult;
+                confidence = 0;
+            }
+
+            finished = state != FusionState.Collecting;
+
+            //keep the fused result valid while it is reported, another result can remove it from the window
+            fusedResult.retain();
+        }
+
+        fusionListener.fusedResultReady(fusedResult, confidence, state);
+
+        fusedResult.release();
+
+        if (detectionResult.isRejected())
+            detectionResult.release();
+    }
+
+    /**
+     * Releases the results of the window and clears the window.
+     */
+    private void releaseWindow() {
+        for (DetectionResult result : window) {
+            result.release();
+        }
+
+        window.clear();
+    }
+
+    /**
+     * Votes the most frequent value of every position of the signatures of the results with a resistance value.
+     * Only the results with the most frequent signature length take part.
+     *
+     * @return the voted signature, or null if no result of the window has a resistance value
+     */
+    private Object[] voteSignature() {
+        int[] lengthVotes = new int[0];
+
+        for (DetectionResult result : window) {
+            Object[] signature = getSignature(result);
+
+            if (signature == null)
+                continue;
+
+            if (signature.length >= lengthVotes.length) {
+                int[] newLengthVotes = new int[signature.length + 1];
+                System.arraycopy(lengthVotes, 0, newLengthVotes, 0, lengthVotes.length);
+                lengthVotes = newLengthVotes;
+            }
+
+            lengthVotes[signature.length]++;
+        }
+
+        int votedLength = -1;
+
+        for (int length = 0; length < lengthVotes.length; length++) {
+            if (lengthVotes[length] > 0 && (votedLength < 0 || lengthVotes[length] > lengthVotes[votedLength]))
+                votedLength = length;
+        }
+
+        if (votedLength < 0)
+            return null;
+
+        Object[] votedSignature = new Object[votedLength];
+
+        for (int position = 0; position < votedLength; position++) {
+            Object votedValue = null;
+            int votedCount = 0;
+
+            for (DetectionResult candidate : window) {
+                Object[] candidateSignature = getSignature(candidate);
+
+                if (candidateSignature == null || candidateSignature.length != votedLength)
+                    continue;
+
+                int count = countAgreeing(position, candidateSignature[position], votedLength);
+
+                //ties are won by the more recent value
+                if (count >= votedCount) {
+                    votedValue = candidateSignature[position];
+                    votedCount = count;
+                }
+            }
+
+            votedSignature[position] = votedValue;
+        }
+
+        return votedSignature;
+    }
+
+    /**
+     * Returns the share of the results of the window which agree with the given signature
+     * at the position with the lowest agreement.
+     *
+     * @param votedSignature the voted signature
+     * @return the confidence of the voted signature (0 - 1)
+     */
+    private float getConfidence(Object[] votedSignature) {
+        int minimumCount = window.size();
+
+        for (int position = 0; position < votedSignature.length; position++) {
+            minimumCount = Math.min(minimumCount, countAgreeing(position, votedSignature[position], votedSignature.length));
+        }
+
+        return (float) minimumCount / window.size();
+    }
+
+    /**
+     * Counts the results of the window with a signature of the given length and the given value at the given position.
+     *
+     * @param position the position in the signature
+     * @param value    the value at the position
+     * @param length   the length of the signature
+     * @return the number of agreeing results
+     */
+    private int countAgreeing(int position, Object value, int length) {
+        int count = 0;
+
+        for (DetectionResult result : window) {
+            Object[] signature = getSignature(result);
+
+            if (signature != null && signature.length == length && signature[position].equals(value))
+                count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the most recent result of the window with the given signature.
+     *
+     * @param votedSignature the voted signature, can be null
+     * @return the most recent result with the signature, or null if there is none
+     */
+    private DetectionResult findMostRecentResult(Object[] votedSignature) {
+        if (votedSignature == null)
+            return null;
+
+        Iterator<DetectionResult> iterator = window.descendingIterator();
+
+        while (iterator.hasNext()) {
+            DetectionResult result = iterator.next();
+            Object[] signature = getSignature(result);
+
+            if (signature != null && Arrays.equals(signature, votedSignature))
+                return result;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the values voted for a result: the colors of the bands,
+     * or the resistance value if the result has no bands.
+     *
+     * @param result the result
+     * @return the signature of the result, or null if the result has no resistance value
+     */
+    private static Object[] getSignature(DetectionResult result) {
+        if (result.getResistorValue() == DetectionResult.UNKNOWN_RESISTANCE_VALUE)
+            return null;
+
+        BandInfo[] bands = result.getBandInfo();
+
+        if (bands == null || bands.length == 0)
+            return new Object[]{result.getResistorValue()};
+
+        Object[] colors = new Object[bands.length];
+
+        for (int i = 0; i < bands.length; i++) {
+            colors[i] = bands[i].getColor();
+        }
+
+        return colors;
+    }
+}
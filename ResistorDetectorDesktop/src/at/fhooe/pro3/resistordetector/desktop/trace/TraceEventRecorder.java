@@ -0,0 +1,250 @@
+package at.fhooe.pro3.resistordetector.desktop.trace;
+
+import at.fhooe.pro3.resistordetector.desktop.detection.ResistorDetector;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the stages of the detections (see ResistorDetector.setStageListener) and writes them
+ * as Chrome trace event JSON file, which can be opened in chrome://tracing or https://ui.perfetto.dev.
+ * <p>
+ * Every stage is one complete event (begin time and duration) on the thread which executed the stage,
+ * the whole detection is an event with the class name of the detector, so the stages are nested
+ * below their detection in the flame chart.
+ * <p>
+ * The events are stored in a ring buffer of primitive arrays which is allocated at construction,
+ * so recording an event does not allocate memory and does not distort the measured times.
+ * If more events than the capacity are recorded, the oldest events are overwritten.
+ * The trace should be written after the detections finished.
+ * <p>
+ * Usage:
+ * TraceEventRecorder recorder = new TraceEventRecorder(TraceEventRecorder.CAPACITY_DEFAULT);
+ * resistorDetector.setStageListener(recorder);
+ * ... detections ...
+ * recorder.writeTrace(new File("traces", "detection-trace.json"));
+ */
+public class TraceEventRecorder implements ResistorDetector.StageListener {
+
+    /**
+     * The default number of events of the ring buffer.
+     */
+    public static final int CAPACITY_DEFAULT = 1 << 16;
+
+    /**
+     * The maximum number of different event names.
+     */
+    private static final int MAX_NAMES = 256;
+
+    /**
+     * The start time (System.nanoTime) of each event.
+     */
+    private final long[] startTimes;
+
+    /**
+     * The end time (System.nanoTime) of each event.
+     */
+    private final long[] endTimes;
+
+    /**
+     * The id of the thread of each event.
+     */
+    private final long[] threadIds;
+
+    /**
+     * The index of the name (in names) of each event.
+     */
+    private final int[] nameIndexes;
+
+    /**
+     * The capacity of the ring buffer - 1 (the capacity is a power of two).
+     */
+    private final int indexMask;
+
+    /**
+     * The number of recorded events, the next event is written to nextEvent & indexMask.
+     */
+    private final AtomicLong nextEvent = new AtomicLong();
+
+    /**
+     * The names of the events.
+     */
+    private final String[] names = new String[MAX_NAMES];
+
+    /**
+     * The index in names of each name.
+     */
+    private final ConcurrentHashMap<String, Integer> nameIndexByName = new ConcurrentHashMap<>();
+
+    /**
+     * The names of the threads which recorded events, by thread id.
+     */
+    private final ConcurrentHashMap<Long, String> threadNames = new ConcurrentHashMap<>();
+
+    /**
+     * True for threads whose name was already added to threadNames.
+     */
+    private final ThreadLocal<Boolean> threadRegistered = new ThreadLocal<>();
+
+    /**
+     * The time (System.nanoTime) of the creation of the recorder, the origin of the trace timestamps.
+     */
+    private final long originNanoTime = System.nanoTime();
+
+    /**
+     * Creates a new recorder with a ring buffer for the given number of events.
+     *
+     * @param capacity the number of events of the ring buffer (rounded up to a power of two), at least 1
+     */
+    public TraceEventRecorder(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30))
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30!");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        startTimes = new long[size];
+        endTimes = new long[size];
+        threadIds = new long[size];
+        nameIndexes = new int[size];
+        indexMask = size - 1;
+    }
+
+    /**
+     * Records a stage (or a whole detection) as event of the calling thread.
+     *
+     * @param name          the name of the stage or the class name of the detector
+     * @param startNanoTime the System.nanoTime() when the stage started
+     * @param endNanoTime   the System.nanoTime() when the stage finished
+     */
+    @Override
+    public void stageFinished(String name, long startNanoTime, long endNanoTime) {
+        int nameIndex = getNameIndex(name);
+        Thread thread = Thread.currentThread();
+
+        if (threadRegistered.get() == null) {
+            threadNames.put(thread.getId(), thread.getName());
+            threadRegistered.set(Boolean.TRUE);
+        }
+
+        int slot = (int) (nextEvent.getAndIncrement() & indexMask);
+
+        startTimes[slot] = startNanoTime;
+        endTimes[slot] = endNanoTime;
+        threadIds[slot] = thread.getId();
+        nameIndexes[slot] = nameIndex;
+    }
+
+    /**
+     * Returns the number of recorded events (including overwritten events).
+     *
+     * @return the number of recorded events
+     */
+    public long getRecordedEvents() {
+        return nextEvent.get();
+    }
+
+    /**
+     * Returns the number of events which were overwritten because the ring buffer was full.
+     *
+     * @return the number of overwritten events
+     */
+    public long getOverwrittenEvents() {
+        return Math.max(0, nextEvent.get() - startTimes.length);
+    }
+
+    /**
+     * Writes the recorded events (oldest first) as Chrome trace event JSON file.
+     * The directory of the file is created if it does not exist.
+     * Events recorded while the trace is written may be missing or incomplete.
+     *
+     * @param file the file the trace is written to
+     * @throws IOException if the trace could not be written
+     */
+    public void writeTrace(File file) throws IOException {
+        if (file == null)
+            throw new IllegalArgumentException("file must not be null!");
+
+        File directory = file.getAbsoluteFile().getParentFile();
+
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("could not create the directory " + directory);
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+        try {
+            writer.write("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [\n");
+            writer.write("{\"name\": \"process_name\", \"ph\": \"M\", \"pid\": 1, \"tid\": 0, \"args\": {\"name\": \"ResistorDetector\"}}");
+
+            for (Map.Entry<Long, String> threadName : threadNames.entrySet()) {
+                writer.write(",\n{\"name\": \"thread_name\", \"ph\": \"M\", \"pid\": 1, \"tid\": " + threadName.getKey()
+                        + ", \"args\": {\"name\": " + toJsonString(threadName.getValue()) + "}}");
+            }
+
+            long end = nextEvent.get();
+            long begin = Math.max(0, end - startTimes.length);
+
+            for (long event = begin; event < end; event++) {
+                int slot = (int) (event & indexMask);
+
+                writer.write(String.format(Locale.US,
+                        ",\n{\"name\": %s, \"cat\": \"detection\", \"ph\": \"X\", \"ts\": %.3f, \"dur\": %.3f, \"pid\": 1, \"tid\": %d}",
+                        toJsonString(names[nameIndexes[slot]]),
+                        (startTimes[slot] - originNanoTime) / 1000.0,
+                        (endTimes[slot] - startTimes[slot]) / 1000.0,
+                        threadIds[slot]));
+            }
+
+            writer.write("\n]}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns the index of a name in names, the name is added if it is new.
+     *
+     * @param name the name of an event
+     * @return the index of the name
+     */
+    private int getNameIndex(String name) {
+        Integer index = nameIndexByName.get(name);
+
+        if (index != null)
+            return index;
+
+        synchronized (names) {
+            index = nameIndexByName.get(name);
+
+            if (index == null) {
+                index = nameIndexByName.size();
+
+                if (index >= MAX_NAMES)
+                    throw new IllegalStateException("at most " + MAX_NAMES + " event names are supported!");
+
+                names[index] = name;
+                nameIndexByName.put(name, index);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the given text as JSON string (with quotes, quotes and backslashes escaped).
+     *
+     * @param text the text
+     * @return the JSON string
+     */
+    private static String toJsonString(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
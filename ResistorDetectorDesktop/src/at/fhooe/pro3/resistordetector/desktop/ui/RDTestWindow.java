@@ -1,6 +1,7 @@
 package at.fhooe.pro3.resistordetector.desktop.ui;
 
 import at.fhooe.pro3.resistordetector.desktop.detection.*;
+import at.fhooe.pro3.resistordetector.desktop.trace.TraceEventRecorder;
 import org.opencv.core.Mat;
 
 import javax.imageio.ImageIO;
@@ -14,12 +15,16 @@ import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class displays a JFrame, loads resistor images, performs the detection on these images
  * and displays the detection steps and the result in the frame.
  * <p>
  * Resistor images are loaded from the 'resistorImages' directory.
+ * The metrics of the detections are written to 'metrics/metrics.json' periodically and when the frame is closed.
+ * The stages of all detections are written to 'traces/rdtestwindow-trace.json' (Chrome trace event format)
+ * when all images are processed.
  * <p>
  * Created by stefan on 05.06.2017.
  */
@@ -40,6 +45,17 @@ public class RDTestWindow extends JFrame {
      */
     private ResistorDetector resistorDetector = new ColumnsResistorDetector(new ResultListener());
 
+    /**
+     * Writes the metrics of the detections to a file.
+     */
+    private MetricsFileExporter metricsFileExporter = new MetricsFileExporter(MetricsRegistry.getDefault(),
+            new File("metrics", "metrics.json"), MetricsFileExporter.Format.Json);
+
+    /**
+     * Records the stages of the detections.
+     */
+    private TraceEventRecorder traceEventRecorder = new TraceEventRecorder(TraceEventRecorder.CAPACITY_DEFAULT);
+
     /**
      * Creates a new JFrame, loads the resistor images and starts the detection process.
      */
@@ -47,11 +63,17 @@ public class RDTestWindow extends JFrame {
         this.addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
+                metricsFileExporter.stop();
                 System.exit(0);
             }
         });
 
         resistorDetector.setNumberOfBands(ResistorDetector.NumberOfBands.Four);
+        resistorDetector.setParallelExecutor(new ForkJoinPool());
+        resistorDetector.setStageTimingEnabled(true);
+        resistorDetector.setStageListener(traceEventRecorder);
+
+        metricsFileExporter.start(MetricsFileExporter.PERIOD_SECONDS_DEFAULT);
 
         loadImages();
 
@@ -75,6 +97,7 @@ public class RDTestWindow extends JFrame {
             if (imageQueue.size() > 0) {
                 processNextImageInQueue();
             } else {
+                writeTrace();
                 displayResults();
                 //saveImages();
             }
@@ -94,6 +117,17 @@ public class RDTestWindow extends JFrame {
         }
     }
 
+    /**
+     * Writes the recorded stages of all detections to 'traces/rdtestwindow-trace.json'.
+     */
+    private void writeTrace() {
+        try {
+            traceEventRecorder.writeTrace(new File("traces", "rdtestwindow-trace.json"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Displays the result of all detection processes.
      */
@@ -117,6 +151,7 @@ public class RDTestWindow extends JFrame {
             }
 
             scrollContent.add(new JLabel("resistance value"));
+            scrollContent.add(new JLabel("stage times"));
 
             for (DetectionResult result : detectionResults) {
 
@@ -131,7 +166,8 @@ public class RDTestWindow extends JFrame {
                     }
                 }
 
-                scrollContent.add(new Label(result.getResistorValue() + ""));
+                scrollContent.add(new Label(result.getResistorValue() + " (" + result.getResolutionPath() + ")"));
+                scrollContent.add(new JLabel(stageTimesToHtml(result)));
             }
 
             scrollPane.add(scrollContent);
@@ -139,6 +175,28 @@ public class RDTestWindow extends JFrame {
         }
     }
 
+    /**
+     * Returns the measured runtime of each stage of the given result as html text (one stage per line).
+     *
+     * @param result the DetectionResult with the stage times
+     * @return the stage times in microseconds as html text
+     */
+    private String stageTimesToHtml(DetectionResult result) {
+        if (!result.stageTimesAvailable())
+            return "-";
+
+        StringBuilder builder = new StringBuilder("<html>");
+
+        for (DetectionResult.Stage stage : DetectionResult.Stage.values()) {
+            long stageTime = result.getStageTime(stage);
+
+            if (stageTime != DetectionResult.STAGE_NOT_MEASURED)
+                builder.append(stage.name()).append(": ").append(stageTime / 1000).append(" us<br>");
+        }
+
+        return builder.append("</html>").toString();
+    }
+
     /**
      * Saves the images of the detectionStepDetails of every DetectionResult to a file.
      * The images are saved as *.png files into the 'detectionStepImages' folder.